@@ -1,11 +1,15 @@
 package amazons;
 
-import java.util.Iterator;
-
 import static amazons.Piece.*;
+import static amazons.TranspositionTable.*;
 
 /**
- * A Player that automatically generates moves.
+ * A Player that automatically generates moves.  Its search remembers the
+ * positions it has searched in a transposition table, which it keeps
+ * from move to move, so that positions reached again by moves in a
+ * different order, as happens constantly in Amazons, are looked up
+ * rather than searched again, and the best move found for a position
+ * before is tried first.
  *
  * @author Zhibo Fan
  */
@@ -22,16 +26,25 @@ class AI extends Player {
     private static final int INFTY = Integer.MAX_VALUE;
 
     /**
-     * A number of how many steps later
-     * should the depth of the game tree change.
+     * The largest number of levels searched, each a move by me and a
+     * reply, limited by the depths the transposition table can record.
      */
-    private static final int STEP_THRESH = 40;
+    static final int MAX_SEARCH_DEPTH = MAX_DEPTH / 2;
 
     /**
-     * Probability for random pruning.
+     * The largest number of plies searched.
      */
-    private static final double PROB = 0.0005;
+    private static final int MAX_PLIES = 2 * MAX_SEARCH_DEPTH;
 
+    /**
+     * Nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /**
+     * The clock is read once every CHECK_MASK + 1 positions searched.
+     */
+    private static final int CHECK_MASK = (1 << 10) - 1;
 
     /**
      * A score table.
@@ -39,6 +52,11 @@ class AI extends Player {
     private static final int[] SCORETABLE = {0, 0, 1, 3, 7,
         010, 15, 30, 1000};
 
+    /**
+     * Log base 2 of the number of entries in the transposition table.
+     */
+    private static final int TABLE_BITS = 18;
+
     /**
      * A new AI with no piece or controller (intended to produce
      * a template).
@@ -68,19 +86,198 @@ class AI extends Player {
 
     /**
      * Return a move for me from the current position, assuming there
-     * is a move.
+     * is a move, taking about as long as my controller allows.
      */
     private Move findMove() {
-        Board b = new Board(board());
-        findMove(b, maxDepth(b), true, 1, -INFTY, INFTY);
-        return _lastFoundMove;
+        return findMove(new Board(board()), MAX_SEARCH_DEPTH,
+                        _controller.timeLimit());
+    }
+
+    /**
+     * Return a move for me from BOARD, on which it is my turn, found by
+     * a search of DEPTH levels.  BOARD is left unchanged.
+     */
+    Move findMove(Board board, int depth) {
+        return findMove(board, depth, 0);
+    }
+
+    /**
+     * Return a move for me from BOARD, on which it is my turn, found by
+     * iterative deepening: searches of 1, 2, ... levels, up to MAXDEPTH
+     * levels, stopping after about MILLIS milliseconds, or never if
+     * MILLIS is 0.  Each search tries the principal variation found by
+     * the one before it first.  The move returned is the best one found
+     * by the deepest search that finished, or by the search that ran out
+     * of time, if it finished searching one move from BOARD (which is the
+     * best move found before, if any); or else the first legal move.  The
+     * number of positions visited by each finished search and the time
+     * it took are reported to my controller, if any.  BOARD is left
+     * unchanged.
+     */
+    Move findMove(Board board, int maxDepth, long millis) {
+        long start = System.nanoTime();
+        _deadline = start + millis * NANOS_PER_MILLI;
+        if (_useTable && _table == null) {
+            _table = new TranspositionTable(TABLE_BITS);
+        }
+        if (_table != null) {
+            _table.newSearch();
+        }
+        _lastPVLength = 0;
+        int bestMove = 0;
+        _lastDepth = 0;
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            if (_moves == null || _moves.length < 2 * depth + 2) {
+                _moves = new int[2 * depth + 2][Board.MAX_MOVES];
+            }
+            long nodes = _nodes, iteration = System.nanoTime();
+            _rootDepth = depth;
+            _timed = millis > 0;
+            _stopped = false;
+            _followPV = true;
+            _lastFoundMove = 0;
+            int value = findMove(board, depth, true, 1, -INFTY, INFTY);
+            if (_lastFoundMove != 0) {
+                bestMove = _lastFoundMove;
+            }
+            if (_stopped) {
+                break;
+            }
+            _lastDepth = depth;
+            _lastPVLength = _pvLength[0];
+            System.arraycopy(_pv[0], 0, _lastPV, 0, _lastPVLength);
+            long now = System.nanoTime();
+            if (_controller != null) {
+                _controller.reportSearch(depth, _nodes - nodes,
+                        (double) (now - iteration) / NANOS_PER_MILLI);
+            }
+            if (Math.abs(value) >= WINNING_VALUE
+                || millis > 0 && now - start > millis * NANOS_PER_MILLI / 2) {
+                break;
+            }
+        }
+        if (bestMove == 0 && board.generateMoves(_myPiece, _moves[0]) > 0) {
+            bestMove = _moves[0][0];
+        }
+        return Move.mv(bestMove);
     }
 
     /**
-     * The move found by the last call to one of the ...FindMove methods
-     * below.
+     * Use a transposition table in later searches iff ON.  Without one,
+     * every position reached is searched in full.
      */
-    private Move _lastFoundMove;
+    void useTable(boolean on) {
+        _useTable = on;
+        if (!on) {
+            _table = null;
+        }
+    }
+
+    /**
+     * Return my transposition table, or null if I have none.
+     */
+    TranspositionTable table() {
+        return _table;
+    }
+
+    /**
+     * Return the number of positions my searches have visited.
+     */
+    long nodes() {
+        return _nodes;
+    }
+
+    /**
+     * Return the number of levels of the deepest search that finished
+     * in my last call to findMove.
+     */
+    int lastDepth() {
+        return _lastDepth;
+    }
+
+    /**
+     * The packed form of the move found by the last call to one of the
+     * ...FindMove methods below, or the best found so far while the
+     * search is in progress (0 if none).
+     */
+    private int _lastFoundMove;
+
+    /**
+     * Buffers for the moves considered at each level of the search.  The
+     * search at DEPTH for SENSE uses _moves[2 * DEPTH + (SENSE + 1) / 2],
+     * which no other level in progress at the same time uses.  No
+     * search uses _moves[0], which holds the legal moves from the top
+     * position when no search finds a move in time.
+     */
+    private int[][] _moves;
+
+    /**
+     * True iff my searches use a transposition table.
+     */
+    private boolean _useTable = true;
+
+    /**
+     * The transposition table, or null if it is not in use or not yet
+     * needed.  Scores in it are from my point of view.
+     */
+    private TranspositionTable _table;
+
+    /**
+     * Number of positions visited by my searches.
+     */
+    private long _nodes;
+
+    /**
+     * The value of System.nanoTime() after which the current search is
+     * to stop, if _timed.
+     */
+    private long _deadline;
+
+    /**
+     * True iff the current search stops at _deadline.
+     */
+    private boolean _timed;
+
+    /**
+     * True iff the current search ran out of time, in which case its
+     * results are meaningless.
+     */
+    private boolean _stopped;
+
+    /**
+     * Number of levels of the search in progress, and of the deepest
+     * search that finished in the last call to findMove.
+     */
+    private int _rootDepth, _lastDepth;
+
+    /**
+     * The principal variations found by the search in progress: the moves
+     * _pv[P][P .. _pvLength[P] - 1] are the best line found from the
+     * position being searched P plies below the top level.
+     */
+    private final int[][] _pv = new int[MAX_PLIES + 1][MAX_PLIES + 1];
+
+    /**
+     * The ends of the lines in _pv.
+     */
+    private final int[] _pvLength = new int[MAX_PLIES + 1];
+
+    /**
+     * The principal variation found by the last search that finished,
+     * in _lastPV[0 .. _lastPVLength - 1].
+     */
+    private final int[] _lastPV = new int[MAX_PLIES + 1];
+
+    /**
+     * Length of _lastPV.
+     */
+    private int _lastPVLength;
+
+    /**
+     * True iff the position about to be searched is reached by following
+     * _lastPV from the top level.
+     */
+    private boolean _followPV;
 
     /**
      * Find a move from position BOARD and return its value, recording
@@ -88,52 +285,114 @@ class AI extends Player {
      * should have maximal value or have value > BETA if SENSE==1,
      * and minimal value or value < ALPHA if SENSE==-1. Searches up to
      * DEPTH levels.  Searching at level 0 simply returns a static estimate
-     * of the board value and does not set _lastMoveFound.
+     * of the board value and does not set _lastMoveFound.  Positions
+     * found in the transposition table to have been searched at least as
+     * deeply are not searched again, except at the top level.  The move
+     * from _lastPV, if this position is on it, or else the best move
+     * recorded in the table, is searched first.  Sets _stopped and
+     * returns a meaningless value if time runs out, leaving in
+     * _lastFoundMove the best move found so far, if SAVEMOVE.
      */
     private int findMove(Board board, int depth, boolean saveMove, int sense,
                          int alpha, int beta) {
+        _nodes += 1;
+        if ((_nodes & CHECK_MASK) == 0 && _timed
+            && System.nanoTime() - _deadline > 0) {
+            _stopped = true;
+        }
+        if (_stopped) {
+            return 0;
+        }
+        int ply = 2 * (_rootDepth - depth) + (1 - sense) / 2;
+        boolean followPV = _followPV && ply < _lastPVLength;
+        _pvLength[ply] = ply;
         if (depth == 0 || board.winner() != EMPTY) {
             return staticScore(board);
         }
-        Move decision = null;
+        int plies = 2 * depth - (1 - sense) / 2;
+        int hashMove = 0;
+        if (_table != null) {
+            long entry = _table.probe(board.key());
+            if (entry != MISS) {
+                hashMove = move(entry);
+                int score = score(entry), bound = bound(entry);
+                if (!saveMove && !followPV && depth(entry) >= plies
+                    && (bound == EXACT || bound == LOWER && score >= beta
+                        || bound == UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        int decision = 0;
         int v;
+        int[] moves = _moves[2 * depth + (sense + 1) / 2];
+        boolean cut = false;
+        int alpha0 = alpha, beta0 = beta;
+        int n = board.generateMoves(sense == 1 ? _myPiece : opponent(),
+                                    moves);
+        followPV = followPV && putFirst(moves, n, _lastPV[ply]);
+        if (!followPV) {
+            putFirst(moves, n, hashMove);
+        }
         if (sense == 1) {
-            v = Integer.MIN_VALUE + 1;
-            Iterator<Move> it = board.legalMoves(_myPiece);
-            while (it.hasNext()) {
-                Move successor = it.next();
+            v = -INFTY;
+            for (int i = 0; i < n; i += 1) {
+                int successor = moves[i];
                 board.makeMove(successor);
+                _followPV = followPV && i == 0;
                 int thisValue = findMove(board, depth,
                         false, -sense, alpha, beta);
                 board.undo();
-                if (thisValue >= v) {
+                if (_stopped) {
+                    return 0;
+                }
+                if (thisValue > v) {
                     v = thisValue;
                     decision = successor;
+                    savePV(ply, successor);
+                    if (saveMove) {
+                        _lastFoundMove = successor;
+                    }
                 }
-                if (v >= beta || Math.random() < PROB) {
+                if (v >= beta) {
+                    cut = true;
                     break;
                 }
                 alpha = Integer.max(alpha, v);
             }
         } else {
-            v = Integer.MAX_VALUE - 1;
-            Iterator<Move> it = board.legalMoves(opponent());
-            while (it.hasNext()) {
-                Move successor = it.next();
+            v = INFTY;
+            for (int i = 0; i < n; i += 1) {
+                int successor = moves[i];
                 board.makeMove(successor);
+                _followPV = followPV && i == 0;
                 int thisValue = findMove(board, depth - 1,
                         false, -sense, alpha, beta);
                 board.undo();
-                if (thisValue <= v) {
+                if (_stopped) {
+                    return 0;
+                }
+                if (thisValue < v) {
                     v = thisValue;
                     decision = successor;
+                    savePV(ply, successor);
                 }
-                if (v <= alpha || Math.random() < PROB) {
+                if (v <= alpha) {
+                    cut = true;
                     break;
                 }
                 beta = Integer.min(beta, v);
             }
         }
+        if (_table != null) {
+            int bound;
+            if (sense == 1) {
+                bound = cut ? LOWER : v <= alpha0 ? UPPER : EXACT;
+            } else {
+                bound = cut ? UPPER : v >= beta0 ? LOWER : EXACT;
+            }
+            _table.store(board.key(), plies, bound, v, decision);
+        }
         if (saveMove) {
             _lastFoundMove = decision;
         }
@@ -141,11 +400,30 @@ class AI extends Player {
     }
 
     /**
-     * Return a heuristically determined maximum search depth
-     * based on characteristics of BOARD.
+     * Record that the best line from the position PLY plies below the top
+     * level starts with MOVE and continues with the best line just found
+     * from the position MOVE leads to.
      */
-    private int maxDepth(Board board) {
-        return 1;
+    private void savePV(int ply, int move) {
+        _pv[ply][ply] = move;
+        System.arraycopy(_pv[ply + 1], ply + 1, _pv[ply], ply + 1,
+                         _pvLength[ply + 1] - ply - 1);
+        _pvLength[ply] = _pvLength[ply + 1];
+    }
+
+    /**
+     * Move MOVE to the front of MOVES[0 .. N-1], if it is there, so that
+     * it is searched first, and return true iff it was there.
+     */
+    private static boolean putFirst(int[] moves, int n, int move) {
+        for (int i = 0; i < n && move != 0; i += 1) {
+            if (moves[i] == move) {
+                moves[i] = moves[0];
+                moves[0] = move;
+                return true;
+            }
+        }
+        return false;
     }
 
 
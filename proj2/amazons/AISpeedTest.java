@@ -0,0 +1,89 @@
+package amazons;
+
+import java.util.Random;
+
+/**
+ * Search statistics for AI: the numbers of positions visited by searches
+ * of fixed depth from sample positions with and without a transposition
+ * table, the time taken, and how often the table was found to hold the
+ * position looked up; and the depths reached by iterative deepening
+ * under various time limits, and by how much each search overran its
+ * limit.  Not part of the package proper.
+ *
+ * @author Zhibo Fan
+ */
+public class AISpeedTest {
+
+    /**
+     * Print the results of searching BOARD, described by LABEL, to DEPTH
+     * with and without a transposition table.
+     */
+    static void printSearch(String label, Board board, int depth) {
+        long[] nodes = new long[2];
+        double[] times = new double[2];
+        double hitRate = 0;
+        for (int table = 0; table < 2; table += 1) {
+            AI ai = new AI(board.turn(), null);
+            ai.useTable(table == 1);
+            long start = System.nanoTime();
+            ai.findMove(new Board(board), depth);
+            times[table] = (System.nanoTime() - start) / 1e6;
+            nodes[table] = ai.nodes();
+            if (ai.table() != null && ai.table().probes() > 0) {
+                hitRate = (double) ai.table().hits() / ai.table().probes();
+            }
+        }
+        System.out.printf("%-12s %6d %10d %10d %9.1f%% %9.1f%% %9.1f %9.1f%n",
+                          label, depth, nodes[0], nodes[1],
+                          100.0 * (nodes[0] - nodes[1]) / nodes[0],
+                          100 * hitRate, times[0], times[1]);
+    }
+
+    /**
+     * Print the depth reached by iterative deepening from BOARD,
+     * described by LABEL, in MILLIS milliseconds, the positions visited,
+     * the time taken, and the time by which the search overran MILLIS,
+     * if it did.  The player is new, so that its transposition table
+     * starts empty.
+     */
+    static void printDeepening(String label, Board board, long millis) {
+        AI ai = new AI(board.turn(), null);
+        long start = System.nanoTime();
+        ai.findMove(new Board(board), AI.MAX_SEARCH_DEPTH, millis);
+        double time = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-12s %6d %6d %10d %9.1f %9.1f%n", label, millis,
+                          ai.lastDepth(), ai.nodes(), time,
+                          Math.max(0, time - millis));
+    }
+
+    /**
+     * Run the timing tests.  ARGS is unused.
+     */
+    public static void main(String... args) {
+        Random rand = new Random(61);
+        System.out.printf("Search nodes and times (ms), without and with a"
+                          + " transposition table%n");
+        System.out.printf("%-12s %6s %10s %10s %10s %10s %9s %9s%n",
+                          "position", "depth", "nodes", "with TT",
+                          "saved", "hits", "time", "with TT");
+        printSearch("initial", new Board(), 1);
+        for (int plies = 20; plies <= 60; plies += 20) {
+            Board board = BoardSpeedTest.randomPosition(plies, rand);
+            printSearch("after " + plies, board, 1);
+            if (plies > 20) {
+                printSearch("after " + plies, board, 2);
+            }
+        }
+        rand = new Random(61);
+        System.out.printf("%nIterative deepening under a time limit (ms)%n");
+        System.out.printf("%-12s %6s %6s %10s %9s %9s%n", "position",
+                          "limit", "depth", "nodes", "time", "overrun");
+        printDeepening("initial", new Board(), 1000);
+        for (int plies = 20; plies <= 60; plies += 20) {
+            Board board = BoardSpeedTest.randomPosition(plies, rand);
+            for (long millis = 1; millis <= 10000; millis *= 10) {
+                printDeepening("after " + plies, board, millis);
+            }
+        }
+    }
+}
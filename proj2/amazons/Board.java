@@ -1,13 +1,20 @@
 package amazons;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 import static amazons.Piece.*;
 
 /**
- * The state of an Amazons Game.
+ * The state of an Amazons Game.  The black queens, white queens, and
+ * spears are each kept as a 128-bit bitboard, in the form described in
+ * Rays, so that occupancy tests, sliding moves, and mobility counts are
+ * a few operations on whole words.  Each position also has a 64-bit
+ * Zobrist key, the exclusive or of a random number for each piece on
+ * each square and one for black to move, which moves and undos update
+ * by flipping the numbers for the squares they touch.
  *
  * @author Zhibo Fan
  */
@@ -23,6 +30,11 @@ class Board {
      */
     static final int QUEENS = 4;
 
+    /**
+     * An upper bound on the number of legal moves in any position.
+     */
+    static final int MAX_MOVES = QUEENS * Rays.MAX_REACH * Rays.MAX_REACH;
+
     /**
      * Initializes a game board with SIZE squares on a side in the
      * initial position.
@@ -45,11 +57,11 @@ class Board {
      */
     static Board emptyBoard() {
         Board b = new Board();
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            b._spear[i] = false;
-            b._white[i] = false;
-            b._black[i] = false;
-        }
+        Arrays.fill(b._spear, 0);
+        Arrays.fill(b._white, 0);
+        Arrays.fill(b._black, 0);
+        Arrays.fill(b._mobile, 0);
+        b._key = b.computeKey();
         return b;
     }
 
@@ -57,14 +69,14 @@ class Board {
      * Clear the board.
      */
     void clear() {
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            _spear[i] = false;
-            _white[i] = false;
-            _black[i] = false;
-        }
+        Arrays.fill(_spear, 0);
+        Arrays.fill(_white, 0);
+        Arrays.fill(_black, 0);
+        Arrays.fill(_mobile, 0);
         _winner = EMPTY;
-        _movement = new Stack<String>();
+        _numMoves = 0;
         _turn = WHITE;
+        _key = computeKey();
     }
 
     /**
@@ -74,9 +86,11 @@ class Board {
      * @param index index of the square
      */
     void clear(int index) {
-        _spear[index] = false;
-        _black[index] = false;
-        _white[index] = false;
+        remove(_spear, index);
+        remove(_black, index);
+        remove(_white, index);
+        refreshMobility(index);
+        _key = computeKey();
     }
 
     /**
@@ -85,18 +99,13 @@ class Board {
     void copy(Board model) {
         _turn = model.turn();
         _winner = model.winner();
-        _black = new boolean[SIZE * SIZE];
-        _white = new boolean[SIZE * SIZE];
-        _spear = new boolean[SIZE * SIZE];
-        _movement = new Stack<String>();
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            _black[i] = model._black[i];
-            _white[i] = model._white[i];
-            _spear[i] = model._spear[i];
-        }
-        for (String m : model._movement) {
-            _movement.push(m);
-        }
+        _black = model._black.clone();
+        _white = model._white.clone();
+        _spear = model._spear.clone();
+        _mobile = model._mobile.clone();
+        _movement = model._movement.clone();
+        _numMoves = model._numMoves;
+        _key = model._key;
     }
 
     /**
@@ -105,10 +114,12 @@ class Board {
     void init() {
         _turn = WHITE;
         _winner = EMPTY;
-        _black = new boolean[SIZE * SIZE];
-        _white = new boolean[SIZE * SIZE];
-        _spear = new boolean[SIZE * SIZE];
-        _movement = new Stack<String>();
+        _black = new long[2];
+        _white = new long[2];
+        _spear = new long[2];
+        _mobile = new long[2];
+        _movement = new int[INITIAL_MOVES];
+        _numMoves = 0;
         put(BLACK, Square.sq(Integer.parseInt("60")));
         put(BLACK, Square.sq(Integer.parseInt("93")));
         put(BLACK, Square.sq(Integer.parseInt("96")));
@@ -119,6 +130,32 @@ class Board {
         put(WHITE, Square.sq(Integer.parseInt("6")));
     }
 
+    /**
+     * Return the Zobrist key of the current position: the pieces on the
+     * board and the side to move.
+     */
+    long key() {
+        return _key;
+    }
+
+    /**
+     * Return the Zobrist key of the current position, computed from
+     * scratch.
+     */
+    private long computeKey() {
+        long key = _turn == BLACK ? BLACK_TO_MOVE : 0;
+        for (int i = next(_black, 0); i >= 0; i = next(_black, i + 1)) {
+            key ^= BLACK_KEYS[i];
+        }
+        for (int i = next(_white, 0); i >= 0; i = next(_white, i + 1)) {
+            key ^= WHITE_KEYS[i];
+        }
+        for (int i = next(_spear, 0); i >= 0; i = next(_spear, i + 1)) {
+            key ^= SPEAR_KEYS[i];
+        }
+        return key;
+    }
+
     /**
      * Return the Piece whose move it is (WHITE or BLACK).
      */
@@ -131,7 +168,7 @@ class Board {
      * board.
      */
     int numMoves() {
-        return _movement.size();
+        return _numMoves;
     }
 
     /**
@@ -146,15 +183,7 @@ class Board {
      * Return the contents the square at S.
      */
     final Piece get(Square s) {
-        int index = s.index();
-        if (_black[index]) {
-            return BLACK;
-        } else if (_white[index]) {
-            return WHITE;
-        } else if (_spear[index]) {
-            return SPEAR;
-        }
-        return EMPTY;
+        return get(s.index());
     }
 
     /**
@@ -180,11 +209,11 @@ class Board {
      */
     final Piece get(int index) {
         assert boardCheck();
-        if (_black[index]) {
+        if (has(_black, index)) {
             return BLACK;
-        } else if (_white[index]) {
+        } else if (has(_white, index)) {
             return WHITE;
-        } else if (_spear[index]) {
+        } else if (has(_spear, index)) {
             return SPEAR;
         } else {
             return EMPTY;
@@ -197,16 +226,17 @@ class Board {
     final void put(Piece p, Square s) {
         int index = s.index();
         if (p.equals(BLACK)) {
-            _black[index] = true;
+            add(_black, index);
         } else if (p.equals(WHITE)) {
-            _white[index] = true;
+            add(_white, index);
         } else if (p.equals(SPEAR)) {
-            _spear[index] = true;
+            add(_spear, index);
         } else {
-            _black[index] = false;
-            _white[index] = false;
-            _spear[index] = false;
+            clear(index);
+            return;
         }
+        refreshMobility(index);
+        _key = computeKey();
     }
 
     /**
@@ -232,49 +262,28 @@ class Board {
      * empty. ASEMPTY may be null, in which case it has no effect.
      */
     boolean isUnblockedMove(Square from, Square to, Square asEmpty) {
-        int type = 0;
-        if (asEmpty != null) {
-            int emptyIndex = asEmpty.index();
-            type = (_black[emptyIndex] ? 1
-                    : (_white[emptyIndex] ? 2
-                            : (_spear[emptyIndex] ? 3 : 0)));
-            _black[emptyIndex] = false;
-            _white[emptyIndex] = false;
-            _spear[emptyIndex] = false;
+        int dir = from.direction(to);
+        if (dir == -1) {
+            return false;
         }
-        boolean result = isLegal(from, to);
-        if (type == 1) {
-            _black[asEmpty.index()] = true;
-        } else if (type == 2) {
-            _white[asEmpty.index()] = true;
-        } else if (type == 3) {
-            _spear[asEmpty.index()] = true;
+        long lo = occupiedLo(), hi = occupiedHi();
+        int f = from.index();
+        if (asEmpty != null) {
+            int e = asEmpty.index();
+            lo &= ~loBit(e);
+            hi &= ~hiBit(e);
+            if (e == f) {
+                return Rays.clear(dir, f, to.index(), lo, hi);
+            }
         }
-        return result;
+        return !has(_spear, f) && Rays.clear(dir, f, to.index(), lo, hi);
     }
 
     /**
      * Return true iff FROM is a valid starting square for a move.
      */
     boolean isLegal(Square from) {
-        int col = from.col();
-        int row = from.row();
-        return (Square.exists(col - 1, row - 1)
-                && get(col - 1, row - 1) == EMPTY)
-                || (Square.exists(col - 1, row)
-                && get(col - 1, row) == EMPTY)
-                || (Square.exists(col - 1, row + 1)
-                && get(col - 1, row + 1) == EMPTY)
-                || (Square.exists(col, row - 1)
-                && get(col, row - 1) == EMPTY)
-                || (Square.exists(col, row + 1)
-                && get(col, row + 1) == EMPTY)
-                || (Square.exists(col + 1, row - 1)
-                && get(col + 1, row - 1) == EMPTY)
-                || (Square.exists(col + 1, row)
-                && get(col + 1, row) == EMPTY)
-                || (Square.exists(col + 1, row + 1)
-                && get(col + 1, row + 1) == EMPTY);
+        return Rays.hasRoom(from.index(), occupiedLo(), occupiedHi());
     }
 
     /**
@@ -282,47 +291,7 @@ class Board {
      * spear throwing.
      */
     boolean isLegal(Square from, Square to) {
-        boolean result = true;
-        int dir = from.direction(to);
-        if (!isLegal(from) || dir == -1) {
-            return false;
-        }
-        int type = (_black[from.index()] ? 1
-                : (_white[from.index()] ? 2 : 0));
-        int minx = Math.min(from.col(), to.col());
-        int miny = Math.min(from.row(), to.row());
-        int maxx = Math.max(from.col(), to.col());
-        int maxy = Math.max(from.row(), to.row());
-        _black[from.index()] = false;
-        _white[from.index()] = false;
-        if (dir % 4 == 0) {
-            for (int i = miny; i <= maxy; i++) {
-                if (get(minx, i) != EMPTY) {
-                    result = false;
-                }
-            }
-        } else if (dir % 4 == 2) {
-            for (int i = minx; i <= maxx; i++) {
-                if (get(i, miny) != EMPTY) {
-                    result = false;
-                }
-            }
-        } else if (dir % 4 == 1) {
-            for (int i = minx, j = miny; i <= maxx; i++, j++) {
-                if (get(i, j) != EMPTY) {
-                    result = false;
-                }
-            }
-        } else {
-            for (int i = minx, j = maxy; i <= maxx; i++, j--) {
-                if (get(i, j) != EMPTY) {
-                    result = false;
-                }
-            }
-        }
-        _black[from.index()] = type == 1;
-        _white[from.index()] = type == 2;
-        return result && Square.exists(from) && Square.exists(to);
+        return isUnblockedMove(from, to, null);
     }
 
     /**
@@ -348,71 +317,112 @@ class Board {
      * Move FROM-TO(SPEAR), assuming this is a legal move.
      */
     void makeMove(Square from, Square to, Square spear) {
+        makeMove(Move.pack(from.index(), to.index(), spear.index()));
+    }
+
+    /**
+     * Make the move whose packed form is MOVE, assuming it is a legal
+     * move.
+     */
+    void makeMove(int move) {
         if (_winner != EMPTY) {
             return;
         }
-        if (!isLegal(from, to, spear)) {
+        int from = Move.fromIndex(move), to = Move.toIndex(move),
+                spear = Move.spearIndex(move);
+        if (!isLegal(Square.sq(from), Square.sq(to), Square.sq(spear))) {
             return;
         }
-        if (turn() == BLACK) {
-            _black[from.index()] = false;
-            _black[to.index()] = true;
-        } else {
-            _white[from.index()] = false;
-            _white[to.index()] = true;
-        }
-        _spear[spear.index()] = true;
-        Move m = Move.mv(from, to, spear);
-        _movement.push(m.toString());
+        long[] queens = turn() == BLACK ? _black : _white,
+                keys = turn() == BLACK ? BLACK_KEYS : WHITE_KEYS;
+        remove(queens, from);
+        add(queens, to);
+        add(_spear, spear);
+        _key ^= keys[from] ^ keys[to] ^ SPEAR_KEYS[spear] ^ BLACK_TO_MOVE;
+        remove(_mobile, from);
+        refreshMobility(from, to, spear);
+        if (_numMoves == _movement.length) {
+            _movement = Arrays.copyOf(_movement, 2 * _numMoves);
+        }
+        _movement[_numMoves] = move;
+        _numMoves += 1;
         _turn = (turn() == BLACK ? WHITE : BLACK);
         updateWinner();
     }
 
     /**
-     * Update winner after movement.
+     * Update winner after movement: the side to move loses when none of
+     * its queens is mobile.
      */
     private void updateWinner() {
         if (_winner == WHITE || _winner == BLACK) {
             return;
         }
-        boolean isWin = true;
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            if (_black[i] && isLegal(Square.sq(i))
-                    && _turn == BLACK) {
-                isWin = false;
-            } else if (_white[i] && isLegal(Square.sq(i))
-                    && _turn == WHITE) {
-                isWin = false;
-            }
-        }
-        if (isWin) {
+        long[] queens = _turn == BLACK ? _black : _white;
+        if ((queens[0] & _mobile[0]) == 0 && (queens[1] & _mobile[1]) == 0) {
             _winner = (_turn == BLACK ? WHITE : BLACK);
         }
     }
 
+    /**
+     * Bring _mobile up to date after a change to the squares A, B, and C.
+     * Only queens on or next to a changed square can have gained or lost
+     * an empty neighbor, so only they are looked at.
+     */
+    private void refreshMobility(int a, int b, int c) {
+        long lo = Rays.neighborsLo(a) | Rays.neighborsLo(b)
+                | Rays.neighborsLo(c) | loBit(a) | loBit(b) | loBit(c);
+        long hi = Rays.neighborsHi(a) | Rays.neighborsHi(b)
+                | Rays.neighborsHi(c) | hiBit(a) | hiBit(b) | hiBit(c);
+        long occLo = occupiedLo(), occHi = occupiedHi();
+        for (int w = 0; w < 2; w += 1) {
+            long bits = (_black[w] | _white[w]) & (w == 0 ? lo : hi);
+            while (bits != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (Rays.hasRoom(index, occLo, occHi)) {
+                    add(_mobile, index);
+                } else {
+                    remove(_mobile, index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring _mobile up to date after a change to square INDEX.
+     */
+    private void refreshMobility(int index) {
+        remove(_mobile, index);
+        refreshMobility(index, index, index);
+    }
+
     /**
      * Move according to MOVE, assuming it is a legal move.
      */
     void makeMove(Move move) {
-        makeMove(move.from(), move.to(), move.spear());
+        makeMove(move.packed());
     }
 
     /**
      * Undo one move.  Has no effect on the initial board.
      */
     void undo() {
-        if (_movement.size() < 1) {
+        if (_numMoves < 1) {
             return;
         }
-        Move m = Move.mv(_movement.pop());
-        _spear[m.spear().index()] = false;
-        if (turn() == BLACK) {
-            _white[m.from().index()] = true;
-            _white[m.to().index()] = false;
-        } else {
-            _black[m.from().index()] = true;
-            _black[m.to().index()] = false;
-        }
+        _numMoves -= 1;
+        int move = _movement[_numMoves];
+        remove(_spear, Move.spearIndex(move));
+        long[] queens = turn() == BLACK ? _white : _black,
+                keys = turn() == BLACK ? WHITE_KEYS : BLACK_KEYS;
+        _key ^= keys[Move.fromIndex(move)] ^ keys[Move.toIndex(move)]
+                ^ SPEAR_KEYS[Move.spearIndex(move)] ^ BLACK_TO_MOVE;
+        add(queens, Move.fromIndex(move));
+        remove(queens, Move.toIndex(move));
+        remove(_mobile, Move.toIndex(move));
+        refreshMobility(Move.fromIndex(move), Move.toIndex(move),
+                        Move.spearIndex(move));
         _turn = (_turn == BLACK ? WHITE : BLACK);
         _winner = EMPTY;
         updateWinner();
@@ -447,7 +457,79 @@ class Board {
     }
 
     /**
-     * An iterator used by reachableFrom.
+     * Store the packed forms of all legal moves for SIDE (regardless of
+     * whose turn it is) in MOVES, starting at MOVES[0], in the order that
+     * legalMoves(SIDE) delivers them, and return how many there are.
+     * MOVES must have room for MAX_MOVES moves.  Allocates nothing.
+     */
+    int generateMoves(Piece side, int[] moves) {
+        long[] queens = side == BLACK ? _black : _white;
+        int n = 0;
+        for (int q = next(queens, 0); q >= 0; q = next(queens, q + 1)) {
+            long lo = occupiedLo() & ~loBit(q), hi = occupiedHi() & ~hiBit(q);
+            int maxReach = reaches(q, lo, hi, _queenReach);
+            for (int k = 1; k <= maxReach; k += 1) {
+                for (int dir = 0; dir < Rays.STEP.length; dir += 1) {
+                    if (_queenReach[dir] < k) {
+                        continue;
+                    }
+                    int to = q + Rays.STEP[dir] * k;
+                    int maxThrow = reaches(to, lo, hi, _spearReach);
+                    for (int j = 1; j <= maxThrow; j += 1) {
+                        for (int d = 0; d < Rays.STEP.length; d += 1) {
+                            if (_spearReach[d] >= j) {
+                                moves[n] = Move.pack(q, to,
+                                        to + Rays.STEP[d] * j);
+                                n += 1;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Set REACH[d] to the number of squares a queen can slide to from
+     * square FROM in direction d, treating the squares in (LO, HI) as
+     * blocked, and return the largest of them.
+     */
+    private static int reaches(int from, long lo, long hi, int[] reach) {
+        int result = 0;
+        for (int dir = 0; dir < reach.length; dir += 1) {
+            reach[dir] = Rays.reach(dir, from, lo, hi);
+            result = Math.max(result, reach[dir]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of legal moves for SIDE (regardless of whose turn
+     * it is), counted without generating them.
+     */
+    int countMoves(Piece side) {
+        long[] queens = side == BLACK ? _black : _white;
+        int count = 0;
+        for (int q = next(queens, 0); q >= 0; q = next(queens, q + 1)) {
+            long lo = occupiedLo() & ~loBit(q), hi = occupiedHi() & ~hiBit(q);
+            for (int dir = 0; dir < Rays.STEP.length; dir += 1) {
+                int reach = Rays.reach(dir, q, lo, hi);
+                for (int k = 1, to = q + Rays.STEP[dir]; k <= reach;
+                     k += 1, to += Rays.STEP[dir]) {
+                    for (int d = 0; d < Rays.STEP.length; d += 1) {
+                        count += Rays.reach(d, to, lo, hi);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * An iterator used by reachableFrom.  It delivers the squares in
+     * order of distance from the start, and those at the same distance
+     * in order of direction.
      */
     private class ReachableFromIterator implements Iterator<Square> {
 
@@ -457,23 +539,31 @@ class Board {
          */
         ReachableFromIterator(Square from, Square asEmpty) {
             _from = from;
+            int f = from.index();
+            long lo = occupiedLo(), hi = occupiedHi();
+            if (asEmpty != null) {
+                lo &= ~loBit(asEmpty.index());
+                hi &= ~hiBit(asEmpty.index());
+            }
+            if (!Rays.contains(lo & _spear[0], hi & _spear[1], f)) {
+                _maxReach = reaches(f, lo, hi, _reach);
+            }
             _dir = -1;
             _steps = 1;
-            _asEmpty = asEmpty;
             toNext();
         }
 
         @Override
         public boolean hasNext() {
-            return _dir < 8 && _dir != -1;
+            return _steps <= _maxReach;
         }
 
         @Override
         public Square next() {
-            int dx = Square.DIR[_dir][0] * _steps;
-            int dy = Square.DIR[_dir][1] * _steps;
+            Square result =
+                    Square.sq(_from.index() + Rays.STEP[_dir] * _steps);
             toNext();
-            return Square.sq(_from.col() + dx, _from.row() + dy);
+            return result;
         }
 
         /**
@@ -481,25 +571,13 @@ class Board {
          * _steps steps in direction _dir from _from.
          */
         private void toNext() {
-            boolean valid = _dir != -1;
-            for (int i = _dir + 1; i < 8; i++) {
-                int dx = Square.DIR[i][0] * _steps;
-                int dy = Square.DIR[i][1] * _steps;
-                if (!Square.exists(_from.col() + dx, _from.row() + dy)) {
-                    continue;
-                }
-                Square to = Square.sq(_from.col() + dx, _from.row() + dy);
-                if (Square.exists(to) && isUnblockedMove(_from, to, _asEmpty)) {
-                    _dir = i;
-                    return;
+            do {
+                _dir += 1;
+                if (_dir == _reach.length) {
+                    _dir = 0;
+                    _steps += 1;
                 }
-            }
-            _dir = -1;
-            if (!valid) {
-                return;
-            }
-            _steps += 1;
-            toNext();
+            } while (_steps <= _maxReach && _reach[_dir] < _steps);
         }
 
         /**
@@ -515,9 +593,13 @@ class Board {
          */
         private int _steps;
         /**
-         * Square treated as empty.
+         * Number of squares reachable in each direction.
+         */
+        private final int[] _reach = new int[Rays.STEP.length];
+        /**
+         * Largest element of _reach.
          */
-        private Square _asEmpty;
+        private int _maxReach;
     }
 
     /**
@@ -529,77 +611,36 @@ class Board {
          * All legal moves for SIDE (WHITE or BLACK).
          */
         LegalMoveIterator(Piece side) {
-            _startingSquares = Square.iterator();
-            _spearThrows = NO_SQUARES;
-            _pieceMoves = NO_SQUARES;
-            _fromPiece = side;
-            toNext();
+            _moves = new int[MAX_MOVES];
+            _size = generateMoves(side, _moves);
         }
 
         @Override
         public boolean hasNext() {
-            return _start != null;
+            return _next < _size;
         }
 
         @Override
         public Move next() {
-            Move mv = Move.mv(_start, _nextSquare, _spearThrows.next());
-            if (!_spearThrows.hasNext()) {
-                toNext();
-            }
-            return mv;
-        }
-
-        /**
-         * Advance so that the next valid Move is
-         * _start-_nextSquare(sp), where sp is the next value of
-         * _spearThrows.
-         */
-        private void toNext() {
-            if (!_pieceMoves.hasNext()) {
-                _start = null;
-                while (_startingSquares.hasNext()) {
-                    int index = _startingSquares.next().index();
-                    if (((_fromPiece == BLACK && _black[index])
-                            || (_fromPiece == WHITE && _white[index]))
-                            && isLegal(Square.sq(index))) {
-                        _start = Square.sq(index);
-                        break;
-                    }
-                }
-                if (_start == null) {
-                    return;
-                }
-                _pieceMoves = reachableFrom(_start, null);
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
-            _nextSquare = _pieceMoves.next();
-            _spearThrows = reachableFrom(_nextSquare, _start);
+            _next += 1;
+            return Move.mv(_moves[_next - 1]);
         }
 
         /**
-         * Color of side whose moves we are iterating.
+         * The packed moves.
          */
-        private Piece _fromPiece;
+        private final int[] _moves;
         /**
-         * Current starting square.
+         * Number of moves in _moves.
          */
-        private Square _start;
+        private final int _size;
         /**
-         * Remaining starting squares to consider.
+         * Index in _moves of the next move to deliver.
          */
-        private Iterator<Square> _startingSquares;
-        /**
-         * Current piece's new position.
-         */
-        private Square _nextSquare;
-        /**
-         * Remaining moves from _start to consider.
-         */
-        private Iterator<Square> _pieceMoves;
-        /**
-         * Remaining spear throws from _piece to consider.
-         */
-        private Iterator<Square> _spearThrows;
+        private int _next;
     }
 
     @Override
@@ -607,22 +648,14 @@ class Board {
         if (!(obj instanceof Board)) {
             return false;
         }
-        boolean result = true;
         Board another = (Board) obj;
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            result &= _black[i] == another._black[i]
-                    && _white[i] == another._white[i]
-                    && _spear[i] == another._spear[i];
-        }
+        boolean result = Arrays.equals(_black, another._black)
+                && Arrays.equals(_white, another._white)
+                && Arrays.equals(_spear, another._spear);
         result &= turn() == another.turn();
         result &= winner() == another.winner();
-        if (_movement.size() != another._movement.size()) {
-            return false;
-        }
-        for (int i = 0; i < _movement.size(); i++) {
-            result &= _movement.get(i) == another._movement.get(i);
-        }
-        return result;
+        return result && Arrays.equals(_movement, 0, _numMoves,
+                another._movement, 0, another._numMoves);
     }
 
     @Override
@@ -632,7 +665,7 @@ class Board {
 
     @Override
     public int hashCode() {
-        return _winner.hashCode() + _turn.hashCode();
+        return (int) (_key ^ (_key >>> Integer.SIZE));
     }
 
     /**
@@ -649,11 +682,11 @@ class Board {
         for (int i = 0; i < SIZE; i++) {
             int index = row * 10 + i;
             result += (i == 0 ? "   " : "");
-            if (_black[index]) {
+            if (has(_black, index)) {
                 result += "B";
-            } else if (_white[index]) {
+            } else if (has(_white, index)) {
                 result += "W";
-            } else if (_spear[index]) {
+            } else if (has(_spear, index)) {
                 result += "S";
             } else {
                 result += "-";
@@ -669,10 +702,9 @@ class Board {
      * @return whether the board model is consistent
      */
     public boolean boardCheck() {
-        for (int i = 0; i < SIZE * SIZE; i++) {
-            if ((_black[i] && _white[i])
-                    || (_black[i] && _spear[i])
-                    || (_spear[i] && _white[i])) {
+        for (int w = 0; w < 2; w++) {
+            if ((_black[w] & _white[w]) != 0 || (_black[w] & _spear[w]) != 0
+                    || (_spear[w] & _white[w]) != 0) {
                 return false;
             }
         }
@@ -683,6 +715,9 @@ class Board {
      * @param turn which turn to modify
      */
     public void setTurn(Piece turn) {
+        if ((turn == BLACK) != (_turn == BLACK)) {
+            _key ^= BLACK_TO_MOVE;
+        }
         _turn = turn;
     }
 
@@ -693,14 +728,104 @@ class Board {
      * @return result
      */
     public boolean getWhite(int index) {
-        return _black[index];
+        return has(_black, index);
+    }
+
+    /**
+     * Return the squares occupied by anything, among squares 0-63.
+     */
+    private long occupiedLo() {
+        return _black[0] | _white[0] | _spear[0];
     }
 
     /**
-     * An empty iterator for initialization.
+     * Return the squares occupied by anything, among squares 64-99.
      */
-    private static final Iterator<Square> NO_SQUARES =
-            Collections.emptyIterator();
+    private long occupiedHi() {
+        return _black[1] | _white[1] | _spear[1];
+    }
+
+    /**
+     * Return true iff square INDEX is in the bitboard SET.
+     */
+    private static boolean has(long[] set, int index) {
+        return (set[index >> 6] >>> (index & 63) & 1) != 0;
+    }
+
+    /**
+     * Add square INDEX to the bitboard SET.
+     */
+    private static void add(long[] set, int index) {
+        set[index >> 6] |= 1L << (index & 63);
+    }
+
+    /**
+     * Remove square INDEX from the bitboard SET.
+     */
+    private static void remove(long[] set, int index) {
+        set[index >> 6] &= ~(1L << (index & 63));
+    }
+
+    /**
+     * Return the first square at or after INDEX in the bitboard SET, or
+     * -1 if there is none.
+     */
+    private static int next(long[] set, int index) {
+        for (int w = index >> 6; w < 2; w += 1) {
+            long bits = set[w];
+            if (w == index >> 6) {
+                bits &= -1L << (index & 63);
+            }
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the bit for square INDEX among squares 0-63, or 0 if INDEX
+     * is not one of them.
+     */
+    private static long loBit(int index) {
+        return index < Long.SIZE ? 1L << index : 0;
+    }
+
+    /**
+     * Return the bit for square INDEX among squares 64-99, or 0 if INDEX
+     * is not one of them.
+     */
+    private static long hiBit(int index) {
+        return index < Long.SIZE ? 0 : 1L << (index - Long.SIZE);
+    }
+
+    /**
+     * Initial capacity of the record of moves.
+     */
+    private static final int INITIAL_MOVES = 64;
+
+    /**
+     * Zobrist numbers for a black queen, a white queen, and a spear on
+     * each square, indexed by square.
+     */
+    private static final long[]
+            BLACK_KEYS = new long[SIZE * SIZE],
+            WHITE_KEYS = new long[SIZE * SIZE],
+            SPEAR_KEYS = new long[SIZE * SIZE];
+    /**
+     * Zobrist number for black to move.
+     */
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        Random rand = new Random(0x5eedL);
+        for (int i = 0; i < SIZE * SIZE; i += 1) {
+            BLACK_KEYS[i] = rand.nextLong();
+            WHITE_KEYS[i] = rand.nextLong();
+            SPEAR_KEYS[i] = rand.nextLong();
+        }
+        BLACK_TO_MOVE = rand.nextLong();
+    }
 
     /**
      * Piece whose turn it is (BLACK or WHITE).
@@ -713,19 +838,39 @@ class Board {
     private Piece _winner;
 
     /**
-     * Boolean list of black amazons.
+     * Bitboard of black amazons.
+     */
+    private long[] _black;
+    /**
+     * Bitboard of white amazons.
+     */
+    private long[] _white;
+    /**
+     * Bitboard of arrows.
+     */
+    private long[] _spear;
+    /**
+     * Bitboard of the amazons of either color with at least one empty
+     * square next to them, kept up to date as pieces move.
+     */
+    private long[] _mobile;
+    /**
+     * Zobrist key of the current position.
      */
-    private boolean[] _black;
+    private long _key;
     /**
-     * Boolean list of white amazons.
+     * The packed moves made so far, in order, in _movement[0 ..
+     * _numMoves - 1].
      */
-    private boolean[] _white;
+    private int[] _movement;
     /**
-     * Boolean list of arrows.
+     * Number of moves made and not undone.
      */
-    private boolean[] _spear;
+    private int _numMoves;
     /**
-     * Info of all moves.
+     * Scratch space for generateMoves: the reach of a queen, and of the
+     * spear it then throws, in each direction.
      */
-    private Stack<String> _movement;
+    private final int[] _queenReach = new int[Rays.STEP.length],
+            _spearReach = new int[Rays.STEP.length];
 }
@@ -0,0 +1,132 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Perft timings for Board: counts of the positions reachable in a given
+ * number of moves, found by generating, making, and undoing every move
+ * along the way.  The moves are generated as Move objects by legalMoves,
+ * or packed into ints by generateMoves, in which case the moves at the
+ * last level may instead just be counted with countMoves.  Not part of
+ * the package proper.
+ *
+ * @author Zhibo Fan
+ */
+public class BoardSpeedTest {
+
+    /**
+     * Return the number of move sequences of length DEPTH from BOARD,
+     * which is left unchanged, using legalMoves.
+     */
+    static long perft(Board board, int depth) {
+        if (depth == 0 || board.winner() != Piece.EMPTY) {
+            return depth == 0 ? 1 : 0;
+        }
+        long count = 0;
+        List<Move> moves = new ArrayList<>();
+        Iterator<Move> it = board.legalMoves();
+        while (it.hasNext()) {
+            moves.add(it.next());
+        }
+        if (depth == 1) {
+            return moves.size();
+        }
+        for (Move move : moves) {
+            board.makeMove(move);
+            count += perft(board, depth - 1);
+            board.undo();
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of move sequences of length DEPTH from BOARD,
+     * which is left unchanged, generating the moves at each level d into
+     * MOVES[d].  The moves at the last level are counted with countMoves
+     * iff BULK.
+     */
+    static long perft(Board board, int depth, int[][] moves, boolean bulk) {
+        if (depth == 0 || board.winner() != Piece.EMPTY) {
+            return depth == 0 ? 1 : 0;
+        }
+        if (depth == 1 && bulk) {
+            return board.countMoves(board.turn());
+        }
+        int n = board.generateMoves(board.turn(), moves[depth]);
+        if (depth == 1) {
+            return n;
+        }
+        long count = 0;
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves[depth][i]);
+            count += perft(board, depth - 1, moves, bulk);
+            board.undo();
+        }
+        return count;
+    }
+
+    /**
+     * Return the board reached from the initial position by PLIES random
+     * legal moves chosen with RAND, or fewer if the game ends first.
+     */
+    static Board randomPosition(int plies, Random rand) {
+        Board board = new Board();
+        for (int i = 0; i < plies && board.winner() == Piece.EMPTY; i += 1) {
+            List<Move> moves = new ArrayList<>();
+            Iterator<Move> it = board.legalMoves();
+            while (it.hasNext()) {
+                moves.add(it.next());
+            }
+            board.makeMove(moves.get(rand.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    /**
+     * Print the perft count to DEPTH from BOARD, described by LABEL, and
+     * the times taken with Move objects, with packed moves, and with
+     * packed moves and bulk counting.
+     */
+    static void printPerft(String label, Board board, int depth) {
+        int[][] moves = new int[depth + 1][Board.MAX_MOVES];
+        double[] times = new double[3];
+        long[] counts = new long[3];
+        for (int k = 0; k < 2; k += 1) {
+            long start = System.nanoTime();
+            counts[0] = perft(board, depth);
+            times[0] = (System.nanoTime() - start) / 1e6;
+            for (int bulk = 0; bulk < 2; bulk += 1) {
+                start = System.nanoTime();
+                counts[bulk + 1] = perft(board, depth, moves, bulk == 1);
+                times[bulk + 1] = (System.nanoTime() - start) / 1e6;
+            }
+        }
+        if (counts[1] != counts[0] || counts[2] != counts[0]) {
+            throw new IllegalStateException("perft counts disagree");
+        }
+        System.out.printf("%-12s %6d %12d %10.1f %10.1f %10.1f%n", label,
+                          depth, counts[0], times[0], times[1], times[2]);
+    }
+
+    /**
+     * Run the timing tests.  ARGS is unused.
+     */
+    public static void main(String... args) {
+        Random rand = new Random(61);
+        System.out.printf("Perft times (ms)%n");
+        System.out.printf("%-12s %6s %12s %10s %10s %10s%n", "position",
+                          "depth", "nodes", "Move", "packed", "bulk");
+        printPerft("initial", new Board(), 1);
+        printPerft("initial", new Board(), 2);
+        for (int plies = 20; plies <= 60; plies += 20) {
+            Board board = randomPosition(plies, rand);
+            printPerft("after " + plies, board, 2);
+            if (plies > 20) {
+                printPerft("after " + plies, board, 3);
+            }
+        }
+    }
+}
@@ -4,7 +4,11 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import ucb.junit.textui;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 public class BoardTest {
     @Test
@@ -186,6 +190,164 @@ public class BoardTest {
         assertFalse(it.hasNext());
     }
 
+    @Test
+    public void testCountMoves() {
+        Random rand = new Random(61);
+        for (int game = 0; game < 5; game++) {
+            _board = new Board();
+            while (_board.winner() == Piece.EMPTY) {
+                List<Move> moves = new ArrayList<>();
+                Iterator<Move> it = _board.legalMoves();
+                while (it.hasNext()) {
+                    Move mv = it.next();
+                    assertTrue(_board.isLegal(mv));
+                    moves.add(mv);
+                }
+                assertEquals(moves.size(), _board.countMoves(_board.turn()));
+                assertEquals(new HashSet<>(moves).size(), moves.size());
+                _board.makeMove(moves.get(rand.nextInt(moves.size())));
+            }
+            assertEquals(0, _board.countMoves(_board.turn()));
+        }
+        assertEquals(2176, new Board().countMoves(Piece.WHITE));
+    }
+
+    @Test
+    public void testGenerateMoves() {
+        Random rand = new Random(62);
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int game = 0; game < 5; game++) {
+            _board = new Board();
+            while (_board.winner() == Piece.EMPTY) {
+                int n = _board.generateMoves(_board.turn(), moves);
+                Iterator<Move> it = _board.legalMoves();
+                for (int i = 0; i < n; i++) {
+                    Move mv = Move.mv(moves[i]);
+                    assertSame(it.next(), mv);
+                    assertEquals(moves[i], mv.packed());
+                }
+                assertFalse(it.hasNext());
+                _board.makeMove(moves[rand.nextInt(n)]);
+            }
+            Board end = new Board(_board);
+            assertEquals(end, _board);
+            while (_board.numMoves() > 0) {
+                _board.undo();
+            }
+            assertEquals(new Board(), _board);
+        }
+    }
+
+    @Test
+    public void testIncrementalWinner() {
+        Random rand = new Random(63);
+        int[] moves = new int[Board.MAX_MOVES];
+        int ends = 0;
+        for (int game = 0; game < 20; game++) {
+            _board = new Board();
+            for (int step = 0; step < 300; step++) {
+                if (_board.numMoves() > 0
+                    && (_board.winner() != Piece.EMPTY
+                        || rand.nextInt(4) == 0)) {
+                    _board.undo();
+                } else {
+                    int n = _board.generateMoves(_board.turn(), moves);
+                    _board.makeMove(moves[rand.nextInt(n)]);
+                }
+                assertEquals(scanWinner(_board), _board.winner());
+                if (_board.winner() != Piece.EMPTY) {
+                    ends++;
+                }
+            }
+        }
+        assertTrue(ends > 0);
+    }
+
+    @Test
+    public void testZobristKey() {
+        Random rand = new Random(64);
+        int[] moves = new int[Board.MAX_MOVES];
+        Board start = new Board();
+        for (int game = 0; game < 10; game++) {
+            _board = new Board();
+            for (int step = 0; step < 200; step++) {
+                if (_board.numMoves() > 0
+                    && (_board.winner() != Piece.EMPTY
+                        || rand.nextInt(4) == 0)) {
+                    _board.undo();
+                } else {
+                    int n = _board.generateMoves(_board.turn(), moves);
+                    _board.makeMove(moves[rand.nextInt(n)]);
+                }
+                Board copy = Board.emptyBoard();
+                for (int i = 0; i < Board.SIZE * Board.SIZE; i++) {
+                    copy.put(_board.get(i), Square.sq(i));
+                }
+                assertEquals(_board.turn() == Piece.WHITE,
+                             copy.key() == _board.key());
+                assertEquals(_board.key(), new Board(_board).key());
+            }
+            while (_board.numMoves() > 0) {
+                _board.undo();
+            }
+            assertEquals(start.key(), _board.key());
+        }
+    }
+
+    @Test
+    public void testZobristTransposition() {
+        Board b1 = new Board(), b2 = new Board();
+        b1.makeMove(Move.mv("d1-d2(d3)"));
+        b1.makeMove(Move.mv("d10-d9(d8)"));
+        b1.makeMove(Move.mv("g1-g2(g3)"));
+        b2.makeMove(Move.mv("g1-g2(g3)"));
+        b2.makeMove(Move.mv("d10-d9(d8)"));
+        b2.makeMove(Move.mv("d1-d2(d3)"));
+        assertEquals(b1.key(), b2.key());
+        assertEquals(b1.hashCode(), b2.hashCode());
+        assertNotEquals(b1, b2);
+        b2.undo();
+        assertNotEquals(b1.key(), b2.key());
+    }
+
+    @Test
+    public void testZobristTurn() {
+        Board board = new Board();
+        long whiteKey = board.key();
+        board.setTurn(Piece.BLACK);
+        assertNotEquals(whiteKey, board.key());
+        board.setTurn(Piece.BLACK);
+        assertNotEquals(whiteKey, board.key());
+        board.setTurn(Piece.WHITE);
+        assertEquals(whiteKey, board.key());
+        board.makeMove(Move.mv("d1-d2(d3)"));
+        Board other = new Board(board);
+        board.setTurn(Piece.WHITE);
+        board.setTurn(Piece.BLACK);
+        assertEquals(other.key(), board.key());
+    }
+
+    /** Return the winner of BOARD found by looking at every square next
+     *  to every queen of the side to move. */
+    private static Piece scanWinner(Board board) {
+        Piece turn = board.turn();
+        for (int col = 0; col < Board.SIZE; col++) {
+            for (int row = 0; row < Board.SIZE; row++) {
+                if (board.get(col, row) != turn) {
+                    continue;
+                }
+                for (int[] dir : Square.DIR) {
+                    int c = col + dir[0], r = row + dir[1];
+                    if (Square.exists(c, r)
+                        && board.get(c, r) == Piece.EMPTY) {
+                        return Piece.EMPTY;
+                    }
+                }
+            }
+        }
+        return turn == Piece.WHITE ? Piece.BLACK : Piece.WHITE;
+    }
+
 
     public static void main(String[] ignored) {
         textui.runClasses(BoardTest.class);
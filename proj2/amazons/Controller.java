@@ -102,6 +102,13 @@ final class Controller {
         _randGen.setSeed(seed);
     }
 
+    /**
+     * Return the number of milliseconds an AI may take to find a move.
+     */
+    long timeLimit() {
+        return _timeLimit;
+    }
+
     /**
      * Return the next line of input, or null if there is no more. First
      * prompts for the line.  Trims the returned line (if any) of all
@@ -138,6 +145,14 @@ final class Controller {
         _reporter.reportMove(move);
     }
 
+    /**
+     * Report search statistics by calling reportSearch(DEPTH, NODES,
+     * MILLIS) on my reporter.
+     */
+    void reportSearch(int depth, long nodes, double millis) {
+        _reporter.reportSearch(depth, nodes, millis);
+    }
+
     /**
      * A Command is pair (<pattern>, <processor>), where <pattern> is a
      * Matcher that matches instances of a particular command, and
@@ -171,6 +186,7 @@ final class Controller {
     private Command[] _commands = {
         new Command("quit$", this::doQuit),
         new Command("seed\\s+(\\d+)$", this::doSeed),
+        new Command("time\\s+(\\d+(\\.\\d*)?)$", this::doTime),
         new Command("dump$", this::doDump),
         new Command("new$", this::doNew),
         new Command("[a-j](10|[1-9])"
@@ -275,6 +291,18 @@ final class Controller {
         }
     }
 
+    /**
+     * Command "time T", where T, the first group of MAT, is the number
+     * of seconds an AI may take to find a move.
+     */
+    private void doTime(Matcher mat) {
+        double seconds = Double.parseDouble(mat.group(1));
+        if (seconds > MAX_TIME_LIMIT) {
+            throw error("number too large");
+        }
+        _timeLimit = Math.max(1, Math.round(seconds * MILLIS_PER_SECOND));
+    }
+
     /**
      * Dump the contents of the board on standard output.
      */
@@ -324,6 +352,26 @@ final class Controller {
      */
     private Random _randGen = new Random();
 
+    /**
+     * Number of milliseconds in a second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000;
+
+    /**
+     * Largest number of seconds that may be allowed to an AI for a move.
+     */
+    private static final double MAX_TIME_LIMIT = 1e9;
+
+    /**
+     * Initial time allowed to an AI for each move, in milliseconds.
+     */
+    private static final long DEFAULT_TIME_LIMIT = 500;
+
+    /**
+     * Time allowed to an AI for each move, in milliseconds.
+     */
+    private long _timeLimit = DEFAULT_TIME_LIMIT;
+
     /**
      * Log file, or null if absent.
      */
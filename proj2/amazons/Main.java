@@ -15,14 +15,17 @@ import ucb.util.CommandArgs;
  */
 public class Main {
 
-    /** The main program.  ARGS may contain the option --display. */
+    /** The main program.  ARGS may contain the options --display and
+     *  --stats, which prints statistics on the searches for AI moves on
+     *  the standard error. */
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --log={0,1} --={0,2}", args);
+            new CommandArgs("--display --stats --log={0,1} --={0,2}",
+                            args);
         if (!options.ok()) {
             System.err.println("Usage: java amazons.Main [--display]"
-                               + " [--log=FILE] [INPUT [OUTPUT]]");
+                               + " [--stats] [--log=FILE] [INPUT [OUTPUT]]");
             System.exit(1);
         }
 
@@ -70,7 +73,7 @@ public class Main {
             view = gui;
         } else {
             gui = null;
-            reporter = new TextReporter();
+            reporter = new TextReporter(options.contains("--stats"));
             manualPlayer = new TextPlayer();
             view = new NullView();
         }
@@ -10,7 +10,9 @@ import static amazons.Square.SQ;
  * A move in the game of Amazons. As for Squares, Moves are immutable
  * and unique: there is only one move object for each possible move
  * (generated by the factory method  mv, the constructor being private).
- * As for Squares, you can freely use == to compare Moves.
+ * As for Squares, you can freely use == to compare Moves.  A move may
+ * also be packed into a single int, holding the indices of its three
+ * squares, for use where Move objects would cost too much.
  *
  * @author P. N. Hilfinger
  */
@@ -47,15 +49,63 @@ final class Move {
         return _spear;
     }
 
+    /**
+     * Return my packed form.
+     */
+    int packed() {
+        return pack(_from.index(), _to.index(), _spear.index());
+    }
+
     /**
      * Return the unique Move FROM-TO(SPEAR).
      */
     static Move mv(Square from, Square to, Square spear) {
-        if (MOVES[from.index()][to.index()][spear.index()] == null) {
-            MOVES[from.index()][to.index()][spear.index()] =
-                    new Move(from, to, spear);
+        int leg = from.index() * SQUARES + to.index();
+        if (MOVES[leg] == null) {
+            MOVES[leg] = new Move[SQUARES];
         }
-        return MOVES[from.index()][to.index()][spear.index()];
+        if (MOVES[leg][spear.index()] == null) {
+            MOVES[leg][spear.index()] = new Move(from, to, spear);
+        }
+        return MOVES[leg][spear.index()];
+    }
+
+    /**
+     * Return the unique Move whose packed form is MOVE.
+     */
+    static Move mv(int move) {
+        return mv(Square.sq(fromIndex(move)), Square.sq(toIndex(move)),
+                Square.sq(spearIndex(move)));
+    }
+
+    /**
+     * Return the packed form of the move from the square with index FROM
+     * to the one with index TO, throwing a spear to the one with index
+     * SPEAR.
+     */
+    static int pack(int from, int to, int spear) {
+        return from | to << BITS | spear << 2 * BITS;
+    }
+
+    /**
+     * Return the index of the square moved from in the packed move MOVE.
+     */
+    static int fromIndex(int move) {
+        return move & MASK;
+    }
+
+    /**
+     * Return the index of the square moved to in the packed move MOVE.
+     */
+    static int toIndex(int move) {
+        return move >>> BITS & MASK;
+    }
+
+    /**
+     * Return the index of the spear's square in the packed move MOVE.
+     */
+    static int spearIndex(int move) {
+        return move >>> 2 * BITS & MASK;
     }
 
     /**
@@ -108,13 +158,27 @@ final class Move {
         _from = from;
         _to = to;
         _spear = spear;
-        _str = String.format("%s-%s(%s)", from, to, spear);
+        _str = from + "-" + to + "(" + spear + ")";
     }
 
     /**
-     * The cache of all Moves created.
+     * Number of squares.
+     */
+    private static final int SQUARES = Board.SIZE * Board.SIZE;
+    /**
+     * Number of bits for each square in a packed move.
+     */
+    private static final int BITS = 7;
+    /**
+     * Mask for one square in a packed move.
+     */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * The cache of all Moves created, indexed by FROM * SQUARES + TO and
+     * then by SPEAR.  Each inner array is allocated on first use.
      */
-    private static final Move[][][] MOVES = new Move[100][100][100];
+    private static final Move[][] MOVES = new Move[SQUARES * SQUARES][];
 
     /**
      * The components of a Move.
@@ -0,0 +1,139 @@
+package amazons;
+
+import static amazons.Board.SIZE;
+
+/**
+ * Precomputed masks for 128-bit bitboards over the squares of a Board.
+ * A set of squares is held in two longs: bit I of the first is square
+ * I, for 0 <= I < 64, and bit I - 64 of the second is square I, for
+ * 64 <= I < 100.  The directions are those of Square.DIR.
+ *
+ * @author Zhibo Fan
+ */
+final class Rays {
+
+    /**
+     * Change in index for one step in each direction.
+     */
+    static final int[] STEP = new int[Square.DIR.length];
+
+    /**
+     * The largest number of squares a queen can reach from any square of
+     * an otherwise empty board.
+     */
+    static final int MAX_REACH;
+
+    /**
+     * Return true iff square INDEX is in the set (LO, HI).
+     */
+    static boolean contains(long lo, long hi, int index) {
+        return index < Long.SIZE ? (lo >>> index & 1) != 0
+                : (hi >>> (index - Long.SIZE) & 1) != 0;
+    }
+
+    /**
+     * Return the number of squares from square FROM in direction DIR
+     * that a queen may slide to, treating the squares in (OCCLO, OCCHI)
+     * as blocked.
+     */
+    static int reach(int dir, int from, long occLo, long occHi) {
+        long lo = RAY_LO[dir][from] & occLo, hi = RAY_HI[dir][from] & occHi;
+        int blocker;
+        if ((lo | hi) == 0) {
+            return LENGTH[dir][from];
+        } else if (STEP[dir] > 0) {
+            blocker = lo != 0 ? Long.numberOfTrailingZeros(lo)
+                    : Long.SIZE + Long.numberOfTrailingZeros(hi);
+        } else {
+            blocker = hi != 0
+                    ? 2 * Long.SIZE - 1 - Long.numberOfLeadingZeros(hi)
+                    : Long.SIZE - 1 - Long.numberOfLeadingZeros(lo);
+        }
+        return (blocker - from) / STEP[dir] - 1;
+    }
+
+    /**
+     * Return true iff none of the squares after FROM, up to and including
+     * TO, in direction DIR is in (OCCLO, OCCHI).  TO must lie in
+     * direction DIR from FROM.
+     */
+    static boolean clear(int dir, int from, int to, long occLo, long occHi) {
+        long lo = RAY_LO[dir][from] & ~RAY_LO[dir][to],
+                hi = RAY_HI[dir][from] & ~RAY_HI[dir][to];
+        return (lo & occLo) == 0 && (hi & occHi) == 0;
+    }
+
+    /**
+     * Return true iff any square next to INDEX is outside (OCCLO, OCCHI).
+     */
+    static boolean hasRoom(int index, long occLo, long occHi) {
+        return (NEIGHBORS_LO[index] & ~occLo) != 0
+                || (NEIGHBORS_HI[index] & ~occHi) != 0;
+    }
+
+    /**
+     * Return the squares next to INDEX among squares 0-63.
+     */
+    static long neighborsLo(int index) {
+        return NEIGHBORS_LO[index];
+    }
+
+    /**
+     * Return the squares next to INDEX among squares 64-99.
+     */
+    static long neighborsHi(int index) {
+        return NEIGHBORS_HI[index];
+    }
+
+    /**
+     * The squares beyond each square in each direction, up to the edge of
+     * the board, as masks over squares 0-63 and 64-99, indexed by
+     * direction and square.
+     */
+    private static final long[][]
+            RAY_LO = new long[Square.DIR.length][SIZE * SIZE],
+            RAY_HI = new long[Square.DIR.length][SIZE * SIZE];
+    /**
+     * The number of squares in each ray, indexed by direction and square.
+     */
+    private static final int[][] LENGTH =
+            new int[Square.DIR.length][SIZE * SIZE];
+    /**
+     * The squares next to each square, as for RAY_LO and RAY_HI.
+     */
+    private static final long[]
+            NEIGHBORS_LO = new long[SIZE * SIZE],
+            NEIGHBORS_HI = new long[SIZE * SIZE];
+
+    static {
+        for (int dir = 0; dir < Square.DIR.length; dir += 1) {
+            int dcol = Square.DIR[dir][0], drow = Square.DIR[dir][1];
+            STEP[dir] = drow * SIZE + dcol;
+            for (int from = 0; from < SIZE * SIZE; from += 1) {
+                int col = from % SIZE + dcol, row = from / SIZE + drow;
+                for (; Square.exists(col, row); col += dcol, row += drow) {
+                    int index = row * SIZE + col;
+                    if (index < Long.SIZE) {
+                        RAY_LO[dir][from] |= 1L << index;
+                    } else {
+                        RAY_HI[dir][from] |= 1L << (index - Long.SIZE);
+                    }
+                    if (LENGTH[dir][from] == 0) {
+                        NEIGHBORS_LO[from] |= RAY_LO[dir][from];
+                        NEIGHBORS_HI[from] |= RAY_HI[dir][from];
+                    }
+                    LENGTH[dir][from] += 1;
+                }
+            }
+        }
+        int maxReach = 0;
+        for (int from = 0; from < SIZE * SIZE; from += 1) {
+            int reach = 0;
+            for (int[] length : LENGTH) {
+                reach += length[from];
+            }
+            maxReach = Math.max(maxReach, reach);
+        }
+        MAX_REACH = maxReach;
+    }
+}
@@ -16,5 +16,10 @@ interface Reporter {
     /** Display MOVE as needed. */
     void reportMove(Move move);
 
+    /** Record that a search of DEPTH levels for a move visited NODES
+     *  positions in MILLIS milliseconds.  By default, does nothing. */
+    default void reportSearch(int depth, long nodes, double millis) {
+    }
+
 }
 
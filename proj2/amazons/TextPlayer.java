@@ -40,6 +40,7 @@ class TextPlayer extends Player {
                     || line.matches("manual\\s+(black|white)$")
                     || line.matches("auto\\s+(black|white)$")
                     || line.matches(("seed\\s+(\\d+)"))
+                    || line.matches("time\\s+(\\d+(\\.\\d*)?)$")
                     || _controller.board().isLegal(Move.mv(line))) {
                 return line;
             } else if (!_controller.board().isLegal(Move.mv(line))) {
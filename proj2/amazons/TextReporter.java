@@ -6,6 +6,17 @@ package amazons;
  */
 class TextReporter implements Reporter {
 
+    /** A reporter that ignores search statistics. */
+    TextReporter() {
+        this(false);
+    }
+
+    /** A reporter that prints search statistics on the standard error
+     *  iff STATS. */
+    TextReporter(boolean stats) {
+        _stats = stats;
+    }
+
     @Override
     public void reportError(String fmt, Object... args) {
         System.err.printf(fmt, args);
@@ -22,4 +33,15 @@ class TextReporter implements Reporter {
     public void reportMove(Move move) {
         System.out.printf("* %s%n", move);
     }
+
+    @Override
+    public void reportSearch(int depth, long nodes, double millis) {
+        if (_stats) {
+            System.err.printf("depth %d: %d positions, %.1f ms%n",
+                              depth, nodes, millis);
+        }
+    }
+
+    /** True iff search statistics are printed. */
+    private final boolean _stats;
 }
@@ -0,0 +1,240 @@
+package amazons;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of the results of searching positions, indexed by
+ * their Zobrist keys.  Each entry records how deep the position was
+ * searched, the score found, whether that score is exact or only a bound,
+ * and the best move found, packed into one long.  When two positions
+ * need the same slot, the one searched more deeply is kept, unless the
+ * other was stored by an earlier search (see newSearch).
+ *
+ * The table takes no locks.  Each slot holds the packed entry and the
+ * exclusive or of the entry with its key, so that a probe that sees a
+ * slot half written by another thread finds a key that does not match,
+ * and treats the slot as empty.
+ *
+ * @author Zhibo Fan
+ */
+final class TranspositionTable {
+
+    /**
+     * Bound type of an entry whose score is the exact value.
+     */
+    static final int EXACT = 1;
+    /**
+     * Bound type of an entry whose score is a lower bound on the value.
+     */
+    static final int LOWER = 2;
+    /**
+     * Bound type of an entry whose score is an upper bound on the value.
+     */
+    static final int UPPER = 3;
+    /**
+     * The result of a probe that finds nothing.  No entry is MISS, since
+     * the bound type of every entry is non-zero.
+     */
+    static final long MISS = 0;
+
+    /**
+     * The largest depth that an entry can record.
+     */
+    static final int MAX_DEPTH = 63;
+
+    /**
+     * A table of 2**BITS entries.
+     */
+    TranspositionTable(int bits) {
+        if (bits < 0 || bits > MAX_BITS) {
+            throw new IllegalArgumentException("table size out of range");
+        }
+        _checks = new long[1 << bits];
+        _entries = new long[1 << bits];
+        _mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Return the entry for the position whose key is KEY, or MISS if
+     * there is none.
+     */
+    long probe(long key) {
+        int slot = slot(key);
+        long entry = _entries[slot];
+        _probes += 1;
+        if (entry == MISS || (_checks[slot] ^ entry) != key) {
+            return MISS;
+        }
+        _hits += 1;
+        return entry;
+    }
+
+    /**
+     * Record that the position whose key is KEY, searched to DEPTH, has
+     * the value SCORE, which is exact or a bound according to BOUND, and
+     * that its best move is the packed MOVE (0 if none).  DEPTH is
+     * limited to MAX_DEPTH.
+     */
+    void store(long key, int depth, int bound, int score, int move) {
+        int slot = slot(key);
+        long old = _entries[slot];
+        if (old != MISS && (_checks[slot] ^ old) != key
+            && generation(old) == _generation && depth(old) > depth) {
+            return;
+        }
+        long entry = pack(Math.min(depth, MAX_DEPTH), bound, score, move);
+        _entries[slot] = entry;
+        _checks[slot] = key ^ entry;
+        _stores += 1;
+    }
+
+    /**
+     * Start a new search.  The entries stored so far are kept for
+     * probes, but may be replaced by any entry that needs their slots.
+     */
+    void newSearch() {
+        _generation = (_generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Remove all entries and reset the counts.
+     */
+    void clear() {
+        Arrays.fill(_entries, MISS);
+        Arrays.fill(_checks, 0);
+        _probes = _hits = _stores = 0;
+    }
+
+    /**
+     * Return the number of entries the table can hold.
+     */
+    int capacity() {
+        return _entries.length;
+    }
+
+    /**
+     * Return the number of probes made.
+     */
+    long probes() {
+        return _probes;
+    }
+
+    /**
+     * Return the number of probes that found an entry.
+     */
+    long hits() {
+        return _hits;
+    }
+
+    /**
+     * Return the number of entries stored.
+     */
+    long stores() {
+        return _stores;
+    }
+
+    /**
+     * Return the depth recorded in ENTRY.
+     */
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * Return the bound type recorded in ENTRY.
+     */
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /**
+     * Return the score recorded in ENTRY.
+     */
+    static int score(long entry) {
+        return (int) (entry >>> Integer.SIZE);
+    }
+
+    /**
+     * Return the packed best move recorded in ENTRY, or 0 if none.
+     */
+    static int move(long entry) {
+        return (int) entry & MOVE_MASK;
+    }
+
+    /**
+     * Return the search in which ENTRY was stored, modulo the number of
+     * distinct generations.
+     */
+    private static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    /**
+     * Return an entry for the current search recording DEPTH, BOUND,
+     * SCORE, and MOVE.
+     */
+    private long pack(int depth, int bound, int score, int move) {
+        return (long) score << Integer.SIZE
+                | (long) _generation << GENERATION_SHIFT
+                | (long) depth << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (move & MOVE_MASK);
+    }
+
+    /**
+     * Return the slot for the position whose key is KEY.
+     */
+    private int slot(long key) {
+        return (int) (key ^ (key >>> Integer.SIZE)) & _mask;
+    }
+
+    /**
+     * Number of bits of a packed Move.
+     */
+    private static final int MOVE_BITS = 21;
+    /**
+     * Mask for a packed Move.
+     */
+    private static final int MOVE_MASK = (1 << MOVE_BITS) - 1;
+    /**
+     * Position and mask of the bound type in an entry.
+     */
+    private static final int BOUND_SHIFT = MOVE_BITS, BOUND_MASK = 3;
+    /**
+     * Position of the depth in an entry, which takes the six bits needed
+     * for MAX_DEPTH.
+     */
+    private static final int DEPTH_SHIFT = BOUND_SHIFT + 2;
+    /**
+     * Position and mask of the generation in an entry.
+     */
+    private static final int GENERATION_SHIFT = DEPTH_SHIFT + 6,
+            GENERATION_MASK = (1 << (Integer.SIZE - GENERATION_SHIFT)) - 1;
+    /**
+     * Largest number of bits of a table size.
+     */
+    private static final int MAX_BITS = 28;
+
+    /**
+     * For each slot, its entry's key exclusive-ored with the entry.
+     */
+    private final long[] _checks;
+    /**
+     * The entries, each in the slot given by its key, or MISS.
+     */
+    private final long[] _entries;
+    /**
+     * Mask selecting a slot from a hashed key.
+     */
+    private final int _mask;
+    /**
+     * Number of the current search, modulo the number of generations.
+     */
+    private int _generation;
+    /**
+     * Numbers of probes, of probes that found an entry, and of entries
+     * stored.  These are not synchronized, so they are only approximate
+     * when several threads share the table.
+     */
+    private long _probes, _hits, _stores;
+}
@@ -78,6 +78,67 @@ public class UnitTest {
         b.put(WHITE, Square.sq(7, 3));
     }
 
+    /** Tests storing, finding, and replacing transposition table
+     *  entries. */
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(4);
+        long key = 0x123456789abcdefL, other = key + 16;
+        int move = Move.mv("d1-d2(d3)").packed();
+        assertEquals(TranspositionTable.MISS, table.probe(key));
+        table.store(key, 5, TranspositionTable.LOWER, -1000, move);
+        long entry = table.probe(key);
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER,
+                     TranspositionTable.bound(entry));
+        assertEquals(-1000, TranspositionTable.score(entry));
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(TranspositionTable.MISS, table.probe(other));
+        table.store(other, 4, TranspositionTable.EXACT, 7, 0);
+        assertEquals(5, TranspositionTable.depth(table.probe(key)));
+        assertEquals(TranspositionTable.MISS, table.probe(other));
+        table.newSearch();
+        table.store(other, 1, TranspositionTable.EXACT, 7, 0);
+        assertEquals(TranspositionTable.MISS, table.probe(key));
+        entry = table.probe(other);
+        assertEquals(TranspositionTable.EXACT,
+                     TranspositionTable.bound(entry));
+        assertEquals(7, TranspositionTable.score(entry));
+        assertEquals(0, TranspositionTable.move(entry));
+        assertEquals(7, table.probes());
+        assertEquals(3, table.hits());
+        assertEquals(2, table.stores());
+    }
+
+    /** Tests that AI searches are repeatable, leave the board alone, and
+     *  stop when time runs out. */
+    @Test
+    public void testAISearch() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d7(g4)"));
+        b.makeMove(Move.mv("g10-g5(c5)"));
+        b.makeMove(Move.mv("g1-c1(c4)"));
+        b.makeMove(Move.mv("a7-b7(b6)"));
+        Board before = new Board(b);
+        AI ai1 = new AI(WHITE, null), ai2 = new AI(WHITE, null);
+        ai2.useTable(false);
+        Move move = ai1.findMove(b, 1);
+        assertEquals(before, b);
+        assertTrue(b.isLegal(move));
+        assertSame(move, new AI(WHITE, null).findMove(b, 1));
+        assertSame(move, ai2.findMove(b, 1));
+        assertEquals(1, ai1.lastDepth());
+        for (long millis : new long[] {1, 100}) {
+            AI ai = new AI(WHITE, null);
+            long start = System.currentTimeMillis();
+            move = ai.findMove(b, AI.MAX_SEARCH_DEPTH, millis);
+            assertTrue(System.currentTimeMillis() - start < 10000);
+            assertEquals(before, b);
+            assertTrue(b.isLegal(move));
+            assertTrue(ai.lastDepth() < AI.MAX_SEARCH_DEPTH);
+        }
+    }
+
     static final String INIT_BOARD_STATE =
             "   - - - B - - B - - -\n"
             + "   - - - - - - - - - -\n"
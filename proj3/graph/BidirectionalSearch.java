@@ -0,0 +1,232 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** A point-to-point search for ShortestPaths that proceeds forward from
+ *  the source over successors and backward from the destination over
+ *  predecessors, alternating between the two frontiers, and stops when
+ *  no path through an unsettled vertex can be shorter than the best
+ *  complete path found so far.
+ *
+ *  Both searches use the potential
+ *      p(v) = (estimatedDistance(v) - estimatedDistanceFromSource(v)) / 2
+ *  (negated for the backward search), so with both estimates at 0 this is
+ *  bidirectional Dijkstra, and otherwise bidirectional A*.  The estimates
+ *  must be consistent (never decreasing by more than the weight of an
+ *  edge), as straight-line distances are.
+ *
+ *  Forward results are recorded with the client's setWeight and
+ *  setPredecessor; on completion, the backward half of the best path is
+ *  copied into them as well, so that pathTo() and getWeight(dest) are as
+ *  for a unidirectional search.
+ *
+ *  The backward results and the sets of settled vertices are kept in a
+ *  Storage, whose entries are stamped with the number of the search that
+ *  set them, as in SimpleShortestPaths, so that a sequence of searches
+ *  on one graph can share it and start in constant time.
+ *  @author Zhibo Fan
+ */
+final class BidirectionalSearch {
+
+    /** A search for the path between the source and destination of SP,
+     *  using STORAGE, whose previous contents are discarded. */
+    BidirectionalSearch(ShortestPaths sp, Storage storage) {
+        _sp = sp;
+        _G = sp._G;
+        _storage = storage;
+        storage.clear(_G.maxVertex() + 1);
+    }
+
+    /** Perform the search, assuming that all weights of SP have been
+     *  initialized to infinity and all predecessors to 0.  Returns the
+     *  number of vertices settled. */
+    int run() {
+        int source = _sp.getSource(), dest = _sp.getDest();
+        IndexedMinHeap forward = new IndexedMinHeap(),
+            backward = new IndexedMinHeap();
+        _sp.setWeight(source, 0);
+        _storage.setBack(dest, 0, 0);
+        forward.offer(source, potential(source));
+        backward.offer(dest, -potential(dest));
+        _best = Double.POSITIVE_INFINITY;
+        _meet = 0;
+        if (source == dest) {
+            _best = 0;
+            _meet = source;
+        }
+        int settled = 0;
+        while (!forward.isEmpty() && !backward.isEmpty()
+               && forward.minKey() + backward.minKey() < _best) {
+            settled += 1;
+            if (forward.minKey() <= backward.minKey()) {
+                _current = forward.pollInt();
+                _storage.setForwardDone(_current);
+                _fringe = forward;
+                _G.forEachSuccessor(_current, _relaxForward);
+            } else {
+                _current = backward.pollInt();
+                _storage.setBackDone(_current);
+                _fringe = backward;
+                _G.forEachPredecessor(_current, _relaxBackward);
+            }
+        }
+        if (_meet != 0) {
+            for (int v = _meet; v != dest; v = _storage.backNext(v)) {
+                int w = _storage.backNext(v);
+                _sp.setWeight(w, _sp.getWeight(v) + _sp.getWeight(v, w));
+                _sp.setPredecessor(w, v);
+            }
+        }
+        return settled;
+    }
+
+    /** Returns the forward potential of V. */
+    private double potential(int v) {
+        return (_sp.estimatedDistance(v)
+                - _sp.estimatedDistanceFromSource(v)) / 2;
+    }
+
+    /** Relax the edge from _current to W in the forward search. */
+    private void relaxForward(int w) {
+        double weight = _sp.getWeight(_current) + _sp.getWeight(_current, w);
+        if (weight < _sp.getWeight(w) && !_storage.forwardDone(w)) {
+            _sp.setWeight(w, weight);
+            _sp.setPredecessor(w, _current);
+            _fringe.offer(w, weight + potential(w));
+        }
+        meet(w);
+    }
+
+    /** Relax the edge from W to _current in the backward search. */
+    private void relaxBackward(int w) {
+        double weight =
+            _storage.backWeight(_current) + _sp.getWeight(w, _current);
+        if (weight < _storage.backWeight(w) && !_storage.backDone(w)) {
+            _storage.setBack(w, weight, _current);
+            _fringe.offer(w, weight - potential(w));
+        }
+        meet(w);
+    }
+
+    /** Record the path through V if both searches have reached V and it
+     *  is the best one so far. */
+    private void meet(int v) {
+        double forward = _sp.getWeight(v), backward = _storage.backWeight(v);
+        if (forward == Double.MAX_VALUE
+            || backward == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        double weight = forward + backward;
+        if (weight < _best) {
+            _best = weight;
+            _meet = v;
+        }
+    }
+
+    /** The client whose weights and edge lengths I use. */
+    private final ShortestPaths _sp;
+    /** The graph being searched. */
+    private final Graph _G;
+    /** The backward results and settled vertices. */
+    private final Storage _storage;
+    /** Weight of the best complete path found so far. */
+    private double _best;
+    /** A vertex on the best complete path found so far, or 0. */
+    private int _meet;
+    /** The vertex being expanded. */
+    private int _current;
+    /** The fringe of the search that is expanding _current. */
+    private IndexedMinHeap _fringe;
+    /** Relaxes the edges leaving _current. */
+    private final IntConsumer _relaxForward = this::relaxForward;
+    /** Relaxes the edges entering _current. */
+    private final IntConsumer _relaxBackward = this::relaxBackward;
+
+    /** The per-vertex state of bidirectional searches on one graph,
+     *  indexed by vertex number.  Each entry is valid only if stamped
+     *  with the number of the current search. */
+    static final class Storage {
+
+        /** Start a new search on a graph whose vertices are less than N,
+         *  clearing all entries. */
+        void clear(int n) {
+            if (n > _backStamp.length) {
+                grow(n);
+            }
+            if (_search == Integer.MAX_VALUE) {
+                Arrays.fill(_backStamp, 0);
+                Arrays.fill(_forwardDone, 0);
+                Arrays.fill(_backDone, 0);
+                _search = 0;
+            }
+            _search += 1;
+        }
+
+        /** Returns the weight of the best known path from V to the
+         *  destination, or infinity if there is none. */
+        double backWeight(int v) {
+            return _backStamp[v] == _search
+                ? _backWeight[v] : Double.POSITIVE_INFINITY;
+        }
+
+        /** Returns the successor of V on its best known path to the
+         *  destination. */
+        int backNext(int v) {
+            return _backNext[v];
+        }
+
+        /** Record that the best known path from V to the destination has
+         *  weight WEIGHT and continues to NEXT. */
+        void setBack(int v, double weight, int next) {
+            _backStamp[v] = _search;
+            _backWeight[v] = weight;
+            _backNext[v] = next;
+        }
+
+        /** Returns true iff the forward search has settled V. */
+        boolean forwardDone(int v) {
+            return _forwardDone[v] == _search;
+        }
+
+        /** Record that the forward search has settled V. */
+        void setForwardDone(int v) {
+            _forwardDone[v] = _search;
+        }
+
+        /** Returns true iff the backward search has settled V. */
+        boolean backDone(int v) {
+            return _backDone[v] == _search;
+        }
+
+        /** Record that the backward search has settled V. */
+        void setBackDone(int v) {
+            _backDone[v] = _search;
+        }
+
+        /** Enlarge the arrays to hold entries for at least N vertices. */
+        private void grow(int n) {
+            int size = Math.max(n, 2 * _backStamp.length);
+            _backWeight = Arrays.copyOf(_backWeight, size);
+            _backNext = Arrays.copyOf(_backNext, size);
+            _backStamp = Arrays.copyOf(_backStamp, size);
+            _forwardDone = Arrays.copyOf(_forwardDone, size);
+            _backDone = Arrays.copyOf(_backDone, size);
+        }
+
+        /** Weights of the best known paths from each vertex to the
+         *  destination. */
+        private double[] _backWeight = new double[0];
+        /** Successor of each vertex on its best known path to the
+         *  destination. */
+        private int[] _backNext = new int[0];
+        /** The search in which _backWeight and _backNext were last set
+         *  for each vertex. */
+        private int[] _backStamp = new int[0];
+        /** The searches in which the forward and backward searches last
+         *  settled each vertex. */
+        private int[] _forwardDone = new int[0], _backDone = new int[0];
+        /** The number of the current search (never 0). */
+        private int _search = 1;
+    }
+}
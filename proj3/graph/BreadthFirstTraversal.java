@@ -1,12 +1,37 @@
 package graph;
 
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.ArrayDeque;
 
 /**
  * Implements a breadth-first traversal of a graph.  Generally, the
  * client will extend this class, overriding the visit method as desired
  * (by default, it does nothing).
+ * <p>
+ * Besides the sequential traverse methods inherited from Traversal, a
+ * breadth-first traversal may be performed in parallel with
+ * traverseParallel, which processes each level of the traversal (the
+ * vertices at a given distance from the starting vertices) on a pool of
+ * threads.  Compared with traverse, a parallel traversal relaxes these
+ * guarantees:
+ * <ul>
+ * <li> Vertices of the same level are visited in no particular order,
+ *      and visit may be called on several of them at once, from threads
+ *      other than the caller's.  Overridings of visit must therefore be
+ *      thread-safe.  All visits of one level are complete before any
+ *      visit of the next level begins, and each reachable unmarked vertex
+ *      is visited exactly once.
+ * <li> When visit returns false, the traversal stops once the visits
+ *      already in progress finish; other vertices of the same level may
+ *      still be visited after the one that returned false.
+ * <li> processSuccessor, reverseSuccessors, shouldPostVisit, and
+ *      postVisit are not consulted: every unmarked successor is
+ *      traversed, and there are no post-visits.
+ * </ul>
+ * The graph must not be modified during a parallel traversal.  As with
+ * traverse, vertices marked beforehand are not visited, and the visited
+ * vertices are marked afterward.
  *
  * @author Zhibo Fan
  */
@@ -16,7 +41,8 @@ public class BreadthFirstTraversal extends Traversal {
      * A breadth-first Traversal of G.
      */
     protected BreadthFirstTraversal(Graph G) {
-        super(G, queue);
+        super(G, new ArrayDeque<>());
+        _graph = G;
     }
 
     @Override
@@ -25,8 +51,31 @@ public class BreadthFirstTraversal extends Traversal {
     }
 
     /**
-     * A queue for DFS.
+     * Perform a breadth-first traversal from the vertices in V0, as for
+     * traverse, processing each level on PARALLELISM threads.
      */
-    private static Queue<Integer> queue = new ArrayDeque<>();
+    public void traverseParallel(Collection<Integer> V0, int parallelism) {
+        int[] sources = new int[V0.size()];
+        int i = 0;
+        for (int v : V0) {
+            sources[i] = v;
+            i += 1;
+        }
+        new ParallelBreadthFirstSearch(this, _graph, parallelism)
+            .run(sources);
+    }
+
+    /**
+     * Perform a breadth-first traversal from V0, as for traverse,
+     * processing each level on PARALLELISM threads.
+     */
+    public void traverseParallel(int v0, int parallelism) {
+        traverseParallel(Arrays.asList(v0), parallelism);
+    }
+
+    /**
+     * The graph being traversed.
+     */
+    private final Graph _graph;
 
 }
@@ -0,0 +1,805 @@
+package graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/** A contraction hierarchy over a weighted graph, for answering many
+ *  point-to-point shortest-path queries on a graph that does not change.
+ *  <p>
+ *  Preprocessing contracts the vertices one at a time, least important
+ *  first.  Contracting V removes it from the remaining graph and adds a
+ *  shortcut edge (U, W) for each path U, V, W that is the only shortest
+ *  path between U and W (as determined by a bounded local search for a
+ *  "witness" path that avoids V).  Each shortcut remembers V, so that it
+ *  can be expanded back into the original edges.  A query then runs a
+ *  bidirectional Dijkstra search that only follows edges toward vertices
+ *  contracted later, which settles very few vertices.
+ *  <p>
+ *  The hierarchy refers to vertices by number, and may be written to and
+ *  read back from a file.  Each hierarchy records a fingerprint of the
+ *  graph and weights from which it was built (see fingerprint), so
+ *  that clients can tell whether a saved hierarchy is still usable.
+ *  @author Zhibo Fan
+ */
+public class ContractionHierarchy {
+
+    /** Supplies the weights of edges. */
+    public interface Weighting {
+        /** Returns the (non-negative) weight of the edge (U, V). */
+        double weight(int u, int v);
+    }
+
+    /** A contraction hierarchy for G with edge weights given by WEIGHTS. */
+    public ContractionHierarchy(Graph G, Weighting weights) {
+        _fingerprint = fingerprint(G, weights);
+        new Builder(G, weights).build();
+        allocateQueryState();
+    }
+
+    /** A hierarchy with the given FINGERPRINT, whose upward edges are
+     *  given by the row offsets UPSTART, targets UPTARGET, weights UPWEIGHT,
+     *  and middle vertices UPMID, and whose downward edges are given
+     *  likewise by DOWNSTART, DOWNSOURCE, DOWNWEIGHT, and DOWNMID. */
+    private ContractionHierarchy(long fingerprint,
+                                 int[] upStart, int[] upTarget,
+                                 double[] upWeight, int[] upMid,
+                                 int[] downStart, int[] downSource,
+                                 double[] downWeight, int[] downMid) {
+        _fingerprint = fingerprint;
+        _upStart = upStart;
+        _upTarget = upTarget;
+        _upWeight = upWeight;
+        _upMid = upMid;
+        _downStart = downStart;
+        _downSource = downSource;
+        _downWeight = downWeight;
+        _downMid = downMid;
+        allocateQueryState();
+    }
+
+    /** Returns a fingerprint of the structure of G and its edge WEIGHTS.
+     *  A saved hierarchy may be reused for a graph with the same
+     *  fingerprint. */
+    public static long fingerprint(Graph G, Weighting weights) {
+        long[] result = { G.maxVertex() };
+        G.forEachVertex(u -> G.forEachSuccessor(u, v -> {
+            long h = result[0] * 31 + u;
+            h = h * 31 + v;
+            result[0] = h * 31
+                + Double.doubleToLongBits(weights.weight(u, v));
+        }));
+        return result[0];
+    }
+
+    /** Returns the fingerprint of the graph from which I was built. */
+    public long fingerprint() {
+        return _fingerprint;
+    }
+
+    /** Returns the number of shortcut and original edges I contain. */
+    public int edgeCount() {
+        return _upTarget.length + _downSource.length;
+    }
+
+    /** Returns the weight of a shortest path from SOURCE to DEST, or
+     *  positive infinity if there is none. */
+    public double distance(int source, int dest) {
+        return search(source, dest) == 0 ? Double.POSITIVE_INFINITY : _best;
+    }
+
+    /** Returns the vertices along a shortest path from SOURCE to DEST,
+     *  starting with SOURCE and ending with DEST, or null if there is
+     *  no such path. */
+    public List<Integer> path(int source, int dest) {
+        int meet = search(source, dest);
+        if (meet == 0) {
+            return null;
+        }
+        int n = 0;
+        for (int v = meet; v != source; v = _forwardPred[v]) {
+            n += 1;
+        }
+        int[] chain = new int[n + 1];
+        for (int v = meet, i = n; i >= 0; v = _forwardPred[v], i -= 1) {
+            chain[i] = v;
+        }
+        ArrayList<Integer> result = new ArrayList<>();
+        result.add(source);
+        for (int i = 1; i <= n; i += 1) {
+            unpack(chain[i - 1], chain[i], _upMid[_forwardEdge[chain[i]]],
+                   result);
+        }
+        for (int v = meet; v != dest; v = _backwardPred[v]) {
+            unpack(v, _backwardPred[v], _downMid[_backwardEdge[v]], result);
+        }
+        return result;
+    }
+
+    /** Returns the weights of shortest paths from each of SOURCES to each
+     *  of TARGETS: the [I][J] entry of the result is the weight of a
+     *  shortest path from SOURCES[I] to TARGETS[J], or positive infinity
+     *  if there is none.  Uses the bucket method of Knopp et al., which
+     *  searches once from each source and once from each target: the
+     *  backward search from each target leaves its distance to every
+     *  vertex it settles in that vertex's bucket, and the forward search
+     *  from each source combines its distance to each vertex it settles
+     *  with the entries of that vertex's bucket. */
+    public double[][] distances(int[] sources, int[] targets) {
+        int n = _upStart.length - 1;
+        double[][] result = new double[sources.length][targets.length];
+        for (double[] row : result) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+        int[] bucket = new int[n];
+        Arrays.fill(bucket, -1);
+        int[] next = new int[16], column = new int[16];
+        double[] weight = new double[16];
+        int entries = 0;
+        for (int j = 0; j < targets.length; j += 1) {
+            if (targets[j] <= 0 || targets[j] >= n) {
+                continue;
+            }
+            int settled = searchUpward(targets[j], false);
+            for (int k = 0; k < settled; k += 1) {
+                int v = _touched[k];
+                if (entries == next.length) {
+                    next = Arrays.copyOf(next, 2 * entries);
+                    column = Arrays.copyOf(column, 2 * entries);
+                    weight = Arrays.copyOf(weight, 2 * entries);
+                }
+                next[entries] = bucket[v];
+                column[entries] = j;
+                weight[entries] = _backwardDist[v];
+                bucket[v] = entries;
+                entries += 1;
+            }
+        }
+        for (int i = 0; i < sources.length; i += 1) {
+            if (sources[i] <= 0 || sources[i] >= n) {
+                continue;
+            }
+            double[] row = result[i];
+            int settled = searchUpward(sources[i], true);
+            for (int k = 0; k < settled; k += 1) {
+                int v = _touched[k];
+                double d = _forwardDist[v];
+                for (int e = bucket[v]; e >= 0; e = next[e]) {
+                    row[column[e]] = Math.min(row[column[e]], d + weight[e]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Write me to the file named FILENAME. */
+    public void write(String fileName) throws IOException {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(_fingerprint);
+            out.writeInt(_upStart.length);
+            out.writeInt(_upTarget.length);
+            out.writeInt(_downSource.length);
+            writeInts(out, _upStart);
+            writeInts(out, _upTarget);
+            writeDoubles(out, _upWeight);
+            writeInts(out, _upMid);
+            writeInts(out, _downStart);
+            writeInts(out, _downSource);
+            writeDoubles(out, _downWeight);
+            writeInts(out, _downMid);
+        }
+    }
+
+    /** Returns the hierarchy written to the file named FILENAME by
+     *  write. */
+    public static ContractionHierarchy read(String fileName)
+        throws IOException {
+        try (DataInputStream inp =
+             new DataInputStream(new BufferedInputStream(
+                 new FileInputStream(fileName)))) {
+            if (inp.readInt() != MAGIC) {
+                throw new IOException("not a contraction hierarchy file");
+            }
+            long fingerprint = inp.readLong();
+            int rows = inp.readInt(), ups = inp.readInt(),
+                downs = inp.readInt();
+            return new ContractionHierarchy(fingerprint,
+                readInts(inp, rows), readInts(inp, ups),
+                readDoubles(inp, ups), readInts(inp, ups),
+                readInts(inp, rows), readInts(inp, downs),
+                readDoubles(inp, downs), readInts(inp, downs));
+        }
+    }
+
+    /** Perform a query from SOURCE to DEST.  Returns a vertex on a
+     *  shortest path, whose weight is then _best, or 0 if there is no
+     *  path. */
+    private int search(int source, int dest) {
+        int n = _upStart.length - 1;
+        if (source <= 0 || source >= n || dest <= 0 || dest >= n) {
+            return 0;
+        }
+        resetQueryState();
+        touch(source);
+        touch(dest);
+        _forwardDist[source] = 0;
+        _backwardDist[dest] = 0;
+        _forward.offer(source, 0);
+        _backward.offer(dest, 0);
+        _best = Double.POSITIVE_INFINITY;
+        int meet = 0;
+        if (source == dest) {
+            _best = 0;
+            meet = source;
+        }
+        while (true) {
+            boolean forward = !_forward.isEmpty() && _forward.minKey() < _best;
+            boolean backward =
+                !_backward.isEmpty() && _backward.minKey() < _best;
+            if (!forward && !backward) {
+                break;
+            }
+            if (forward && (!backward
+                            || _forward.minKey() <= _backward.minKey())) {
+                int v = _forward.pollInt();
+                for (int e = _upStart[v]; e < _upStart[v + 1]; e += 1) {
+                    int w = _upTarget[e];
+                    double d = _forwardDist[v] + _upWeight[e];
+                    if (d < _forwardDist[w]) {
+                        touch(w);
+                        _forwardDist[w] = d;
+                        _forwardPred[w] = v;
+                        _forwardEdge[w] = e;
+                        _forward.offer(w, d);
+                        if (d + _backwardDist[w] < _best) {
+                            _best = d + _backwardDist[w];
+                            meet = w;
+                        }
+                    }
+                }
+            } else {
+                int v = _backward.pollInt();
+                for (int e = _downStart[v]; e < _downStart[v + 1]; e += 1) {
+                    int u = _downSource[e];
+                    double d = _backwardDist[v] + _downWeight[e];
+                    if (d < _backwardDist[u]) {
+                        touch(u);
+                        _backwardDist[u] = d;
+                        _backwardPred[u] = v;
+                        _backwardEdge[u] = e;
+                        _backward.offer(u, d);
+                        if (d + _forwardDist[u] < _best) {
+                            _best = d + _forwardDist[u];
+                            meet = u;
+                        }
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /** Clear the distances and fringes left by the last query. */
+    private void resetQueryState() {
+        for (int i = 0; i < _touchedCount; i += 1) {
+            int v = _touched[i];
+            _forwardDist[v] = _backwardDist[v] = Double.POSITIVE_INFINITY;
+        }
+        _touchedCount = 0;
+        _forward.clear();
+        _backward.clear();
+    }
+
+    /** Settle all vertices reachable from START along upward edges (if
+     *  FORWARD) or backward along downward edges (otherwise), leaving
+     *  their distances in _forwardDist or _backwardDist, respectively.
+     *  Returns the number of vertices settled, which are left in
+     *  _touched. */
+    private int searchUpward(int start, boolean forward) {
+        resetQueryState();
+        int[] begin = forward ? _upStart : _downStart;
+        int[] ends = forward ? _upTarget : _downSource;
+        double[] weights = forward ? _upWeight : _downWeight;
+        double[] dist = forward ? _forwardDist : _backwardDist;
+        IndexedMinHeap fringe = forward ? _forward : _backward;
+        touch(start);
+        dist[start] = 0;
+        fringe.offer(start, 0);
+        while (!fringe.isEmpty()) {
+            int v = fringe.pollInt();
+            for (int e = begin[v]; e < begin[v + 1]; e += 1) {
+                int w = ends[e];
+                double d = dist[v] + weights[e];
+                if (d < dist[w]) {
+                    touch(w);
+                    dist[w] = d;
+                    fringe.offer(w, d);
+                }
+            }
+        }
+        return _touchedCount;
+    }
+
+    /** Record that V's search state must be reset before the next
+     *  query. */
+    private void touch(int v) {
+        if (_forwardDist[v] == Double.POSITIVE_INFINITY
+            && _backwardDist[v] == Double.POSITIVE_INFINITY) {
+            if (_touchedCount == _touched.length) {
+                _touched = Arrays.copyOf(_touched, 2 * _touchedCount);
+            }
+            _touched[_touchedCount] = v;
+            _touchedCount += 1;
+        }
+    }
+
+    /** Append to PATH the vertices after U along the original edges
+     *  represented by the edge (U, W), which is a shortcut through MID,
+     *  or an original edge if MID is 0. */
+    private void unpack(int u, int w, int mid, List<Integer> path) {
+        int[] stack = { u, w, mid };
+        int top = 3;
+        while (top > 0) {
+            top -= 3;
+            int a = stack[top], b = stack[top + 1], m = stack[top + 2];
+            if (m == 0) {
+                path.add(b);
+            } else {
+                if (top + 6 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length + 6);
+                }
+                stack[top] = m;
+                stack[top + 1] = b;
+                stack[top + 2] = _upMid[find(_upStart, _upTarget, m, b)];
+                stack[top + 3] = a;
+                stack[top + 4] = m;
+                stack[top + 5] = _downMid[find(_downStart, _downSource, m, a)];
+                top += 6;
+            }
+        }
+    }
+
+    /** Returns the index of the entry in row V of the edge table given by
+     *  row offsets START and end points ENDS whose end point is W. */
+    private static int find(int[] start, int[] ends, int v, int w) {
+        for (int e = start[v]; e < start[v + 1]; e += 1) {
+            if (ends[e] == w) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("Error: corrupt hierarchy");
+    }
+
+    /** Allocate the arrays used by queries. */
+    private void allocateQueryState() {
+        int n = _upStart.length;
+        _forwardDist = new double[n];
+        _backwardDist = new double[n];
+        Arrays.fill(_forwardDist, Double.POSITIVE_INFINITY);
+        Arrays.fill(_backwardDist, Double.POSITIVE_INFINITY);
+        _forwardPred = new int[n];
+        _backwardPred = new int[n];
+        _forwardEdge = new int[n];
+        _backwardEdge = new int[n];
+        _touched = new int[16];
+        _forward = new IndexedMinHeap();
+        _backward = new IndexedMinHeap();
+    }
+
+    /** Write the elements of A to OUT. */
+    private static void writeInts(DataOutputStream out, int[] a)
+        throws IOException {
+        for (int x : a) {
+            out.writeInt(x);
+        }
+    }
+
+    /** Write the elements of A to OUT. */
+    private static void writeDoubles(DataOutputStream out, double[] a)
+        throws IOException {
+        for (double x : a) {
+            out.writeDouble(x);
+        }
+    }
+
+    /** Returns an array of N ints read from INP. */
+    private static int[] readInts(DataInputStream inp, int n)
+        throws IOException {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = inp.readInt();
+        }
+        return result;
+    }
+
+    /** Returns an array of N doubles read from INP. */
+    private static double[] readDoubles(DataInputStream inp, int n)
+        throws IOException {
+        double[] result = new double[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = inp.readDouble();
+        }
+        return result;
+    }
+
+    /** Growable per-vertex lists of weighted edges, each edge also
+     *  carrying the middle vertex of the shortcut it represents (or 0). */
+    private static class EdgeLists {
+        /** Empty lists for vertices 0 .. N-1. */
+        EdgeLists(int n) {
+            _ends = new int[n][];
+            _weights = new double[n][];
+            _mids = new int[n][];
+            _sizes = new int[n];
+            Arrays.fill(_ends, GraphObj.NONE);
+            Arrays.fill(_mids, GraphObj.NONE);
+            Arrays.fill(_weights, new double[0]);
+        }
+
+        /** Add an edge from V to W of weight WEIGHT through MID, or lower
+         *  the weight of the existing edge to W if WEIGHT is smaller. */
+        void relax(int v, int w, double weight, int mid) {
+            int i = indexOf(v, w);
+            if (i >= 0) {
+                if (weight < _weights[v][i]) {
+                    _weights[v][i] = weight;
+                    _mids[v][i] = mid;
+                }
+                return;
+            }
+            int n = _sizes[v];
+            if (n == _ends[v].length) {
+                int size = Math.max(4, 2 * n);
+                _ends[v] = Arrays.copyOf(_ends[v], size);
+                _weights[v] = Arrays.copyOf(_weights[v], size);
+                _mids[v] = Arrays.copyOf(_mids[v], size);
+            }
+            _ends[v][n] = w;
+            _weights[v][n] = weight;
+            _mids[v][n] = mid;
+            _sizes[v] = n + 1;
+        }
+
+        /** Remove the edge from V to W, if any. */
+        void remove(int v, int w) {
+            int i = indexOf(v, w);
+            if (i >= 0) {
+                int last = _sizes[v] - 1;
+                _ends[v][i] = _ends[v][last];
+                _weights[v][i] = _weights[v][last];
+                _mids[v][i] = _mids[v][last];
+                _sizes[v] = last;
+            }
+        }
+
+        /** Returns the index of the edge from V to W, or -1. */
+        int indexOf(int v, int w) {
+            for (int i = 0; i < _sizes[v]; i += 1) {
+                if (_ends[v][i] == w) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the number of edges from V. */
+        int size(int v) {
+            return _sizes[v];
+        }
+
+        /** Returns the end point of the Ith edge from V. */
+        int end(int v, int i) {
+            return _ends[v][i];
+        }
+
+        /** Returns the weight of the Ith edge from V. */
+        double weight(int v, int i) {
+            return _weights[v][i];
+        }
+
+        /** Returns the middle vertex of the Ith edge from V. */
+        int mid(int v, int i) {
+            return _mids[v][i];
+        }
+
+        /** Returns the row offsets of a compressed copy of me. */
+        int[] starts() {
+            int[] result = new int[_sizes.length + 1];
+            for (int v = 0; v < _sizes.length; v += 1) {
+                result[v + 1] = result[v] + _sizes[v];
+            }
+            return result;
+        }
+
+        /** Returns the end points of all edges, in row order. */
+        int[] ends() {
+            return flatten(_ends);
+        }
+
+        /** Returns the middle vertices of all edges, in row order. */
+        int[] mids() {
+            return flatten(_mids);
+        }
+
+        /** Returns the weights of all edges, in row order. */
+        double[] weights() {
+            int[] start = starts();
+            double[] result = new double[start[_sizes.length]];
+            for (int v = 0; v < _sizes.length; v += 1) {
+                System.arraycopy(_weights[v], 0, result, start[v],
+                                 _sizes[v]);
+            }
+            return result;
+        }
+
+        /** Returns the first _sizes[v] entries of each row V of ROWS,
+         *  concatenated. */
+        private int[] flatten(int[][] rows) {
+            int[] start = starts();
+            int[] result = new int[start[_sizes.length]];
+            for (int v = 0; v < _sizes.length; v += 1) {
+                System.arraycopy(rows[v], 0, result, start[v], _sizes[v]);
+            }
+            return result;
+        }
+
+        /** End points, weights, and middle vertices of each vertex's
+         *  edges. */
+        private int[][] _ends, _mids;
+        /** Weights of each vertex's edges. */
+        private double[][] _weights;
+        /** Number of edges of each vertex. */
+        private int[] _sizes;
+    }
+
+    /** The preprocessing stage, which fills in the edge tables of the
+     *  enclosing hierarchy. */
+    private class Builder {
+        /** A builder for a hierarchy over G with weights WEIGHTS. */
+        Builder(Graph G, Weighting weights) {
+            _n = G.maxVertex() + 1;
+            _out = new EdgeLists(_n);
+            _in = new EdgeLists(_n);
+            _up = new EdgeLists(_n);
+            _down = new EdgeLists(_n);
+            _vertices = new BitSet(_n);
+            _level = new int[_n];
+            _dist = new double[_n];
+            Arrays.fill(_dist, Double.POSITIVE_INFINITY);
+            _reached = new int[16];
+            _target = new int[_n];
+            G.forEachVertex(u -> {
+                _vertices.set(u);
+                G.forEachSuccessor(u, v -> {
+                    if (u != v) {
+                        double w = weights.weight(u, v);
+                        _out.relax(u, v, w, 0);
+                        _in.relax(v, u, w, 0);
+                    }
+                });
+            });
+        }
+
+        /** Contract all vertices and record the resulting edge tables. */
+        void build() {
+            IndexedMinHeap order = new IndexedMinHeap();
+            for (int v = _vertices.nextSetBit(0); v >= 0;
+                 v = _vertices.nextSetBit(v + 1)) {
+                order.offer(v, priority(v));
+            }
+            while (!order.isEmpty()) {
+                int v = order.pollInt();
+                double p = priority(v);
+                if (!order.isEmpty() && p > order.minKey()) {
+                    order.offer(v, p);
+                    continue;
+                }
+                contract(v);
+            }
+            _upStart = _up.starts();
+            _upTarget = _up.ends();
+            _upWeight = _up.weights();
+            _upMid = _up.mids();
+            _downStart = _down.starts();
+            _downSource = _down.ends();
+            _downWeight = _down.weights();
+            _downMid = _down.mids();
+        }
+
+        /** Returns the contraction priority of V: the number of shortcuts
+         *  contracting it would add, less the number of edges it would
+         *  remove (scaled by EDGE_DIFFERENCE_FACTOR), plus the number of
+         *  its contracted neighbors. */
+        double priority(int v) {
+            return EDGE_DIFFERENCE_FACTOR
+                * (shortcuts(v, false) - _out.size(v) - _in.size(v))
+                + _level[v];
+        }
+
+        /** Remove V from the remaining graph, adding the necessary
+         *  shortcuts, and record its edges to the remaining vertices in
+         *  the final upward and downward edge tables. */
+        void contract(int v) {
+            for (int i = 0; i < _out.size(v); i += 1) {
+                int w = _out.end(v, i);
+                _up.relax(v, w, _out.weight(v, i), _out.mid(v, i));
+                _level[w] += 1;
+            }
+            for (int i = 0; i < _in.size(v); i += 1) {
+                int u = _in.end(v, i);
+                _down.relax(v, u, _in.weight(v, i), _in.mid(v, i));
+                _level[u] += 1;
+            }
+            shortcuts(v, true);
+            for (int i = 0; i < _out.size(v); i += 1) {
+                _in.remove(_out.end(v, i), v);
+            }
+            for (int i = 0; i < _in.size(v); i += 1) {
+                _out.remove(_in.end(v, i), v);
+            }
+        }
+
+        /** Returns the number of shortcuts needed to contract V, and adds
+         *  them to the remaining graph iff ADD. */
+        int shortcuts(int v, boolean add) {
+            int count = 0;
+            double longest = 0;
+            for (int j = 0; j < _out.size(v); j += 1) {
+                longest = Math.max(longest, _out.weight(v, j));
+            }
+            for (int i = 0; i < _in.size(v); i += 1) {
+                int u = _in.end(v, i);
+                double toV = _in.weight(v, i);
+                _search += 1;
+                int targets = 0;
+                for (int j = 0; j < _out.size(v); j += 1) {
+                    int w = _out.end(v, j);
+                    if (w != u) {
+                        _target[w] = _search;
+                        targets += 1;
+                    }
+                }
+                witnessSearch(u, v, toV + longest, targets,
+                              add ? WITNESS_WORK : ESTIMATE_WORK);
+                for (int j = 0; j < _out.size(v); j += 1) {
+                    int w = _out.end(v, j);
+                    double via = toV + _out.weight(v, j);
+                    if (w != u && _dist[w] > via) {
+                        count += 1;
+                        if (add) {
+                            _out.relax(u, w, via, v);
+                            _in.relax(w, u, via, v);
+                        }
+                    }
+                }
+                clearWitnessSearch();
+            }
+            return count;
+        }
+
+        /** Compute in _dist the distances from SOURCE in the remaining
+         *  graph less vertex EXCLUDED, as far as LIMIT, stopping once
+         *  MAXWORK edges have been scanned or the TARGETS vertices marked
+         *  with the current _search number are settled. */
+        void witnessSearch(int source, int excluded, double limit,
+                           int targets, int maxWork) {
+            _witness.clear();
+            reach(source, 0);
+            _witness.offer(source, 0);
+            int work = 0;
+            while (!_witness.isEmpty() && targets > 0 && work < maxWork
+                   && _witness.minKey() <= limit) {
+                int x = _witness.pollInt();
+                work += _out.size(x);
+                if (_target[x] == _search) {
+                    targets -= 1;
+                }
+                for (int i = 0; i < _out.size(x); i += 1) {
+                    int y = _out.end(x, i);
+                    double d = _dist[x] + _out.weight(x, i);
+                    if (y != excluded && d < _dist[y]) {
+                        reach(y, d);
+                        _witness.offer(y, d);
+                    }
+                }
+            }
+        }
+
+        /** Set the distance of V in the witness search to D. */
+        void reach(int v, double d) {
+            if (_dist[v] == Double.POSITIVE_INFINITY) {
+                if (_reachedCount == _reached.length) {
+                    _reached = Arrays.copyOf(_reached, 2 * _reachedCount);
+                }
+                _reached[_reachedCount] = v;
+                _reachedCount += 1;
+            }
+            _dist[v] = d;
+        }
+
+        /** Reset the distances set by the last witness search. */
+        void clearWitnessSearch() {
+            for (int i = 0; i < _reachedCount; i += 1) {
+                _dist[_reached[i]] = Double.POSITIVE_INFINITY;
+            }
+            _reachedCount = 0;
+        }
+
+        /** One more than the largest vertex number. */
+        private final int _n;
+        /** Outgoing and incoming edges among the uncontracted vertices. */
+        private final EdgeLists _out, _in;
+        /** Edges from each contracted vertex to later-contracted
+         *  vertices, and from later-contracted vertices to it. */
+        private final EdgeLists _up, _down;
+        /** The vertices of the graph. */
+        private final BitSet _vertices;
+        /** Number of contracted neighbors of each vertex. */
+        private final int[] _level;
+        /** Distances in the current witness search. */
+        private final double[] _dist;
+        /** _target[w] is _search iff w is a target of the current
+         *  witness search. */
+        private final int[] _target;
+        /** Number of witness searches started. */
+        private int _search;
+        /** Vertices whose _dist has been set. */
+        private int[] _reached;
+        /** Number of valid entries in _reached. */
+        private int _reachedCount;
+        /** The fringe of the witness search. */
+        private final IndexedMinHeap _witness = new IndexedMinHeap();
+    }
+
+    /** Identifies hierarchy files. */
+    private static final int MAGIC = 0x43483631;
+    /** A witness search stops settling vertices once it has scanned this
+     *  many edges.  A search that stops early may cause an unnecessary
+     *  (but harmless) shortcut. */
+    private static final int WITNESS_WORK = 2000;
+    /** Likewise for the searches used only to estimate priorities. */
+    private static final int ESTIMATE_WORK = 200;
+    /** Weight of the edge difference relative to the number of contracted
+     *  neighbors in a vertex's contraction priority. */
+    private static final int EDGE_DIFFERENCE_FACTOR = 4;
+
+    /** Fingerprint of the graph from which I was built. */
+    private final long _fingerprint;
+    /** Row offsets, targets, weights, and middle vertices of the edges
+     *  from each vertex to later-contracted vertices. */
+    private int[] _upStart, _upTarget, _upMid;
+    /** Weights of the upward edges. */
+    private double[] _upWeight;
+    /** Row offsets, sources, weights, and middle vertices of the edges
+     *  into each vertex from later-contracted vertices. */
+    private int[] _downStart, _downSource, _downMid;
+    /** Weights of the downward edges. */
+    private double[] _downWeight;
+
+    /** Tentative distances of the forward and backward query searches. */
+    private double[] _forwardDist, _backwardDist;
+    /** Predecessors in the forward search and successors in the backward
+     *  search. */
+    private int[] _forwardPred, _backwardPred;
+    /** Indices of the edges by which each vertex was reached. */
+    private int[] _forwardEdge, _backwardEdge;
+    /** Vertices whose query state must be reset. */
+    private int[] _touched;
+    /** Number of valid entries in _touched. */
+    private int _touchedCount;
+    /** Fringes of the forward and backward query searches. */
+    private IndexedMinHeap _forward, _backward;
+    /** Weight of the best path found by the last query. */
+    private double _best;
+}
@@ -0,0 +1,270 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/** The shortest paths from a source vertex to all other vertices,
+ *  computed in parallel by the delta-stepping algorithm of Meyer and
+ *  Sanders.  As for SimpleShortestPaths, the client supplies only the
+ *  two-argument getWeight method; it is called concurrently from several
+ *  threads, and so must be thread-safe, and the graph must not change
+ *  during setPaths.
+ *  <p>
+ *  Vertices are kept in buckets of width DELTA according to their
+ *  tentative weights.  The vertices in the first nonempty bucket are
+ *  processed together: their light edges (those of weight at most DELTA)
+ *  are relaxed in parallel, repeatedly, until the bucket stays empty, and
+ *  then their heavy edges are relaxed in parallel once.  A small DELTA
+ *  approaches Dijkstra's algorithm (little parallelism, little wasted
+ *  work); a large one approaches Bellman-Ford.  A DELTA near the average
+ *  edge weight is usually a good choice.
+ *  <p>
+ *  Weights and predecessors are kept in arrays indexed by vertex number.
+ *  Any destination vertex and estimatedDistance are ignored: paths to
+ *  all vertices are computed.
+ *  @author Zhibo Fan
+ */
+public abstract class DeltaSteppingShortestPaths extends ShortestPaths {
+
+    /** The shortest paths in G from SOURCE, computed with buckets of width
+     *  DELTA on PARALLELISM threads.  If DELTA is not positive, uses the
+     *  average weight of the edges of G. */
+    public DeltaSteppingShortestPaths(Graph G, int source, double delta,
+                                      int parallelism) {
+        super(G, source);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Error: parallelism must be"
+                                               + " positive");
+        }
+        _delta = delta;
+        _parallelism = parallelism;
+        for (int i = 0; i < _locks.length; i += 1) {
+            _locks[i] = new Object();
+        }
+    }
+
+    /** The shortest paths in G from SOURCE, computed on all available
+     *  processors with buckets as wide as the average edge weight. */
+    public DeltaSteppingShortestPaths(Graph G, int source) {
+        this(G, source, 0.0, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
+     *  not in the graph, returns positive infinity.  May be called from
+     *  several threads at once. */
+    @Override
+    protected abstract double getWeight(int u, int v);
+
+    @Override
+    public void setPaths() {
+        int n = _G.maxVertex() + 1;
+        _weight = new double[n];
+        _predecessor = new int[n];
+        _queued = new long[n];
+        _settledStamp = new int[n];
+        Arrays.fill(_weight, Double.MAX_VALUE);
+        Arrays.fill(_queued, -1);
+        _width = _delta > 0 ? _delta : averageWeight();
+        _buckets.clear();
+        if (!_G.contains(getSource())) {
+            return;
+        }
+        setWeight(getSource(), 0);
+        enqueue(getSource());
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            for (int round = 1; !_buckets.isEmpty(); round += 1) {
+                long bucket = _buckets.firstKey();
+                VertexList settled = new VertexList();
+                while (_buckets.containsKey(bucket)) {
+                    VertexList current = new VertexList();
+                    for (int v : _buckets.remove(bucket).vertices()) {
+                        _queued[v] = -1;
+                        if (bucketOf(v) == bucket) {
+                            current.add(v);
+                            if (_settledStamp[v] != round) {
+                                _settledStamp[v] = round;
+                                settled.add(v);
+                            }
+                        }
+                    }
+                    relaxAll(pool, current, true);
+                }
+                relaxAll(pool, settled, false);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public double getWeight(int v) {
+        if (_G.contains(v) && v < _weight.length) {
+            return _weight[v];
+        } else {
+            return Double.MAX_VALUE;
+        }
+    }
+
+    @Override
+    protected void setWeight(int v, double w) {
+        _weight[v] = w;
+    }
+
+    @Override
+    public int getPredecessor(int v) {
+        if (_G.contains(v) && v < _predecessor.length) {
+            return _predecessor[v];
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    protected void setPredecessor(int v, int u) {
+        _predecessor[v] = u;
+    }
+
+    /** Relax the light edges (if LIGHT) or heavy edges (otherwise) of the
+     *  vertices in VERTICES, using POOL, and place the vertices whose
+     *  weights decrease into their new buckets. */
+    private void relaxAll(ForkJoinPool pool, VertexList vertices,
+                          boolean light) {
+        List<Callable<VertexList>> tasks = new ArrayList<>();
+        int size = vertices._size;
+        int chunk = _parallelism == 1 ? Math.max(1, size)
+            : Math.max(MIN_CHUNK, size / (TASKS_PER_THREAD * _parallelism));
+        for (int lo = 0; lo < size; lo += chunk) {
+            int from = lo, to = Math.min(size, lo + chunk);
+            tasks.add(() -> {
+                VertexList changed = new VertexList();
+                int[] u = new int[1];
+                IntConsumer relaxEdge = w -> {
+                    double length = getWeight(u[0], w);
+                    if ((length <= _width) == light
+                        && relax(u[0], w, _weight[u[0]] + length)) {
+                        changed.add(w);
+                    }
+                };
+                for (int i = from; i < to; i += 1) {
+                    u[0] = vertices._vertices[i];
+                    _G.forEachSuccessor(u[0], relaxEdge);
+                }
+                return changed;
+            });
+        }
+        for (VertexList changed
+                 : ParallelBreadthFirstSearch.invokeAll(pool, tasks)) {
+            for (int v : changed.vertices()) {
+                enqueue(v);
+            }
+        }
+    }
+
+    /** Lower the weight of W to WEIGHT, with predecessor U, if that is an
+     *  improvement.  Returns true iff it was. */
+    private boolean relax(int u, int w, double weight) {
+        if (weight >= _weight[w]) {
+            return false;
+        }
+        synchronized (_locks[w & (_locks.length - 1)]) {
+            if (weight >= _weight[w]) {
+                return false;
+            }
+            setWeight(w, weight);
+            setPredecessor(w, u);
+            return true;
+        }
+    }
+
+    /** Place V in the bucket for its current weight, unless it is already
+     *  there. */
+    private void enqueue(int v) {
+        long bucket = bucketOf(v);
+        if (_queued[v] != bucket) {
+            _queued[v] = bucket;
+            _buckets.computeIfAbsent(bucket, b -> new VertexList()).add(v);
+        }
+    }
+
+    /** Returns the number of the bucket for the current weight of V. */
+    private long bucketOf(int v) {
+        return (long) (_weight[v] / _width);
+    }
+
+    /** Returns the average weight of the edges of the graph, or 1 if it
+     *  has none. */
+    private double averageWeight() {
+        double[] sum = new double[1];
+        long[] count = new long[1];
+        _G.forEachVertex(u -> _G.forEachSuccessor(u, v -> {
+            double w = getWeight(u, v);
+            if (w != Double.POSITIVE_INFINITY) {
+                sum[0] += w;
+                count[0] += 1;
+            }
+        }));
+        return count[0] == 0 || sum[0] == 0 ? 1.0 : sum[0] / count[0];
+    }
+
+    /** A growable list of vertices. */
+    private static final class VertexList {
+        /** Append V. */
+        void add(int v) {
+            if (_size == _vertices.length) {
+                _vertices = Arrays.copyOf(_vertices, 2 * _size);
+            }
+            _vertices[_size] = v;
+            _size += 1;
+        }
+
+        /** Returns my vertices, in order. */
+        int[] vertices() {
+            return Arrays.copyOf(_vertices, _size);
+        }
+
+        /** The vertices, in _vertices[0 .. _size-1]. */
+        private int[] _vertices = new int[16];
+        /** Number of vertices. */
+        private int _size;
+    }
+
+    /** Smallest number of vertices given to one task. */
+    private static final int MIN_CHUNK = 1024;
+    /** Number of tasks per thread into which each set of vertices is
+     *  divided. */
+    private static final int TASKS_PER_THREAD = 4;
+    /** Number of locks guarding weight updates (a power of 2). */
+    private static final int LOCKS = 64;
+
+    /** The requested bucket width, or a non-positive value for the
+     *  average edge weight. */
+    private final double _delta;
+    /** The bucket width in use. */
+    private double _width;
+    /** Number of threads used. */
+    private final int _parallelism;
+    /** Weight of the best known path to each vertex, indexed by vertex
+     *  number. */
+    private double[] _weight = new double[0];
+    /** Predecessor of each vertex on its best known path. */
+    private int[] _predecessor = new int[0];
+    /** The bucket in which each vertex is queued, or -1. */
+    private long[] _queued;
+    /** For each vertex, the number of the last round of setPaths (one per
+     *  bucket emptied, counting from 1) that settled it, or 0. */
+    private int[] _settledStamp;
+    /** The nonempty buckets, by bucket number.  A vertex may remain in a
+     *  bucket after its weight decreases; such stale entries are skipped. */
+    private final TreeMap<Long, VertexList> _buckets = new TreeMap<>();
+    /** Locks guarding updates of the weights and predecessors of vertices,
+     *  selected by the low-order bits of the vertex number. */
+    private final Object[] _locks = new Object[LOCKS];
+}
@@ -1,6 +1,5 @@
 package graph;
 
-import java.util.Queue;
 import java.util.ArrayDeque;
 import static java.util.Collections.asLifoQueue;
 
@@ -13,7 +12,7 @@ public class DepthFirstTraversal extends Traversal {
 
     /** A depth-first Traversal of G. */
     protected DepthFirstTraversal(Graph G) {
-        super(G, stack);
+        super(G, asLifoQueue(new ArrayDeque<>()));
     }
 
     @Override
@@ -30,10 +29,4 @@ public class DepthFirstTraversal extends Traversal {
     protected boolean shouldPostVisit(int v) {
         return true;
     }
-
-    /**
-     * A "stack" like queue.
-     */
-    private static Queue<Integer> stack
-            = asLifoQueue(new ArrayDeque<>());
 }
@@ -2,6 +2,9 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
 /** Represents a general unlabeled directed graph whose vertices are denoted by
  *  positive integers. Graphs may have self edges.
  *
@@ -16,21 +19,22 @@ public class DirectedGraph extends GraphObj {
 
     @Override
     public int inDegree(int v) {
-        if (!_vertex.contains(v)) {
-            return 0;
-        }
-        int rtn = 0;
-        for (int[] edge : _edges) {
-            if (edge[1] == v) {
-                rtn += 1;
-            }
-        }
-        return rtn;
+        return incomingDegree(v);
     }
 
     @Override
     public Iteration<Integer> predecessors(int v) {
-        return new VertexIteration(false, v);
+        return incoming(v);
+    }
+
+    @Override
+    public void forEachPredecessor(int v, IntConsumer action) {
+        forEachIncoming(v, action);
+    }
+
+    @Override
+    public int findPredecessor(int v, IntPredicate test) {
+        return contains(v) ? find(_in[v], incomingDegree(v), test) : 0;
     }
 
 }
@@ -0,0 +1,203 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/** The weights of shortest paths from each of a list of source vertices to
+ *  each of a list of target vertices (a many-to-many distance table, or
+ *  origin-destination matrix).  As for SimpleShortestPaths, the client
+ *  supplies only the two-argument getWeight method, and may override
+ *  keepPaths to record the paths as well as their weights.
+ *  <p>
+ *  The table is filled by one single-source search per source, each of
+ *  which stops as soon as it has settled every target.  The sources are
+ *  divided among several threads, each of which reuses one set of search
+ *  arrays for all of its sources.  The client's getWeight is therefore
+ *  called concurrently from several threads, and must be thread-safe, and
+ *  the graph must not change during setDistances.  For a graph that does
+ *  not change, the distances method of a ContractionHierarchy gives the
+ *  same table much faster once the hierarchy is built.
+ *  @author Zhibo Fan
+ */
+public abstract class DistanceTable {
+
+    /** A table of the weights of shortest paths in G from each of SOURCES
+     *  to each of TARGETS, computed on PARALLELISM threads. */
+    public DistanceTable(Graph G, int[] sources, int[] targets,
+                         int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Error: parallelism must be"
+                                               + " positive");
+        }
+        _G = G;
+        _sources = sources.clone();
+        _targets = targets.clone();
+        _parallelism = parallelism;
+    }
+
+    /** A table of the weights of shortest paths in G from each of SOURCES
+     *  to each of TARGETS, computed on all available processors. */
+    public DistanceTable(Graph G, int[] sources, int[] targets) {
+        this(G, sources, targets,
+             Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
+     *  not in the graph, returns positive infinity.  May be called from
+     *  several threads at once. */
+    protected abstract double getWeight(int u, int v);
+
+    /** Returns true iff setDistances is to record the shortest paths, for
+     *  use by pathTo, as well as their weights.  False by default. */
+    protected boolean keepPaths() {
+        return false;
+    }
+
+    /** Compute the table.  Must be called before using getDistance,
+     *  getDistances, and pathTo. */
+    public void setDistances() {
+        _distances = new double[_sources.length][_targets.length];
+        for (double[] row : _distances) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+        _paths = keepPaths() ? new ArrayList<>() : null;
+        _targetSet.clear();
+        for (int v : _targets) {
+            if (_G.contains(v)) {
+                _targetSet.set(v);
+            }
+        }
+        _targetCount = _targetSet.cardinality();
+        List<Callable<List<List<List<Integer>>>>> tasks = new ArrayList<>();
+        int tasksWanted = Math.max(1, Math.min(_parallelism,
+                                               _sources.length));
+        int chunk = (_sources.length + tasksWanted - 1) / tasksWanted;
+        for (int lo = 0; lo < _sources.length; lo += chunk) {
+            int from = lo, to = Math.min(_sources.length, lo + chunk);
+            tasks.add(() -> fillRows(from, to));
+        }
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            for (List<List<List<Integer>>> rows
+                     : ParallelBreadthFirstSearch.invokeAll(pool, tasks)) {
+                if (_paths != null) {
+                    _paths.addAll(rows);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Returns the weight of a shortest path from the Ith source to the
+     *  Jth target, or positive infinity if there is none. */
+    public double getDistance(int i, int j) {
+        return _distances[i][j];
+    }
+
+    /** Returns the table, whose [I][J] entry is getDistance(I, J).  The
+     *  result belongs to me, and should not be modified. */
+    public double[][] getDistances() {
+        return _distances;
+    }
+
+    /** Returns the vertices along a shortest path from the Ith source to
+     *  the Jth target, starting and ending with those vertices, or null if
+     *  there is no path.  Requires that keepPaths be true. */
+    public List<Integer> pathTo(int i, int j) {
+        if (_paths == null) {
+            throw new IllegalStateException("Error: paths were not kept");
+        }
+        return _paths.get(i).get(j);
+    }
+
+    /** Fill rows FROM .. TO-1 of the table, returning the paths for those
+     *  rows if paths are kept, and otherwise null. */
+    private List<List<List<Integer>>> fillRows(int from, int to) {
+        List<List<List<Integer>>> paths =
+            _paths == null ? null : new ArrayList<>();
+        Search search = null;
+        for (int i = from; i < to; i += 1) {
+            List<List<Integer>> row =
+                paths == null ? null : new ArrayList<>();
+            int source = _sources[i];
+            boolean searched = _G.contains(source) && _targetCount > 0;
+            if (searched) {
+                search = search == null ? new Search(source)
+                    : new Search(search, source);
+                search.setPaths();
+            }
+            for (int j = 0; j < _targets.length; j += 1) {
+                double weight = searched ? search.getWeight(_targets[j])
+                    : Double.MAX_VALUE;
+                if (weight != Double.MAX_VALUE) {
+                    _distances[i][j] = weight;
+                }
+                if (row != null) {
+                    row.add(weight == Double.MAX_VALUE ? null
+                            : search.pathTo(_targets[j]));
+                }
+            }
+            if (paths != null) {
+                paths.add(row);
+            }
+        }
+        return paths;
+    }
+
+    /** A search from one source that stops once all targets are
+     *  settled. */
+    private class Search extends SimpleShortestPaths {
+        /** A search from SOURCE. */
+        Search(int source) {
+            super(DistanceTable.this._G, source);
+            _remaining = _targetCount;
+        }
+
+        /** A search from SOURCE, reusing the storage of PREVIOUS. */
+        Search(Search previous, int source) {
+            super(previous, source, 0);
+            _remaining = _targetCount;
+        }
+
+        @Override
+        protected double getWeight(int u, int v) {
+            return DistanceTable.this.getWeight(u, v);
+        }
+
+        @Override
+        protected boolean finished(int v) {
+            if (_targetSet.get(v)) {
+                _remaining -= 1;
+            }
+            return _remaining == 0;
+        }
+
+        /** Number of targets not yet settled. */
+        private int _remaining;
+    }
+
+    /** The graph being searched. */
+    protected final Graph _G;
+    /** The source vertices, one per row. */
+    private final int[] _sources;
+    /** The target vertices, one per column. */
+    private final int[] _targets;
+    /** The distinct target vertices that are in the graph. */
+    private final BitSet _targetSet = new BitSet();
+    /** Number of vertices in _targetSet. */
+    private int _targetCount;
+    /** Number of threads used. */
+    private final int _parallelism;
+    /** The table computed by setDistances. */
+    private double[][] _distances;
+    /** The paths computed by setDistances, by source and then target, or
+     *  null if they are not kept. */
+    private List<List<List<Integer>>> _paths;
+}
@@ -0,0 +1,128 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+
+/** A map from pairs of vertices to edge ids, kept as an open-addressing
+ *  hash table with linear probing over primitive arrays.  Each pair (U, V)
+ *  is packed into one long key, so a lookup costs one hash and, on
+ *  average, a probe or two, however many edges there are.  Removal shifts
+ *  later entries back into the vacated slot instead of leaving a marker,
+ *  so lookups stay fast under any mix of additions and removals.
+ *  @author Zhibo Fan
+ */
+final class EdgeIndex {
+
+    /** An empty index. */
+    EdgeIndex() {
+        _keys = new long[INITIAL_SLOTS];
+        _ids = new int[INITIAL_SLOTS];
+    }
+
+    /** A copy of INDEX. */
+    EdgeIndex(EdgeIndex index) {
+        _keys = index._keys.clone();
+        _ids = index._ids.clone();
+        _size = index._size;
+    }
+
+    /** Returns the id of edge (U, V), or 0 if there is none. */
+    int get(int u, int v) {
+        long key = key(u, v);
+        int mask = _keys.length - 1;
+        for (int i = slot(key, mask); _ids[i] != 0; i = (i + 1) & mask) {
+            if (_keys[i] == key) {
+                return _ids[i];
+            }
+        }
+        return 0;
+    }
+
+    /** Record that the id of edge (U, V) is E, which is positive. */
+    void put(int u, int v, int e) {
+        if (2 * (_size + 1) > _keys.length) {
+            resize(2 * _keys.length);
+        }
+        long key = key(u, v);
+        int mask = _keys.length - 1;
+        int i = slot(key, mask);
+        while (_ids[i] != 0 && _keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (_ids[i] == 0) {
+            _size += 1;
+        }
+        _keys[i] = key;
+        _ids[i] = e;
+    }
+
+    /** Remove edge (U, V), if present. */
+    void remove(int u, int v) {
+        long key = key(u, v);
+        int mask = _keys.length - 1;
+        int i = slot(key, mask);
+        while (_ids[i] != 0 && _keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (_ids[i] == 0) {
+            return;
+        }
+        _size -= 1;
+        for (int j = (i + 1) & mask; _ids[j] != 0; j = (j + 1) & mask) {
+            int home = slot(_keys[j], mask);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                _keys[i] = _keys[j];
+                _ids[i] = _ids[j];
+                i = j;
+            }
+        }
+        _ids[i] = 0;
+    }
+
+    /** Returns the number of edges recorded. */
+    int size() {
+        return _size;
+    }
+
+    /** Rebuild the table with N slots. */
+    private void resize(int n) {
+        long[] keys = _keys;
+        int[] ids = _ids;
+        _keys = new long[n];
+        _ids = new int[n];
+        int mask = n - 1;
+        for (int k = 0; k < keys.length; k += 1) {
+            if (ids[k] != 0) {
+                int i = slot(keys[k], mask);
+                while (_ids[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                _keys[i] = keys[k];
+                _ids[i] = ids[k];
+            }
+        }
+    }
+
+    /** Returns the key for the pair (U, V). */
+    private static long key(int u, int v) {
+        return ((long) u << 32) | (v & 0xffffffffL);
+    }
+
+    /** Returns the home slot of KEY in a table whose size is MASK + 1. */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Initial number of slots. */
+    private static final int INITIAL_SLOTS = 16;
+
+    /** The keys of the entries, indexed by slot. */
+    private long[] _keys;
+    /** The edge ids of the entries, or 0 in empty slots.  The length is a
+     *  power of 2, at least twice the number of entries. */
+    private int[] _ids;
+    /** Number of entries. */
+    private int _size;
+}
@@ -0,0 +1,257 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/** An immutable snapshot of a graph in compressed-sparse-row form.  The
+ *  successors of vertex V occupy positions _outStart[V] .. _outStart[V+1]-1
+ *  of one shared array (likewise for predecessors), so the whole structure
+ *  consists of a handful of flat primitive arrays, plus a copy of the
+ *  hashed edge index.  Edge ids are those of the graph from which the
+ *  snapshot was made.  All operations that
+ *  would modify the graph throw UnsupportedOperationException.
+ *  @author Zhibo Fan
+ */
+public final class FrozenGraph extends Graph {
+
+    /** A snapshot of the current state of G. */
+    FrozenGraph(GraphObj G) {
+        _directed = G.isDirected();
+        _vertex = (BitSet) G._vertex.clone();
+        _vertexSize = G.vertexSize();
+        _edgeSize = G.edgeSize();
+        int n = G.maxVertex();
+        _outStart = new int[n + 2];
+        _outTarget = new int[total(G, G._outDeg, n)];
+        _outEdge = new int[_outTarget.length];
+        pack(G, G._out, G._outId, G._outDeg, n,
+             _outStart, _outTarget, _outEdge);
+        if (_directed) {
+            _inStart = new int[n + 2];
+            _inSource = new int[_edgeSize];
+            _inEdge = new int[_edgeSize];
+            pack(G, G._in, G._inId, G._inDeg, n,
+                 _inStart, _inSource, _inEdge);
+        } else {
+            _inStart = _outStart;
+            _inSource = _outTarget;
+            _inEdge = _outEdge;
+        }
+        _edgeFrom = Arrays.copyOf(G._edgeFrom, G.maxEdgeId() + 1);
+        _edgeTo = Arrays.copyOf(G._edgeTo, G.maxEdgeId() + 1);
+        _edgeIndex = new EdgeIndex(G._edgeIndex);
+    }
+
+    @Override
+    public int vertexSize() {
+        return _vertexSize;
+    }
+
+    @Override
+    public int maxVertex() {
+        return _outStart.length - 2;
+    }
+
+    @Override
+    public int edgeSize() {
+        return _edgeSize;
+    }
+
+    @Override
+    public boolean isDirected() {
+        return _directed;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        return contains(v) ? _outStart[v + 1] - _outStart[v] : 0;
+    }
+
+    @Override
+    public int inDegree(int v) {
+        return contains(v) ? _inStart[v + 1] - _inStart[v] : 0;
+    }
+
+    @Override
+    public boolean contains(int u) {
+        return u > 0 && _vertex.get(u);
+    }
+
+    @Override
+    public boolean contains(int u, int v) {
+        return edgeId(u, v) != 0;
+    }
+
+    @Override
+    public int add() {
+        throw frozen();
+    }
+
+    @Override
+    public int add(int u, int v) {
+        throw frozen();
+    }
+
+    @Override
+    public void remove(int v) {
+        throw frozen();
+    }
+
+    @Override
+    public void remove(int u, int v) {
+        throw frozen();
+    }
+
+    @Override
+    public Iteration<Integer> vertices() {
+        return Iteration.iteration(_vertex);
+    }
+
+    @Override
+    public Iteration<Integer> successors(int v) {
+        if (!contains(v)) {
+            return Iteration.iteration(GraphObj.NONE, 0, 0);
+        }
+        return Iteration.iteration(_outTarget,
+                                   _outStart[v], _outStart[v + 1]);
+    }
+
+    @Override
+    public Iteration<Integer> predecessors(int v) {
+        if (!contains(v)) {
+            return Iteration.iteration(GraphObj.NONE, 0, 0);
+        }
+        return Iteration.iteration(_inSource, _inStart[v], _inStart[v + 1]);
+    }
+
+    @Override
+    public void forEachVertex(IntConsumer action) {
+        for (int v = _vertex.nextSetBit(1); v >= 0;
+             v = _vertex.nextSetBit(v + 1)) {
+            action.accept(v);
+        }
+    }
+
+    @Override
+    public void forEachSuccessor(int v, IntConsumer action) {
+        if (contains(v)) {
+            for (int i = _outStart[v], end = _outStart[v + 1]; i < end;
+                 i += 1) {
+                action.accept(_outTarget[i]);
+            }
+        }
+    }
+
+    @Override
+    public void forEachPredecessor(int v, IntConsumer action) {
+        if (contains(v)) {
+            for (int i = _inStart[v], end = _inStart[v + 1]; i < end;
+                 i += 1) {
+                action.accept(_inSource[i]);
+            }
+        }
+    }
+
+    @Override
+    public int findPredecessor(int v, IntPredicate test) {
+        if (contains(v)) {
+            for (int i = _inStart[v], end = _inStart[v + 1]; i < end;
+                 i += 1) {
+                if (test.test(_inSource[i])) {
+                    return _inSource[i];
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public Iteration<int[]> edges() {
+        return new Iteration<int[]>() {
+            @Override
+            public boolean hasNext() {
+                while (_id < _edgeFrom.length && _edgeFrom[_id] == 0) {
+                    _id += 1;
+                }
+                return _id < _edgeFrom.length;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _result[0] = _edgeFrom[_id];
+                _result[1] = _edgeTo[_id];
+                _id += 1;
+                return _result;
+            }
+
+            /** The next edge id to examine. */
+            private int _id = 1;
+            /** The array returned by each call to next(). */
+            private final int[] _result = new int[2];
+        };
+    }
+
+    @Override
+    protected int edgeId(int u, int v) {
+        if (_directed || u <= v) {
+            return _edgeIndex.get(u, v);
+        } else {
+            return _edgeIndex.get(v, u);
+        }
+    }
+
+    /** Returns the number of adjacency entries in DEG for the vertices of
+     *  G numbered at most N. */
+    private static int total(GraphObj G, int[] deg, int n) {
+        int result = 0;
+        for (int v = 1; v <= n; v += 1) {
+            if (G.contains(v)) {
+                result += deg[v];
+            }
+        }
+        return result;
+    }
+
+    /** Copy the adjacency tables ADJ, IDS, and DEG of G for vertices
+     *  1 .. N into the row offsets START and flat arrays TARGET and EDGE. */
+    private static void pack(GraphObj G, int[][] adj, int[][] ids, int[] deg,
+                             int n, int[] start, int[] target, int[] edge) {
+        for (int v = 1; v <= n; v += 1) {
+            int k = G.contains(v) ? deg[v] : 0;
+            start[v + 1] = start[v] + k;
+            if (k > 0) {
+                System.arraycopy(adj[v], 0, target, start[v], k);
+                System.arraycopy(ids[v], 0, edge, start[v], k);
+            }
+        }
+    }
+
+    /** Returns the exception thrown by attempts to modify me. */
+    static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("Error: graph is frozen");
+    }
+
+    /** True iff my edges are directed. */
+    private final boolean _directed;
+    /** Bitmap of my vertex numbers. */
+    private final BitSet _vertex;
+    /** Number of vertices and edges. */
+    private final int _vertexSize, _edgeSize;
+    /** Row offsets, successor vertices, and edge ids of outgoing edges. */
+    private final int[] _outStart, _outTarget, _outEdge;
+    /** Row offsets, predecessor vertices, and edge ids of incoming edges.
+     *  The same arrays as the outgoing ones for an undirected graph. */
+    private final int[] _inStart, _inSource, _inEdge;
+    /** End points of each edge, indexed by edge id (0 if unused). */
+    private final int[] _edgeFrom, _edgeTo;
+    /** A copy of the edge index of the graph from which I was made. */
+    private final EdgeIndex _edgeIndex;
+}
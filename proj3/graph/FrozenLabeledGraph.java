@@ -0,0 +1,73 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+/** An immutable snapshot of a LabeledGraph, made by its freeze method,
+ *  consisting of a FrozenGraph and copies of the labels.  All fields are
+ *  final and nothing changes after construction, so any number of threads
+ *  may read a snapshot, and run traversals and shortest-path searches on
+ *  it, without locking, however it was handed to them.  (The labels
+ *  themselves are shared with the original graph, and should be
+ *  immutable as well.)  All operations that would modify the graph or its
+ *  labels throw UnsupportedOperationException.
+ *  @author Zhibo Fan
+ */
+public final class FrozenLabeledGraph<VL, EL> extends LabeledGraph<VL, EL> {
+
+    /** A snapshot of the graph G, whose vertex labels are VLABELS (indexed
+     *  by vertex) and whose edge labels are ELABELS (indexed by edge id).
+     *  Takes ownership of the arrays. */
+    FrozenLabeledGraph(FrozenGraph G, Object[] vlabels, Object[] elabels) {
+        super(G);
+        _vlabels = vlabels;
+        _elabels = elabels;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public VL getLabel(int v) {
+        checkMyVertex(v);
+        return v < _vlabels.length ? (VL) _vlabels[v] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public EL getLabel(int u, int v) {
+        int e = edgeId(u, v);
+        if (e == 0) {
+            throw new IllegalArgumentException("Error: no such edge");
+        }
+        return e < _elabels.length ? (EL) _elabels[e] : null;
+    }
+
+    @Override
+    public int getSuccessor(int u, EL lab) {
+        for (int v : successors(u)) {
+            int e = edgeId(u, v);
+            if (e < _elabels.length && lab.equals(_elabels[e])) {
+                return v;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void setLabel(int v, VL lab) {
+        throw FrozenGraph.frozen();
+    }
+
+    @Override
+    public void setLabel(int u, int v, EL lab) {
+        throw FrozenGraph.frozen();
+    }
+
+    @Override
+    public FrozenLabeledGraph<VL, EL> freeze() {
+        return this;
+    }
+
+    /** The vertex labels, indexed by vertex. */
+    private final Object[] _vlabels;
+    /** The edge labels, indexed by edge id. */
+    private final Object[] _elabels;
+}
@@ -1,5 +1,8 @@
 package graph;
 
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
 /** Represents a general unlabeled graph whose vertices are denoted by
  *  positive integers.  A graph may be directed or undirected.  For
  *  an undirected graph, outgoing and incoming edges are the same.
@@ -77,6 +80,43 @@ public abstract class Graph {
         return successors(v);
     }
 
+    /** Calls ACTION on each of my vertices in numerical order.  Unlike
+     *  vertices(), this need not allocate or box anything per vertex. */
+    public void forEachVertex(IntConsumer action) {
+        for (int v : vertices()) {
+            action.accept(v);
+        }
+    }
+
+    /** Calls ACTION on each successor of V, in the same order as
+     *  successors(V).  Does nothing if V is not my vertex.  Unlike
+     *  successors(V), this need not allocate or box anything per edge. */
+    public void forEachSuccessor(int v, IntConsumer action) {
+        for (int w : successors(v)) {
+            action.accept(w);
+        }
+    }
+
+    /** Calls ACTION on each predecessor of V, in the same order as
+     *  predecessors(V).  Does nothing if V is not my vertex. */
+    public void forEachPredecessor(int v, IntConsumer action) {
+        for (int w : predecessors(v)) {
+            action.accept(w);
+        }
+    }
+
+    /** Returns the first predecessor W of V, in the same order as
+     *  predecessors(V), for which TEST(W) is true, or 0 if there is none.
+     *  Like forEachPredecessor, but stops as soon as W is found. */
+    public int findPredecessor(int v, IntPredicate test) {
+        for (int w : predecessors(v)) {
+            if (test.test(w)) {
+                return w;
+            }
+        }
+        return 0;
+    }
+
     /** Returns an iteration over all edges in me.  Edges are returned
      *  as two-element arrays (u, v), which are directed if the graph
      *  is.  The values in the array returned by .next() may have changed
@@ -1,5 +1,8 @@
 package graph;
 
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
 /** A Graph that delegates all its operations to another, preexisting
  *  Graph object.  This is intended to be extended, and selected methods
  *  overridden, as needed.
@@ -86,6 +89,26 @@ public class GraphFilter extends Graph {
         return _G.predecessors(v);
     }
 
+    @Override
+    public void forEachVertex(IntConsumer action) {
+        _G.forEachVertex(action);
+    }
+
+    @Override
+    public void forEachSuccessor(int v, IntConsumer action) {
+        _G.forEachSuccessor(v, action);
+    }
+
+    @Override
+    public void forEachPredecessor(int v, IntConsumer action) {
+        _G.forEachPredecessor(v, action);
+    }
+
+    @Override
+    public int findPredecessor(int v, IntPredicate test) {
+        return _G.findPredecessor(v, test);
+    }
+
     @Override
     public Iteration<int[]> edges() {
         return _G.edges();
@@ -2,13 +2,30 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 
 /**
  * A partial implementation of Graph containing elements common to
  * directed and undirected graphs.
+ * <p>
+ * Storage is indexed by vertex number: a presence bitmap records which
+ * vertex numbers are in use, and each vertex owns primitive arrays of
+ * its successors (and, for directed graphs, predecessors) together with
+ * the ids of the corresponding edges.  Degree queries are therefore
+ * O(1) and successor iteration is O(degree), independent of the total
+ * number of edges.  Edges of an undirected graph are recorded in the
+ * successor arrays of both end points (once for a self edge).  A hashed
+ * index maps each pair of end points to its edge id, so finding an edge
+ * (and hence its label) takes constant time even at vertices of high
+ * degree.
+ * <p>
+ * Adjacency arrays are never modified in place when an edge is removed,
+ * but replaced, so an iteration over successors or predecessors continues
+ * to see the edges present when it was created.
  *
  * @author Zhibo Fan
  */
@@ -22,24 +39,17 @@ abstract class GraphObj extends Graph {
 
     @Override
     public int vertexSize() {
-        return _vertex.size();
+        return _vertexSize;
     }
 
     @Override
     public int maxVertex() {
-        if (_vertex.size() == 0) {
-            return 0;
-        }
-        int max = Integer.MIN_VALUE;
-        for (int v : _vertex) {
-            max = Integer.max(max, v);
-        }
-        return max;
+        return _vertex.length() == 0 ? 0 : _vertex.length() - 1;
     }
 
     @Override
     public int edgeSize() {
-        return _edges.size();
+        return _edgeSize;
     }
 
     @Override
@@ -47,19 +57,10 @@ abstract class GraphObj extends Graph {
 
     @Override
     public int outDegree(int v) {
-        if (!_vertex.contains(v)) {
+        if (!contains(v)) {
             return 0;
         }
-        int rtn = 0;
-        for (int[] edge : _edges) {
-            if (isDirected() && edge[0] == v) {
-                rtn += 1;
-            } else if (!isDirected()
-                    && (edge[0] == v || edge[1] == v)) {
-                rtn += 1;
-            }
-        }
-        return rtn;
+        return _outDeg[v];
     }
 
     @Override
@@ -67,119 +68,147 @@ abstract class GraphObj extends Graph {
 
     @Override
     public boolean contains(int u) {
-        return _vertex.contains(u);
+        return u > 0 && _vertex.get(u);
     }
 
     @Override
     public boolean contains(int u, int v) {
-        if (!(contains(u) && contains(v))) {
-            return false;
-        }
-        for (int[] edge : _edges) {
-            if ((edge[0] == u && edge[1] == v)
-                    || (edge[1] == u && edge[0] == v && !isDirected())) {
-                return true;
-            }
-        }
-        return false;
+        return edgeId(u, v) != 0;
     }
 
     @Override
     public int add() {
-        if (_vertex.size() == 0) {
-            _vertex.add(1);
-            return 1;
-        }
-        int[] sorted = new int[_vertex.size()];
-        for (int i = 0; i < _vertex.size(); i++) {
-            sorted[i] = _vertex.get(i);
-        }
-        Arrays.sort(sorted);
-        if (sorted[0] != 1) {
-            _vertex.add(1);
-            return 1;
-        } else {
-            int last = sorted[0];
-            for (int i = 1; i < _vertex.size(); last = sorted[i++]) {
-                if (sorted[i] > last + 1) {
-                    _vertex.add(last + 1);
-                    return last + 1;
-                }
-            }
+        int v = _vertex.nextClearBit(_firstFree);
+        _firstFree = v + 1;
+        _vertex.set(v);
+        _vertexSize += 1;
+        if (v >= _out.length) {
+            int n = Math.max(v + 1, 2 * _out.length);
+            _out = Arrays.copyOf(_out, n);
+            _outId = Arrays.copyOf(_outId, n);
+            _outDeg = Arrays.copyOf(_outDeg, n);
+            _in = Arrays.copyOf(_in, n);
+            _inId = Arrays.copyOf(_inId, n);
+            _inDeg = Arrays.copyOf(_inDeg, n);
         }
-        int newVertex = sorted[sorted.length - 1] + 1;
-        _vertex.add(newVertex);
-        return newVertex;
+        _out[v] = _outId[v] = _in[v] = _inId[v] = NONE;
+        _outDeg[v] = _inDeg[v] = 0;
+        return v;
     }
 
     @Override
     public int add(int u, int v) {
-        int[] newEdge = new int[]{u, v};
-        if (!(_vertex.contains(u) && _vertex.contains(v))) {
+        if (!(contains(u) && contains(v)) || contains(u, v)) {
             return 0;
         }
-        if (!isDirected() && contains(u, v)) {
-            return 0;
-        } else if (isDirected()) {
-            if (_edges.contains(newEdge)) {
-                return 0;
-            }
+        int e = newEdgeId();
+        _edgeFrom[e] = u;
+        _edgeTo[e] = v;
+        _edgeSize += 1;
+        putEdge(u, v, e);
+        append(_out, _outId, _outDeg, u, v, e);
+        if (isDirected()) {
+            append(_in, _inId, _inDeg, v, u, e);
+        } else if (u != v) {
+            append(_out, _outId, _outDeg, v, u, e);
         }
-        _edges.add(newEdge);
-        return _edges.size();
+        return e;
     }
 
     @Override
     public void remove(int v) {
-        if (_vertex.contains(v)) {
-            _vertex.remove(Integer.valueOf(v));
-            ArrayList<int[]> toRemove = new ArrayList<>();
-            for (int i = 0; i < edgeSize(); i++) {
-                if (_edges.get(i)[0] == v
-                        || _edges.get(i)[1] == v) {
-                    toRemove.add(_edges.get(i));
+        if (!contains(v)) {
+            return;
+        }
+        for (int i = 0; i < _outDeg[v]; i += 1) {
+            int w = _out[v][i];
+            removeEdge(v, w);
+            if (w != v) {
+                if (isDirected()) {
+                    delete(_in, _inId, _inDeg, w, v);
+                } else {
+                    delete(_out, _outId, _outDeg, w, v);
                 }
             }
-            for (int[] edge : toRemove) {
-                _edges.remove(edge);
+            releaseEdgeId(_outId[v][i]);
+        }
+        for (int i = 0; i < _inDeg[v]; i += 1) {
+            int w = _in[v][i];
+            if (w != v) {
+                removeEdge(w, v);
+                delete(_out, _outId, _outDeg, w, v);
+                releaseEdgeId(_inId[v][i]);
             }
         }
+        _out[v] = _outId[v] = _in[v] = _inId[v] = NONE;
+        _outDeg[v] = _inDeg[v] = 0;
+        _vertex.clear(v);
+        _vertexSize -= 1;
+        _firstFree = Math.min(_firstFree, v);
     }
 
     @Override
     public void remove(int u, int v) {
-        int[] edge = new int[]{u, v};
-        if (isDirected() && _edges.contains(edge)) {
-            _edges.remove(edge);
-        } else if (!isDirected()) {
-            int[] anotherEdge = new int[]{v, u};
-            if (_edges.contains(edge)) {
-                _edges.remove(edge);
-            }
-            if (_edges.contains(anotherEdge)) {
-                _edges.remove(anotherEdge);
-            }
+        int e = edgeId(u, v);
+        if (e == 0) {
+            return;
         }
+        int from = _edgeFrom[e], to = _edgeTo[e];
+        removeEdge(from, to);
+        delete(_out, _outId, _outDeg, from, to);
+        if (isDirected()) {
+            delete(_in, _inId, _inDeg, to, from);
+        } else if (from != to) {
+            delete(_out, _outId, _outDeg, to, from);
+        }
+        releaseEdgeId(e);
     }
 
     @Override
     public Iteration<Integer> vertices() {
-        return new VertexIteration();
+        return Iteration.iteration(_vertex);
     }
 
     @Override
     public Iteration<Integer> successors(int v) {
-        return new VertexIteration(true, v);
+        if (!contains(v)) {
+            return Iteration.iteration(NONE, 0, 0);
+        }
+        return Iteration.iteration(_out[v], 0, _outDeg[v]);
     }
 
     @Override
     public abstract Iteration<Integer> predecessors(int v);
 
+    @Override
+    public void forEachVertex(IntConsumer action) {
+        for (int v = _vertex.nextSetBit(1); v >= 0;
+             v = _vertex.nextSetBit(v + 1)) {
+            action.accept(v);
+        }
+    }
+
+    @Override
+    public void forEachSuccessor(int v, IntConsumer action) {
+        if (contains(v)) {
+            int[] adj = _out[v];
+            for (int i = 0, n = _outDeg[v]; i < n; i += 1) {
+                action.accept(adj[i]);
+            }
+        }
+    }
+
     @Override
     public Iteration<int[]> edges() {
         return new EdgeIteration();
     }
 
+    /** Returns a compact, immutable copy of my current structure, which
+     *  preserves my edge ids. */
+    public FrozenGraph freeze() {
+        return new FrozenGraph(this);
+    }
+
     @Override
     protected void checkMyVertex(int v) {
         if (!contains(v)) {
@@ -189,149 +218,222 @@ abstract class GraphObj extends Graph {
 
     @Override
     protected int edgeId(int u, int v) {
-        if (!isDirected()) {
-            for (int i = 0; i < edgeSize(); i++) {
-                if ((_edges.get(i)[0] == u && _edges.get(i)[1] == v)
-                        || (_edges.get(i)[0] == v && _edges.get(i)[1] == u)) {
-                    return i + 1;
-                }
-            }
+        if (isDirected() || u <= v) {
+            return _edgeIndex.get(u, v);
         } else {
-            int[] edge = new int[]{u, v};
-            for (int i = 0; i < edgeSize(); i++) {
-                if (_edges.get(i)[0] == edge[0]
-                        && _edges.get(i)[1] == edge[1]) {
-                    return i + 1;
-                }
+            return _edgeIndex.get(v, u);
+        }
+    }
+
+    /** Returns an iteration over the predecessors of V recorded in my
+     *  incoming adjacency arrays (directed graphs only). */
+    Iteration<Integer> incoming(int v) {
+        if (!contains(v)) {
+            return Iteration.iteration(NONE, 0, 0);
+        }
+        return Iteration.iteration(_in[v], 0, _inDeg[v]);
+    }
+
+    /** Calls ACTION on each predecessor of V recorded in my incoming
+     *  adjacency arrays (directed graphs only). */
+    void forEachIncoming(int v, IntConsumer action) {
+        if (contains(v)) {
+            int[] adj = _in[v];
+            for (int i = 0, n = _inDeg[v]; i < n; i += 1) {
+                action.accept(adj[i]);
+            }
+        }
+    }
+
+    /** Returns the first of ADJ[0 .. N-1] that satisfies TEST, or 0. */
+    static int find(int[] adj, int n, IntPredicate test) {
+        for (int i = 0; i < n; i += 1) {
+            if (test.test(adj[i])) {
+                return adj[i];
             }
         }
         return 0;
     }
 
-    /**
-     * Iteration class of vertex.
-     */
-    protected class VertexIteration extends Iteration<Integer> {
-        /**
-         * Initialize an iterator of all vertices.
-         */
-        public VertexIteration() {
-            iter = _vertex.iterator();
+    /** Returns the number of incoming adjacency entries of V. */
+    int incomingDegree(int v) {
+        return contains(v) ? _inDeg[v] : 0;
+    }
+
+    /** Returns the largest edge id that has ever been handed out. */
+    int maxEdgeId() {
+        return _maxEdgeId;
+    }
+
+    /** Record E as the id of edge (U, V) in _edgeIndex. */
+    private void putEdge(int u, int v, int e) {
+        if (isDirected() || u <= v) {
+            _edgeIndex.put(u, v, e);
+        } else {
+            _edgeIndex.put(v, u, e);
         }
+    }
 
-        /**
-         * Initialize an iterator of a successor or predecessor of a vertex.
-         *
-         * @param isFrom is it a successor or predecessor iterator
-         * @param u      the vertex
-         */
-        public VertexIteration(boolean isFrom, int u) {
-            if (!isDirected()) {
-                for (int[] edge : _edges) {
-                    if (edge[0] == u) {
-                        wrapped.add(edge[1]);
-                    } else if (edge[1] == u) {
-                        wrapped.add(edge[0]);
-                    }
-                }
-            } else {
-                for (int[] edge : _edges) {
-                    if (isFrom && edge[0] == u) {
-                        wrapped.add(edge[1]);
-                    } else if (!isFrom && edge[1] == u) {
-                        wrapped.add(edge[0]);
-                    }
-                }
-            }
-            iter = wrapped.iterator();
+    /** Remove edge (U, V) from _edgeIndex. */
+    private void removeEdge(int u, int v) {
+        if (isDirected() || u <= v) {
+            _edgeIndex.remove(u, v);
+        } else {
+            _edgeIndex.remove(v, u);
         }
+    }
 
-        @Override
-        public boolean hasNext() {
-            return iter.hasNext();
+    /** Returns an unused edge id, preferring previously released ones. */
+    private int newEdgeId() {
+        if (_freeIdCount > 0) {
+            _freeIdCount -= 1;
+            return _freeIds[_freeIdCount];
         }
+        _maxEdgeId += 1;
+        if (_maxEdgeId >= _edgeFrom.length) {
+            int n = 2 * _edgeFrom.length;
+            _edgeFrom = Arrays.copyOf(_edgeFrom, n);
+            _edgeTo = Arrays.copyOf(_edgeTo, n);
+        }
+        return _maxEdgeId;
+    }
 
-        @Override
-        public Integer next() {
-            return iter.next();
+    /** Mark edge id E as unused, making it available for reuse. */
+    private void releaseEdgeId(int e) {
+        _edgeFrom[e] = _edgeTo[e] = 0;
+        _edgeSize -= 1;
+        if (_freeIdCount == _freeIds.length) {
+            _freeIds = Arrays.copyOf(_freeIds, 2 * _freeIds.length);
         }
+        _freeIds[_freeIdCount] = e;
+        _freeIdCount += 1;
+    }
 
-        /**
-         * Wrapped array.
-         */
-        private ArrayList<Integer> wrapped = new ArrayList<>();
+    /** Append vertex W with edge id E to the adjacency of V, where ADJ,
+     *  IDS, and DEG are the parallel adjacency tables to modify. */
+    private static void append(int[][] adj, int[][] ids, int[] deg,
+                               int v, int w, int e) {
+        int n = deg[v];
+        if (n == adj[v].length) {
+            int size = Math.max(INITIAL_DEGREE, 2 * n);
+            adj[v] = Arrays.copyOf(adj[v], size);
+            ids[v] = Arrays.copyOf(ids[v], size);
+        }
+        adj[v][n] = w;
+        ids[v][n] = e;
+        deg[v] = n + 1;
+    }
 
-        /**
-         * Wrapped iterator of the arraylist.
-         */
-        private Iterator<Integer> iter;
+    /** Remove vertex W from the adjacency of V, where ADJ, IDS, and DEG
+     *  are the parallel adjacency tables to modify.  The remaining entries
+     *  keep their order and are copied into fresh arrays. */
+    private static void delete(int[][] adj, int[][] ids, int[] deg,
+                               int v, int w) {
+        int n = deg[v];
+        for (int i = 0; i < n; i += 1) {
+            if (adj[v][i] == w) {
+                int[] newAdj = new int[adj[v].length];
+                int[] newIds = new int[adj[v].length];
+                System.arraycopy(adj[v], 0, newAdj, 0, i);
+                System.arraycopy(adj[v], i + 1, newAdj, i, n - i - 1);
+                System.arraycopy(ids[v], 0, newIds, 0, i);
+                System.arraycopy(ids[v], i + 1, newIds, i, n - i - 1);
+                adj[v] = newAdj;
+                ids[v] = newIds;
+                deg[v] = n - 1;
+                return;
+            }
+        }
     }
 
     /**
-     * Iteration for edges.
+     * Iteration for edges, in order of edge id.
      */
     protected class EdgeIteration extends Iteration<int[]> {
         /**
          * Initialize an iterator of all edges.
          */
         public EdgeIteration() {
-            iter = _edges.iterator();
-        }
-
-        /**
-         * Initialize an iterator of in-degree or out-degree edges.
-         *
-         * @param isFrom from the vertex u or to u
-         * @param u      the vertex
-         */
-        public EdgeIteration(boolean isFrom, int u) {
-            if (!isDirected()) {
-                for (int[] edge : _edges) {
-                    if (edge[0] == u || edge[1] == u) {
-                        wantedEdges.add(edge);
-                    }
-                }
-            } else {
-                for (int[] edge : _edges) {
-                    if (isFrom && edge[0] == u) {
-                        wantedEdges.add(edge);
-                    } else if (!isFrom && edge[1] == u) {
-                        wantedEdges.add(edge);
-                    }
-                }
-            }
-            iter = wantedEdges.iterator();
+            advance();
         }
 
         @Override
         public int[] next() {
-            return iter.next();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            result[0] = _edgeFrom[id];
+            result[1] = _edgeTo[id];
+            advance();
+            return result;
         }
 
         @Override
         public boolean hasNext() {
-            return iter.hasNext();
+            return id <= _maxEdgeId;
+        }
+
+        /** Move id to the next edge id in use. */
+        private void advance() {
+            for (id += 1; id <= _maxEdgeId && _edgeFrom[id] == 0; id += 1) {
+                continue;
+            }
         }
 
         /**
-         * Wrapped iterator.
+         * The id of the next edge to deliver.
          */
-        private Iterator<int[]> iter;
+        private int id;
 
         /**
-         * A list of legal edges.
+         * The array returned by each call to next().
          */
-        private ArrayList<int[]> wantedEdges = new ArrayList<>();
+        private final int[] result = new int[2];
     }
 
-    /**
-     * A list of edges.
-     */
-    protected ArrayList<int[]> _edges = new ArrayList<>();
+    /** Adjacency array shared by all vertices with no neighbors. */
+    static final int[] NONE = new int[0];
+
+    /** Capacity of the first adjacency array allocated for a vertex. */
+    private static final int INITIAL_DEGREE = 4;
 
     /**
-     * A list of vertex.
+     * Bitmap of vertex numbers in use.
      */
-    protected ArrayList<Integer> _vertex = new ArrayList<>();
+    protected BitSet _vertex = new BitSet();
+
+    /** No vertex number less than this is unused. */
+    private int _firstFree = 1;
+
+    /** Number of vertices. */
+    private int _vertexSize;
+
+    /** Number of edges. */
+    private int _edgeSize;
+
+    /** _out[v][0 .. _outDeg[v]-1] are the successors of vertex v, in order
+     *  of insertion, and _outId[v] holds the ids of the corresponding
+     *  edges. */
+    int[][] _out = new int[1][], _outId = new int[1][];
+    /** Number of successors of each vertex. */
+    int[] _outDeg = new int[1];
+    /** Like _out and _outId for the predecessors of each vertex.  Unused
+     *  in undirected graphs. */
+    int[][] _in = new int[1][], _inId = new int[1][];
+    /** Number of predecessors of each vertex (directed graphs only). */
+    int[] _inDeg = new int[1];
+
+    /** End points of each edge, indexed by edge id.  Both are 0 for an
+     *  unused id. */
+    int[] _edgeFrom = new int[16], _edgeTo = new int[16];
+    /** Ids of my edges, indexed by end points (in increasing order, for
+     *  undirected graphs). */
+    final EdgeIndex _edgeIndex = new EdgeIndex();
+    /** Largest edge id handed out so far. */
+    private int _maxEdgeId;
+    /** Stack of released edge ids available for reuse. */
+    private int[] _freeIds = new int[16];
+    /** Number of entries in _freeIds. */
+    private int _freeIdCount;
 
 }
@@ -0,0 +1,540 @@
+package graph;
+
+import java.lang.management.ManagementFactory;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/** Timing tests for the graph package.  Not part of the package proper.
+ *  Each test prints a small table; the times of per-vertex queries
+ *  should depend on vertex degree, but not on the total size of the
+ *  graph.
+ *  @author Zhibo Fan
+ */
+public class GraphSpeedTest {
+
+    /** Number of random queries timed per table entry. */
+    static final int QUERIES = 200000;
+
+    /** Returns a directed graph with N vertices, each of which has D
+     *  successors chosen at random using RAND. */
+    static DirectedGraph randomGraph(int n, int d, Random rand) {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < n; i += 1) {
+            g.add();
+        }
+        for (int u = 1; u <= n; u += 1) {
+            while (g.outDegree(u) < d) {
+                g.add(u, 1 + rand.nextInt(n));
+            }
+        }
+        return g;
+    }
+
+    /** Returns the average time in nanoseconds for one query of
+     *  successors, outDegree, and contains on a random vertex of G. */
+    static double timeQueries(Graph g, Random rand) {
+        int n = g.maxVertex();
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i += 1) {
+            int u = 1 + rand.nextInt(n);
+            sum += g.outDegree(u);
+            for (int v : g.successors(u)) {
+                sum += v;
+            }
+            if (g.contains(u, 1 + rand.nextInt(n))) {
+                sum += 1;
+            }
+        }
+        double result = (double) (System.nanoTime() - start) / QUERIES;
+        _sink += sum;
+        return result;
+    }
+
+    /** Prints the query times for a graph of N vertices of degree D, using
+     *  RAND for random choices. */
+    static void printQueryTimes(int n, int d, Random rand) {
+        DirectedGraph g = randomGraph(n, d, rand);
+        timeQueries(g, rand);
+        double mutable = timeQueries(g, rand);
+        FrozenGraph f = g.freeze();
+        timeQueries(f, rand);
+        double frozen = timeQueries(f, rand);
+        System.out.printf("%10d %8d %12d %12.1f %12.1f%n",
+                          n, d, g.edgeSize(), mutable, frozen);
+    }
+
+    /** Returns the average time in nanoseconds to find the label of a
+     *  random edge among the N edges whose end points are FROM[0 .. N-1]
+     *  and TO[0 .. N-1] in G, using RAND. */
+    static double timeLabels(LabeledGraph<Integer, Integer> g, int[] from,
+                             int[] to, int n, Random rand) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i += 1) {
+            int k = rand.nextInt(n);
+            sum += g.getLabel(from[k], to[k]);
+        }
+        double result = (double) (System.nanoTime() - start) / QUERIES;
+        _sink += sum;
+        return result;
+    }
+
+    /** Prints edge-label lookup times for a graph of N vertices of degree
+     *  D, using RAND for random choices. */
+    static void printLabelTimes(int n, int d, Random rand) {
+        LabeledGraph<Integer, Integer> g =
+            new LabeledGraph<>(randomGraph(n, d, rand));
+        int[] from = new int[g.edgeSize()], to = new int[g.edgeSize()];
+        int k = 0;
+        for (int[] edge : g.edges()) {
+            from[k] = edge[0];
+            to[k] = edge[1];
+            g.setLabel(edge[0], edge[1], k);
+            k += 1;
+        }
+        timeLabels(g, from, to, k, rand);
+        System.out.printf("%10d %8d %12d %12.1f%n", n, d, k,
+                          timeLabels(g, from, to, k, rand));
+    }
+
+    /** Returns the number of bytes allocated so far by this thread. */
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Prints the bytes allocated per edge when enumerating all
+     *  successors of G through successors() and forEachSuccessor, and
+     *  when performing a complete breadth-first traversal of G. */
+    static void printAllocations(Graph g) {
+        long[] sum = new long[1];
+        IntConsumer addSuccessor = w -> sum[0] += w;
+        IntConsumer sweep = v -> g.forEachSuccessor(v, addSuccessor);
+        Traversal bfs = new BreadthFirstTraversal(g);
+        for (int k = 0; k < 2; k += 1) {
+            long start = allocatedBytes();
+            for (int v : g.vertices()) {
+                for (int w : g.successors(v)) {
+                    sum[0] += w;
+                }
+            }
+            long boxed = allocatedBytes() - start;
+            start = allocatedBytes();
+            g.forEachVertex(sweep);
+            long primitive = allocatedBytes() - start;
+            bfs.clear();
+            start = allocatedBytes();
+            bfs.traverse(1);
+            long traversal = allocatedBytes() - start;
+            if (k == 1) {
+                System.out.printf("%10d %12d %12.2f %12.2f %12.2f%n",
+                                  g.vertexSize(), g.edgeSize(),
+                                  (double) boxed / g.edgeSize(),
+                                  (double) primitive / g.edgeSize(),
+                                  (double) traversal / g.edgeSize());
+            }
+        }
+        _sink += sum[0];
+    }
+
+    /** Prints the time per vertex for complete breadth-first and
+     *  depth-first traversals of G. */
+    static void printTraversalTimes(Graph g) {
+        Traversal bfs = new BreadthFirstTraversal(g);
+        Traversal dfs = new DepthFirstTraversal(g);
+        double[] times = new double[2];
+        for (int k = 0; k < 2; k += 1) {
+            Traversal t = k == 0 ? bfs : dfs;
+            t.traverse(1);
+            t.clear();
+            long start = System.nanoTime();
+            t.traverse(1);
+            times[k] = (double) (System.nanoTime() - start) / g.vertexSize();
+        }
+        System.out.printf("%10d %12d %12.1f %12.1f%n", g.vertexSize(),
+                          g.edgeSize(), times[0], times[1]);
+    }
+
+    /** Prints the time in milliseconds for a complete breadth-first
+     *  traversal of G, labeled NAME, done sequentially and then in
+     *  parallel with 1, 2, 4, ... threads, up to the number of available
+     *  processors. */
+    static void printParallelTimes(String name, Graph g) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        BreadthFirstTraversal bfs = new BreadthFirstTraversal(g);
+        System.out.printf("%-8s %10d %12d", name, g.vertexSize(),
+                          g.edgeSize());
+        for (int p = 0; p <= cores; p = p == 0 ? 1 : 2 * p) {
+            double best = Double.MAX_VALUE;
+            for (int k = 0; k < 3; k += 1) {
+                bfs.clear();
+                long start = System.nanoTime();
+                if (p == 0) {
+                    bfs.traverse(1);
+                } else {
+                    bfs.traverseParallel(1, p);
+                }
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf(" %8.1f", best);
+        }
+        System.out.println();
+    }
+
+    /** Returns an undirected K x K grid graph. */
+    static UndirectedGraph gridGraph(int k) {
+        UndirectedGraph g = new UndirectedGraph();
+        for (int i = 0; i < k * k; i += 1) {
+            g.add();
+        }
+        for (int r = 0; r < k; r += 1) {
+            for (int c = 0; c < k; c += 1) {
+                int v = r * k + c + 1;
+                if (c + 1 < k) {
+                    g.add(v, v + 1);
+                }
+                if (r + 1 < k) {
+                    g.add(v, v + k);
+                }
+            }
+        }
+        return g;
+    }
+
+    /** Shortest paths in a graph with pseudo-random edge weights. */
+    static class TimedPaths extends SimpleShortestPaths {
+        /** Paths in G from SOURCE, using an IndexedMinHeap fringe iff
+         *  HEAP and otherwise the TreeSet-based MyPriorityQueue. */
+        TimedPaths(Graph g, int source, boolean heap) {
+            this(g, source, 0, heap);
+        }
+
+        /** A path in G from SOURCE to DEST, using an IndexedMinHeap
+         *  fringe iff HEAP. */
+        TimedPaths(Graph g, int source, int dest, boolean heap) {
+            super(g, source, dest);
+            _heap = heap;
+        }
+
+        @Override
+        protected double getWeight(int u, int v) {
+            int h = Math.min(u, v) * 31 + Math.max(u, v);
+            h = (h ^ (h >>> 16)) * 0x45d9f3b;
+            return 1 + ((h ^ (h >>> 16)) & 3);
+        }
+
+        @Override
+        protected Queue<Integer> newFringe() {
+            return _heap ? super.newFringe() : new MyPriorityQueue();
+        }
+
+        /** True iff I use an IndexedMinHeap. */
+        private final boolean _heap;
+    }
+
+    /** Prints the time in milliseconds for single-source shortest paths
+     *  from vertex 1 of G, labeled NAME, with both fringe types. */
+    static void printPathTimes(String name, Graph g) {
+        double[] times = new double[2];
+        for (int k = 0; k < 4; k += 1) {
+            ShortestPaths sp = new TimedPaths(g, 1, k % 2 == 0);
+            long start = System.nanoTime();
+            sp.setPaths();
+            times[k % 2] = (System.nanoTime() - start) / 1e6;
+        }
+        System.out.printf("%-12s %10d %12d %12.1f %12.1f%n", name,
+                          g.vertexSize(), g.edgeSize(), times[0], times[1]);
+    }
+
+    /** Delta-stepping shortest paths with the same edge weights as
+     *  TimedPaths. */
+    static class TimedDeltaPaths extends DeltaSteppingShortestPaths {
+        /** Paths in G from SOURCE with buckets of width DELTA, computed on
+         *  PARALLELISM threads. */
+        TimedDeltaPaths(Graph g, int source, double delta, int parallelism) {
+            super(g, source, delta, parallelism);
+        }
+
+        @Override
+        protected double getWeight(int u, int v) {
+            int h = Math.min(u, v) * 31 + Math.max(u, v);
+            h = (h ^ (h >>> 16)) * 0x45d9f3b;
+            return 1 + ((h ^ (h >>> 16)) & 3);
+        }
+    }
+
+    /** Prints the best time in milliseconds for single-source shortest
+     *  paths from vertex 1 of G, labeled NAME, using Dijkstra's algorithm
+     *  and then delta-stepping with bucket width DELTA on 1, 2, 4, ...
+     *  threads, up to the number of available processors. */
+    static void printDeltaTimes(String name, Graph g, double delta) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %10d %12d %6.1f", name, g.vertexSize(),
+                          g.edgeSize(), delta);
+        for (int p = 0; p <= cores; p = p == 0 ? 1 : 2 * p) {
+            double best = Double.MAX_VALUE;
+            for (int k = 0; k < 3; k += 1) {
+                ShortestPaths sp = p == 0 ? new TimedPaths(g, 1, true)
+                    : new TimedDeltaPaths(g, 1, delta, p);
+                long start = System.nanoTime();
+                sp.setPaths();
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf(" %8.1f", best);
+        }
+        System.out.println();
+    }
+
+    /** Shortest paths between two vertices of a K x K grid graph such as
+     *  gridGraph returns, with the same edge weights as TimedPaths. */
+    static class GridPaths extends TimedPaths {
+        /** A path in G from SOURCE to DEST.  Uses straight-line distance
+         *  estimates iff ASTAR, and searches from both ends iff BOTH. */
+        GridPaths(Graph g, int k, int source, int dest,
+                  boolean astar, boolean both) {
+            super(g, source, dest, true);
+            _k = k;
+            _astar = astar;
+            _both = both;
+        }
+
+        @Override
+        protected double estimatedDistance(int v) {
+            return _astar ? dist(v, getDest()) : 0.0;
+        }
+
+        @Override
+        protected double estimatedDistanceFromSource(int v) {
+            return _astar ? dist(v, getSource()) : 0.0;
+        }
+
+        @Override
+        protected boolean bidirectional() {
+            return _both;
+        }
+
+        /** Returns the straight-line distance between grid vertices V
+         *  and W. */
+        private double dist(int v, int w) {
+            int dr = (v - 1) / _k - (w - 1) / _k,
+                dc = (v - 1) % _k - (w - 1) % _k;
+            return Math.sqrt(dr * dr + dc * dc);
+        }
+
+        /** Grid size. */
+        private final int _k;
+        /** Search options. */
+        private final boolean _astar, _both;
+    }
+
+    /** Shortest paths whose edge weights are the labels of a graph. */
+    static class LabeledPaths extends SimpleShortestPaths {
+        /** A path in G, a K x K grid, from SOURCE to DEST, using
+         *  straight-line distance estimates. */
+        LabeledPaths(LabeledGraph<Integer, Double> g, int k,
+                     int source, int dest) {
+            super(g, source, dest);
+            _g = g;
+            _k = k;
+        }
+
+        @Override
+        protected double getWeight(int u, int v) {
+            return _g.getLabel(u, v);
+        }
+
+        @Override
+        protected double estimatedDistance(int v) {
+            int w = getDest();
+            int dr = (v - 1) / _k - (w - 1) / _k,
+                dc = (v - 1) % _k - (w - 1) % _k;
+            return Math.sqrt(dr * dr + dc * dc);
+        }
+
+        /** The graph. */
+        private final LabeledGraph<Integer, Double> _g;
+        /** Grid size. */
+        private final int _k;
+    }
+
+    /** Returns the number of random point-to-point queries per second
+     *  that THREADS threads complete on the current versions of GRAPH, a
+     *  K x K grid, during MILLIS milliseconds, while, iff WRITING, another
+     *  thread publishes a new version with changed weights every 10 ms. */
+    static double timeThroughput(VersionedGraph<Integer, Double> graph,
+                                 int k, int threads, boolean writing,
+                                 int millis) throws InterruptedException {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong queries = new AtomicLong();
+        Thread[] readers = new Thread[threads];
+        for (int i = 0; i < threads; i += 1) {
+            Random rand = new Random(i);
+            readers[i] = new Thread(() -> {
+                while (!done.get()) {
+                    LabeledPaths paths =
+                        new LabeledPaths(graph.current(), k,
+                                         1 + rand.nextInt(k * k),
+                                         1 + rand.nextInt(k * k));
+                    paths.setPaths();
+                    queries.incrementAndGet();
+                }
+            });
+        }
+        Thread writer = new Thread(() -> {
+            Random rand = new Random(k);
+            while (writing && !done.get()) {
+                graph.update((g) -> {
+                    for (int i = 0; i < 100; i += 1) {
+                        int v = 1 + rand.nextInt(k * k - 1);
+                        if (g.contains(v, v + 1)) {
+                            g.setLabel(v, v + 1, 1 + rand.nextDouble());
+                        }
+                    }
+                });
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException excp) {
+                    return;
+                }
+            }
+        });
+        long start = System.nanoTime();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        Thread.sleep(millis);
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        writer.join();
+        return queries.get() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /** Prints query throughput on a K x K grid with 1, 2, 4, and 8 reader
+     *  threads, with and without a concurrent writer. */
+    static void printThroughput(int k) throws InterruptedException {
+        LabeledGraph<Integer, Double> g = new LabeledGraph<>(gridGraph(k));
+        Random rand = new Random(k);
+        for (int[] edge : g.edges()) {
+            g.setLabel(edge[0], edge[1], 1 + rand.nextDouble());
+        }
+        VersionedGraph<Integer, Double> graph = new VersionedGraph<>(g);
+        timeThroughput(graph, k, 1, false, 500);
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            double alone = timeThroughput(graph, k, threads, false, 1000);
+            long before = graph.version();
+            double writing = timeThroughput(graph, k, threads, true, 1000);
+            System.out.printf("%10d %8d %12.0f %12.0f %10d%n",
+                              g.vertexSize(), threads, alone, writing,
+                              graph.version() - before);
+        }
+    }
+
+    /** Prints the average number of vertices settled and time for
+     *  QUERIES random point-to-point searches in a K x K grid graph G with
+     *  the four combinations of heuristic and direction. */
+    static void printPointToPoint(Graph g, int k, int queries, Random rand) {
+        int[][] pairs = new int[queries][2];
+        for (int[] pair : pairs) {
+            pair[0] = 1 + rand.nextInt(k * k);
+            pair[1] = 1 + rand.nextInt(k * k);
+        }
+        String[] names = { "Dijkstra", "bidirectional Dijkstra",
+                           "A*", "bidirectional A*" };
+        for (int m = 0; m < 4; m += 1) {
+            long settled = 0;
+            long start = System.nanoTime();
+            for (int[] pair : pairs) {
+                ShortestPaths sp = new GridPaths(g, k, pair[0], pair[1],
+                                                 m >= 2, m % 2 == 1);
+                sp.setPaths();
+                settled += sp.settledCount();
+            }
+            System.out.printf("%-24s %10d %12d %12.2f%n", names[m],
+                              g.vertexSize(), settled / queries,
+                              (System.nanoTime() - start) / 1e6 / queries);
+        }
+    }
+
+    /** Run the timing tests.  ARGS is unused. */
+    public static void main(String... args) throws InterruptedException {
+        Random rand = new Random(61);
+        System.out.printf("Per-vertex query times (ns)%n");
+        System.out.printf("%10s %8s %12s %12s %12s%n",
+                          "vertices", "degree", "edges", "mutable", "frozen");
+        for (int n = 1000; n <= 1000000; n *= 10) {
+            printQueryTimes(n, 8, rand);
+        }
+        for (int d = 2; d <= 128; d *= 4) {
+            printQueryTimes(100000, d, rand);
+        }
+        System.out.printf("%nEdge label lookup times (ns)%n");
+        System.out.printf("%10s %8s %12s %12s%n",
+                          "vertices", "degree", "edges", "getLabel");
+        for (int n = 1000; n <= 1000000; n *= 10) {
+            printLabelTimes(n, 4, rand);
+        }
+        for (int d = 16; d <= 1024; d *= 4) {
+            printLabelTimes(4096, d, rand);
+        }
+        System.out.printf("%nComplete traversal time per vertex (ns)%n");
+        System.out.printf("%10s %12s %12s %12s%n", "vertices", "edges",
+                          "BFS", "DFS");
+        for (int n = 1000; n <= 1000000; n *= 10) {
+            printTraversalTimes(randomGraph(n, 4, rand));
+        }
+        System.out.printf("%nBreadth-first traversal time (ms): sequential,"
+                          + " then parallel with 1, 2, 4, ... threads%n");
+        System.out.printf("%-8s %10s %12s%n", "graph", "vertices", "edges");
+        for (int n = 100000; n <= 1000000; n *= 10) {
+            printParallelTimes("random", randomGraph(n, 8, rand));
+        }
+        printParallelTimes("grid", gridGraph(1000));
+        System.out.printf("%nSingle-source shortest paths (ms)%n");
+        System.out.printf("%-12s %10s %12s %12s %12s%n", "graph", "vertices",
+                          "edges", "heap", "TreeSet");
+        for (int k = 100; k <= 400; k *= 2) {
+            printPathTimes("grid", gridGraph(k));
+        }
+        for (int n = 10000; n <= 1000000; n *= 10) {
+            printPathTimes("random", randomGraph(n, 4, rand));
+        }
+        System.out.printf("%nSingle-source shortest paths (ms): Dijkstra,"
+                          + " then delta-stepping with 1, 2, 4, ..."
+                          + " threads%n");
+        System.out.printf("%-8s %10s %12s %6s%n", "graph", "vertices",
+                          "edges", "delta");
+        for (double delta = 1; delta <= 4; delta *= 2) {
+            printDeltaTimes("grid", gridGraph(400), delta);
+            printDeltaTimes("random", randomGraph(1000000, 4, rand), delta);
+        }
+        System.out.printf("%nPoint-to-point searches on grids%n");
+        System.out.printf("%-24s %10s %12s %12s%n", "search", "vertices",
+                          "settled", "ms/query");
+        for (int k = 100; k <= 400; k *= 2) {
+            printPointToPoint(gridGraph(k), k, 20, rand);
+        }
+        System.out.printf("%nA* queries per second on a shared, versioned"
+                          + " grid: readers alone, then with a writer%n");
+        System.out.printf("%10s %8s %12s %12s %10s%n", "vertices",
+                          "threads", "readers", "with writer", "versions");
+        printThroughput(100);
+        System.out.printf("%nBytes allocated per edge%n");
+        System.out.printf("%10s %12s %12s %12s %12s%n", "vertices",
+                          "edges", "successors", "forEach", "BFS");
+        for (int n = 1000; n <= 100000; n *= 10) {
+            printAllocations(randomGraph(n, 8, rand));
+        }
+    }
+
+    /** Accumulates query results so that they are not optimized away. */
+    private static long _sink;
+
+}
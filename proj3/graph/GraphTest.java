@@ -1,5 +1,10 @@
 package graph;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -169,6 +174,285 @@ public class GraphTest {
         assertFalse(vIter.hasNext());
     }
 
+    @Test
+    public void removeEdgeTest() {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 0; i < 4; i++) {
+            g.add();
+        }
+        assertEquals(1, g.add(1, 2));
+        assertEquals(2, g.add(1, 3));
+        assertEquals(3, g.add(3, 1));
+        assertEquals(0, g.add(1, 2));
+        Iteration<Integer> before = g.successors(1);
+        g.remove(1, 2);
+        assertFalse(g.contains(1, 2));
+        assertEquals(1, g.outDegree(1));
+        assertEquals(0, g.inDegree(2));
+        assertEquals(2, g.edgeSize());
+        assertEquals(Integer.valueOf(2), before.next());
+        assertEquals(1, g.add(2, 4));
+        g.remove(3);
+        assertEquals(1, g.edgeSize());
+        assertEquals(0, g.outDegree(1));
+        assertEquals(0, g.inDegree(1));
+        assertEquals(3, g.add());
+        assertEquals(4, g.maxVertex());
+    }
+
+    @Test
+    public void freezeTest() {
+        UndirectedGraph g = (UndirectedGraph) generateGraph();
+        g.add(8, 8);
+        FrozenGraph f = g.freeze();
+        assertEquals(g.vertexSize(), f.vertexSize());
+        assertEquals(g.edgeSize(), f.edgeSize());
+        assertEquals(g.maxVertex(), f.maxVertex());
+        for (int v : g.vertices()) {
+            assertEquals(g.degree(v), f.degree(v));
+            Iteration<Integer> expected = g.successors(v);
+            for (int w : f.successors(v)) {
+                assertEquals(expected.next(), Integer.valueOf(w));
+                assertEquals(g.edgeId(v, w), f.edgeId(v, w));
+            }
+            assertFalse(expected.hasNext());
+        }
+        g.remove(1);
+        assertTrue(f.contains(1, 2));
+        assertEquals(4, f.degree(1));
+    }
+
+    @Test
+    public void edgeIndexTest() {
+        Random rand = new Random(15);
+        for (GraphObj g : new GraphObj[] {
+                new DirectedGraph(), new UndirectedGraph() }) {
+            LabeledGraph<Integer, String> labeled = new LabeledGraph<>(g);
+            HashMap<Long, String> expected = new HashMap<>();
+            for (int i = 0; i < 30; i += 1) {
+                labeled.add(i + 1);
+            }
+            for (int k = 0; k < 20000; k += 1) {
+                int u = rand.nextInt(32), v = rand.nextInt(32);
+                int op = rand.nextInt(10);
+                if (op < 6) {
+                    if (labeled.add(u, v, "e" + k) != 0
+                        || g.contains(u, v)) {
+                        expected.put(key(g, u, v), "e" + k);
+                    }
+                } else if (op < 9) {
+                    labeled.remove(u, v);
+                    expected.remove(key(g, u, v));
+                } else if (g.contains(u)) {
+                    for (int w = 0; w < 32; w += 1) {
+                        expected.remove(key(g, u, w));
+                        expected.remove(key(g, w, u));
+                    }
+                    labeled.remove(u);
+                    assertEquals(u, labeled.add((Integer) u));
+                }
+            }
+            assertEquals(expected.size(), g.edgeSize());
+            for (int u = 0; u < 32; u += 1) {
+                for (int v = 0; v < 32; v += 1) {
+                    String label = expected.get(key(g, u, v));
+                    assertEquals(label != null, g.contains(u, v));
+                    assertEquals(label != null, g.freeze().contains(u, v));
+                    if (label != null) {
+                        assertEquals(label, labeled.getLabel(u, v));
+                        assertEquals(v, labeled.getSuccessor(u, label));
+                    }
+                }
+            }
+            for (int[] edge : g.edges()) {
+                assertTrue(expected.containsKey(key(g, edge[0], edge[1])));
+            }
+        }
+    }
+
+    /** Returns a key for edge (U, V) of G that is the same for (V, U) if
+     *  G is undirected. */
+    private static long key(Graph g, int u, int v) {
+        if (!g.isDirected() && u > v) {
+            return 1000L * v + u;
+        }
+        return 1000L * u + v;
+    }
+
+    @Test
+    public void frozenLabelsTest() {
+        LabeledGraph<String, Integer> g = new LabeledGraph<>(generateGraph());
+        for (int v : g.vertices()) {
+            g.setLabel(v, "v" + v);
+        }
+        g.setLabel(1, 2, 12);
+        g.setLabel(7, 3, 37);
+        FrozenLabeledGraph<String, Integer> f = g.freeze();
+        g.setLabel(1, "changed");
+        g.setLabel(1, 2, 0);
+        g.remove(7);
+        assertEquals("v1", f.getLabel(1));
+        assertEquals(Integer.valueOf(12), f.getLabel(2, 1));
+        assertEquals(Integer.valueOf(37), f.getLabel(3, 7));
+        assertNull(f.getLabel(7, 8));
+        assertEquals(7, f.getSuccessor(3, 37));
+        assertEquals(g.edgeSize() + 2, f.edgeSize());
+        assertSame(f, f.freeze());
+        try {
+            f.setLabel(1, 2, 3);
+            fail("frozen label changed");
+        } catch (UnsupportedOperationException excp) {
+            assertEquals(Integer.valueOf(12), f.getLabel(1, 2));
+        }
+    }
+
+    @Test
+    public void versionedGraphTest() throws InterruptedException {
+        LabeledGraph<Integer, Integer> g =
+            new LabeledGraph<>(new DirectedGraph());
+        for (int v = 1; v <= 50; v += 1) {
+            g.add(0);
+        }
+        for (int v = 1; v < 50; v += 1) {
+            g.add(v, v + 1, 0);
+        }
+        VersionedGraph<Integer, Integer> versions = new VersionedGraph<>(g);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i += 1) {
+            readers[i] = new Thread(() -> {
+                for (int k = 0; k < 2000; k += 1) {
+                    FrozenLabeledGraph<Integer, Integer> f =
+                        versions.current();
+                    int stamp = f.getLabel(1);
+                    for (int v = 1; v < 50; v += 1) {
+                        if (f.getLabel(v) != stamp
+                            || f.getLabel(v, v + 1) != stamp) {
+                            failure.set("torn version " + stamp);
+                        }
+                    }
+                    if (f.getLabel(50) != stamp) {
+                        failure.set("torn version " + stamp);
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        for (int k = 1; k <= 200; k += 1) {
+            int stamp = k;
+            versions.update((h) -> {
+                for (int v = 1; v <= 50; v += 1) {
+                    h.setLabel(v, stamp);
+                    if (v < 50) {
+                        h.setLabel(v, v + 1, stamp);
+                    }
+                }
+            });
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals(200, versions.version());
+        assertEquals(Integer.valueOf(200), versions.current().getLabel(7));
+    }
+
+    @Test
+    public void concurrentTraversalTest() throws InterruptedException {
+        LabeledGraph<Integer, Integer> g =
+            new LabeledGraph<>(new DirectedGraph());
+        Random rand = new Random(16);
+        int n = 20000;
+        for (int v = 1; v <= n; v += 1) {
+            g.add(0);
+        }
+        for (int k = 0; k < 2 * n; k += 1) {
+            g.add(1 + rand.nextInt(n), 1 + rand.nextInt(n));
+        }
+        FrozenLabeledGraph<Integer, Integer> f = g.freeze();
+        int bfs = countVisits(f, true), dfs = countVisits(f, false);
+        assertTrue(bfs > 1);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i += 1) {
+            readers[i] = new Thread(() -> {
+                try {
+                    for (int k = 0; k < 50; k += 1) {
+                        if (countVisits(f, true) != bfs
+                            || countVisits(f, false) != dfs) {
+                            failure.set("wrong visit count");
+                        }
+                    }
+                } catch (RuntimeException excp) {
+                    failure.set(excp.toString());
+                }
+            });
+            readers[i].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    /** Return the number of vertices of G visited by a breadth-first
+     *  traversal from vertex 1 if BREADTH, and otherwise by a depth-first
+     *  traversal. */
+    private static int countVisits(Graph g, boolean breadth) {
+        int[] count = new int[1];
+        Traversal t;
+        if (breadth) {
+            t = new BreadthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    count[0] += 1;
+                    return true;
+                }
+            };
+        } else {
+            t = new DepthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    count[0] += 1;
+                    return true;
+                }
+            };
+        }
+        t.traverse(1);
+        return count[0];
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void frozenAddTest() {
+        new DirectedGraph().freeze().add();
+    }
+
+    @Test
+    public void forEachTest() {
+        Graph g = generateGraph();
+        for (Graph h : new Graph[] { g, new GraphFilter(g) }) {
+            ArrayList<Integer> found = new ArrayList<>();
+            h.forEachVertex(found::add);
+            assertEquals(toList(h.vertices()), found);
+            for (int v : h.vertices()) {
+                found.clear();
+                h.forEachSuccessor(v, found::add);
+                assertEquals(toList(h.successors(v)), found);
+                found.clear();
+                h.forEachPredecessor(v, found::add);
+                assertEquals(toList(h.predecessors(v)), found);
+            }
+        }
+    }
+
+    private static ArrayList<Integer> toList(Iteration<Integer> iter) {
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int v : iter) {
+            result.add(v);
+        }
+        return result;
+    }
+
     @Test
     public void dfsTest() {
         Graph g = generateGraph();
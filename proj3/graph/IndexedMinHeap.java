@@ -0,0 +1,207 @@
+package graph;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntToDoubleFunction;
+
+/** A priority queue of vertex numbers, implemented as a binary min-heap
+ *  that also records the position of each vertex in the heap.  A vertex
+ *  is present at most once.  Offering a vertex that is already present
+ *  moves it to the position required by its new key (that is, performs
+ *  decrease-key or increase-key) in O(lg N) time.  Vertices with equal
+ *  keys come out in increasing numerical order.
+ *
+ *  When used as a Queue<Integer> (for example, as the fringe of a
+ *  Traversal), the key of each offered vertex is supplied by a function
+ *  given to the constructor and evaluated at the time of the offer.
+ *  @author Zhibo Fan
+ */
+public class IndexedMinHeap extends AbstractQueue<Integer> {
+
+    /** An empty heap whose offer(V) uses PRIORITY(V) as V's key. */
+    public IndexedMinHeap(IntToDoubleFunction priority) {
+        _priority = priority;
+    }
+
+    /** An empty heap that may only be added to with offer(V, KEY). */
+    public IndexedMinHeap() {
+        this(v -> {
+            throw new UnsupportedOperationException("Error: no key for "
+                                                    + v);
+        });
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < _size; i += 1) {
+            _slot[_heap[i]] = 0;
+        }
+        _size = 0;
+    }
+
+    @Override
+    public boolean offer(Integer v) {
+        offer(v, _priority.applyAsDouble(v));
+        return true;
+    }
+
+    /** Insert V with key KEY, or change V's key to KEY if it is already
+     *  present. V must be non-negative. */
+    public void offer(int v, double key) {
+        if (v >= _slot.length) {
+            _slot = Arrays.copyOf(_slot, Math.max(v + 1, 2 * _slot.length));
+        }
+        int i = _slot[v] - 1;
+        if (i < 0) {
+            if (_size == _heap.length) {
+                _heap = Arrays.copyOf(_heap, 2 * _size);
+                _key = Arrays.copyOf(_key, 2 * _size);
+            }
+            i = _size;
+            _size += 1;
+            place(i, v, key);
+            siftUp(i);
+        } else if (key < _key[i]) {
+            _key[i] = key;
+            siftUp(i);
+        } else {
+            _key[i] = key;
+            siftDown(i);
+        }
+    }
+
+    @Override
+    public Integer poll() {
+        if (_size == 0) {
+            return null;
+        }
+        return pollInt();
+    }
+
+    /** Remove and return the vertex with the smallest key.  The heap
+     *  must not be empty. */
+    public int pollInt() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        int result = _heap[0];
+        _slot[result] = 0;
+        _size -= 1;
+        if (_size > 0) {
+            place(0, _heap[_size], _key[_size]);
+            siftDown(0);
+        }
+        return result;
+    }
+
+    @Override
+    public Integer peek() {
+        return _size == 0 ? null : _heap[0];
+    }
+
+    /** Returns the smallest key present.  The heap must not be empty. */
+    public double minKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _key[0];
+    }
+
+    /** Returns true iff V is present. */
+    public boolean contains(int v) {
+        return v >= 0 && v < _slot.length && _slot[v] != 0;
+    }
+
+    @Override
+    public boolean contains(Object v) {
+        return v instanceof Integer && contains((int) (Integer) v);
+    }
+
+    /** Returns the key of V, which must be present. */
+    public double key(int v) {
+        if (!contains(v)) {
+            throw new NoSuchElementException();
+        }
+        return _key[_slot[v] - 1];
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return Iteration.iteration(Arrays.copyOf(_heap, _size), 0, _size);
+    }
+
+    /** Move the entry at position I toward the root until the heap
+     *  ordering holds. */
+    private void siftUp(int i) {
+        int v = _heap[i];
+        double key = _key[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(key, v, _key[parent], _heap[parent])) {
+                break;
+            }
+            place(i, _heap[parent], _key[parent]);
+            i = parent;
+        }
+        place(i, v, key);
+    }
+
+    /** Move the entry at position I toward the leaves until the heap
+     *  ordering holds. */
+    private void siftDown(int i) {
+        int v = _heap[i];
+        double key = _key[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= _size) {
+                break;
+            }
+            if (child + 1 < _size
+                && less(_key[child + 1], _heap[child + 1],
+                        _key[child], _heap[child])) {
+                child += 1;
+            }
+            if (!less(_key[child], _heap[child], key, v)) {
+                break;
+            }
+            place(i, _heap[child], _key[child]);
+            i = child;
+        }
+        place(i, v, key);
+    }
+
+    /** Store vertex V with key KEY at heap position I. */
+    private void place(int i, int v, double key) {
+        _heap[i] = v;
+        _key[i] = key;
+        _slot[v] = i + 1;
+    }
+
+    /** Returns true iff (KEY0, V0) precedes (KEY1, V1). */
+    private static boolean less(double key0, int v0, double key1, int v1) {
+        return key0 < key1 || (key0 == key1 && v0 < v1);
+    }
+
+    /** Supplies the key of vertices added by offer(V). */
+    private final IntToDoubleFunction _priority;
+    /** The vertices in heap order, in _heap[0 .. _size-1]. */
+    private int[] _heap = new int[16];
+    /** _key[i] is the key of _heap[i]. */
+    private double[] _key = new double[16];
+    /** _slot[v] is one more than v's position in _heap, or 0 if absent. */
+    private int[] _slot = new int[16];
+    /** Number of vertices present. */
+    private int _size;
+}
@@ -2,7 +2,9 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /** An Iteration<TYPE> is an Iterator<TYPE> that may also be used in a foreach
  *  loop.  That is, it implements the Iterable<TYPE> interface by simply
@@ -46,6 +48,67 @@ public abstract class Iteration<Type>
         private Iterator<Type> _iter;
     }
 
+    /** An iteration over a range of an int array. */
+    private static class ArrayIteration extends Iteration<Integer> {
+        /** An iteration over VALUES[FROM .. TO-1]. */
+        ArrayIteration(int[] values, int from, int to) {
+            _values = values;
+            _next = from;
+            _end = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _next < _end;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _next += 1;
+            return _values[_next - 1];
+        }
+
+        /** The array being iterated over. */
+        private final int[] _values;
+        /** Index of the next value to deliver. */
+        private int _next;
+        /** Index just past the last value to deliver. */
+        private final int _end;
+    }
+
+    /** An iteration over the indices of the set bits in a BitSet, in
+     *  increasing order. */
+    private static class BitIteration extends Iteration<Integer> {
+        /** An iteration over the bits set in BITS. */
+        BitIteration(BitSet bits) {
+            _bits = bits;
+            _next = bits.nextSetBit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _next >= 0;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int result = _next;
+            _next = _bits.nextSetBit(result + 1);
+            return result;
+        }
+
+        /** The bits being iterated over. */
+        private final BitSet _bits;
+        /** The next bit index to deliver, or -1 if none. */
+        private int _next;
+    }
+
     /** Returns an Iteration<TYPE> that delegates to IT. */
     static <Type> Iteration<Type> iteration(Iterator<Type> it) {
         return new SimpleIteration<>(it);
@@ -56,4 +119,16 @@ public abstract class Iteration<Type>
         return new SimpleIteration<>(iterable.iterator());
     }
 
+    /** Returns an Iteration over VALUES[FROM .. TO-1]. */
+    static Iteration<Integer> iteration(int[] values, int from, int to) {
+        return new ArrayIteration(values, from, to);
+    }
+
+    /** Returns an Iteration over the indices of the bits set in BITS, in
+     *  increasing order.  Bits changed during the iteration are seen if
+     *  they have not yet been passed. */
+    static Iteration<Integer> iteration(BitSet bits) {
+        return new BitIteration(bits);
+    }
+
 }
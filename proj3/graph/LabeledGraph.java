@@ -1,10 +1,12 @@
 package graph;
 
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /** A Graph whose vertices are labeled with type VL and whose edges are
- *  labeled with type EL.
+ *  labeled with type EL.  Labels are kept in arrays indexed by vertex
+ *  number and by edge id, so that, with the edge index of the underlying
+ *  graph, finding the label of an edge takes constant time.
  *  @author P. N. Hilfinger
  */
 public class LabeledGraph<VL, EL> extends GraphFilter {
@@ -15,13 +17,14 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
      *  constructor. */
     public LabeledGraph(Graph G) {
         super(G);
+        _base = G;
     }
 
     /** Returns the label on vertex V, which must be one of my
      *  vertices. */
     public VL getLabel(int v) {
         checkMyVertex(v);
-        return v < _vlabel.size() ? _vlabel.get(v) : null;
+        return v < _vlabel.length ? vertexLabel(v) : null;
     }
 
     /** Returns the label on the edge (U, V), which must be one of
@@ -31,7 +34,7 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
         if (e == 0) {
             throw new IllegalArgumentException("Error: no such edge");
         }
-        return e < _elabel.size() ? _elabel.get(e) : null;
+        return e < _elabel.length ? edgeLabel(e) : null;
     }
 
     /** Return the successor of vertex U along the edge labeled LAB, if any,
@@ -39,7 +42,8 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
      *  label EL, returns an arbitrary one of them. */
     public int getSuccessor(int u, EL lab) {
         for (int v : successors(u)) {
-            if (lab.equals(getLabel(u, v))) {
+            int e = edgeId(u, v);
+            if (e < _elabel.length && lab.equals(_elabel[e])) {
                 return v;
             }
         }
@@ -49,9 +53,9 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
     /** Set getVertexLabel(V) to LAB.  V must be one of my vertices. */
     public void setLabel(int v, VL lab) {
         checkMyVertex(v);
-        if (lab != null || v < _vlabel.size()) {
-            expand(_vlabel, v + 1);
-            _vlabel.set(v, lab);
+        if (lab != null || v < _vlabel.length) {
+            _vlabel = expand(_vlabel, v + 1);
+            _vlabel[v] = lab;
         }
     }
 
@@ -61,9 +65,9 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
         if (e == 0) {
             throw new IllegalArgumentException("Error: no such edge");
         }
-        if (lab != null || e < _elabel.size()) {
-            expand(_elabel, e + 1);
-            _elabel.set(e, lab);
+        if (lab != null || e < _elabel.length) {
+            _elabel = expand(_elabel, e + 1);
+            _elabel[e] = lab;
         }
     }
 
@@ -81,18 +85,49 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
      *  an edge (U, V), sets its label to EL. */
     public int add(int u, int v, EL lab) {
         int e = add(u, v);
-        if (lab != null || e < _elabel.size()) {
-            expand(_elabel, e + 1);
-            _elabel.set(e, lab);
+        if (e == 0) {
+            e = edgeId(u, v);
+        }
+        if (e != 0 && (lab != null || e < _elabel.length)) {
+            _elabel = expand(_elabel, e + 1);
+            _elabel[e] = lab;
         }
         return e;
     }
 
+    /** Returns an immutable snapshot of my current vertices, edges, and
+     *  labels, which preserves my vertex numbers and edge ids and may be
+     *  shared among threads (see FrozenLabeledGraph).  Takes time
+     *  proportional to the size of the graph.  Requires that my
+     *  underlying graph be a DirectedGraph, UndirectedGraph, or
+     *  FrozenGraph. */
+    public FrozenLabeledGraph<VL, EL> freeze() {
+        FrozenGraph frozen;
+        if (_base instanceof FrozenGraph) {
+            frozen = (FrozenGraph) _base;
+        } else if (_base instanceof GraphObj) {
+            frozen = ((GraphObj) _base).freeze();
+        } else {
+            throw new UnsupportedOperationException("Error: cannot freeze"
+                                                    + " this graph");
+        }
+        return new FrozenLabeledGraph<>(frozen, _vlabel.clone(),
+                                        _elabel.clone());
+    }
+
     @Override
     public void remove(int v) {
+        if (contains(v)) {
+            for (int w : successors(v)) {
+                setLabel(v, w, null);
+            }
+            for (int w : predecessors(v)) {
+                setLabel(w, v, null);
+            }
+        }
         super.remove(v);
-        if (v < _vlabel.size()) {
-            _vlabel.set(v, null);
+        if (v < _vlabel.length) {
+            _vlabel[v] = null;
         }
     }
 
@@ -101,22 +136,37 @@ public class LabeledGraph<VL, EL> extends GraphFilter {
         int e = edgeId(u, v);
         if (e != 0) {
             super.remove(u, v);
-            if (e < _elabel.size()) {
-                _elabel.set(e, null);
+            if (e < _elabel.length) {
+                _elabel[e] = null;
             }
         }
     }
 
-    /** If necessary, add nulls to L to make its length N.  Has no effect if
-     *  L's length is already at least N. */
-    static void expand(ArrayList<?> L, int n) {
-        while (L.size() < n) {
-            L.add(null);
+    /** Returns L, or a copy of L extended with nulls to a length of at
+     *  least N, at least doubling its length. */
+    static Object[] expand(Object[] L, int n) {
+        if (L.length >= n) {
+            return L;
         }
+        return Arrays.copyOf(L, Math.max(n, 2 * L.length));
+    }
+
+    /** Returns the label of vertex V, which is less than _vlabel.length. */
+    @SuppressWarnings("unchecked")
+    private VL vertexLabel(int v) {
+        return (VL) _vlabel[v];
+    }
+
+    /** Returns the label of edge E, which is less than _elabel.length. */
+    @SuppressWarnings("unchecked")
+    private EL edgeLabel(int e) {
+        return (EL) _elabel[e];
     }
 
-    /** Mapping of vertex numbers to vertex labels. */
-    private final ArrayList<VL> _vlabel = new ArrayList<>();
-    /** Mapping of unique edge ids to edge labels. */
-    private final ArrayList<EL> _elabel = new ArrayList<>();
+    /** The graph I label. */
+    private final Graph _base;
+    /** Mapping of vertex numbers to vertex labels (of type VL). */
+    private Object[] _vlabel = new Object[0];
+    /** Mapping of unique edge ids to edge labels (of type EL). */
+    private Object[] _elabel = new Object[0];
 }
@@ -0,0 +1,329 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/** A level-synchronous breadth-first search for BreadthFirstTraversal that
+ *  processes each level of the traversal on a pool of threads.
+ *
+ *  Vertices are claimed through an atomic bitmap, so each is placed on
+ *  exactly one level even when several threads discover it at once.  Each
+ *  level is expanded either top-down (scanning the successors of the
+ *  vertices on the current level) or, when the current level is large,
+ *  bottom-up (scanning the predecessors of the unclaimed vertices until
+ *  one on the current level is found), following the heuristic of Beamer,
+ *  Asanovic, and Patterson ("Direction-Optimizing Breadth-First Search").
+ *  @author Zhibo Fan
+ */
+final class ParallelBreadthFirstSearch {
+
+    /** A search for TRAVERSAL, whose graph is G, using PARALLELISM
+     *  threads. */
+    ParallelBreadthFirstSearch(BreadthFirstTraversal traversal, Graph G,
+                               int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Error: parallelism must be"
+                                               + " positive");
+        }
+        _traversal = traversal;
+        _G = G;
+        _parallelism = parallelism;
+        _n = G.maxVertex() + 1;
+        _claimed = new AtomicLongArray((_n + 63) / 64);
+        _visited = new AtomicLongArray(_claimed.length());
+        _current = new AtomicLongArray(_claimed.length());
+        _unexplored = G.isDirected() ? G.edgeSize() : 2L * G.edgeSize();
+        BitSet marked = traversal._marked;
+        for (int v = marked.nextSetBit(0); v >= 0;
+             v = marked.nextSetBit(v + 1)) {
+            claim(v);
+        }
+    }
+
+    /** Traverse from the vertices in SOURCES, stopping early if some
+     *  visit returns false. */
+    void run(int[] sources) {
+        Level level = new Level();
+        for (int v : sources) {
+            if (_G.contains(v) && claim(v)) {
+                level.add(v);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(_parallelism);
+        try {
+            boolean bottomUp = false;
+            int previousSize = 0;
+            while (level._size > 0) {
+                _unexplored -= level._degrees;
+                boolean growing = level._size > previousSize;
+                if (!bottomUp && growing
+                    && level._degrees > _unexplored / ALPHA) {
+                    bottomUp = true;
+                } else if (bottomUp && !growing
+                           && level._size < _n / BETA) {
+                    bottomUp = false;
+                }
+                previousSize = level._size;
+                if (bottomUp) {
+                    level = bottomUp(pool, level);
+                } else {
+                    level = topDown(pool, level);
+                }
+                if (_stopped) {
+                    return;
+                }
+            }
+        } finally {
+            pool.shutdown();
+            for (int i = 0; i < _visited.length(); i += 1) {
+                long bits = _visited.get(i);
+                for (; bits != 0; bits &= bits - 1) {
+                    int v = 64 * i + Long.numberOfTrailingZeros(bits);
+                    _traversal._marked.set(v);
+                }
+            }
+        }
+    }
+
+    /** Call the traversal's visit method on each vertex in LEVEL using
+     *  POOL.  Returns false iff some visit returned false. */
+    private boolean visitAll(ForkJoinPool pool, Level level) {
+        List<Callable<Level>> tasks = new ArrayList<>();
+        int size = chunk(level._size);
+        for (int lo = 0; lo < level._size; lo += size) {
+            int from = lo, to = Math.min(level._size, lo + size);
+            tasks.add(() -> {
+                for (int i = from; i < to && !_stopped; i += 1) {
+                    if (!visit(level._vertices[i])) {
+                        _stopped = true;
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(pool, tasks);
+        return !_stopped;
+    }
+
+    /** Visit the vertices in LEVEL and return the following level, found
+     *  with POOL by scanning the successors of each vertex in LEVEL. */
+    private Level topDown(ForkJoinPool pool, Level level) {
+        List<Callable<Level>> tasks = new ArrayList<>();
+        int size = chunk(level._size);
+        for (int lo = 0; lo < level._size; lo += size) {
+            int from = lo, to = Math.min(level._size, lo + size);
+            tasks.add(() -> {
+                Level next = new Level();
+                IntConsumer discover = w -> {
+                    if (claim(w)) {
+                        next.add(w);
+                    }
+                };
+                for (int i = from; i < to && !_stopped; i += 1) {
+                    int v = level._vertices[i];
+                    if (!visit(v)) {
+                        _stopped = true;
+                    } else {
+                        _G.forEachSuccessor(v, discover);
+                    }
+                }
+                return next;
+            });
+        }
+        return concat(invokeAll(pool, tasks));
+    }
+
+    /** Visit the vertices in LEVEL and return the following level, found
+     *  with POOL by scanning the predecessors of each unclaimed vertex for
+     *  one in LEVEL. */
+    private Level bottomUp(ForkJoinPool pool, Level level) {
+        if (!visitAll(pool, level)) {
+            return level;
+        }
+        for (int i = 0; i < _current.length(); i += 1) {
+            _current.set(i, 0);
+        }
+        for (int i = 0; i < level._size; i += 1) {
+            int v = level._vertices[i];
+            _current.set(v >>> 6, _current.get(v >>> 6) | (1L << v));
+        }
+        IntPredicate inLevel =
+            w -> (_current.get(w >>> 6) & (1L << w)) != 0;
+        List<Callable<Level>> tasks = new ArrayList<>();
+        int size = chunk(_n);
+        for (int lo = 0; lo < _n; lo += size) {
+            int from = lo, to = Math.min(_n, lo + size);
+            tasks.add(() -> {
+                Level next = new Level();
+                for (int v = from; v < to; v += 1) {
+                    if (!claimed(v) && _G.findPredecessor(v, inLevel) != 0
+                        && claim(v)) {
+                        next.add(v);
+                    }
+                }
+                return next;
+            });
+        }
+        return concat(invokeAll(pool, tasks));
+    }
+
+    /** Returns a single level containing the vertices of PARTS, in
+     *  order. */
+    private Level concat(List<Level> parts) {
+        Level result = new Level();
+        int size = 0;
+        for (Level part : parts) {
+            size += part._size;
+        }
+        result._vertices = new int[Math.max(size, 1)];
+        for (Level part : parts) {
+            System.arraycopy(part._vertices, 0, result._vertices,
+                             result._size, part._size);
+            result._size += part._size;
+            result._degrees += part._degrees;
+        }
+        return result;
+    }
+
+    /** Returns the number of items of a level of SIZE items to give to
+     *  each task. */
+    private int chunk(int size) {
+        if (_parallelism == 1) {
+            return Math.max(1, size);
+        }
+        return Math.max(MIN_CHUNK, size / (TASKS_PER_THREAD * _parallelism));
+    }
+
+    /** Run TASKS on POOL, and return their results in order.  Rethrows
+     *  any unchecked exception thrown by a task.  A single task is run
+     *  directly, saving the cost of handing it to another thread. */
+    static <T> List<T> invokeAll(ForkJoinPool pool,
+                                 List<Callable<T>> tasks) {
+        List<T> result = new ArrayList<>();
+        if (tasks.size() == 1) {
+            try {
+                result.add(tasks.get(0).call());
+            } catch (RuntimeException excp) {
+                throw excp;
+            } catch (Exception excp) {
+                throw new IllegalStateException(excp);
+            }
+            return result;
+        }
+        for (Future<T> task : pool.invokeAll(tasks)) {
+            try {
+                result.add(task.get());
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Error: interrupted");
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                if (excp.getCause() instanceof Error) {
+                    throw (Error) excp.getCause();
+                }
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+        return result;
+    }
+
+    /** Call the traversal's visit method on V, recording that V has been
+     *  visited, and return its result. */
+    private boolean visit(int v) {
+        set(_visited, v);
+        return _traversal.visit(v);
+    }
+
+    /** Returns true iff V has been claimed. */
+    private boolean claimed(int v) {
+        return (_claimed.get(v >>> 6) & (1L << v)) != 0;
+    }
+
+    /** Claim V, returning true iff it was not already claimed. */
+    private boolean claim(int v) {
+        return set(_claimed, v);
+    }
+
+    /** Add V to the bitmap BITS, returning true iff it was not already
+     *  there. */
+    private static boolean set(AtomicLongArray bits, int v) {
+        int i = v >>> 6;
+        long bit = 1L << v;
+        long old = bits.get(i);
+        while ((old & bit) == 0) {
+            if (bits.compareAndSet(i, old, old | bit)) {
+                return true;
+            }
+            old = bits.get(i);
+        }
+        return false;
+    }
+
+    /** The vertices of one level (or part of one), and the sum of their
+     *  out-degrees. */
+    private final class Level {
+        /** Append V. */
+        void add(int v) {
+            if (_size == _vertices.length) {
+                _vertices = Arrays.copyOf(_vertices, 2 * _size);
+            }
+            _vertices[_size] = v;
+            _size += 1;
+            _degrees += _G.outDegree(v);
+        }
+
+        /** The vertices, in _vertices[0 .. _size-1]. */
+        private int[] _vertices = new int[16];
+        /** Number of vertices. */
+        private int _size;
+        /** Sum of the out-degrees of the vertices. */
+        private long _degrees;
+    }
+
+    /** Switch to bottom-up when the current level is larger than the
+     *  last, and the edges leaving it exceed the unexplored edges divided
+     *  by this. */
+    private static final int ALPHA = 14;
+    /** Switch back to top-down when the current level is no larger than
+     *  the last, and has fewer than the number of vertices divided by
+     *  this. */
+    private static final int BETA = 24;
+    /** Smallest number of vertices given to one task. */
+    private static final int MIN_CHUNK = 1024;
+    /** Number of tasks per thread into which each level is divided. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /** The traversal whose visit method I call. */
+    private final BreadthFirstTraversal _traversal;
+    /** The graph being traversed. */
+    private final Graph _G;
+    /** Number of threads used. */
+    private final int _parallelism;
+    /** One more than the largest vertex number. */
+    private final int _n;
+    /** Bitmap of claimed vertices: those marked beforehand, and those
+     *  placed on some level. */
+    private final AtomicLongArray _claimed;
+    /** Bitmap of the vertices visited, which are marked at the end.  When
+     *  the traversal stops early, some claimed vertices are not. */
+    private final AtomicLongArray _visited;
+    /** Bitmap of the current level, during a bottom-up step. */
+    private final AtomicLongArray _current;
+    /** Number of edges not yet scanned from a claimed vertex. */
+    private long _unexplored;
+    /** Set when some visit returns false. */
+    private volatile boolean _stopped;
+}
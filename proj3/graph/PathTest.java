@@ -1,7 +1,12 @@
 package graph;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeSet;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.nCopies;
@@ -90,6 +95,9 @@ public class PathTest {
     private static final Integer[] UG_P1 = {
             0, 0, 1, 1, 1, 2, 5, 4, 5
     };
+    /** Number of vertices in random test graphs. */
+    private static final int NV3 = 150;
+
     /**
      * Map Data (from Russell & Norvig, 3rd ed).  [See Note 1 at end.]
      */
@@ -188,6 +196,10 @@ public class PathTest {
             super(PathTest.this._G, source);
         }
 
+        SP1(SP1 previous, int source) {
+            super(previous, source, 0);
+        }
+
         @Override
         public double getWeight(int u, int v) {
             return _W.get(u).get(v);
@@ -220,6 +232,35 @@ public class PathTest {
         assertEquals("bad path", asList(DG_P1_8), sp.pathTo(8));
     }
 
+    /**
+     * Test that searches sharing storage give the same results as
+     * searches with their own, including after the graph grows.
+     */
+    @Test
+    public void reusedStorage() {
+        Random rand = new Random(61);
+        fillWeightedGraph(new DG(), NV3, new Object[0][]);
+        for (int i = 0; i < 4 * NV3; i += 1) {
+            int u = 1 + rand.nextInt(NV3), v = 1 + rand.nextInt(NV3);
+            _G.add(u, v);
+            _W.get(u).set(v, (double) rand.nextInt(20));
+        }
+        SP1 shared = null;
+        for (int s = 1; s <= NV3; s += 1) {
+            shared = shared == null ? new SP1(s) : new SP1(shared, s);
+            shared.setPaths();
+            SP1 fresh = new SP1(s);
+            fresh.setPaths();
+            assertEquals(getWeights(fresh, NV3), getWeights(shared, NV3));
+            assertEquals(getPreds(fresh, NV3), getPreds(shared, NV3));
+        }
+        int v = _G.add();
+        shared = new SP1(shared, 1);
+        shared.setPaths();
+        assertEquals(Double.MAX_VALUE, shared.getWeight(v), 0.0);
+        assertEquals(0, shared.getPredecessor(v));
+    }
+
     class SP2 extends SimpleShortestPaths {
 
         SP2(int source, int dest, double[] h) {
@@ -227,6 +268,11 @@ public class PathTest {
             _h = h;
         }
 
+        SP2(SP2 previous, int source, int dest, double[] h) {
+            super(previous, source, dest);
+            _h = h;
+        }
+
         @Override
         public double getWeight(int u, int v) {
             return _W.get(u).get(v);
@@ -270,6 +316,346 @@ public class PathTest {
         assertEquals("heuristic didn't work", 0, sp.getPredecessor(10));
     }
 
+    /**
+     * Test the fringe heap against a sorted list on random offers, key
+     * changes, and polls.
+     */
+    @Test
+    public void indexedHeap() {
+        Random rand = new Random(61);
+        IndexedMinHeap heap = new IndexedMinHeap();
+        double[] keys = new double[200];
+        TreeSet<Integer> present = new TreeSet<>((a, b) -> {
+            int c = Double.compare(keys[a], keys[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        for (int i = 0; i < 10000; i += 1) {
+            if (rand.nextInt(3) == 0 && !present.isEmpty()) {
+                assertEquals(present.first(), heap.peek());
+                assertEquals(keys[present.first()], heap.minKey(), 0.0);
+                assertEquals((int) present.pollFirst(), heap.pollInt());
+            } else {
+                int v = rand.nextInt(keys.length);
+                present.remove(v);
+                keys[v] = rand.nextInt(50);
+                present.add(v);
+                heap.offer(v, keys[v]);
+                assertEquals(keys[v], heap.key(v), 0.0);
+            }
+            assertEquals(present.size(), heap.size());
+        }
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(present.first()));
+    }
+
+    class SP3 extends SP1 {
+
+        SP3(int source) {
+            super(source);
+        }
+
+        @Override
+        protected Queue<Integer> newFringe() {
+            return new MyPriorityQueue();
+        }
+    }
+
+    /**
+     * Test that the TreeSet fringe and the default heap fringe give the
+     * same results.
+     */
+    @Test
+    public void selectableFringe() {
+        fillWeightedGraph(new DG(), NV1, E1);
+        ShortestPaths sp = new SP3(1);
+        sp.setPaths();
+        assertEquals("wrong weights", asList(DG_W1), getWeights(sp, NV1));
+        assertEquals("wrong predecessors", asList(DG_P1), getPreds(sp, NV1));
+    }
+
+    class SP4 extends SP2 {
+
+        SP4(int source, int dest, double[] h) {
+            super(source, dest, h);
+        }
+
+        SP4(SP4 previous, int source, int dest, double[] h) {
+            super(previous, source, dest, h);
+        }
+
+        @Override
+        protected boolean bidirectional() {
+            return true;
+        }
+    }
+
+    /**
+     * Test that bidirectional searches find paths of the same weight as
+     * unidirectional ones, with and without a heuristic, and none where
+     * there is none, whether or not they share storage.
+     */
+    @Test
+    public void bidirectionalPaths() {
+        for (Graph g : new Graph[] { new DG(), new UG() }) {
+            fillWeightedGraph(g, NV1, E1);
+            double[] h = new double[NV1 + 1];
+            SP4 shared = null;
+            for (int s = 1; s <= NV1; s += 1) {
+                ShortestPaths all = new SP1(s);
+                all.setPaths();
+                for (int d = 1; d <= NV1; d += 1) {
+                    shared = shared == null ? new SP4(s, d, h)
+                        : new SP4(shared, s, d, h);
+                    for (ShortestPaths sp
+                             : asList(new SP4(s, d, h), shared)) {
+                        sp.setPaths();
+                        assertEquals("wrong weight", all.getWeight(d),
+                                     sp.getWeight(d), 1e-9);
+                        if (all.getWeight(d) == Double.MAX_VALUE) {
+                            assertEquals("path where there is none", 0,
+                                         sp.getPredecessor(d));
+                        } else {
+                            assertEquals("wrong path",
+                                         (Object) all.getWeight(d),
+                                         pathWeight(sp.pathTo()));
+                        }
+                    }
+                }
+            }
+        }
+        fillWeightedGraph(new DG(), 4, new Object[][] {
+            { 1, 2, 1.0 }, { 3, 4, 1.0 }
+        });
+        ShortestPaths none = new SP4(1, 4, new double[5]);
+        none.setPaths();
+        assertEquals(Double.MAX_VALUE, none.getWeight(4), 0.0);
+        assertEquals(0, none.getPredecessor(4));
+        fillWeightedGraph(new UG(), NV2, E2);
+        ShortestPaths sp = new SP4(1, 2, H2);
+        sp.setPaths();
+        assertEquals("wrong path to Bucharest", asList(P2_2), sp.pathTo(2));
+        assertEquals(418.0, sp.getWeight(2), 1e-9);
+    }
+
+    @Test
+    public void contractionHierarchy() throws IOException {
+        Random rand = new Random(61);
+        Object[][] random = new Object[600][];
+        for (int i = 0; i < random.length; i += 1) {
+            random[i] = new Object[] {
+                1 + rand.nextInt(NV3), 1 + rand.nextInt(NV3),
+                (double) (1 + rand.nextInt(20))
+            };
+        }
+        Graph[] graphs = { new DG(), new UG(), new UG(), new DG() };
+        int[] sizes = { NV1, NV1, NV2, NV3 };
+        Object[][][] edges = { E1, E1, E2, random };
+        File file = File.createTempFile("hierarchy", ".ch");
+        file.deleteOnExit();
+        for (int k = 0; k < graphs.length; k += 1) {
+            fillWeightedGraph(graphs[k], sizes[k], edges[k]);
+            ContractionHierarchy.Weighting weights =
+                (u, v) -> _W.get(u).get(v);
+            ContractionHierarchy built =
+                new ContractionHierarchy(_G, weights);
+            built.write(file.getPath());
+            ContractionHierarchy read =
+                ContractionHierarchy.read(file.getPath());
+            assertEquals(ContractionHierarchy.fingerprint(_G, weights),
+                         read.fingerprint());
+            for (ContractionHierarchy ch : asList(built, read)) {
+                for (int s = 1; s <= sizes[k]; s += 1) {
+                    ShortestPaths all = new SP1(s);
+                    all.setPaths();
+                    for (int d = 1; d <= sizes[k]; d += 1) {
+                        List<Integer> path = ch.path(s, d);
+                        if (all.getWeight(d) == Double.MAX_VALUE) {
+                            assertNull("unexpected path", path);
+                            continue;
+                        }
+                        assertEquals("wrong distance", all.getWeight(d),
+                                     ch.distance(s, d), 1e-9);
+                        assertEquals((Object) s, path.get(0));
+                        assertEquals((Object) d, path.get(path.size() - 1));
+                        assertEquals("wrong path", all.getWeight(d),
+                                     pathWeight(path), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    class DT extends DistanceTable {
+
+        DT(int[] sources, int[] targets, int parallelism) {
+            super(PathTest.this._G, sources, targets, parallelism);
+        }
+
+        @Override
+        protected double getWeight(int u, int v) {
+            return _W.get(u).get(v);
+        }
+
+        @Override
+        protected boolean keepPaths() {
+            return true;
+        }
+    }
+
+    /**
+     * Test that distance tables computed by separate searches and by
+     * a contraction hierarchy agree with single-source searches.
+     */
+    @Test
+    public void distanceTables() {
+        Random rand = new Random(61);
+        Object[][] random = new Object[400][];
+        for (int i = 0; i < random.length; i += 1) {
+            random[i] = new Object[] {
+                1 + rand.nextInt(NV3), 1 + rand.nextInt(NV3),
+                (double) (1 + rand.nextInt(20))
+            };
+        }
+        fillWeightedGraph(new DG(), NV3, random);
+        int[] sources = new int[30], targets = new int[20];
+        for (int i = 0; i < sources.length; i += 1) {
+            sources[i] = 1 + rand.nextInt(NV3);
+        }
+        for (int j = 0; j < targets.length; j += 1) {
+            targets[j] = j < 2 ? sources[0] : 1 + rand.nextInt(NV3);
+        }
+        double[][] hierarchy =
+            new ContractionHierarchy(_G, (u, v) -> _W.get(u).get(v))
+            .distances(sources, targets);
+        for (int parallelism : new int[] { 1, 4 }) {
+            DistanceTable table = new DT(sources, targets, parallelism);
+            table.setDistances();
+            for (int i = 0; i < sources.length; i += 1) {
+                ShortestPaths all = new SP1(sources[i]);
+                all.setPaths();
+                for (int j = 0; j < targets.length; j += 1) {
+                    double expected = all.getWeight(targets[j]);
+                    List<Integer> path = table.pathTo(i, j);
+                    if (expected == Double.MAX_VALUE) {
+                        expected = Double.POSITIVE_INFINITY;
+                        assertNull("unexpected path", path);
+                    } else {
+                        assertEquals(expected, pathWeight(path), 1e-9);
+                        assertEquals((Object) targets[j],
+                                     path.get(path.size() - 1));
+                    }
+                    assertEquals(expected, table.getDistance(i, j), 1e-9);
+                    assertEquals(expected, hierarchy[i][j], 1e-9);
+                }
+            }
+        }
+    }
+
+    class SP5 extends DeltaSteppingShortestPaths {
+
+        SP5(int source, double delta) {
+            super(PathTest.this._G, source, delta, 4);
+        }
+
+        @Override
+        public double getWeight(int u, int v) {
+            return _W.get(u).get(v);
+        }
+    }
+
+    /**
+     * Test that delta-stepping finds the same weights as Dijkstra's
+     * algorithm for various bucket widths, and consistent paths.
+     */
+    @Test
+    public void deltaStepping() {
+        Random rand = new Random(61);
+        Object[][] random = new Object[600][];
+        for (int i = 0; i < random.length; i += 1) {
+            random[i] = new Object[] {
+                1 + rand.nextInt(NV3), 1 + rand.nextInt(NV3),
+                (double) rand.nextInt(20)
+            };
+        }
+        Graph[] graphs = { new DG(), new UG(), new UG(), new DG() };
+        int[] sizes = { NV1, NV1, NV2, NV3 };
+        Object[][][] edges = { E1, E1, E2, random };
+        for (int k = 0; k < graphs.length; k += 1) {
+            fillWeightedGraph(graphs[k], sizes[k], edges[k]);
+            for (double delta : new double[] { 0.0, 1.0, 7.5, 1000.0 }) {
+                ShortestPaths all = new SP1(1), delta1 = new SP5(1, delta);
+                all.setPaths();
+                delta1.setPaths();
+                assertEquals(getWeights(all, sizes[k]),
+                             getWeights(delta1, sizes[k]));
+                for (int v = 1; v <= sizes[k]; v += 1) {
+                    if (all.getWeight(v) != Double.MAX_VALUE) {
+                        assertEquals(all.getWeight(v),
+                                     pathWeight(delta1.pathTo(v)), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test delta-stepping on a graph large enough to be divided among
+     * several tasks.
+     */
+    @Test
+    public void largeDeltaStepping() {
+        Random rand = new Random(61);
+        DirectedGraph g = new DirectedGraph();
+        int n = 50000;
+        for (int i = 0; i < n; i += 1) {
+            g.add();
+        }
+        for (int i = 0; i < 5 * n; i += 1) {
+            g.add(1 + rand.nextInt(n), 1 + rand.nextInt(n));
+        }
+        ShortestPaths dijkstra = new SimpleShortestPaths(g, 1) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return hashedWeight(u, v);
+            }
+        };
+        ShortestPaths delta = new DeltaSteppingShortestPaths(g, 1, 2.0, 4) {
+            @Override
+            protected double getWeight(int u, int v) {
+                return hashedWeight(u, v);
+            }
+        };
+        dijkstra.setPaths();
+        delta.setPaths();
+        for (int v = 1; v <= n; v += 1) {
+            assertEquals(dijkstra.getWeight(v), delta.getWeight(v), 0.0);
+            int u = delta.getPredecessor(v);
+            if (u != 0) {
+                assertEquals(delta.getWeight(v),
+                             delta.getWeight(u) + hashedWeight(u, v), 0.0);
+            }
+        }
+    }
+
+    /**
+     * Returns a pseudo-random weight between 1 and 8 for edge (U, V).
+     */
+    private static double hashedWeight(int u, int v) {
+        int h = (u * 31 + v) * 0x45d9f3b;
+        return ((h ^ (h >>> 16)) & 7) + 1;
+    }
+
+    /**
+     * Returns the total weight of the edges along PATH.
+     */
+    private Double pathWeight(List<Integer> path) {
+        double result = 0.0;
+        for (int i = 1; i < path.size(); i += 1) {
+            result += _W.get(path.get(i - 1)).get(path.get(i));
+        }
+        return result;
+    }
 
     /**
      * The test graph.
@@ -6,6 +6,8 @@ import java.util.AbstractQueue;
 import java.util.Iterator;
 import java.util.TreeSet;
 import java.util.Comparator;
+import java.util.Queue;
+import java.util.function.IntConsumer;
 
 /**
  * The shortest paths through an edge-weighted graph.
@@ -39,14 +41,37 @@ public abstract class ShortestPaths {
      * getWeight, getPredecessor, and pathTo.
      */
     public void setPaths() {
-        _path = new LinkedList<>();
-        _astar = new AStarTraversal(_G, new MyPriorityQueue());
+        clearPaths();
+        if (bidirectional() && getDest() != 0) {
+            _settled =
+                new BidirectionalSearch(this, _bidirectionalStorage).run();
+            return;
+        }
+        _settled = 0;
+        _astar = new AStarTraversal(_G, newFringe());
+        setWeight(getSource(), 0);
+        _astar.traverse(getSource());
+    }
+
+    /**
+     * Set the weight of every vertex to Double.MAX_VALUE, and its
+     * predecessor to 0, before a search.  By default, calls setWeight and
+     * setPredecessor on each vertex.  Subclasses may override this with
+     * something faster.
+     */
+    protected void clearPaths() {
         for (Integer v : _G.vertices()) {
             setWeight(v, Double.MAX_VALUE);
             setPredecessor(v, 0);
         }
-        setWeight(getSource(), 0);
-        _astar.traverse(getSource());
+    }
+
+    /**
+     * Returns the number of vertices settled (removed from the fringe
+     * and expanded) by the last call of setPaths.
+     */
+    public int settledCount() {
+        return _settled;
     }
 
     /**
@@ -94,24 +119,75 @@ public abstract class ShortestPaths {
         return 0.0;
     }
 
+    /**
+     * Returns an estimated heuristic weight of the shortest path from the
+     * source vertex to vertex V, used only by bidirectional searches.
+     * Like estimatedDistance, this is assumed to be less than the actual
+     * weight, and is 0 by default.
+     */
+    protected double estimatedDistanceFromSource(int v) {
+        return 0.0;
+    }
+
+    /**
+     * Returns true iff a search may stop once vertex V is settled, without
+     * following the edges leaving V.  By default, true iff V is the
+     * destination vertex.  Not used by bidirectional searches.
+     */
+    protected boolean finished(int v) {
+        return v == getDest();
+    }
+
+    /**
+     * Returns true iff a search with a destination vertex is to proceed
+     * from both ends at once: forward from the source along successors
+     * and backward from the destination along predecessors.  This
+     * generally settles far fewer vertices, but assumes that the
+     * estimated distances are consistent (as straight-line distances
+     * are), and computes weights and predecessors only for the vertices
+     * on the path to the destination.  False by default.
+     */
+    protected boolean bidirectional() {
+        return false;
+    }
+
     /**
      * Returns the current weight of edge (U, V) in the graph.  If (U, V) is
      * not in the graph, returns positive infinity.
      */
     protected abstract double getWeight(int u, int v);
 
+    /**
+     * Returns a new, empty fringe for the search, ordered by
+     * getWeight(V) + estimatedDistance(V) at the time V is added.  Adding
+     * a vertex that is already present must re-key it.  By default, this
+     * is an IndexedMinHeap, giving O((V + E) lg V) searches.  Subclasses
+     * may select another queue, such as MyPriorityQueue.
+     */
+    protected Queue<Integer> newFringe() {
+        return new IndexedMinHeap(this::priority);
+    }
+
+    /**
+     * Returns the key of V in the fringe.
+     */
+    private double priority(int v) {
+        return getWeight(v) + estimatedDistance(v);
+    }
+
     /**
      * Returns a list of vertices starting at _source and ending
      * at V that represents a shortest path to V.  Invalid if there is a
      * destination vertex other than V.
      */
     public List<Integer> pathTo(int v) {
+        LinkedList<Integer> path = new LinkedList<>();
         while (v != getSource()) {
-            _path.addFirst(v);
+            path.addFirst(v);
             v = getPredecessor(v);
         }
-        _path.addFirst(v);
-        return _path;
+        path.addFirst(v);
+        return path;
     }
 
     /**
@@ -134,14 +210,20 @@ public abstract class ShortestPaths {
      * The target vertex.
      */
     private final int _dest;
-    /**
-     * The path as a LinkedList.
-     */
-    private LinkedList<Integer> _path;
     /**
      * The traversal object.
      */
     private AStarTraversal _astar;
+    /**
+     * The number of vertices settled by the last search.
+     */
+    private int _settled;
+    /**
+     * Storage for bidirectional searches, possibly shared with other
+     * ShortestPaths on the same graph.
+     */
+    BidirectionalSearch.Storage _bidirectionalStorage =
+        new BidirectionalSearch.Storage();
 
     /**
      * A star traversal.
@@ -152,33 +234,46 @@ public abstract class ShortestPaths {
          * @param g graph object
          * @param fringe fringe as a priority queue
          */
-        AStarTraversal(Graph g, MyPriorityQueue fringe) {
+        AStarTraversal(Graph g, Queue<Integer> fringe) {
             super(g, fringe);
         }
 
         @Override
         public boolean visit(int v) {
-            if (v == getDest()) {
+            _settled += 1;
+            if (finished(v)) {
                 return false;
             } else {
-                for (int w : _G.successors(v)) {
-                    double dist = getWeight(v, w);
-                    double weightV = getWeight(v);
-                    double weightW = getWeight(w);
-                    if (weightW > dist + weightV) {
-                        setWeight(w, weightV + dist);
-                        setPredecessor(w, v);
-                    }
-                }
+                _current = v;
+                _G.forEachSuccessor(v, _relax);
             }
             return true;
         }
+
+        /** Relax the edge from _current to W. */
+        private void relax(int w) {
+            int v = _current;
+            double dist = getWeight(v, w);
+            double weightV = getWeight(v);
+            double weightW = getWeight(w);
+            if (weightW > dist + weightV) {
+                setWeight(w, weightV + dist);
+                setPredecessor(w, v);
+            }
+        }
+
+        /** The vertex being visited. */
+        private int _current;
+        /** Relaxes the edges leaving _current. */
+        private final IntConsumer _relax = this::relax;
     }
 
     /**
-     * A data structure of priority queue wrapping treeset.
+     * A data structure of priority queue wrapping treeset.  A vertex whose
+     * key changes is added again rather than re-keyed; the stale entry
+     * is skipped by the traversal once the vertex is marked.
      */
-    private class MyPriorityQueue extends AbstractQueue<Integer> {
+    protected class MyPriorityQueue extends AbstractQueue<Integer> {
 
         @Override
         public int size() {
@@ -192,47 +287,19 @@ public abstract class ShortestPaths {
 
         @Override
         public boolean offer(Integer e) {
-            Vertex vertex = new Vertex(e, getWeight(e) + estimatedDistance(e));
-            if (ts.add(vertex)) {
-                ll.add(vertex);
-            }
+            ts.add(new Vertex(e, priority(e)));
             return true;
         }
 
         @Override
         public Integer poll() {
             Vertex vertex = ts.pollFirst();
-            for (int i = 0; i < ll.size(); i++) {
-                if (ll.get(i) == vertex) {
-                    ll.remove(vertex);
-                    break;
-                }
-            }
-            return vertex.getVertex();
+            return vertex == null ? null : vertex.getVertex();
         }
 
         @Override
         public Integer peek() {
-            return ts.first().getVertex();
-        }
-
-        /**
-         * Interface for change elements' priority.
-         * @param vertex vertex index
-         * @param heuristic new heuristic value
-         */
-        public void changeValue(int vertex, int heuristic) {
-            Vertex v = null;
-            for (int i = 0; i < ll.size(); i++) {
-                if (ll.get(i).getVertex() == vertex) {
-                    v = ll.get(i);
-                    break;
-                }
-            }
-            if (v == null) {
-                return;
-            }
-            v.setHeuristic(heuristic);
+            return ts.isEmpty() ? null : ts.first().getVertex();
         }
 
         /**
@@ -241,12 +308,6 @@ public abstract class ShortestPaths {
         private TreeSet<Vertex> ts
                 = new TreeSet<Vertex>(new VertexComparator());
 
-        /**
-         * LinkedList storing all the Vertices
-         * which are identical to those in TreeSet.
-         */
-        private LinkedList<Vertex> ll = new LinkedList<>();
-
         /**
          * Comparator for vertex.
          */
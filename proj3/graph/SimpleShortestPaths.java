@@ -1,10 +1,17 @@
 package graph;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 /** A partial implementation of ShortestPaths that contains the weights of
  *  the vertices and the predecessor edges.   The client needs to
  *  supply only the two-argument getWeight method.
+ *  <p>
+ *  Weights and predecessors are kept in arrays indexed by vertex number.
+ *  Each entry is stamped with the number of the search that set it, so
+ *  that starting a new search clears all entries in constant time.  A
+ *  sequence of searches on one graph can share these arrays, and those
+ *  of bidirectional searches, by creating each new SimpleShortestPaths
+ *  from the last one.
  *  @author Zhibo Fan
  */
 public abstract class SimpleShortestPaths extends ShortestPaths {
@@ -17,8 +24,17 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
     /** A shortest path in G from SOURCE to DEST. */
     public SimpleShortestPaths(Graph G, int source, int dest) {
         super(G, source, dest);
-        _predecessor = new HashMap<>();
-        _weight = new HashMap<>();
+        _paths = new Paths();
+    }
+
+    /** A shortest path from SOURCE to DEST in the graph of PREVIOUS,
+     *  reusing the storage of PREVIOUS.  The results of PREVIOUS become
+     *  invalid once setPaths is called. */
+    public SimpleShortestPaths(SimpleShortestPaths previous, int source,
+                               int dest) {
+        super(previous._G, source, dest);
+        _paths = previous._paths;
+        _bidirectionalStorage = previous._bidirectionalStorage;
     }
 
     /** Returns the current weight of edge (U, V) in the graph.  If (U, V) is
@@ -26,10 +42,15 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
     @Override
     protected abstract double getWeight(int u, int v);
 
+    @Override
+    protected void clearPaths() {
+        _paths.clear(_G.maxVertex() + 1);
+    }
+
     @Override
     public double getWeight(int v) {
-        if (_G.contains(v)) {
-            return _weight.get(v);
+        if (_G.contains(v) && _paths.isSet(v)) {
+            return _paths._weight[v];
         } else {
             return Double.MAX_VALUE;
         }
@@ -37,13 +58,14 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
 
     @Override
     protected void setWeight(int v, double w) {
-        _weight.put(v, w);
+        _paths.set(v);
+        _paths._weight[v] = w;
     }
 
     @Override
     public int getPredecessor(int v) {
-        if (_G.contains(v)) {
-            return _predecessor.get(v);
+        if (_G.contains(v) && _paths.isSet(v)) {
+            return _paths._predecessor[v];
         } else {
             return 0;
         }
@@ -51,17 +73,84 @@ public abstract class SimpleShortestPaths extends ShortestPaths {
 
     @Override
     protected void setPredecessor(int v, int u) {
-        _predecessor.put(v, u);
+        _paths.set(v);
+        _paths._predecessor[v] = u;
     }
 
     /**
-     * The hash map stores the predecessor of each vertex.
+     * Weights and predecessors indexed by vertex number, valid only for
+     * vertices stamped with the current search number.
      */
-    private HashMap<Integer, Integer> _predecessor;
+    private static class Paths {
+        /**
+         * Start a new search on a graph whose vertices are less than N,
+         * clearing all entries.
+         */
+        void clear(int n) {
+            if (n > _stamp.length) {
+                grow(n);
+            }
+            if (_search == Integer.MAX_VALUE) {
+                Arrays.fill(_stamp, 0);
+                _search = 0;
+            }
+            _search += 1;
+        }
+
+        /**
+         * Returns true iff the entries for V were set in this search.
+         */
+        boolean isSet(int v) {
+            return v < _stamp.length && _stamp[v] == _search;
+        }
+
+        /**
+         * Make the entries for V valid in this search, giving them their
+         * cleared values if they were not already set.
+         */
+        void set(int v) {
+            if (v >= _stamp.length) {
+                grow(v + 1);
+            }
+            if (_stamp[v] != _search) {
+                _stamp[v] = _search;
+                _weight[v] = Double.MAX_VALUE;
+                _predecessor[v] = 0;
+            }
+        }
+
+        /**
+         * Enlarge the arrays to hold entries for at least N vertices.
+         */
+        private void grow(int n) {
+            int size = Math.max(n, 2 * _stamp.length);
+            _weight = Arrays.copyOf(_weight, size);
+            _predecessor = Arrays.copyOf(_predecessor, size);
+            _stamp = Arrays.copyOf(_stamp, size);
+        }
+
+        /**
+         * The weight of each vertex.
+         */
+        private double[] _weight = new double[0];
+        /**
+         * The predecessor of each vertex.
+         */
+        private int[] _predecessor = new int[0];
+        /**
+         * The search in which the entries of each vertex were last set.
+         */
+        private int[] _stamp = new int[0];
+        /**
+         * The number of the current search (never 0).
+         */
+        private int _search = 1;
+    }
 
     /**
-     * The hash map stores the weight of each vertex.
+     * The weights and predecessors, possibly shared with other
+     * SimpleShortestPaths on the same graph.
      */
-    private HashMap<Integer, Double> _weight;
+    private final Paths _paths;
 
 }
@@ -2,10 +2,11 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Queue;
+import java.util.function.IntConsumer;
 
 /**
  * Implements a generalized traversal of a graph.  At any given time,
@@ -36,18 +37,16 @@ public abstract class Traversal {
     protected Traversal(Graph G, Queue<Integer> fringe) {
         _G = G;
         _fringe = fringe;
-        _marked = new boolean[_G.vertexSize()];
-        _postVisited = new boolean[_G.vertexSize()];
+        _marked = new BitSet(_G.maxVertex() + 1);
+        _postVisited = new BitSet(_G.maxVertex() + 1);
     }
 
     /**
      * Unmark all vertices in the graph.
      */
     public void clear() {
-        for (int i = 0; i < _marked.length; i++) {
-            _marked[i] = false;
-            _postVisited[i] = false;
-        }
+        _marked.clear();
+        _postVisited.clear();
     }
 
     /**
@@ -74,22 +73,9 @@ public abstract class Traversal {
                     return;
                 }
                 if (!reverseSuccessors(current)) {
-                    for (int s : _G.successors(current)) {
-                        if (processSuccessor(current, s)) {
-                            _fringe.add(s);
-                        }
-                    }
+                    processSuccessors(current);
                 } else {
-                    ArrayList<Integer> temp = new ArrayList<>();
-                    for (int s : _G.successors(current)) {
-                        temp.add(s);
-                    }
-                    for (int i = temp.size() - 1; i >= 0; i--) {
-                        int s = temp.get(i);
-                        if (processSuccessor(current, s)) {
-                            _fringe.add(s);
-                        }
-                    }
+                    processSuccessorsReversed(current);
                 }
             }
         }
@@ -107,14 +93,7 @@ public abstract class Traversal {
      */
     protected boolean marked(int v) {
         _G.checkMyVertex(v);
-        int i = 0;
-        Iteration<Integer> iter = _G.vertices();
-        for (; iter.hasNext(); i++) {
-            if (iter.next() == v) {
-                return _marked[i];
-            }
-        }
-        return false;
+        return _marked.get(v);
     }
 
     /**
@@ -124,42 +103,21 @@ public abstract class Traversal {
      */
     protected boolean postMarked(int v) {
         _G.checkMyVertex(v);
-        int i = 0;
-        Iteration<Integer> iter = _G.vertices();
-        for (; iter.hasNext(); i++) {
-            if (iter.next() == v) {
-                return _postVisited[i];
-            }
-        }
-        return false;
+        return _postVisited.get(v);
     }
 
     /**
      * Mark vertex V.
      */
     protected void mark(int v) {
-        int i = 0;
-        Iteration<Integer> iter = _G.vertices();
-        for (; iter.hasNext(); i++) {
-            if (iter.next() == v) {
-                _marked[i] = true;
-                return;
-            }
-        }
+        _marked.set(v);
     }
 
     /**
      * Mark vertex V if it is to be postVisited.
      */
     protected void postMark(int v) {
-        int i = 0;
-        Iteration<Integer> iter = _G.vertices();
-        for (; iter.hasNext(); i++) {
-            if (iter.next() == v) {
-                _postVisited[i] = true;
-                return;
-            }
-        }
+        _postVisited.set(v);
     }
 
     /**
@@ -198,13 +156,54 @@ public abstract class Traversal {
      *  default implementation simply processes each successor using
      *  processSuccessor. */
     protected void processSuccessors(int u) {
-        for (int v : _G.successors(u)) {
+        _from = u;
+        _G.forEachSuccessor(u, _addSuccessor);
+    }
+
+    /** Process the successors of vertex U as for processSuccessors, but
+     *  in reverse order. */
+    private void processSuccessorsReversed(int u) {
+        _successorCount = 0;
+        _G.forEachSuccessor(u, _collectSuccessor);
+        for (int i = _successorCount - 1; i >= 0; i -= 1) {
+            int v = _successors[i];
             if (processSuccessor(u, v)) {
-                _fringe.add(v);
+                _fringe.add(box(v));
             }
         }
     }
 
+    /** Process successor V of _from, adding it to the fringe if
+     *  processSuccessor so indicates. */
+    private void addSuccessor(int v) {
+        if (processSuccessor(_from, v)) {
+            _fringe.add(box(v));
+        }
+    }
+
+    /** Append V to _successors. */
+    private void collectSuccessor(int v) {
+        if (_successorCount == _successors.length) {
+            _successors = Arrays.copyOf(_successors, 2 * _successorCount);
+        }
+        _successors[_successorCount] = v;
+        _successorCount += 1;
+    }
+
+    /** Returns V as an Integer, reusing the same object for each V so that
+     *  adding vertices to the fringe does not allocate. */
+    protected Integer box(int v) {
+        if (v >= _boxes.length) {
+            _boxes = Arrays.copyOf(_boxes,
+                                   Math.max(v + 1, 2 * _boxes.length));
+        }
+        Integer result = _boxes[v];
+        if (result == null) {
+            result = _boxes[v] = v;
+        }
+        return result;
+    }
+
     /** Process successor V to U.  Returns true iff V is then to
      *  be added to the fringe.  By default, returns true iff V is unmarked. */
     protected boolean processSuccessor(int u, int v) {
@@ -220,13 +219,28 @@ public abstract class Traversal {
      */
     protected final Queue<Integer> _fringe;
 
+    /** The vertex whose successors are being processed. */
+    private int _from;
+    /** Successors of the vertex being processed in reverse order, in
+     *  _successors[0 .. _successorCount-1]. */
+    private int[] _successors = new int[16];
+    /** Number of valid entries in _successors. */
+    private int _successorCount;
+    /** Cached boxed vertex numbers, indexed by vertex number. */
+    private Integer[] _boxes = new Integer[16];
+    /** Adds a successor of _from to the fringe as needed. */
+    private final IntConsumer _addSuccessor = this::addSuccessor;
+    /** Appends a successor to _successors. */
+    private final IntConsumer _collectSuccessor = this::collectSuccessor;
+
     /**
-     * Boolean array of marked vertex.
+     * Marked vertices, indexed by vertex number.  Grows as needed when
+     * vertices are added to the graph.
      */
-    protected boolean[] _marked;
+    protected BitSet _marked;
 
     /**
-     * Boolean array of postVisited vertex.
+     * PostVisited vertices, indexed by vertex number.
      */
-    protected boolean[] _postVisited;
+    protected BitSet _postVisited;
 }
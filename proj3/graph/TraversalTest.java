@@ -1,11 +1,20 @@
 package graph;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
 import ucb.junit.textui;
 
+import static org.junit.Assert.*;
+
 /** Unit tests for the Traversal class.
  *  @author Zhibo Fan
  */
@@ -81,6 +90,152 @@ public class TraversalTest {
         textui.runClasses(TraversalTest.class);
     }
 
+    /** Returns a directed graph with vertices 1 .. N, each vertex I < N
+     *  having an edge to I + 1 and to a random vertex chosen by RAND. */
+    private static DirectedGraph chainGraph(int n, Random rand) {
+        DirectedGraph g = new DirectedGraph();
+        for (int i = 1; i <= n; i += 1) {
+            g.add();
+        }
+        for (int i = 1; i < n; i += 1) {
+            g.add(i, i + 1);
+            g.add(i, 1 + rand.nextInt(n));
+        }
+        return g;
+    }
+
+    /** Traversals of graphs from 10^3 to 10^6 vertices visit (and
+     *  post-visit) every vertex exactly once.  With marking that is
+     *  not linear, the larger graphs exceed the time limit. */
+    @Test
+    public void scaling() {
+        Random rand = new Random(61);
+        for (int n = 1000; n <= 1000000; n *= 10) {
+            DirectedGraph g = chainGraph(n, rand);
+            int[] counts = new int[3];
+            new BreadthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    counts[0] += 1;
+                    return true;
+                }
+            }.traverse(1);
+            new DepthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    counts[1] += 1;
+                    return true;
+                }
+
+                @Override
+                protected boolean postVisit(int v) {
+                    counts[2] += 1;
+                    return true;
+                }
+            }.traverse(1);
+            assertArrayEquals(new int[] { n, n, n }, counts);
+        }
+    }
+
+    /** Returns the distances in edges from vertex 1 to each vertex of G,
+     *  indexed by vertex number, with -1 for unreachable vertices. */
+    private static int[] distances(Graph g) {
+        int[] dist = new int[g.maxVertex() + 1];
+        Arrays.fill(dist, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        dist[1] = 0;
+        queue.add(1);
+        while (!queue.isEmpty()) {
+            int v = queue.remove();
+            for (int w : g.successors(v)) {
+                if (dist[w] < 0) {
+                    dist[w] = dist[v] + 1;
+                    queue.add(w);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /** Parallel traversals, both top-down and bottom-up, visit each
+     *  reachable vertex once, and finish each level before the next. */
+    @Test
+    public void parallelLevels() {
+        Random rand = new Random(61);
+        UndirectedGraph dense = new UndirectedGraph();
+        for (int i = 0; i < 20000; i += 1) {
+            dense.add();
+        }
+        for (int i = 0; i < 200000; i += 1) {
+            dense.add(1 + rand.nextInt(20000), 1 + rand.nextInt(20000));
+        }
+        for (Graph g : new Graph[] { chainGraph(100000, rand), dense }) {
+            int[] dist = distances(g);
+            AtomicIntegerArray order = new AtomicIntegerArray(dist.length);
+            AtomicInteger clock = new AtomicInteger();
+            BreadthFirstTraversal bfs = new BreadthFirstTraversal(g) {
+                @Override
+                protected boolean visit(int v) {
+                    assertEquals(0, order.getAndSet(v,
+                                                    clock.incrementAndGet()));
+                    return true;
+                }
+            };
+            bfs.traverseParallel(1, 4);
+            int[] first = new int[dist.length], last = new int[dist.length];
+            Arrays.fill(first, Integer.MAX_VALUE);
+            for (int v = 1; v < dist.length; v += 1) {
+                assertEquals(dist[v] >= 0, order.get(v) != 0);
+                assertEquals(dist[v] >= 0, bfs.marked(v));
+                if (dist[v] >= 0) {
+                    first[dist[v]] = Math.min(first[dist[v]], order.get(v));
+                    last[dist[v]] = Math.max(last[dist[v]], order.get(v));
+                }
+            }
+            for (int d = 1; d < dist.length && last[d] != 0; d += 1) {
+                assertTrue("levels overlap", last[d - 1] < first[d]);
+            }
+        }
+    }
+
+    /** A parallel traversal stops soon after a visit returns false, marks
+     *  only the vertices it visited, and can be resumed. */
+    @Test
+    public void parallelStop() {
+        DirectedGraph g = chainGraph(100000, new Random(61));
+        int[] dist = distances(g);
+        AtomicInteger count = new AtomicInteger();
+        AtomicIntegerArray visits = new AtomicIntegerArray(dist.length);
+        boolean[] stop = { true };
+        BreadthFirstTraversal bfs = new BreadthFirstTraversal(g) {
+            @Override
+            protected boolean visit(int v) {
+                count.incrementAndGet();
+                visits.incrementAndGet(v);
+                return !stop[0] || dist[v] < 3;
+            }
+        };
+        bfs.traverseParallel(1, 4);
+        int near = 0;
+        for (int d : dist) {
+            near += d >= 0 && d <= 3 ? 1 : 0;
+        }
+        assertTrue(count.get() <= near);
+        assertTrue(count.get() > 0);
+        ArrayList<Integer> reachable = new ArrayList<>();
+        for (int v = 1; v < dist.length; v += 1) {
+            assertEquals(visits.get(v) == 1, bfs.marked(v));
+            if (dist[v] >= 0) {
+                reachable.add(v);
+            }
+        }
+        stop[0] = false;
+        bfs.traverseParallel(reachable, 4);
+        for (int v : reachable) {
+            assertEquals(1, visits.get(v));
+        }
+    }
+
     @Test
     public void empty() {
         _breadth.traverse(1);
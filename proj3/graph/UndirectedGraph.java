@@ -2,6 +2,9 @@ package graph;
 
 /* See restrictions in Graph.java. */
 
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
 /** Represents an undirected graph.  Out edges and in edges are not
  *  distinguished.  Likewise for successors and predecessors.
  *
@@ -24,4 +27,14 @@ public class UndirectedGraph extends GraphObj {
         return successors(v);
     }
 
+    @Override
+    public void forEachPredecessor(int v, IntConsumer action) {
+        forEachSuccessor(v, action);
+    }
+
+    @Override
+    public int findPredecessor(int v, IntPredicate test) {
+        return contains(v) ? find(_out[v], outDegree(v), test) : 0;
+    }
+
 }
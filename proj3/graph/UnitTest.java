@@ -16,7 +16,8 @@ public class UnitTest {
     /** Run all JUnit tests in the graph package. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(graph.GraphTest.class,
-                graph.AnotherGraphTest.class, graph.TraversalTest.class));
+                graph.AnotherGraphTest.class, graph.TraversalTest.class,
+                graph.PathTest.class));
     }
 
 }
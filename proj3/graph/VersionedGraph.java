@@ -0,0 +1,71 @@
+package graph;
+
+/* See restrictions in Graph.java. */
+
+import java.util.function.Consumer;
+
+/** A LabeledGraph shared between writers, which change it one at a time,
+ *  and any number of readers, which never wait.  Readers work on the
+ *  current version, an immutable FrozenLabeledGraph.  A writer changes a
+ *  private mutable copy of the graph, freezes it, and publishes the new
+ *  snapshot with a single volatile write, so that each reader sees either
+ *  the whole of a change or none of it.  A reader that holds on to a
+ *  snapshot keeps a consistent view of the graph, even while later
+ *  versions are published.  Since each update copies the graph, writers
+ *  should batch their changes.
+ *  @author Zhibo Fan
+ */
+public class VersionedGraph<VL, EL> {
+
+    /** A versioned graph whose first version is a snapshot of G.  G
+     *  belongs to me from now on, and should be changed only through
+     *  update. */
+    public VersionedGraph(LabeledGraph<VL, EL> G) {
+        _graph = G;
+        _current = new Version<>(G.freeze(), 0);
+    }
+
+    /** Returns the current version of the graph. */
+    public FrozenLabeledGraph<VL, EL> current() {
+        return _current._snapshot;
+    }
+
+    /** Returns the number of updates published so far. */
+    public long version() {
+        return _current._number;
+    }
+
+    /** Apply CHANGE to the graph and publish the result as the new
+     *  current version, which is returned.  Updates are applied one at a
+     *  time.  If CHANGE throws an exception, nothing is published, but
+     *  the changes it made before doing so remain, and will appear in
+     *  the next version. */
+    public synchronized FrozenLabeledGraph<VL, EL> update(
+        Consumer<? super LabeledGraph<VL, EL>> change) {
+        change.accept(_graph);
+        Version<VL, EL> next =
+            new Version<>(_graph.freeze(), _current._number + 1);
+        _current = next;
+        return next._snapshot;
+    }
+
+    /** A published snapshot and its number. */
+    private static final class Version<VL, EL> {
+        /** Version NUMBER, whose graph is SNAPSHOT. */
+        Version(FrozenLabeledGraph<VL, EL> snapshot, long number) {
+            _snapshot = snapshot;
+            _number = number;
+        }
+
+        /** The graph. */
+        private final FrozenLabeledGraph<VL, EL> _snapshot;
+        /** The number of updates before this version. */
+        private final long _number;
+    }
+
+    /** The mutable graph from which versions are made.  Accessed only
+     *  while holding my lock. */
+    private final LabeledGraph<VL, EL> _graph;
+    /** The current version. */
+    private volatile Version<VL, EL> _current;
+}
@@ -0,0 +1,450 @@
+package make;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import static make.Main.error;
+
+/** An analysis of the rules on which a set of targets depend: their
+ *  circular dependencies, the longest chain of rules below each target
+ *  (its critical path), and the number of rules that a parallel build can
+ *  usefully run at once.  Each rule has a cost, an estimate of the time
+ *  its commands take, which by default is its number of commands.
+ *  <p>
+ *  The strongly connected components of the dependence graph are found
+ *  with Tarjan's algorithm, which produces each component after all those
+ *  on which it depends.  Every component of more than one rule (or of one
+ *  rule that depends on itself) is a circular dependency.  Walking the
+ *  components in the same order then gives, for each rule, the total cost
+ *  of the costliest chain from it down to a rule with no prerequisites,
+ *  which is also the earliest time at which a build with unlimited jobs
+ *  can finish it.  All of this takes time linear in the size of the graph
+ *  (apart from one sort to find the peak number of concurrent rules).
+ *  A circular dependency is treated as a single rule whose cost is the
+ *  sum of those of its members.
+ *  @author Zhibo Fan
+ */
+final class DependencyAnalysis {
+
+    /** An analysis of the rules in DEPENDS on which the rules in TARGETS
+     *  depend, including those rules, or of all rules in DEPENDS if
+     *  TARGETS is empty.  COSTS maps targets to their estimated costs;
+     *  targets it does not mention cost their number of commands. */
+    DependencyAnalysis(Depends depends, List<Rule> targets,
+                       Map<String, Double> costs) {
+        _depends = depends;
+        int n = depends.maxVertex() + 1;
+        _cost = new double[n];
+        _succStart = new int[n + 1];
+        for (int v = 1; v < n; v += 1) {
+            _succStart[v + 1] = _succStart[v] + depends.outDegree(v);
+            if (depends.contains(v)) {
+                Rule rule = depends.getLabel(v);
+                Double cost = costs.get(rule.getTarget());
+                _cost[v] = cost == null ? rule.getCommands().size() : cost;
+            }
+        }
+        _succ = new int[_succStart[n]];
+        for (int v = 1; v < n; v += 1) {
+            int k = _succStart[v];
+            for (int w : depends.successors(v)) {
+                _succ[k] = w;
+                k += 1;
+            }
+        }
+        _index = new int[n];
+        _low = new int[n];
+        _open = new int[n];
+        _component = new int[n];
+        Arrays.fill(_component, -1);
+        _members = new int[n];
+        _componentStart = new int[n + 1];
+        _finish = new double[n];
+        _next = new int[n];
+        if (targets.isEmpty()) {
+            for (int v = 1; v < n; v += 1) {
+                if (depends.contains(v)) {
+                    findComponents(v);
+                }
+            }
+        } else {
+            for (Rule target : targets) {
+                findComponents(target.getVertex());
+            }
+        }
+        findFinishTimes();
+    }
+
+    /** Returns the circular dependencies among my rules, one for each
+     *  strongly connected component that contains a cycle.  Each is a
+     *  cycle through that component, starting and ending with the same
+     *  rule, in which each rule depends on the one after it. */
+    List<List<Rule>> cycles() {
+        List<List<Rule>> result = new ArrayList<>();
+        for (int c = 0; c < _numComponents; c += 1) {
+            if (isCyclic(c)) {
+                result.add(cycle(c));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the rules in each of my strongly connected components that
+     *  contains a cycle, in the same order as cycles(). */
+    List<List<Rule>> cyclicComponents() {
+        List<List<Rule>> result = new ArrayList<>();
+        for (int c = 0; c < _numComponents; c += 1) {
+            if (isCyclic(c)) {
+                List<Rule> members = new ArrayList<>();
+                for (int k = _componentStart[c]; k < _componentStart[c + 1];
+                     k += 1) {
+                    members.add(_depends.getLabel(_members[k]));
+                }
+                result.add(members);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the estimated cost of RULE. */
+    double getCost(Rule rule) {
+        return _cost[rule.getVertex()];
+    }
+
+    /** Returns the total cost of the costliest chain of rules from RULE
+     *  down to a rule with no prerequisites: the earliest time at which a
+     *  build with unlimited jobs can finish RULE. */
+    double getFinish(Rule rule) {
+        return _finish[rule.getVertex()];
+    }
+
+    /** Returns a costliest chain of rules from RULE down to a rule with no
+     *  prerequisites, with each rule followed by one of its prerequisites.
+     *  A rule in a circular dependency stands for its whole cycle. */
+    List<Rule> criticalPath(Rule rule) {
+        List<Rule> result = new ArrayList<>();
+        for (int v = rule.getVertex(); v != 0; v = _next[v]) {
+            result.add(_depends.getLabel(v));
+        }
+        return result;
+    }
+
+    /** Returns a rule whose critical path is the costliest of all, or null
+     *  if I have no rules. */
+    Rule criticalRule() {
+        return _spanVertex == 0 ? null : _depends.getLabel(_spanVertex);
+    }
+
+    /** Returns the total cost of my rules. */
+    double getWork() {
+        return _work;
+    }
+
+    /** Returns the cost of the costliest chain of my rules, the least time
+     *  that any build of them can take. */
+    double getSpan() {
+        return _span;
+    }
+
+    /** Returns the total cost of my rules divided by the cost of the
+     *  costliest chain: the greatest average number of rules that any
+     *  build can run at once, and so roughly the largest number of jobs
+     *  that can speed up the build. */
+    double getParallelism() {
+        return _span == 0 ? 1 : _work / _span;
+    }
+
+    /** Returns the largest number of rules running at the same time when
+     *  each rule is started as soon as its prerequisites are finished,
+     *  with unlimited jobs.  No more jobs than this are ever useful. */
+    int getPeakJobs() {
+        double[] starts = new double[_numComponents];
+        double[] finishes = new double[_numComponents];
+        int k = 0;
+        for (int c = 0; c < _numComponents; c += 1) {
+            int v = _members[_componentStart[c]];
+            double cost = componentCost(c);
+            if (cost > 0) {
+                starts[k] = _finish[v] - cost;
+                finishes[k] = _finish[v];
+                k += 1;
+            }
+        }
+        Arrays.sort(starts, 0, k);
+        Arrays.sort(finishes, 0, k);
+        int peak, running, f;
+        peak = running = f = 0;
+        for (int s = 0; s < k; s += 1) {
+            while (finishes[f] <= starts[s]) {
+                running -= 1;
+                f += 1;
+            }
+            running += 1;
+            peak = Math.max(peak, running);
+        }
+        return peak;
+    }
+
+    /** Signal an error describing every circular dependency among the
+     *  rules in DEPENDS on which the rules in TARGETS depend, if there are
+     *  any. */
+    static void checkCycles(Depends depends, List<Rule> targets) {
+        DependencyAnalysis analysis =
+            new DependencyAnalysis(depends, targets,
+                                   Collections.<String, Double>emptyMap());
+        List<String> cycles = analysis.describeCycles();
+        if (!cycles.isEmpty()) {
+            error("Error: circular dependency: %s", String.join("; ", cycles));
+        }
+    }
+
+    /** Returns a description of each of my circular dependencies: a cycle
+     *  through it, followed by any other rules in the same component. */
+    List<String> describeCycles() {
+        List<String> result = new ArrayList<>();
+        List<List<Rule>> cycles = cycles(), components = cyclicComponents();
+        for (int i = 0; i < cycles.size(); i += 1) {
+            List<Rule> others = new ArrayList<>(components.get(i));
+            others.removeAll(cycles.get(i));
+            String cycle = describe(cycles.get(i), " -> ");
+            result.add(others.isEmpty() ? cycle
+                       : String.format("%s (also involving %s)", cycle,
+                                       describe(others, ", ")));
+        }
+        return result;
+    }
+
+    /** Returns the targets of RULES, separated by SEPARATOR. */
+    static String describe(List<Rule> rules, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (Rule rule : rules) {
+            result.append(result.length() == 0 ? "" : separator);
+            result.append(rule.getTarget());
+        }
+        return result.toString();
+    }
+
+    /** Returns the cost estimates in the file named COSTSNAME, each line
+     *  of which contains a target and its cost. */
+    static Map<String, Double> readCosts(String costsName) {
+        HashMap<String, Double> costs = new HashMap<>();
+        String name = "<unknown>";
+        try (Scanner inp = new Scanner(new File(costsName))) {
+            while (inp.hasNext()) {
+                name = inp.next();
+                double cost = inp.nextDouble();
+                if (!(cost >= 0)) {
+                    error("Error: Bad cost for %s: %s", name, cost);
+                }
+                costs.put(name, cost);
+            }
+        } catch (NoSuchElementException excp) {
+            error("Error: Near cost of %s: %s", name, excp.getMessage());
+        } catch (FileNotFoundException excp) {
+            error("Error: File not found %s", costsName);
+        }
+        return costs;
+    }
+
+    /** Find the strongly connected components of the rules reachable from
+     *  vertex ROOT that are not yet in components, numbering them in the
+     *  order Tarjan's algorithm produces them.  Uses explicit stacks, since
+     *  chains of dependencies may be very long. */
+    private void findComponents(int root) {
+        if (_index[root] > 0) {
+            return;
+        }
+        int[] frames = new int[16], positions = new int[16];
+        int depth = 0;
+        frames[0] = root;
+        positions[0] = _succStart[root];
+        open(root);
+        while (depth >= 0) {
+            int v = frames[depth];
+            if (positions[depth] < _succStart[v + 1]) {
+                int w = _succ[positions[depth]];
+                positions[depth] += 1;
+                if (_index[w] == 0) {
+                    depth += 1;
+                    if (depth == frames.length) {
+                        frames = Arrays.copyOf(frames, 2 * depth);
+                        positions = Arrays.copyOf(positions, 2 * depth);
+                    }
+                    frames[depth] = w;
+                    positions[depth] = _succStart[w];
+                    open(w);
+                } else if (_component[w] < 0) {
+                    _low[v] = Math.min(_low[v], _index[w]);
+                }
+            } else {
+                if (_low[v] == _index[v]) {
+                    close(v);
+                }
+                depth -= 1;
+                if (depth >= 0) {
+                    int u = frames[depth];
+                    _low[u] = Math.min(_low[u], _low[v]);
+                }
+            }
+        }
+    }
+
+    /** Give vertex V the next index and push it on the stack of vertices
+     *  whose components are not yet known. */
+    private void open(int v) {
+        _counter += 1;
+        _index[v] = _low[v] = _counter;
+        _open[_numOpen] = v;
+        _numOpen += 1;
+    }
+
+    /** Pop vertices from the stack of open vertices down to V, which is
+     *  the root of their component, forming the next component. */
+    private void close(int v) {
+        int c = _numComponents;
+        int w;
+        do {
+            _numOpen -= 1;
+            w = _open[_numOpen];
+            _component[w] = c;
+            _members[_numMembers] = w;
+            _numMembers += 1;
+        } while (w != v);
+        _numComponents += 1;
+        _componentStart[_numComponents] = _numMembers;
+    }
+
+    /** Compute _finish, _next, _work, and _span, visiting the components
+     *  in the order found, in which each follows all those on which it
+     *  depends. */
+    private void findFinishTimes() {
+        for (int c = 0; c < _numComponents; c += 1) {
+            double below = 0;
+            int best = 0;
+            for (int k = _componentStart[c]; k < _componentStart[c + 1];
+                 k += 1) {
+                int v = _members[k];
+                for (int i = _succStart[v]; i < _succStart[v + 1]; i += 1) {
+                    int w = _succ[i];
+                    if (_component[w] != c
+                        && (best == 0 || _finish[w] > below)) {
+                        below = _finish[w];
+                        best = w;
+                    }
+                }
+            }
+            double cost = componentCost(c);
+            _work += cost;
+            if (_spanVertex == 0 || cost + below > _span) {
+                _span = cost + below;
+                _spanVertex = _members[_componentStart[c]];
+            }
+            for (int k = _componentStart[c]; k < _componentStart[c + 1];
+                 k += 1) {
+                _finish[_members[k]] = cost + below;
+                _next[_members[k]] = best;
+            }
+        }
+    }
+
+    /** Returns the total cost of the rules in component C. */
+    private double componentCost(int c) {
+        double cost = 0;
+        for (int k = _componentStart[c]; k < _componentStart[c + 1]; k += 1) {
+            cost += _cost[_members[k]];
+        }
+        return cost;
+    }
+
+    /** Returns true iff component C contains a cycle. */
+    private boolean isCyclic(int c) {
+        if (_componentStart[c + 1] - _componentStart[c] > 1) {
+            return true;
+        }
+        int v = _members[_componentStart[c]];
+        for (int i = _succStart[v]; i < _succStart[v + 1]; i += 1) {
+            if (_succ[i] == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns a cycle through component C, as for cycles(), found by a
+     *  breadth-first search within C from one of its members back to that
+     *  member. */
+    private List<Rule> cycle(int c) {
+        int root = _members[_componentStart[c]];
+        HashMap<Integer, Integer> parent = new HashMap<>();
+        ArrayList<Integer> queue = new ArrayList<>();
+        queue.add(root);
+        parent.put(root, 0);
+        int last = 0;
+        for (int q = 0; last == 0; q += 1) {
+            int v = queue.get(q);
+            for (int i = _succStart[v]; i < _succStart[v + 1]; i += 1) {
+                int w = _succ[i];
+                if (w == root) {
+                    last = v;
+                    break;
+                } else if (_component[w] == c && !parent.containsKey(w)) {
+                    parent.put(w, v);
+                    queue.add(w);
+                }
+            }
+        }
+        ArrayList<Rule> result = new ArrayList<>();
+        result.add(_depends.getLabel(root));
+        for (int v = last; v != 0; v = parent.get(v)) {
+            result.add(_depends.getLabel(v));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** The dependence graph. */
+    private final Depends _depends;
+    /** The estimated cost of each vertex's rule. */
+    private final double[] _cost;
+    /** The successors of vertex V are _succ[_succStart[V] ..
+     *  _succStart[V+1]-1]. */
+    private final int[] _succStart, _succ;
+    /** Order in which Tarjan's algorithm reached each vertex, starting at
+     *  1, or 0 if it has not been reached. */
+    private final int[] _index;
+    /** The least index of a vertex known to be in the same component as
+     *  each vertex. */
+    private final int[] _low;
+    /** The vertices whose components are not yet known, in order of
+     *  index. */
+    private final int[] _open;
+    /** Number of vertices in _open. */
+    private int _numOpen;
+    /** Last index assigned. */
+    private int _counter;
+    /** The component of each vertex, or -1 if it has none yet. */
+    private final int[] _component;
+    /** The vertices of component C are _members[_componentStart[C] ..
+     *  _componentStart[C+1]-1]. */
+    private final int[] _members, _componentStart;
+    /** Number of vertices in _members. */
+    private int _numMembers;
+    /** Number of components. */
+    private int _numComponents;
+    /** The value of getFinish for each vertex's rule. */
+    private final double[] _finish;
+    /** The next vertex on the critical path from each vertex, or 0. */
+    private final int[] _next;
+    /** The values of getWork and getSpan. */
+    private double _work, _span;
+    /** A vertex whose critical path costs _span, or 0 if there is none. */
+    private int _spanVertex;
+}
@@ -0,0 +1,119 @@
+package make;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/** Divides a character stream into lines, as Scanner.nextLine does, but
+ *  without making a String of each line.  Lines end at "\r\n" or at any
+ *  one of '\n', '\r', '\u2028', '\u2029', or '\u0085'; a final line need
+ *  not be terminated.  After each successful call to next, the current
+ *  line (without its terminator) is chars()[start() .. end()-1], which
+ *  remains valid until the next call.
+ *  @author Zhibo Fan
+ */
+final class LineReader implements Closeable {
+
+    /** A reader of the lines of INPUT. */
+    LineReader(Reader input) {
+        _input = input;
+    }
+
+    /** Advance to the next line.  Returns false if there is none. */
+    boolean next() throws IOException {
+        int i = _pos;
+        while (true) {
+            while (i < _limit && !isTerminator(_buffer[i])) {
+                i += 1;
+            }
+            if (i < _limit) {
+                if (_buffer[i] == '\r' && i + 1 == _limit && !_eof) {
+                    i = fill(i);
+                    continue;
+                }
+                _start = _pos;
+                _end = i;
+                if (_buffer[i] == '\r' && i + 1 < _limit
+                    && _buffer[i + 1] == '\n') {
+                    i += 1;
+                }
+                _pos = i + 1;
+                return true;
+            }
+            if (_eof) {
+                if (_pos == _limit) {
+                    return false;
+                }
+                _start = _pos;
+                _end = _pos = _limit;
+                return true;
+            }
+            i = fill(i);
+        }
+    }
+
+    /** Returns the buffer holding the current line. */
+    char[] chars() {
+        return _buffer;
+    }
+
+    /** Returns the index in chars() of the first character of the current
+     *  line. */
+    int start() {
+        return _start;
+    }
+
+    /** Returns the index in chars() just past the current line. */
+    int end() {
+        return _end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _input.close();
+    }
+
+    /** Move the unread characters to the start of the buffer, enlarging
+     *  it if it is full, and read more characters after them.  Returns
+     *  the new index of the character at index I. */
+    private int fill(int i) throws IOException {
+        int unread = _limit - _pos;
+        System.arraycopy(_buffer, _pos, _buffer, 0, unread);
+        i -= _pos;
+        _pos = 0;
+        _limit = unread;
+        if (_limit == _buffer.length) {
+            _buffer = Arrays.copyOf(_buffer, 2 * _buffer.length);
+        }
+        int n = _input.read(_buffer, _limit, _buffer.length - _limit);
+        if (n < 0) {
+            _eof = true;
+        } else {
+            _limit += n;
+        }
+        return i;
+    }
+
+    /** Returns true iff C ends a line. */
+    private static boolean isTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+            || c == '\u0085';
+    }
+
+    /** Initial buffer size. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The source of characters. */
+    private final Reader _input;
+    /** Characters read from _input. */
+    private char[] _buffer = new char[BUFFER_SIZE];
+    /** Index of the first unread character in _buffer. */
+    private int _pos;
+    /** Number of valid characters in _buffer. */
+    private int _limit;
+    /** True iff _input is exhausted. */
+    private boolean _eof;
+    /** Bounds of the current line in _buffer. */
+    private int _start, _end;
+}
@@ -10,30 +10,59 @@ public final class Main {
 
     /** Entry point for the CS61B make program.  RAWARGS may contain options
      *  and targets:
-     *      [ -f MAKEFILE ] [ -D FILEINFO ] TARGET1 TARGET2 ...
+     *      [ -f MAKEFILE ] [ -D FILEINFO ] [ -j JOBS ] [ -c SNAPSHOT ]
+     *      [ -a [ -e COSTS ] ] TARGET1 TARGET2 ...
+     *  With -j, up to JOBS rules whose prerequisites are up to date are
+     *  rebuilt at once.  With -c, the rules and the ages of targets after
+     *  the build are saved in the file SNAPSHOT, and later runs with the
+     *  same MAKEFILE use them instead of reparsing MAKEFILE (or, if
+     *  FILEINFO is also unchanged, instead of rereading FILEINFO).
+     *  With -a, nothing is built; instead, the rules needed for the
+     *  targets (all rules, if there are no targets) are analyzed, and
+     *  their circular dependencies, critical paths, and useful number of
+     *  jobs are printed.  COSTS contains lines "TARGET COST" estimating the
+     *  time to rebuild targets (by default, their numbers of commands).
      */
     public static void main(String... rawArgs) {
         String makefileName;
         String fileInfoName;
-        CommandArgs args = new CommandArgs("-f={0,1} -D={0,1} --={1,}",
-                                           rawArgs);
+        CommandArgs args =
+            new CommandArgs("-f={0,1} -D={0,1} -j={0,1} -c={0,1} -a -e={0,1}"
+                            + " --={0,}",
+                            rawArgs);
 
-        if (!args.ok()) {
+        if (!args.ok() || (args.get("--").isEmpty() && !args.contains("-a"))
+            || (args.contains("-e") && !args.contains("-a"))) {
             usage();
         }
 
         makefileName = args.getLast("-f", "Makefile");
         fileInfoName = args.getLast("-D", "fileinfo");
+        String jobs = args.getLast("-j");
+        String snapshotName = args.getLast("-c");
 
         ArrayList<String> targets = new ArrayList<String>();
 
         Maker maker = new Maker();
 
         try {
-            maker.readFileAges(fileInfoName);
-            maker.readMakefile(makefileName);
-            for (String target : args.get("--")) {
-                maker.build(target);
+            if (snapshotName == null) {
+                maker.readFileAges(fileInfoName);
+                maker.readMakefile(makefileName);
+            } else {
+                maker.readSnapshot(makefileName, fileInfoName, snapshotName);
+            }
+            if (args.contains("-a")) {
+                maker.analyze(args.get("--"), args.getLast("-e"));
+            } else if (jobs == null) {
+                for (String target : args.get("--")) {
+                    maker.build(target);
+                }
+            } else {
+                maker.build(args.get("--"), parseJobs(jobs));
+            }
+            if (snapshotName != null) {
+                maker.writeSnapshot(snapshotName);
             }
         } catch (IllegalArgumentException | IllegalStateException excp) {
             System.err.printf("make: %s%n", excp.getMessage());
@@ -41,6 +70,16 @@ public final class Main {
         }
     }
 
+    /** Returns the number of jobs denoted by JOBS. */
+    private static int parseJobs(String jobs) {
+        try {
+            return Integer.parseInt(jobs);
+        } catch (NumberFormatException excp) {
+            error("Error: bad number of jobs: %s", jobs);
+            return 0;
+        }
+    }
+
     /** Throw an exception containing a message constructed from FORMAT
      *  and ARGS, as for String.format. */
     static void error(String format, Object... args) {
@@ -50,13 +89,23 @@ public final class Main {
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.err.printf("Usage: java make [-D FILEINFO] [-f MAKEFILE] "
-                          + "TARGET...%n"
+                          + "[-j JOBS] [-c SNAPSHOT] TARGET...%n"
+                          + "       java make [-D FILEINFO] [-f MAKEFILE] "
+                          + "-a [-e COSTS] [TARGET...]%n"
                           + "   FILEINFO contains the current time and change "
                           + "times for files%n"
                           + "      (default 'fileinfo').%n"
                           + "   MAKEFILE contains dependency information and "
                           + "build commands%n"
-                          + "      (default Makefile).%n");
+                          + "      (default Makefile).%n"
+                          + "   JOBS is the number of rules to rebuild at "
+                          + "once (default 1).%n"
+                          + "   SNAPSHOT caches the parsed MAKEFILE and "
+                          + "target ages between runs.%n"
+                          + "   -a analyzes dependencies instead of "
+                          + "building; COSTS holds lines%n"
+                          + "      'TARGET COST' (default cost: number of "
+                          + "commands).%n");
         System.exit(1);
     }
 
@@ -0,0 +1,237 @@
+package make;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+
+import static java.util.Arrays.asList;
+
+/** Timing tests of parsing and of sequential and parallel builds of
+ *  synthetic makefiles.  Since make only prints commands, each command
+ *  is made to take a fixed time, as a stand-in for running a compiler.
+ *  Not part of the package proper.
+ *  @author Zhibo Fan
+ */
+public class MakeSpeedTest {
+
+    /** Time in milliseconds taken by each simulated command. */
+    static final int COMMAND_MILLIS = 2;
+
+    /** A Maker whose commands take COMMAND_MILLIS each. */
+    static class TimedMaker extends Maker {
+        @Override
+        void execute(List<String> commands) {
+            try {
+                Thread.sleep(COMMAND_MILLIS * commands.size());
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            super.execute(commands);
+        }
+    }
+
+    /** Write to FILE a makefile in which target "all" depends on WIDTH
+     *  independent targets. */
+    static void writeWide(File file, int width) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print("all:");
+            for (int i = 0; i < width; i += 1) {
+                out.printf(" t%d", i);
+            }
+            out.printf("%n\tlink all%n");
+            for (int i = 0; i < width; i += 1) {
+                out.printf("t%d:%n\tcompile t%d%n", i, i);
+            }
+        }
+    }
+
+    /** Write to FILE a makefile with DEPTH layers of WIDTH targets, each
+     *  depending on two targets of the layer below, and target "all"
+     *  depending on the top layer. */
+    static void writeDeep(File file, int depth, int width)
+        throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print("all:");
+            for (int i = 0; i < width; i += 1) {
+                out.printf(" t%d_%d", depth - 1, i);
+            }
+            out.printf("%n\tlink all%n");
+            for (int d = 0; d < depth; d += 1) {
+                for (int i = 0; i < width; i += 1) {
+                    out.printf("t%d_%d:", d, i);
+                    if (d > 0) {
+                        out.printf(" t%d_%d t%d_%d", d - 1, i,
+                                   d - 1, (i + 1) % width);
+                    }
+                    out.printf("%n\tcompile t%d_%d%n", d, i);
+                }
+            }
+        }
+    }
+
+    /** Returns the time in milliseconds to build "all" from MAKEFILE with
+     *  no existing files, using JOBS threads, or the sequential build if
+     *  JOBS is 0. */
+    static double timeBuild(File makefile, File fileInfo, int jobs) {
+        Maker maker = new TimedMaker();
+        maker.readFileAges(fileInfo.getPath());
+        maker.readMakefile(makefile.getPath());
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            long start = System.nanoTime();
+            if (jobs == 0) {
+                maker.build("all");
+            } else {
+                maker.build(asList("all"), jobs);
+            }
+            return (System.nanoTime() - start) / 1e6;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /** Print build times for MAKEFILE, labeled NAME. */
+    static void printBuildTimes(String name, File makefile, File fileInfo) {
+        System.out.printf("%-12s", name);
+        for (int jobs = 0; jobs <= 16; jobs = jobs == 0 ? 1 : 2 * jobs) {
+            System.out.printf(" %8.0f", timeBuild(makefile, fileInfo, jobs));
+        }
+        System.out.println();
+    }
+
+    /** Returns the time in milliseconds for a Maker to read MAKEFILE and
+     *  FILEINFO, through SNAPSHOT if it is not null, and then build "all",
+     *  saving the result in SNAPSHOT if it is not null. */
+    static double timeRun(File makefile, File fileInfo, File snapshot) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            long start = System.nanoTime();
+            Maker maker = new Maker();
+            if (snapshot == null) {
+                maker.readFileAges(fileInfo.getPath());
+                maker.readMakefile(makefile.getPath());
+            } else {
+                maker.readSnapshot(makefile.getPath(), fileInfo.getPath(),
+                                   snapshot.getPath());
+            }
+            maker.build("all");
+            if (snapshot != null) {
+                maker.writeSnapshot(snapshot.getPath());
+            }
+            return (System.nanoTime() - start) / 1e6;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /** Print the times for complete runs of a makefile with DEPTH layers
+     *  of WIDTH targets with and without a snapshot, using MAKEFILE and
+     *  FILEINFO as scratch files. */
+    static void printSnapshotTimes(int depth, int width, File makefile,
+                                   File fileInfo) throws IOException {
+        writeDeep(makefile, depth, width);
+        File snapshot = File.createTempFile("make", ".snap");
+        snapshot.deleteOnExit();
+        snapshot.delete();
+        timeRun(makefile, fileInfo, null);
+        double parse = timeRun(makefile, fileInfo, null);
+        double first = timeRun(makefile, fileInfo, snapshot);
+        double noop = timeRun(makefile, fileInfo, snapshot);
+        System.out.printf("%10d %12.0f %12.0f %12.0f%n", depth * width,
+                          parse, first, noop);
+    }
+
+    /** Returns the time in milliseconds for a Maker to read MAKEFILE. */
+    static double timeParse(File makefile) {
+        long start = System.nanoTime();
+        new Maker().readMakefile(makefile.getPath());
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Returns the time in milliseconds to match the lines of MAKEFILE
+     *  against Maker's regular expressions and split their prerequisites,
+     *  as readMakefile once did, without building anything. */
+    static double timeScan(File makefile) throws IOException {
+        long start = System.nanoTime();
+        int words = 0;
+        try (Scanner inp = new Scanner(makefile)) {
+            while (inp.hasNextLine()) {
+                String line = inp.nextLine();
+                if (Maker.IGNORED.matcher(line).matches()) {
+                    continue;
+                }
+                Matcher header = Maker.HEADER.matcher(line);
+                if (header.matches()) {
+                    Maker.TARGETS.matcher(header.group(1)).matches();
+                    Maker.TARGETS.matcher(header.group(2)).matches();
+                    words += Maker.SPACES.split(header.group(2)).length;
+                } else {
+                    Maker.COMMAND.matcher(line).matches();
+                }
+            }
+        }
+        if (words < 0) {
+            throw new IllegalStateException();
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Print the parsing throughput for a makefile with DEPTH layers of
+     *  WIDTH targets, using MAKEFILE as a scratch file. */
+    static void printParseTimes(int depth, int width, File makefile)
+        throws IOException {
+        writeDeep(makefile, depth, width);
+        double megabytes = makefile.length() / 1e6;
+        double parse = Double.MAX_VALUE, scan = Double.MAX_VALUE;
+        for (int i = 0; i < 5; i += 1) {
+            parse = Math.min(parse, timeParse(makefile));
+            scan = Math.min(scan, timeScan(makefile));
+        }
+        System.out.printf("%10d %8.2f %12.0f %12.1f %12.1f%n",
+                          depth * width, megabytes, parse,
+                          megabytes / parse * 1e3, megabytes / scan * 1e3);
+    }
+
+    /** Run the timing tests.  ARGS is unused. */
+    public static void main(String... args) throws IOException {
+        File makefile = File.createTempFile("make", ".mk");
+        File fileInfo = File.createTempFile("make", ".dir");
+        makefile.deleteOnExit();
+        fileInfo.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(fileInfo)) {
+            out.println(100);
+        }
+        System.out.printf("Build time (ms), %d ms per command: sequential,"
+                          + " then -j 1, 2, 4, 8, 16%n", COMMAND_MILLIS);
+        writeWide(makefile, 400);
+        printBuildTimes("wide 400", makefile, fileInfo);
+        writeDeep(makefile, 20, 20);
+        printBuildTimes("deep 20x20", makefile, fileInfo);
+        writeDeep(makefile, 100, 4);
+        printBuildTimes("deep 100x4", makefile, fileInfo);
+
+        System.out.printf("%nParsing: best of 5 runs, and the throughput"
+                          + " of regular-expression matching alone%n");
+        System.out.printf("%10s %8s %12s %12s %12s%n", "targets", "MB",
+                          "parse (ms)", "parse MB/s", "regex MB/s");
+        for (int depth = 100; depth <= 100000; depth *= 10) {
+            printParseTimes(depth, 10, makefile);
+        }
+
+        System.out.printf("%nComplete runs (ms): without a snapshot, then"
+                          + " saving one, then a no-op run using it%n");
+        System.out.printf("%10s %12s %12s %12s%n", "targets", "parse",
+                          "first", "no-op");
+        for (int depth = 100; depth <= 10000; depth *= 10) {
+            printSnapshotTimes(depth, 10, makefile, fileInfo);
+        }
+    }
+
+}
@@ -2,19 +2,28 @@ package make;
 
 import graph.DepthFirstTraversal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Scanner;
 
-import static java.util.Arrays.asList;
 import static make.Main.error;
 
 /** Represents a makefile.
@@ -22,6 +31,9 @@ import static make.Main.error;
  */
 class Maker {
 
+    /* The grammar of makefile lines.  readMakefile recognizes these
+     * patterns by hand. */
+
     /** Describes Makefile lines that are ignored. */
     static final Pattern IGNORED = Pattern.compile("\\s*(#.*)?");
     /** Describes a rule header in a makefile:  TARGET: DEPENDENCIES. */
@@ -56,60 +68,267 @@ class Maker {
     }
 
     /** Read make rules from the file named MAKEFILENAME and form the dependence
-     *  graph with targets as vertices. */
+     *  graph with targets as vertices.  Each line is classified by hand,
+     *  in a single pass over its characters, exactly as if it were
+     *  matched against IGNORED, HEADER, and COMMAND in turn, and target
+     *  names are looked up without making Strings of them. */
     void readMakefile(String makefileName) {
-        Scanner inp;
-        String target;
-        ArrayList<String> dependencies;
-        ArrayList<String> commands;
-
-        target = null;
-        dependencies = null;
-        commands = null;
+        LineReader inp;
         try {
-            File f = new File(makefileName);
-            inp = new Scanner(f);
+            inp = new LineReader(new InputStreamReader(
+                new FileInputStream(makefileName)));
         } catch (FileNotFoundException excp) {
             error("Error: Could not find makefile: %s", makefileName);
             return;
-        } catch (NoSuchElementException excp) {
-            error("Error: near entry");
-            return;
         }
-
-        while (inp.hasNextLine()) {
-            String line = inp.nextLine();
-            Matcher parsed;
-            parsed = IGNORED.matcher(line);
-            if (parsed.matches()) {
-                continue;
-            }
-            parsed = HEADER.matcher(line);
-            if (parsed.matches()) {
-                addRule(target, dependencies, commands);
-                target = parsed.group(1);
-                if (!TARGETS.matcher(target).matches()) {
-                    error("Error: Bad target: '%s'", target);
+        try (inp) {
+            int target = -1;
+            int[] dependencies = new int[16];
+            int numDependencies = 0;
+            ArrayList<String> commands = null;
+            while (inp.next()) {
+                char[] line = inp.chars();
+                int start = inp.start(), end = inp.end();
+                int p = skipSpaces(line, start, end);
+                if (p == end || line[p] == '#') {
+                    continue;
+                }
+                if (p > start) {
+                    if (target < 0) {
+                        error("Error: Erroneous input line: '%s'",
+                              new String(line, start, end - start));
+                    }
+                    commands.add(new String(line, start, end - start));
+                    continue;
+                }
+                int nameEnd = p;
+                while (nameEnd < end && line[nameEnd] != ':'
+                       && !isSpace(line[nameEnd])) {
+                    nameEnd += 1;
+                }
+                int colon = skipSpaces(line, nameEnd, end);
+                if (nameEnd == start || colon == end || line[colon] != ':') {
+                    error("Error: Erroneous input line: '%s'",
+                          new String(line, start, end - start));
+                }
+                addRule(target, dependencies, numDependencies, commands);
+                if (!isTargets(line, start, nameEnd)) {
+                    error("Error: Bad target: '%s'",
+                          new String(line, start, nameEnd - start));
+                }
+                int first = skipSpaces(line, colon + 1, end), last = end;
+                while (last > first && isSpace(line[last - 1])) {
+                    last -= 1;
                 }
-                if (!TARGETS.matcher(parsed.group(2)).matches()) {
+                if (!isTargets(line, first, last)) {
                     error("Error: One or more bad prerequisites: '%s'",
-                          parsed.group(2));
+                          new String(line, first, last - first));
                 }
-                dependencies = new ArrayList<>();
-                if (!parsed.group(2).isEmpty()) {
-                    dependencies.addAll(asList(SPACES.split(parsed.group(2))));
+                target = _symbols.intern(line, start, nameEnd);
+                rule(target);
+                numDependencies = 0;
+                for (int i = first; i < last; ) {
+                    int j = i;
+                    while (j < last && line[j] != ' ' && line[j] != '\t') {
+                        j += 1;
+                    }
+                    if (numDependencies == dependencies.length) {
+                        dependencies = Arrays.copyOf(dependencies,
+                                                     2 * numDependencies);
+                    }
+                    dependencies[numDependencies] =
+                        _symbols.intern(line, i, j);
+                    rule(dependencies[numDependencies]);
+                    numDependencies += 1;
+                    for (i = j; i < last
+                             && (line[i] == ' ' || line[i] == '\t'); ) {
+                        i += 1;
+                    }
                 }
                 commands = new ArrayList<>();
-                continue;
             }
-            parsed = COMMAND.matcher(line);
-            if (target != null && parsed.matches()) {
-                commands.add(parsed.group(1));
+            addRule(target, dependencies, numDependencies, commands);
+        } catch (IOException excp) {
+            error("Error: could not read makefile: %s", makefileName);
+        }
+    }
+
+    /** Returns the index of the first character in LINE[START .. END-1]
+     *  that is not whitespace (as for \s in a Pattern), or END if there
+     *  is none. */
+    private static int skipSpaces(char[] line, int start, int end) {
+        while (start < end && isSpace(line[start])) {
+            start += 1;
+        }
+        return start;
+    }
+
+    /** Returns true iff C is whitespace, as for \s in a Pattern. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b'
+            || c == '\f' || c == '\r';
+    }
+
+    /** Returns true iff LINE[START .. END-1] matches TARGETS. */
+    private static boolean isTargets(char[] line, int start, int end) {
+        for (int i = start; i < end; i += 1) {
+            char c = line[i];
+            if (c == ':' || c == '=' || c == '#' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Read the file ages from the file named FILEINFONAME and the rules
+     *  from the file named MAKEFILENAME, as for readFileAges and
+     *  readMakefile, but use the snapshot in the file named SNAPSHOTNAME,
+     *  if there is one, instead of reading each file that has not changed
+     *  since writeSnapshot saved the snapshot.  In that case, the ages
+     *  of targets are those at the end of the run that saved it. */
+    void readSnapshot(String makefileName, String fileInfoName,
+                      String snapshotName) {
+        _makefileHash = hash(makefileName);
+        _fileInfoHash = hash(fileInfoName);
+        if (!new File(snapshotName).exists()
+            || !loadSnapshot(snapshotName, fileInfoName)) {
+            readFileAges(fileInfoName);
+            readMakefile(makefileName);
+        }
+    }
+
+    /** Write a snapshot of my rules and the current ages of all targets
+     *  to the file named SNAPSHOTNAME, for use by readSnapshot.  Does
+     *  nothing if that file holds the snapshot I was read from, and
+     *  nothing has been rebuilt since. */
+    void writeSnapshot(String snapshotName) {
+        if (_snapshotCurrent && !_rebuilt) {
+            return;
+        }
+        int n = _depends.maxVertex();
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(snapshotName)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(_makefileHash);
+            out.writeLong(_fileInfoHash);
+            out.writeInt(_currentTime);
+            out.writeInt(n);
+            for (int v = 1; v <= n; v += 1) {
+                Rule rule = _depends.getLabel(v);
+                out.writeUTF(rule.getTarget());
+                out.writeBoolean(rule.getTime() != null);
+                out.writeInt(rule.getTime() == null ? 0 : rule.getTime());
+                out.writeInt(rule.getCommands().size());
+                for (String command : rule.getCommands()) {
+                    out.writeUTF(command);
+                }
+                out.writeInt(_depends.outDegree(v));
+                for (int w : _depends.successors(v)) {
+                    out.writeInt(w);
+                }
+            }
+            List<String> others = new ArrayList<>();
+            for (String name : _ages.keySet()) {
+                if (_symbols.find(name) < 0) {
+                    others.add(name);
+                }
+            }
+            out.writeInt(others.size());
+            for (String name : others) {
+                out.writeUTF(name);
+                out.writeInt(_ages.get(name));
+            }
+        } catch (IOException excp) {
+            error("Error: could not write %s", snapshotName);
+        }
+    }
+
+    /** Load the snapshot in the file named SNAPSHOTNAME, if it is valid
+     *  and was made from a makefile whose contents hash to _makefileHash.
+     *  Uses its current time and ages only if it was made from file
+     *  information hashing to _fileInfoHash, and otherwise reads them from
+     *  the file named FILEINFONAME.  Returns true iff the snapshot was
+     *  used. */
+    private boolean loadSnapshot(String snapshotName, String fileInfoName) {
+        try (DataInputStream inp =
+             new DataInputStream(new BufferedInputStream(
+                 new FileInputStream(snapshotName)))) {
+            if (inp.readInt() != SNAPSHOT_MAGIC
+                || inp.readLong() != _makefileHash) {
+                return false;
+            }
+            boolean sameAges = inp.readLong() == _fileInfoHash;
+            int currentTime = inp.readInt();
+            int n = inp.readInt();
+            String[] targets = new String[n + 1];
+            Integer[] times = new Integer[n + 1];
+            List<List<String>> commands = new ArrayList<>();
+            int[][] dependencies = new int[n + 1][];
+            commands.add(null);
+            for (int v = 1; v <= n; v += 1) {
+                targets[v] = inp.readUTF();
+                boolean exists = inp.readBoolean();
+                int time = inp.readInt();
+                times[v] = exists ? time : null;
+                List<String> ruleCommands = new ArrayList<>();
+                for (int i = inp.readInt(); i > 0; i -= 1) {
+                    ruleCommands.add(inp.readUTF());
+                }
+                commands.add(ruleCommands);
+                dependencies[v] = new int[inp.readInt()];
+                for (int i = 0; i < dependencies[v].length; i += 1) {
+                    dependencies[v][i] = inp.readInt();
+                    if (dependencies[v][i] < 1 || dependencies[v][i] > n) {
+                        return false;
+                    }
+                }
+            }
+            HashMap<String, Integer> ages = new HashMap<>();
+            for (int i = inp.readInt(); i > 0; i -= 1) {
+                ages.put(inp.readUTF(), inp.readInt());
+            }
+            if (sameAges) {
+                _currentTime = currentTime;
+                _ages = ages;
+                for (int v = 1; v <= n; v += 1) {
+                    if (times[v] != null) {
+                        _ages.put(targets[v], times[v]);
+                    }
+                }
             } else {
-                error("Error: Erroneous input line: '%s'", line);
+                readFileAges(fileInfoName);
+            }
+            for (int v = 1; v <= n; v += 1) {
+                rule(_symbols.intern(targets[v])).addCommands(commands.get(v));
             }
+            for (int v = 1; v <= n; v += 1) {
+                for (int w : dependencies[v]) {
+                    _depends.getLabel(v).addDependency(_depends.getLabel(w));
+                }
+            }
+            _snapshotCurrent = sameAges;
+            return true;
+        } catch (IOException excp) {
+            return false;
         }
-        addRule(target, dependencies, commands);
+    }
+
+    /** Returns a 64-bit hash of the contents of the file named FILENAME,
+     *  or 0 if it cannot be read. */
+    private static long hash(String fileName) {
+        long h = FNV_OFFSET;
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream inp = new FileInputStream(fileName)) {
+            for (int n = inp.read(buffer); n >= 0; n = inp.read(buffer)) {
+                for (int i = 0; i < n; i += 1) {
+                    h = (h ^ (buffer[i] & 0xff)) * FNV_PRIME;
+                }
+            }
+        } catch (IOException excp) {
+            return 0;
+        }
+        return h;
     }
 
     /** Add rule
@@ -121,17 +340,9 @@ class Maker {
                          List<String> dependencies,
                          List<String> commands) {
         if (target != null) {
-            Rule rule;
-            rule = _targets.get(target);
-            if (rule == null) {
-                rule = new Rule(this, target);
-                _targets.put(target, rule);
-            }
+            Rule rule = rule(_symbols.intern(target));
             for (String dependency: dependencies) {
-                Rule depRule = addRule(dependency,
-                                       Collections.<String>emptyList(),
-                                       Collections.<String>emptyList());
-                rule.addDependency(depRule);
+                rule.addDependency(rule(_symbols.intern(dependency)));
             }
             rule.addCommands(commands);
             return rule;
@@ -140,6 +351,29 @@ class Maker {
         }
     }
 
+    /** Add the first NUMDEPENDENCIES ids in DEPENDENCIES as dependencies,
+     *  and COMMANDS as commands, of the rule whose target has id TARGET,
+     *  if TARGET is not negative. */
+    private void addRule(int target, int[] dependencies, int numDependencies,
+                         List<String> commands) {
+        if (target >= 0) {
+            Rule rule = rule(target);
+            for (int i = 0; i < numDependencies; i += 1) {
+                rule.addDependency(rule(dependencies[i]));
+            }
+            rule.addCommands(commands);
+        }
+    }
+
+    /** Returns the rule for the target whose id in _symbols is ID,
+     *  creating it if necessary.  Rules are created in order of id. */
+    private Rule rule(int id) {
+        if (id == _rules.size()) {
+            _rules.add(new Rule(this, _symbols.name(id)));
+        }
+        return _rules.get(id);
+    }
+
     /** Issue instructions to build TARGET. */
     void build(String target) {
         Rule targetRule = addRule(target, Collections.<String>emptyList(),
@@ -153,6 +387,68 @@ class Maker {
         }
     }
 
+    /** Issue instructions to build TARGETS, rebuilding up to JOBS rules at
+     *  once. */
+    void build(List<String> targets, int jobs) {
+        List<Rule> rules = new ArrayList<>();
+        for (String target : targets) {
+            rules.add(addRule(target, Collections.<String>emptyList(),
+                              Collections.<String>emptyList()));
+        }
+        new ParallelBuild(this, jobs).build(rules);
+    }
+
+    /** Print an analysis of the rules needed to build TARGETS (or of all
+     *  rules, if TARGETS is empty), using the cost estimates in the file
+     *  named COSTSNAME, if it is not null: their circular dependencies,
+     *  the critical path of each target, and the useful number of jobs. */
+    void analyze(List<String> targets, String costsName) {
+        Map<String, Double> costs =
+            costsName == null ? Collections.<String, Double>emptyMap()
+            : DependencyAnalysis.readCosts(costsName);
+        List<Rule> rules = new ArrayList<>();
+        for (String target : targets) {
+            rules.add(addRule(target, Collections.<String>emptyList(),
+                              Collections.<String>emptyList()));
+        }
+        DependencyAnalysis analysis =
+            new DependencyAnalysis(_depends, rules, costs);
+        for (String cycle : analysis.describeCycles()) {
+            System.out.printf("circular dependency: %s%n", cycle);
+        }
+        if (rules.isEmpty() && analysis.criticalRule() != null) {
+            rules.add(analysis.criticalRule());
+        }
+        for (Rule target : rules) {
+            System.out.printf("critical path of %s: %.2f%n",
+                              target.getTarget(), analysis.getFinish(target));
+            for (Rule rule : analysis.criticalPath(target)) {
+                System.out.printf("    %-20s %10.2f %10.2f%n",
+                                  rule.getTarget(), analysis.getCost(rule),
+                                  analysis.getFinish(rule));
+            }
+        }
+        System.out.printf("total cost: %.2f%ncritical path cost: %.2f%n"
+                          + "average parallelism: %.2f%n"
+                          + "peak parallelism: %d%n",
+                          analysis.getWork(), analysis.getSpan(),
+                          analysis.getParallelism(),
+                          analysis.getPeakJobs());
+    }
+
+    /** Carry out COMMANDS, which bring a target up to date.  Since this
+     *  program only simulates a build, this prints them, all in one write,
+     *  so that the commands of rules rebuilt at the same time are not
+     *  interleaved, and records that a target has been rebuilt. */
+    void execute(List<String> commands) {
+        StringBuilder text = new StringBuilder();
+        for (String command : commands) {
+            text.append(command).append(System.lineSeparator());
+        }
+        System.out.print(text);
+        _rebuilt = true;
+    }
+
     /** Return my dependence graph. */
     final Depends getGraph() {
         return _depends;
@@ -169,6 +465,13 @@ class Maker {
         return _currentTime;
     }
 
+    /** Identifies snapshot files. */
+    private static final int SNAPSHOT_MAGIC = 0x4d4b3631;
+    /** Initial value of the FNV-1a hash. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /** Multiplier of the FNV-1a hash. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     /** The current time.  Should be no earlier than the time on the
      *  latest file. */
     private int _currentTime;
@@ -176,8 +479,18 @@ class Maker {
     private Depends _depends = new Depends();
     /** Mapping of target names to their ages. */
     private HashMap<String, Integer> _ages = new HashMap<>();
-    /** Mapping of target names to their Rules. */
-    private HashMap<String, Rule> _targets = new HashMap<>();
+    /** Hashes of the contents of the makefile and file information read
+     *  by readSnapshot. */
+    private long _makefileHash, _fileInfoHash;
+    /** True iff I was read from a snapshot that records my current
+     *  state, apart from any rebuilding done since. */
+    private boolean _snapshotCurrent;
+    /** True iff some target has been rebuilt. */
+    private volatile boolean _rebuilt;
+    /** Ids of target names. */
+    private SymbolTable _symbols = new SymbolTable();
+    /** The Rules of targets, indexed by id. */
+    private ArrayList<Rule> _rules = new ArrayList<>();
     /** Depth-first traversal of my vertices. */
     private MakeTraversal _traversal;
 
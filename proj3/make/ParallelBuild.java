@@ -0,0 +1,180 @@
+package make;
+
+import graph.DepthFirstTraversal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static make.Main.error;
+
+/** Brings a set of targets up to date, rebuilding up to a given number
+ *  of rules at once.
+ *  <p>
+ *  The unfinished rules on which the targets depend are first placed in
+ *  topological order (prerequisites first), which also detects circular
+ *  dependencies before anything is rebuilt.  Each rule then keeps a count
+ *  of its unfinished prerequisites.  A rule is handed to a pool of worker
+ *  threads as soon as its count reaches 0, and when it has been rebuilt,
+ *  the counts of the rules that depend on it are decremented.  Only the
+ *  calling thread touches the counts.  Thus each rule is rebuilt after
+ *  all of its prerequisites, and since each rule's commands are printed
+ *  all at once (see Maker.execute), the output is a valid order in which
+ *  to run them.
+ *  @author Zhibo Fan
+ */
+final class ParallelBuild {
+
+    /** A build of the rules in MAKER's dependence graph using JOBS
+     *  worker threads. */
+    ParallelBuild(Maker maker, int jobs) {
+        if (jobs < 1) {
+            error("Error: number of jobs must be positive");
+        }
+        _depends = maker.getGraph();
+        _jobs = jobs;
+    }
+
+    /** Bring the rules in TARGETS up to date.  Stops dispatching rules
+     *  after the first one that fails, and rethrows its exception once
+     *  those already running have finished. */
+    void build(List<Rule> targets) {
+        List<Rule> order = order(targets);
+        ArrayDeque<Rule> ready = new ArrayDeque<>();
+        for (Rule rule : order) {
+            if (_waiting[rule.getVertex()] == 0) {
+                ready.add(rule);
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(_jobs);
+        CompletionService<Rule> done = new ExecutorCompletionService<>(pool);
+        RuntimeException failure = null;
+        int running = 0;
+        try {
+            while (!ready.isEmpty() || running > 0) {
+                while (!ready.isEmpty() && failure == null) {
+                    Rule rule = ready.poll();
+                    done.submit(() -> {
+                        rule.rebuild();
+                        return rule;
+                    });
+                    running += 1;
+                }
+                if (running == 0) {
+                    break;
+                }
+                Rule finished;
+                try {
+                    finished = done.take().get();
+                } catch (ExecutionException excp) {
+                    if (failure == null) {
+                        failure = asUnchecked(excp.getCause());
+                    }
+                    continue;
+                } finally {
+                    running -= 1;
+                }
+                for (int p : _depends.predecessors(finished.getVertex())) {
+                    if (_inBuild[p]) {
+                        _waiting[p] -= 1;
+                        if (_waiting[p] == 0) {
+                            ready.add(_depends.getLabel(p));
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Error: interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Returns the unfinished rules on which the rules in TARGETS depend,
+     *  including those rules, in topological order.  Sets _inBuild and
+     *  _waiting for them.  Signals an error if their dependencies are
+     *  circular. */
+    private List<Rule> order(List<Rule> targets) {
+        int n = _depends.maxVertex() + 1;
+        _inBuild = new boolean[n];
+        _waiting = new int[n];
+        List<Rule> rules = new ArrayList<>();
+        DepthFirstTraversal collect = new DepthFirstTraversal(_depends) {
+            @Override
+            protected boolean visit(int v) {
+                Rule rule = _depends.getLabel(v);
+                if (rule.isUnfinished()) {
+                    _inBuild[v] = true;
+                    rules.add(rule);
+                }
+                return true;
+            }
+        };
+        for (Rule target : targets) {
+            collect.traverse(target.getVertex());
+        }
+
+        int[] waiting = new int[n];
+        ArrayDeque<Rule> ready = new ArrayDeque<>();
+        for (Rule rule : rules) {
+            int v = rule.getVertex();
+            for (int w : _depends.successors(v)) {
+                if (_inBuild[w]) {
+                    _waiting[v] += 1;
+                }
+            }
+            waiting[v] = _waiting[v];
+            if (waiting[v] == 0) {
+                ready.add(rule);
+            }
+        }
+        List<Rule> result = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Rule rule = ready.poll();
+            result.add(rule);
+            for (int p : _depends.predecessors(rule.getVertex())) {
+                if (_inBuild[p]) {
+                    waiting[p] -= 1;
+                    if (waiting[p] == 0) {
+                        ready.add(_depends.getLabel(p));
+                    }
+                }
+            }
+        }
+        if (result.size() < rules.size()) {
+            DependencyAnalysis.checkCycles(_depends, targets);
+        }
+        return result;
+    }
+
+    /** Returns CAUSE as an unchecked exception, wrapping it if
+     *  necessary. */
+    private static RuntimeException asUnchecked(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            return new IllegalStateException(cause);
+        }
+    }
+
+    /** The dependence graph. */
+    private final Depends _depends;
+    /** Number of worker threads. */
+    private final int _jobs;
+    /** _inBuild[v] is true iff vertex V's rule is to be brought up to
+     *  date by this build. */
+    private boolean[] _inBuild;
+    /** Number of unfinished prerequisites of each rule in the build. */
+    private int[] _waiting;
+}
@@ -1,6 +1,7 @@
 package make;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static make.Main.error;
@@ -57,6 +58,13 @@ class Rule {
         return _target;
     }
 
+    /**
+     * Return my commands.
+     */
+    List<String> getCommands() {
+        return _commands;
+    }
+
     /**
      * Return my target's current change time.
      */
@@ -73,12 +81,15 @@ class Rule {
 
     /**
      * Check that dependencies are in fact built before it's time to rebuild
-     * a node.
+     * a node.  A dependency can be unfinished only if it is part of a
+     * circular dependency, which is then reported in full.
      */
     private void checkFinishedDependencies() {
         for (Integer i : _depends.successors(getVertex())) {
             Rule r = _depends.getLabel(i);
             if (r.isUnfinished()) {
+                DependencyAnalysis.checkCycles(_depends,
+                                               Collections.singletonList(this));
                 error("Error: dependency of %s, %s is not finished",
                         _target, r.getTarget());
             }
@@ -117,9 +128,7 @@ class Rule {
                         _target);
             }
             _time = _maker.getCurrentTime();
-            for (String s : _commands) {
-                System.out.println(s);
-            }
+            _maker.execute(_commands);
         }
         _finished = true;
     }
@@ -0,0 +1,142 @@
+package make;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** A table assigning consecutive integer ids, starting at 0, to distinct
+ *  names.  Names may be looked up as Strings or as ranges of a character
+ *  array, so that a parser can find the id of a name without first
+ *  making a String of it.
+ *  @author Zhibo Fan
+ */
+final class SymbolTable {
+
+    /** Returns the id of NAME, adding it if necessary. */
+    int intern(String name) {
+        int slot = slot(name, hash(name));
+        if (_ids[slot] < 0) {
+            return add(slot, name);
+        }
+        return _ids[slot];
+    }
+
+    /** Returns the id of the name in CHARS[START .. END-1], adding it if
+     *  necessary. */
+    int intern(char[] chars, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i += 1) {
+            h = 31 * h + chars[i];
+        }
+        int mask = _ids.length - 1;
+        for (int slot = mix(h) & mask; true; slot = (slot + 1) & mask) {
+            int id = _ids[slot];
+            if (id < 0) {
+                return add(slot, new String(chars, start, end - start));
+            }
+            if (_hashes[id] == h && equals(_names.get(id), chars,
+                                           start, end)) {
+                return id;
+            }
+        }
+    }
+
+    /** Returns the id of NAME, or -1 if it has none. */
+    int find(String name) {
+        return _ids[slot(name, hash(name))];
+    }
+
+    /** Returns the name whose id is ID. */
+    String name(int id) {
+        return _names.get(id);
+    }
+
+    /** Returns the number of names. */
+    int size() {
+        return _names.size();
+    }
+
+    /** Returns the slot of _ids that holds the id of NAME, whose hash is
+     *  H, or else the empty slot where it belongs. */
+    private int slot(String name, int h) {
+        int mask = _ids.length - 1;
+        for (int slot = mix(h) & mask; true; slot = (slot + 1) & mask) {
+            int id = _ids[slot];
+            if (id < 0 || (_hashes[id] == h && _names.get(id).equals(name))) {
+                return slot;
+            }
+        }
+    }
+
+    /** Give NAME the next id, recording it in the empty SLOT, and return
+     *  the id. */
+    private int add(int slot, String name) {
+        int id = _names.size();
+        _names.add(name);
+        if (id == _hashes.length) {
+            _hashes = Arrays.copyOf(_hashes, 2 * id);
+        }
+        _hashes[id] = hash(name);
+        _ids[slot] = id;
+        if (2 * _names.size() > _ids.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /** Double the size of _ids. */
+    private void rehash() {
+        _ids = newSlots(2 * _ids.length);
+        int mask = _ids.length - 1;
+        for (int id = 0; id < _names.size(); id += 1) {
+            int slot = mix(_hashes[id]) & mask;
+            while (_ids[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            _ids[slot] = id;
+        }
+    }
+
+    /** Returns the hash of NAME, which is that of its characters. */
+    private static int hash(String name) {
+        return name.hashCode();
+    }
+
+    /** Returns H with its bits mixed, so that the low-order bits of the
+     *  result depend on all those of H. */
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Returns true iff NAME consists of CHARS[START .. END-1]. */
+    private static boolean equals(String name, char[] chars,
+                                  int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i += 1) {
+            if (name.charAt(i - start) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns N empty slots. */
+    private static int[] newSlots(int n) {
+        int[] result = new int[n];
+        Arrays.fill(result, -1);
+        return result;
+    }
+
+    /** Ids of the names, indexed by hash, or -1 in empty slots.  The
+     *  length is a power of 2, at least twice the number of names. */
+    private int[] _ids = newSlots(INITIAL_SLOTS);
+    /** The names, indexed by id. */
+    private final ArrayList<String> _names = new ArrayList<>();
+    /** The hashes of the names, indexed by id. */
+    private int[] _hashes = new int[INITIAL_SLOTS];
+
+    /** Initial size of _ids. */
+    private static final int INITIAL_SLOTS = 64;
+}
@@ -5,8 +5,24 @@ package make;
  * may not be part of your make package per se (that is, it must be
  * possible to remove them and still have your package work). */
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+
 import org.junit.Test;
 import ucb.junit.textui;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 
 /** Unit tests for the make package. */
@@ -21,4 +37,298 @@ public class UnitTest {
     public void dummyTest() {
     }
 
+    @Test
+    public void parallelBuild() throws IOException {
+        StringBuilder makefile = new StringBuilder("all:");
+        for (int i = 0; i < 40; i += 1) {
+            makefile.append(" t").append(i);
+        }
+        makefile.append("\n\tlink all\n");
+        for (int i = 0; i < 40; i += 1) {
+            makefile.append(String.format("t%d: s%d s%d%n\tmake t%d%n",
+                                          i, i % 7, (i + 3) % 7, i));
+        }
+        for (int i = 0; i < 7; i += 1) {
+            makefile.append(String.format("s%d: base%n\tmake s%d%n", i, i));
+        }
+        makefile.append("base:\n\tmake base\n");
+        for (int jobs : new int[] { 1, 4 }) {
+            Maker maker = newMaker(makefile.toString(), "10\n");
+            List<String> lines =
+                asList(output(() -> maker.build(asList("all"), jobs))
+                       .split("\\R"));
+            assertEquals(49, lines.size());
+            assertEquals("\tmake base", lines.get(0));
+            assertEquals("\tlink all", lines.get(48));
+            for (int i = 0; i < 40; i += 1) {
+                int t = lines.indexOf("\tmake t" + i);
+                assertTrue(lines.indexOf("\tmake s" + i % 7) < t);
+                assertTrue(lines.indexOf("\tmake s" + (i + 3) % 7) < t);
+            }
+        }
+    }
+
+    @Test
+    public void parallelBuildUpToDate() throws IOException {
+        Maker maker = newMaker("foo: bar\n\tmake foo\nbar: baz\n"
+                               + "\tmake bar\nbaz:\n\tmake baz\n",
+                               "10\nfoo 5\nbar 6\nbaz 4\n");
+        assertEquals(String.format("\tmake foo%n"),
+                     output(() -> maker.build(asList("foo"), 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallelBuildCycle() throws IOException {
+        Maker maker = newMaker("foo: bar\n\tmake foo\nbar: foo\n"
+                               + "\tmake bar\n", "10\n");
+        output(() -> maker.build(asList("foo"), 2));
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        String makefile = tempFile("foo: bar baz\n\tmake foo\nbar: baz\n"
+                                   + "\tmake bar\nbaz:\n\tmake baz\n");
+        String fileInfo = tempFile("10\nfoo 5\nbar 6\n");
+        File snapshot = File.createTempFile("make", ".snap");
+        snapshot.deleteOnExit();
+        snapshot.delete();
+        String expected = String.format("\tmake baz%n\tmake bar%n"
+                                         + "\tmake foo%n");
+        assertEquals(expected, snapshotBuild(makefile, fileInfo, snapshot));
+        assertTrue("snapshot not written", snapshot.exists());
+        assertEquals("", snapshotBuild(makefile, fileInfo, snapshot));
+
+        fileInfo = tempFile("11\nfoo 5\nbar 6\n");
+        assertEquals(expected, snapshotBuild(makefile, fileInfo, snapshot));
+        assertEquals("", snapshotBuild(makefile, fileInfo, snapshot));
+
+        makefile = tempFile("foo: baz\n\tmake foo\nbaz:\n\tmake baz\n");
+        fileInfo = tempFile("10\nfoo 5\nbaz 6\n");
+        assertEquals(String.format("\tmake foo%n"),
+                     snapshotBuild(makefile, fileInfo, snapshot));
+    }
+
+    /** Returns the output of building foo from MAKEFILE and FILEINFO,
+     *  using and then updating SNAPSHOT. */
+    private String snapshotBuild(String makefile, String fileInfo,
+                                 File snapshot) {
+        Maker maker = new Maker();
+        maker.readSnapshot(makefile, fileInfo, snapshot.getPath());
+        String result = output(() -> maker.build("foo"));
+        maker.writeSnapshot(snapshot.getPath());
+        return result;
+    }
+
+    @Test
+    public void dependencyAnalysis() throws IOException {
+        Maker maker = newMaker("all: b c\n\tlink\nb: a\n\tcc b\n\tcc b\n"
+                               + "c: a\n\tcc c\na:\n\tgen a\nx: y\n\tx\n"
+                               + "y: z x\n\ty\nz: y\n\tz\nw: w\n",
+                               "10\n");
+        Depends depends = maker.getGraph();
+        Rule all = depends.getLabel(1), c = depends.getLabel(3);
+        HashMap<String, Double> costs = new HashMap<>();
+        costs.put("c", 5.0);
+        DependencyAnalysis analysis =
+            new DependencyAnalysis(depends, asList(all), costs);
+        assertTrue(analysis.cycles().isEmpty());
+        assertEquals(9.0, analysis.getWork(), 0.0);
+        assertEquals(7.0, analysis.getFinish(all), 0.0);
+        assertEquals(7.0, analysis.getSpan(), 0.0);
+        assertEquals(6.0, analysis.getFinish(c), 0.0);
+        assertEquals("all c a",
+                     DependencyAnalysis.describe(analysis.criticalPath(all),
+                                                 " "));
+        assertEquals(9.0 / 7.0, analysis.getParallelism(), 1e-9);
+        assertEquals(2, analysis.getPeakJobs());
+
+        analysis = new DependencyAnalysis(depends, new ArrayList<>(),
+                                          new HashMap<>());
+        assertEquals(asList("z -> y -> z (also involving x)", "w -> w"),
+                     analysis.describeCycles());
+        assertEquals(3.0, analysis.getFinish(depends.getLabel(6)), 0.0);
+        assertEquals(all, analysis.criticalRule());
+        assertEquals(3, analysis.getPeakJobs());
+    }
+
+    @Test
+    public void dependencyAnalysisDeep() throws IOException {
+        StringBuilder makefile = new StringBuilder();
+        int n = 100000;
+        for (int i = 0; i < n; i += 1) {
+            makefile.append(String.format("t%d: t%d\n\tcc%n", i, i + 1));
+        }
+        makefile.append(String.format("t%d: t0%n", n));
+        Maker maker = newMaker(makefile.toString(), "10\n");
+        try {
+            maker.build("t0");
+            fail("circular dependency not detected");
+        } catch (IllegalArgumentException excp) {
+            assertTrue(excp.getMessage().startsWith(
+                "Error: circular dependency: t"));
+        }
+        DependencyAnalysis analysis =
+            new DependencyAnalysis(maker.getGraph(), new ArrayList<>(),
+                                   new HashMap<>());
+        assertEquals(1, analysis.cycles().size());
+        assertEquals(n + 2, analysis.cycles().get(0).size());
+    }
+
+    @Test
+    public void parserMatchesPatterns() throws IOException {
+        String[] pieces = {
+            "a", "b", "c", " ", "\t", "\f", ":", "#", "=", "\\", "\r\n"
+        };
+        Random rand = new Random(61);
+        for (int k = 0; k < 2000; k += 1) {
+            StringBuilder text = new StringBuilder();
+            for (int i = rand.nextInt(8); i > 0; i -= 1) {
+                for (int j = rand.nextInt(8); j > 0; j -= 1) {
+                    text.append(pieces[rand.nextInt(pieces.length - 1)]);
+                }
+                text.append(rand.nextInt(3) == 0 ? "\r\n" : "\n");
+            }
+            String makefile = tempFile(text.toString());
+            String expected = referenceParse(makefile), actual;
+            try {
+                Maker maker = new Maker();
+                maker.readMakefile(makefile);
+                actual = describe(maker.getGraph());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                actual = e.toString();
+            }
+            assertEquals(text.toString(), expected, actual);
+        }
+    }
+
+    /** Returns a description of the rules in the file named MAKEFILE, as
+     *  for describe, or of the exception that reading it throws, found
+     *  with Maker's regular expressions. */
+    private String referenceParse(String makefile) throws IOException {
+        Map<String, LinkedHashSet<String>> rules = new LinkedHashMap<>();
+        Map<String, List<String>> commands = new LinkedHashMap<>();
+        String target = null;
+        List<String> dependencies = null, pending = null;
+        try (Scanner inp = new Scanner(new File(makefile))) {
+            while (inp.hasNextLine()) {
+                String line = inp.nextLine();
+                if (Maker.IGNORED.matcher(line).matches()) {
+                    continue;
+                }
+                Matcher header = Maker.HEADER.matcher(line);
+                if (header.matches()) {
+                    addReferenceRule(rules, commands, target, dependencies,
+                                     pending);
+                    target = header.group(1);
+                    if (!Maker.TARGETS.matcher(target).matches()) {
+                        return new IllegalArgumentException(
+                            String.format("Error: Bad target: '%s'",
+                                          target)).toString();
+                    }
+                    if (!Maker.TARGETS.matcher(header.group(2)).matches()) {
+                        return new IllegalArgumentException(
+                            String.format("Error: One or more bad "
+                                          + "prerequisites: '%s'",
+                                          header.group(2))).toString();
+                    }
+                    dependencies = new ArrayList<>();
+                    if (!header.group(2).isEmpty()) {
+                        dependencies.addAll(
+                            asList(Maker.SPACES.split(header.group(2))));
+                    }
+                    pending = new ArrayList<>();
+                } else if (target != null
+                           && Maker.COMMAND.matcher(line).matches()) {
+                    pending.add(line);
+                } else {
+                    return new IllegalArgumentException(
+                        String.format("Error: Erroneous input line: '%s'",
+                                      line)).toString();
+                }
+            }
+            addReferenceRule(rules, commands, target, dependencies,
+                             pending);
+        } catch (IllegalStateException excp) {
+            return excp.toString();
+        }
+        StringBuilder result = new StringBuilder();
+        for (String name : rules.keySet()) {
+            result.append(String.format("%s <- %s %s%n", name,
+                                        rules.get(name),
+                                        commands.get(name)));
+        }
+        return result.toString();
+    }
+
+    /** Record in RULES and COMMANDS the rule TARGET: DEPENDENCIES with
+     *  commands PENDING, as Maker does. */
+    private void addReferenceRule(Map<String, LinkedHashSet<String>> rules,
+                                  Map<String, List<String>> commands,
+                                  String target, List<String> dependencies,
+                                  List<String> pending) {
+        if (target == null) {
+            return;
+        }
+        rules.putIfAbsent(target, new LinkedHashSet<>());
+        commands.putIfAbsent(target, new ArrayList<>());
+        for (String dependency : dependencies) {
+            rules.putIfAbsent(dependency, new LinkedHashSet<>());
+            commands.putIfAbsent(dependency, new ArrayList<>());
+            rules.get(target).add(dependency);
+        }
+        if (!pending.isEmpty() && !commands.get(target).isEmpty()) {
+            throw new IllegalStateException();
+        }
+        commands.get(target).addAll(pending);
+    }
+
+    /** Returns a description of the rules in DEPENDS, in order of
+     *  vertex number. */
+    private String describe(Depends depends) {
+        StringBuilder result = new StringBuilder();
+        for (int v = 1; v <= depends.maxVertex(); v += 1) {
+            Rule rule = depends.getLabel(v);
+            LinkedHashSet<String> dependencies = new LinkedHashSet<>();
+            for (int w : depends.successors(v)) {
+                dependencies.add(depends.getLabel(w).getTarget());
+            }
+            result.append(String.format("%s <- %s %s%n", rule.getTarget(),
+                                        dependencies, rule.getCommands()));
+        }
+        return result.toString();
+    }
+
+    /** Returns a Maker that has read MAKEFILE and the file information
+     *  FILEINFO. */
+    private Maker newMaker(String makefile, String fileInfo)
+        throws IOException {
+        Maker maker = new Maker();
+        maker.readFileAges(tempFile(fileInfo));
+        maker.readMakefile(tempFile(makefile));
+        return maker;
+    }
+
+    /** Returns the name of a new temporary file containing TEXT. */
+    private String tempFile(String text) throws IOException {
+        File file = File.createTempFile("make", ".tmp");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print(text);
+        }
+        return file.getPath();
+    }
+
+    /** Returns the standard output of ACTION.run(). */
+    private String output(Runnable action) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            action.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return bytes.toString();
+    }
+
 }
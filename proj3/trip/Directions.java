@@ -0,0 +1,181 @@
+package trip;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/** Writes the directions for trips to an Appendable, such as a Writer,
+ *  a PrintStream, or a Writer on a channel from
+ *  java.nio.channels.Channels.  The roads along each leg are given one
+ *  hop at a time, and consecutive hops on the same road in the same
+ *  direction are merged into one step as they arrive.  Output is
+ *  collected in a buffer that is reused throughout, and is passed on in
+ *  large pieces, when the buffer fills and on flush.  No format strings
+ *  are involved.
+ *
+ *  There are two formats.  TEXT is the one described in the project
+ *  specification:
+ *      From Berkeley:
+ *
+ *      1. Take University_Ave west for 0.1 miles.
+ *      ...
+ *      5. Take I-80 west for 8.4 miles to San_Francisco.
+ *  CSV has a header line, "step,road,direction,miles,to", and then one
+ *  record for each step, giving its number, road, direction, length in
+ *  miles, and, for the last step of each leg, the destination.  Each
+ *  trip starts with a step 0 whose only field is the origin.  Fields
+ *  containing commas or quotation marks are quoted.
+ *  @author Zhibo Fan
+ */
+final class Directions implements Flushable {
+
+    /** The output formats. */
+    enum Format {
+        /** Numbered English sentences. */
+        TEXT,
+        /** Comma-separated values. */
+        CSV
+    }
+
+    /** A writer of directions in FORMAT to OUT. */
+    Directions(Appendable out, Format format) {
+        _out = out;
+        _format = format;
+        if (format == Format.CSV) {
+            _buffer.append("step,road,direction,miles,to").append(NEWLINE);
+        }
+    }
+
+    /** Begin a trip from the location named ORIGIN, numbering its steps
+     *  from 1. */
+    void start(String origin) throws IOException {
+        _step = 1;
+        _road = null;
+        if (_format == Format.TEXT) {
+            _buffer.append("From ").append(origin).append(':')
+                .append(NEWLINE).append(NEWLINE);
+        } else {
+            _buffer.append("0,,,,");
+            appendField(origin);
+            _buffer.append(NEWLINE);
+        }
+        drain();
+    }
+
+    /** Add travel along ROAD to the current leg. */
+    void hop(Road road) throws IOException {
+        if (_road != null && _road.toString().equals(road.toString())
+            && _road.direction() == road.direction()) {
+            _miles += road.length();
+            return;
+        }
+        if (_road != null) {
+            appendStep(null);
+        }
+        _road = road;
+        _miles = road.length();
+    }
+
+    /** End the current leg at the location named DEST. */
+    void arrive(String dest) throws IOException {
+        if (_road != null) {
+            appendStep(dest);
+            _road = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        _out.append(_buffer);
+        _buffer.setLength(0);
+        if (_out instanceof Flushable) {
+            ((Flushable) _out).flush();
+        }
+    }
+
+    /** Write the step along the current road, which ends at DEST if that
+     *  is not null. */
+    private void appendStep(String dest) throws IOException {
+        String road = _road.toString(),
+            direction = _road.direction().fullName();
+        if (_format == Format.TEXT) {
+            _buffer.append(_step).append(". Take ").append(road).append(' ')
+                .append(direction).append(" for ");
+            appendMiles(_miles);
+            _buffer.append(" miles");
+            if (dest != null) {
+                _buffer.append(" to ").append(dest);
+            }
+            _buffer.append('.');
+        } else {
+            _buffer.append(_step).append(',');
+            appendField(road);
+            _buffer.append(',').append(direction).append(',');
+            appendMiles(_miles);
+            _buffer.append(',');
+            if (dest != null) {
+                appendField(dest);
+            }
+        }
+        _buffer.append(NEWLINE);
+        _step += 1;
+        drain();
+    }
+
+    /** Append MILES to the buffer, rounded to one decimal place exactly
+     *  as String.format("%.1f", MILES) would round it. */
+    private void appendMiles(double miles) {
+        double tenths = miles * 10;
+        if (!(tenths >= 0 && tenths < MAX_FAST)
+            || Math.abs(tenths - Math.floor(tenths) - 0.5) < TIE) {
+            _buffer.append(new BigDecimal(Double.toString(miles))
+                           .setScale(1, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+        long rounded = Math.round(tenths);
+        _buffer.append(rounded / 10).append('.').append(rounded % 10);
+    }
+
+    /** Append FIELD to the buffer as a CSV field. */
+    private void appendField(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0) {
+            _buffer.append(field);
+        } else {
+            _buffer.append('"').append(field.replace("\"", "\"\""))
+                .append('"');
+        }
+    }
+
+    /** Pass on the buffered output if there is a lot of it. */
+    private void drain() throws IOException {
+        if (_buffer.length() >= BUFFER_SIZE) {
+            _out.append(_buffer);
+            _buffer.setLength(0);
+        }
+    }
+
+    /** Line terminator, as for "%n" in a format. */
+    private static final String NEWLINE = System.lineSeparator();
+    /** Amount of output buffered before it is passed on. */
+    private static final int BUFFER_SIZE = 1 << 15;
+    /** Distance in tenths of a mile from a rounding tie within which
+     *  rounding is done exactly. */
+    private static final double TIE = 1e-6;
+    /** Bound on the number of tenths that are rounded without
+     *  BigDecimal, below which doubles resolve well inside TIE. */
+    private static final double MAX_FAST = 1e9;
+
+    /** Destination of the directions. */
+    private final Appendable _out;
+    /** Output format. */
+    private final Format _format;
+    /** Output not yet passed on to _out. */
+    private final StringBuilder _buffer = new StringBuilder(2 * BUFFER_SIZE);
+    /** Number of the next step. */
+    private int _step = 1;
+    /** Road of the step in progress, or null if none. */
+    private Road _road;
+    /** Length of the step in progress. */
+    private double _miles;
+}
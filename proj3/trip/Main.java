@@ -5,7 +5,9 @@ import java.io.PrintStream;
 import java.io.FileNotFoundException;
 
 import java.util.regex.Pattern;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import ucb.util.CommandArgs;
 
@@ -17,27 +19,57 @@ public final class Main {
     /** Describes separator in a comma-separated list. */
     static final Pattern LISTSEP = Pattern.compile("\\s*,\\s*");
 
+    /** The directions formats, by name. */
+    private static final Map<String, Directions.Format> FORMATS =
+        Map.of("text", Directions.Format.TEXT,
+               "csv", Directions.Format.CSV);
+
     /** Entry point for the CS61B trip program.  RAWARGS may contain options
      *  and targets:
-     *      [ -m MAP ] [ -o OUT ] [ REQUEST ]
+     *      [ -m MAP ] [ -o OUT ] [ -c HIERARCHY ] [ -t DESTS ] [ -w BINARY ]
+     *      [ -F FORMAT ] [ REQUEST ]
      *  where MAP (default Map) contains the map data, OUT (default standard
      *  output) takes the result, and REQUEST (default standard input) contains
-     *  the locations along the requested trip.
+     *  the locations along the requested trip.  With -c, routes are found
+     *  with a contraction hierarchy of MAP cached in the file HIERARCHY
+     *  (built and saved there if missing or out of date).  With -t, the
+     *  output is instead a table of the distances from each location in
+     *  REQUEST to each location in the comma-separated list DESTS.  With
+     *  -w, MAP is also written to the file BINARY in a binary form, which
+     *  may be given as a later MAP and is then used without being read
+     *  into memory; REQUEST may then be omitted.  Any location in REQUEST
+     *  or DESTS may be given as a position "@X:Y", meaning the location
+     *  nearest (X, Y).  FORMAT is "text" (the default) for directions in
+     *  English, or "csv" for comma-separated values, as described in
+     *  Directions.
      */
     public static void main(String... rawArgs) {
         String mapFileName;
         String outFileName;
+        String hierarchyFileName;
+        String tableDests;
+        String binaryFileName;
+        Directions.Format format;
         List<String> targets;
         CommandArgs args =
-            new CommandArgs("-m={0,1} -o={0,1} --={2,}", rawArgs);
+            new CommandArgs("-m={0,1} -o={0,1} -c={0,1} -t={0,1} -w={0,1}"
+                            + " -F={0,1} --={0,}", rawArgs);
 
-        if (!args.ok()) {
+        if (!args.ok()
+            || (args.get("--").isEmpty() && !args.contains("-w"))) {
             usage();
         }
 
         mapFileName = args.getFirst("-m", "Map");
         outFileName = args.getFirst("-o");
+        hierarchyFileName = args.getFirst("-c");
+        tableDests = args.getFirst("-t");
+        binaryFileName = args.getFirst("-w");
+        format = FORMATS.get(args.getFirst("-F", "text"));
         targets = args.get("--");
+        if (format == null) {
+            usage();
+        }
 
         setFiles(outFileName);
 
@@ -45,7 +77,21 @@ public final class Main {
 
         try {
             trip.readMap(mapFileName);
-            trip.makeTrip(targets);
+            if (binaryFileName != null) {
+                trip.writeMap(binaryFileName);
+                if (targets.isEmpty()) {
+                    return;
+                }
+            }
+            if (hierarchyFileName != null) {
+                trip.useHierarchy(hierarchyFileName);
+            }
+            if (tableDests == null) {
+                trip.makeTrip(targets, new Directions(System.out, format));
+            } else {
+                trip.makeTable(targets,
+                               Arrays.asList(LISTSEP.split(tableDests)));
+            }
         } catch (IllegalArgumentException excp) {
             System.err.printf("trip: %s%n", excp.getMessage());
             System.exit(1);
@@ -79,7 +125,8 @@ public final class Main {
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.err.printf("Usage: java trip.Main [ -m MAPFILE ] [ -o OUTFILE ]"
-                          + " [ REQUESTFILE ]%n");
+                          + " [ -c CHFILE ] [ -t DESTS ] [ -w BINFILE ]"
+                          + " [ -F text|csv ] [ REQUESTFILE ]%n");
         System.exit(1);
     }
 
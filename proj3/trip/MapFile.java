@@ -0,0 +1,557 @@
+package trip;
+
+import graph.Graph;
+import graph.Iteration;
+import graph.LabeledGraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+import static trip.Main.error;
+
+/** A road map held in a binary file that is mapped into memory, so that
+ *  opening even a very large map takes only as long as reading its
+ *  header.  The map is a directed graph whose vertices and edges are
+ *  labeled with Locations and Roads, as for a map read from text, but
+ *  those labels are made only when asked for; routing uses length and
+ *  distance, which read the file's arrays directly.
+ *  <p>
+ *  A map file begins with six ints: MAGIC, VERSION, the number N of
+ *  locations (numbered 1 .. N), the number M of roads (directed edges),
+ *  the number S of distinct names, and the total length in bytes of the
+ *  names.  Then come these arrays, in order, all big-endian:
+ *  <pre>
+ *    double x[N+1], y[N+1]       coordinates of each location
+ *    double length[M]            length of each edge
+ *    int locationName[N+1]       name of each location
+ *    int outStart[N+2]           edges leaving V are outStart[V] ..
+ *                                outStart[V+1]-1, in order of insertion
+ *    int target[M]               the vertex each edge enters
+ *    int roadName[M]             name of the road along each edge
+ *    int sortedTarget[M]         targets of each vertex's edges, sorted
+ *    int sortedEdge[M]           ... and the corresponding edges
+ *    int inStart[N+2]            edges entering V are inStart[V] ..
+ *                                inStart[V+1]-1, in order of insertion
+ *    int source[M]               the vertex each of those leaves
+ *    int nameOrder[N]            locations sorted by name
+ *    int nameStart[S+1]          name K is bytes nameStart[K] ..
+ *                                nameStart[K+1]-1 of names
+ *    byte direction[M]           ordinal of each edge's Direction
+ *    byte names[]                the names, in UTF-8
+ *  </pre>
+ *  Slot 0 of the arrays indexed by vertex is unused, and the id of the
+ *  edge at index I of target is I + 1.  Each vertex's successors and
+ *  predecessors appear in the same order as in the map from which the
+ *  file was written, so routes are the same for both.
+ *  @author Zhibo Fan
+ */
+final class MapFile extends LabeledGraph<Location, Road> {
+
+    /** Returns true iff the file named NAME is a map file. */
+    static boolean isMapFile(String name) {
+        try (DataInputStream inp =
+                 new DataInputStream(new FileInputStream(name))) {
+            return inp.readInt() == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns the map in the map file named NAME. */
+    static MapFile open(String name) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            ByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MapFile(new Structure(buffer));
+        }
+    }
+
+    /** Write MAP, whose vertices must be numbered 1 .. N for some N, to
+     *  a map file named NAME. */
+    static void write(LabeledGraph<Location, Road> map, String name)
+        throws IOException {
+        int n = map.maxVertex(), m = map.edgeSize();
+        if (map.vertexSize() != n) {
+            error("Error: map locations are not numbered consecutively");
+        }
+        ArrayList<String> strings = new ArrayList<>();
+        HashMap<String, Integer> stringIds = new HashMap<>();
+        double[] x = new double[n + 1], y = new double[n + 1];
+        int[] locationName = new int[n + 1];
+        for (int v = 1; v <= n; v += 1) {
+            Location loc = map.getLabel(v);
+            x[v] = loc.x();
+            y[v] = loc.y();
+            locationName[v] = intern(loc.toString(), strings, stringIds);
+        }
+        double[] length = new double[m];
+        int[] outStart = new int[n + 2], target = new int[m],
+            roadName = new int[m], sortedTarget = new int[m],
+            sortedEdge = new int[m];
+        byte[] direction = new byte[m];
+        int k = 0;
+        for (int u = 1; u <= n; u += 1) {
+            outStart[u] = k;
+            for (int v : map.successors(u)) {
+                Road road = map.getLabel(u, v);
+                target[k] = v;
+                length[k] = road.length();
+                roadName[k] = intern(road.toString(), strings, stringIds);
+                direction[k] = (byte) road.direction().ordinal();
+                k += 1;
+            }
+            long[] row = new long[k - outStart[u]];
+            for (int i = 0; i < row.length; i += 1) {
+                row[i] = ((long) target[outStart[u] + i] << 32)
+                    | (outStart[u] + i + 1);
+            }
+            Arrays.sort(row);
+            for (int i = 0; i < row.length; i += 1) {
+                sortedTarget[outStart[u] + i] = (int) (row[i] >>> 32);
+                sortedEdge[outStart[u] + i] = (int) row[i];
+            }
+        }
+        outStart[n + 1] = k;
+        int[] inStart = new int[n + 2], source = new int[m];
+        k = 0;
+        for (int v = 1; v <= n; v += 1) {
+            inStart[v] = k;
+            for (int u : map.predecessors(v)) {
+                source[k] = u;
+                k += 1;
+            }
+        }
+        inStart[n + 1] = k;
+        Integer[] byName = new Integer[n];
+        for (int v = 1; v <= n; v += 1) {
+            byName[v - 1] = v;
+        }
+        Arrays.sort(byName, (v, w) -> strings.get(locationName[v])
+                    .compareTo(strings.get(locationName[w])));
+        ArrayList<byte[]> encoded = new ArrayList<>();
+        int[] nameStart = new int[strings.size() + 1];
+        for (int i = 0; i < strings.size(); i += 1) {
+            encoded.add(strings.get(i).getBytes(StandardCharsets.UTF_8));
+            nameStart[i + 1] = nameStart[i] + encoded.get(i).length;
+        }
+
+        try (DataOutputStream out =
+                 new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(m);
+            out.writeInt(strings.size());
+            out.writeInt(nameStart[strings.size()]);
+            for (double[] a : new double[][] { x, y, length }) {
+                for (double d : a) {
+                    out.writeDouble(d);
+                }
+            }
+            for (int[] a : new int[][] {
+                    locationName, outStart, target, roadName, sortedTarget,
+                    sortedEdge, inStart, source }) {
+                for (int i : a) {
+                    out.writeInt(i);
+                }
+            }
+            for (int v : byName) {
+                out.writeInt(v);
+            }
+            for (int i : nameStart) {
+                out.writeInt(i);
+            }
+            out.write(direction);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /** A map whose structure is STRUCTURE. */
+    private MapFile(Structure structure) {
+        super(structure);
+        _s = structure;
+    }
+
+    @Override
+    public Location getLabel(int v) {
+        checkMyVertex(v);
+        return new Location(_s.string(_s._locationName.get(v)),
+                            _s._x.get(v), _s._y.get(v));
+    }
+
+    @Override
+    public Road getLabel(int u, int v) {
+        int e = edgeId(u, v);
+        if (e == 0) {
+            throw new IllegalArgumentException("Error: no such edge");
+        }
+        return new Road(_s.string(_s._roadName.get(e - 1)),
+                        DIRECTIONS[_s._direction.get(e - 1)],
+                        _s._length.get(e - 1));
+    }
+
+    @Override
+    public void setLabel(int v, Location lab) {
+        throw Structure.readOnly();
+    }
+
+    @Override
+    public void setLabel(int u, int v, Road lab) {
+        throw Structure.readOnly();
+    }
+
+    /** Returns the length of the road from U to V, which must exist. */
+    double length(int u, int v) {
+        return _s._length.get(edgeId(u, v) - 1);
+    }
+
+    /** Returns the straight-line distance between locations U and V. */
+    double distance(int u, int v) {
+        double dx = _s._x.get(u) - _s._x.get(v),
+            dy = _s._y.get(u) - _s._y.get(v);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** Returns the location named NAME, or null if there is none. */
+    Integer vertex(String name) {
+        int lo = 0, hi = _s._n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = _s._nameOrder.get(mid);
+            int c = _s.string(_s._locationName.get(v)).compareTo(name);
+            if (c == 0) {
+                return v;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the id of STRING in STRINGS, as recorded in IDS, adding it
+     *  if necessary. */
+    private static int intern(String string, ArrayList<String> strings,
+                              HashMap<String, Integer> ids) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            strings.add(string);
+            ids.put(string, id);
+        }
+        return id;
+    }
+
+    /** The structure of a map file: a read-only directed graph over the
+     *  arrays of a mapped buffer. */
+    private static final class Structure extends Graph {
+
+        /** The graph in BUFFER, which holds a map file. */
+        Structure(ByteBuffer buffer) {
+            if (buffer.capacity() < HEADER_BYTES
+                || buffer.getInt(0) != MAGIC) {
+                error("Error: not a map file");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                error("Error: unsupported map file version");
+            }
+            _n = buffer.getInt(8);
+            _m = buffer.getInt(12);
+            int strings = buffer.getInt(16);
+            _buffer = buffer;
+            _offset = HEADER_BYTES;
+            _x = doubles(_n + 1);
+            _y = doubles(_n + 1);
+            _length = doubles(_m);
+            _locationName = ints(_n + 1);
+            _outStart = ints(_n + 2);
+            _target = ints(_m);
+            _roadName = ints(_m);
+            _sortedTarget = ints(_m);
+            _sortedEdge = ints(_m);
+            _inStart = ints(_n + 2);
+            _source = ints(_m);
+            _nameOrder = ints(_n);
+            _nameStart = ints(strings + 1);
+            _direction = bytes(_m);
+            _names = bytes(_nameStart.get(strings));
+        }
+
+        /** Returns string K of the file's names. */
+        String string(int k) {
+            int start = _nameStart.get(k), end = _nameStart.get(k + 1);
+            byte[] bytes = new byte[end - start];
+            _names.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int vertexSize() {
+            return _n;
+        }
+
+        @Override
+        public int maxVertex() {
+            return _n;
+        }
+
+        @Override
+        public int edgeSize() {
+            return _m;
+        }
+
+        @Override
+        public boolean isDirected() {
+            return true;
+        }
+
+        @Override
+        public int outDegree(int v) {
+            return contains(v) ? _outStart.get(v + 1) - _outStart.get(v) : 0;
+        }
+
+        @Override
+        public int inDegree(int v) {
+            return contains(v) ? _inStart.get(v + 1) - _inStart.get(v) : 0;
+        }
+
+        @Override
+        public boolean contains(int u) {
+            return u >= 1 && u <= _n;
+        }
+
+        @Override
+        public boolean contains(int u, int v) {
+            return edgeId(u, v) != 0;
+        }
+
+        @Override
+        public int add() {
+            throw readOnly();
+        }
+
+        @Override
+        public int add(int u, int v) {
+            throw readOnly();
+        }
+
+        @Override
+        public void remove(int v) {
+            throw readOnly();
+        }
+
+        @Override
+        public void remove(int u, int v) {
+            throw readOnly();
+        }
+
+        @Override
+        public Iteration<Integer> vertices() {
+            return new BufferIteration(null, 1, _n + 1);
+        }
+
+        @Override
+        public Iteration<Integer> successors(int v) {
+            if (!contains(v)) {
+                return new BufferIteration(null, 0, 0);
+            }
+            return new BufferIteration(_target, _outStart.get(v),
+                                       _outStart.get(v + 1));
+        }
+
+        @Override
+        public Iteration<Integer> predecessors(int v) {
+            if (!contains(v)) {
+                return new BufferIteration(null, 0, 0);
+            }
+            return new BufferIteration(_source, _inStart.get(v),
+                                       _inStart.get(v + 1));
+        }
+
+        @Override
+        public void forEachSuccessor(int v, IntConsumer action) {
+            if (contains(v)) {
+                for (int i = _outStart.get(v), end = _outStart.get(v + 1);
+                     i < end; i += 1) {
+                    action.accept(_target.get(i));
+                }
+            }
+        }
+
+        @Override
+        public void forEachPredecessor(int v, IntConsumer action) {
+            if (contains(v)) {
+                for (int i = _inStart.get(v), end = _inStart.get(v + 1);
+                     i < end; i += 1) {
+                    action.accept(_source.get(i));
+                }
+            }
+        }
+
+        @Override
+        public Iteration<int[]> edges() {
+            return new Iteration<int[]>() {
+                @Override
+                public boolean hasNext() {
+                    return _e < _m;
+                }
+
+                @Override
+                public int[] next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    while (_outStart.get(_u + 1) <= _e) {
+                        _u += 1;
+                    }
+                    _result[0] = _u;
+                    _result[1] = _target.get(_e);
+                    _e += 1;
+                    return _result;
+                }
+
+                /** Index of the next edge, and the vertex it leaves (or
+                 *  one less). */
+                private int _e, _u = 1;
+                /** The array returned by each call to next(). */
+                private final int[] _result = new int[2];
+            };
+        }
+
+        @Override
+        protected int edgeId(int u, int v) {
+            if (!contains(u)) {
+                return 0;
+            }
+            int lo = _outStart.get(u), hi = _outStart.get(u + 1) - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int w = _sortedTarget.get(mid);
+                if (w == v) {
+                    return _sortedEdge.get(mid);
+                } else if (w < v) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return 0;
+        }
+
+        /** Returns the exception thrown by attempts to modify a map
+         *  file. */
+        static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Error: map file is"
+                                                     + " read-only");
+        }
+
+        /** Returns a view of the next N doubles of _buffer. */
+        private DoubleBuffer doubles(int n) {
+            return section(8 * n).asDoubleBuffer();
+        }
+
+        /** Returns a view of the next N ints of _buffer. */
+        private IntBuffer ints(int n) {
+            return section(4 * n).asIntBuffer();
+        }
+
+        /** Returns a view of the next N bytes of _buffer. */
+        private ByteBuffer bytes(int n) {
+            return section(n);
+        }
+
+        /** Returns a view of the next SIZE bytes of _buffer. */
+        private ByteBuffer section(int size) {
+            if (size < 0 || _offset + (long) size > _buffer.capacity()) {
+                error("Error: map file is truncated");
+            }
+            ByteBuffer result =
+                _buffer.duplicate().position(_offset).limit(_offset + size)
+                .slice();
+            _offset += size;
+            return result;
+        }
+
+        /** An iteration over elements FROM .. TO-1 of VALUES, or over the
+         *  integers FROM .. TO-1 if VALUES is null. */
+        private static class BufferIteration extends Iteration<Integer> {
+            /** An iteration over VALUES[FROM .. TO-1]. */
+            BufferIteration(IntBuffer values, int from, int to) {
+                _values = values;
+                _next = from;
+                _to = to;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return _next < _to;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int i = _next;
+                _next += 1;
+                return _values == null ? i : _values.get(i);
+            }
+
+            /** The values, or null. */
+            private final IntBuffer _values;
+            /** Index of the next value. */
+            private int _next;
+            /** Index just past the last value. */
+            private final int _to;
+        }
+
+        /** The mapped file. */
+        private final ByteBuffer _buffer;
+        /** Offset in _buffer of the next section, while sections are
+         *  being found. */
+        private int _offset;
+        /** Numbers of vertices and edges. */
+        private final int _n, _m;
+        /** Arrays of the map file, as described for MapFile. */
+        private final DoubleBuffer _x, _y, _length;
+        /** Arrays of the map file, as described for MapFile. */
+        private final IntBuffer _locationName, _outStart, _target,
+            _roadName, _sortedTarget, _sortedEdge, _inStart, _source,
+            _nameOrder, _nameStart;
+        /** Arrays of the map file, as described for MapFile. */
+        private final ByteBuffer _direction, _names;
+    }
+
+    /** First int of every map file. */
+    static final int MAGIC = 0x54524950;
+    /** Version of the map-file format. */
+    private static final int VERSION = 1;
+    /** Size in bytes of the header of a map file. */
+    private static final int HEADER_BYTES = 24;
+    /** Directions, indexed by ordinal. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** My structure. */
+    private final Structure _s;
+}
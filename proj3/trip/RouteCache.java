@@ -0,0 +1,119 @@
+package trip;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A bounded cache of the shortest routes found between pairs of
+ *  locations, each kept as its sequence of vertices and its length.
+ *  When full, it discards the least recently used route.  It counts the
+ *  lookups that find a route (hits) and those that do not (misses).  All
+ *  operations are synchronized, so one cache may serve several threads.
+ *  @author Zhibo Fan
+ */
+final class RouteCache {
+
+    /** A route of PATH.get(0), PATH.get(1), ..., whose total length is
+     *  LENGTH. */
+    static final class Route {
+        /** A route along PATH, of length LENGTH. */
+        Route(List<Integer> path, double length) {
+            _path = new int[path.size()];
+            for (int i = 0; i < _path.length; i += 1) {
+                _path[i] = path.get(i);
+            }
+            _length = length;
+        }
+
+        /** Returns the vertices along me, starting with my origin and
+         *  ending with my destination. */
+        List<Integer> path() {
+            List<Integer> result = new ArrayList<>(_path.length);
+            for (int v : _path) {
+                result.add(v);
+            }
+            return result;
+        }
+
+        /** Returns my total length. */
+        double length() {
+            return _length;
+        }
+
+        /** My vertices. */
+        private final int[] _path;
+        /** My length. */
+        private final double _length;
+    }
+
+    /** A cache holding at most CAPACITY routes. */
+    RouteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Error: capacity must be"
+                                               + " positive");
+        }
+        _capacity = capacity;
+        _routes = new LinkedHashMap<Long, Route>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Route> e) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Returns the cached route from U to V, or null if there is none. */
+    synchronized Route get(int u, int v) {
+        Route route = _routes.get(key(u, v));
+        if (route == null) {
+            _misses += 1;
+        } else {
+            _hits += 1;
+        }
+        return route;
+    }
+
+    /** Record ROUTE as the route from U to V. */
+    synchronized void put(int u, int v, Route route) {
+        _routes.put(key(u, v), route);
+    }
+
+    /** Discard all cached routes, as when the map they were found on
+     *  changes.  The counts of hits and misses are kept. */
+    synchronized void clear() {
+        _routes.clear();
+    }
+
+    /** Returns the number of routes cached. */
+    synchronized int size() {
+        return _routes.size();
+    }
+
+    /** Returns the maximum number of routes cached. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Returns the number of lookups that found a route. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of lookups that found no route. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Returns the key for the route from U to V. */
+    private static long key(int u, int v) {
+        return ((long) u << 32) | (v & 0xffffffffL);
+    }
+
+    /** Maximum number of routes. */
+    private final int _capacity;
+    /** The routes, keyed by their end points, from least to most recently
+     *  used. */
+    private final LinkedHashMap<Long, Route> _routes;
+    /** Numbers of lookups that did and did not find a route. */
+    private long _hits, _misses;
+}
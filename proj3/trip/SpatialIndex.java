@@ -0,0 +1,174 @@
+package trip;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A 2-d tree over a set of points, each identified by an integer id,
+ *  that finds the point nearest a given position, or all those within a
+ *  given distance of it, without looking at most of the points.  The
+ *  tree is implicit: the points are stored in flat arrays, ordered so
+ *  that the point splitting each range lies at its midpoint, with the
+ *  points to one side of it along the splitting axis before it and
+ *  those to the other side after it.  The axes alternate from x at the
+ *  root.
+ *  @author Zhibo Fan
+ */
+final class SpatialIndex {
+
+    /** An index of the points (XS[i], YS[i]) with ids IDS[i], for
+     *  0 <= i < IDS.length.  The arrays become mine and are reordered. */
+    SpatialIndex(int[] ids, double[] xs, double[] ys) {
+        if (ids.length != xs.length || ids.length != ys.length) {
+            throw new IllegalArgumentException("Error: mismatched arrays");
+        }
+        _ids = ids;
+        _x = xs;
+        _y = ys;
+        build(0, ids.length, true);
+    }
+
+    /** Returns the number of points. */
+    int size() {
+        return _ids.length;
+    }
+
+    /** Returns the id of the point nearest (X, Y), or 0 if there are no
+     *  points.  Ties are broken arbitrarily.  Any number of searches may
+     *  run at once. */
+    int nearest(double x, double y) {
+        Best best = new Best();
+        nearest(0, _ids.length, true, x, y, best);
+        return best._id;
+    }
+
+    /** Returns the ids of all points no farther than R from (X, Y), in no
+     *  particular order. */
+    List<Integer> within(double x, double y, double r) {
+        List<Integer> result = new ArrayList<>();
+        within(0, _ids.length, true, x, y, r, result);
+        return result;
+    }
+
+    /** Arrange the points in [LO .. HI-1] into a tree whose root splits
+     *  on x if BYX, and otherwise on y. */
+    private void build(int lo, int hi, boolean byX) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi, mid, byX ? _x : _y);
+            build(lo, mid, !byX);
+            lo = mid + 1;
+            byX = !byX;
+        }
+    }
+
+    /** Rearrange the points in [LO .. HI-1] so that the point at K is
+     *  the one that would be there if they were sorted by KEY, with none
+     *  before it having a larger key and none after it a smaller one. */
+    private void select(int lo, int hi, int k, double[] key) {
+        hi -= 1;
+        while (lo < hi) {
+            double pivot = key[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (key[i] < pivot) {
+                    i += 1;
+                }
+                while (key[j] > pivot) {
+                    j -= 1;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Exchange points I and J. */
+    private void swap(int i, int j) {
+        int id = _ids[i];
+        _ids[i] = _ids[j];
+        _ids[j] = id;
+        double t = _x[i];
+        _x[i] = _x[j];
+        _x[j] = t;
+        t = _y[i];
+        _y[i] = _y[j];
+        _y[j] = t;
+    }
+
+    /** Update BEST from the points in the tree [LO .. HI-1], whose root
+     *  splits on x if BYX, and otherwise on y, for a search around
+     *  (X, Y). */
+    private void nearest(int lo, int hi, boolean byX, double x, double y,
+                         Best best) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double dx = _x[mid] - x, dy = _y[mid] - y;
+            double dist = dx * dx + dy * dy;
+            if (dist < best._dist) {
+                best._dist = dist;
+                best._id = _ids[mid];
+            }
+            double offset = byX ? -dx : -dy;
+            if (offset < 0) {
+                nearest(lo, mid, !byX, x, y, best);
+                if (offset * offset >= best._dist) {
+                    return;
+                }
+                lo = mid + 1;
+            } else {
+                nearest(mid + 1, hi, !byX, x, y, best);
+                if (offset * offset >= best._dist) {
+                    return;
+                }
+                hi = mid;
+            }
+            byX = !byX;
+        }
+    }
+
+    /** Add to RESULT the ids of the points in the tree [LO .. HI-1],
+     *  whose root splits on x if BYX, and otherwise on y, that are no
+     *  farther than R from (X, Y). */
+    private void within(int lo, int hi, boolean byX, double x, double y,
+                        double r, List<Integer> result) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double dx = _x[mid] - x, dy = _y[mid] - y;
+            if (dx * dx + dy * dy <= r * r) {
+                result.add(_ids[mid]);
+            }
+            double offset = byX ? -dx : -dy;
+            if (offset >= -r) {
+                within(mid + 1, hi, !byX, x, y, r, result);
+            }
+            if (offset > r) {
+                return;
+            }
+            hi = mid;
+            byX = !byX;
+        }
+    }
+
+    /** The nearest point found so far in a search. */
+    private static final class Best {
+        /** Its id, or 0 if none has been found. */
+        private int _id;
+        /** The square of its distance from the position sought. */
+        private double _dist = Double.POSITIVE_INFINITY;
+    }
+
+    /** The ids of the points, in tree order. */
+    private final int[] _ids;
+    /** The coordinates of the points, in tree order. */
+    private final double[] _x, _y;
+}
@@ -1,18 +1,24 @@
 package trip;
 
+import graph.ContractionHierarchy;
 import graph.DirectedGraph;
+import graph.DistanceTable;
 import graph.LabeledGraph;
 import graph.SimpleShortestPaths;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import java.util.Scanner;
 import java.util.NoSuchElementException;
 import java.util.InputMismatchException;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static trip.Main.error;
 
@@ -25,9 +31,23 @@ import static trip.Main.error;
 class Trip {
 
     /**
-     * Read map file named NAME into out map graph.
+     * Read map file named NAME into out map graph.  NAME may be a text
+     * map or a binary map file written by writeMap, which is used in
+     * place without being read into memory.
      */
     void readMap(String name) {
+        _routes.clear();
+        _index = null;
+        if (MapFile.isMapFile(name)) {
+            try {
+                _mapped = MapFile.open(name);
+            } catch (IOException excp) {
+                error("Error: could not read map file %s", name);
+            }
+            _map = _mapped;
+            return;
+        }
+        _mapped = null;
         int n;
         n = 0;
         try {
@@ -56,100 +76,296 @@ class Trip {
         } catch (FileNotFoundException excp) {
             error("Error: file not found");
         }
+        _map = _roads.freeze();
+    }
+
+    /**
+     * Write the map read so far to a binary map file named NAME, which
+     * readMap can open much faster than it can read a text map.
+     */
+    void writeMap(String name) {
+        try {
+            MapFile.write(_map, name);
+        } catch (IOException excp) {
+            error("Error: could not write %s", name);
+        }
+    }
+
+    /**
+     * Route subsequent trips with a contraction hierarchy of the map read
+     * so far, which must be complete.  The hierarchy is read from the file
+     * named NAME if that holds one built from an identical map, and
+     * otherwise is built and written to NAME, so that later runs need not
+     * repeat the preprocessing.
+     */
+    void useHierarchy(String name) {
+        ContractionHierarchy.Weighting lengths =
+            (u, v) -> length(u, v);
+        _routes.clear();
+        long fingerprint = ContractionHierarchy.fingerprint(_map, lengths);
+        if (new File(name).exists()) {
+            try {
+                ContractionHierarchy saved = ContractionHierarchy.read(name);
+                if (saved.fingerprint() == fingerprint) {
+                    _hierarchy = saved;
+                    return;
+                }
+            } catch (IOException excp) {
+                /* Ignore the unusable file and rebuild it below. */
+            }
+        }
+        _hierarchy = new ContractionHierarchy(_map, lengths);
+        try {
+            _hierarchy.write(name);
+        } catch (IOException excp) {
+            error("Error: could not write %s", name);
+        }
     }
 
     /**
      * Produce a report on the standard output of a shortest journey from
-     * DESTS.get(0), then DESTS.get(1), ....
+     * DESTS.get(0), then DESTS.get(1), ....  Each of DESTS is the name of
+     * a location or a position "@X:Y", which stands for the location
+     * nearest (X, Y).
      */
     void makeTrip(List<String> dests) {
+        makeTrip(dests, new Directions(System.out, Directions.Format.TEXT));
+    }
+
+    /**
+     * Write the directions for a shortest journey from DESTS.get(0), then
+     * DESTS.get(1), ..., as for makeTrip(DESTS), to OUT, which is flushed
+     * at the end.
+     */
+    void makeTrip(List<String> dests, Directions out) {
         if (dests.size() < 2) {
             error("Error: must have at least two locations for a trip");
         }
+        int[] stops = vertices(dests);
+        try {
+            writeTrip(dests, stops, out);
+        } catch (IOException excp) {
+            error("Error: could not write directions");
+        }
+    }
+
+    /**
+     * Write to OUT the directions for a shortest journey through the
+     * vertices STOPS, which are those of the locations DESTS, and flush
+     * OUT, even if the journey turns out to be impossible.
+     */
+    private void writeTrip(List<String> dests, int[] stops, Directions out)
+        throws IOException {
+        try {
+            out.start(_map.getLabel(stops[0]).toString());
+            TripPlan plan = null;
+            for (int i = 1; i < stops.length; i += 1) {
+                int from = stops[i - 1], to = stops[i];
+                RouteCache.Route route = _routes.get(from, to);
+                if (route == null) {
+                    List<Integer> segment;
+                    if (_hierarchy == null) {
+                        plan = plan == null ? new TripPlan(from, to)
+                            : new TripPlan(plan, from, to);
+                        plan.setPaths();
+                        segment = plan.pathTo(to);
+                    } else {
+                        segment = _hierarchy.path(from, to);
+                        if (segment == null) {
+                            error("Error: No path from %s to %s",
+                                  dests.get(i - 1), dests.get(i));
+                        }
+                    }
+                    route = new RouteCache.Route(segment,
+                                                 pathLength(segment));
+                    _routes.put(from, to, route);
+                }
+                reportSegment(route.path(), out);
+            }
+        } finally {
+            out.flush();
+        }
+    }
 
-        System.out.printf("From %s:%n%n", dests.get(0));
-        int step;
+    /**
+     * Returns the cache of the legs found by makeTrip, which answers
+     * repeated legs without searching the map again.
+     */
+    RouteCache routes() {
+        return _routes;
+    }
+
+    /**
+     * Print on the standard output a table of the lengths of the shortest
+     * journeys from each of the locations named in ORIGINS to each of
+     * those named in DESTS, either of which may also include positions,
+     * as for makeTrip.  The first line lists DESTS, and each further line
+     * gives one origin followed by its distance in miles to each
+     * destination, or "-" where there is no route.  Items are separated
+     * by tabs.
+     */
+    void makeTable(List<String> origins, List<String> dests) {
+        if (origins.isEmpty() || dests.isEmpty()) {
+            error("Error: must have at least one origin and destination");
+        }
+        int[] sources = vertices(origins), targets = vertices(dests);
+        double[][] table;
+        if (_hierarchy == null) {
+            DistanceTable distances = new DistanceTable(_map, sources,
+                                                        targets) {
+                @Override
+                protected double getWeight(int u, int v) {
+                    return length(u, v);
+                }
+            };
+            distances.setDistances();
+            table = distances.getDistances();
+        } else {
+            table = _hierarchy.distances(sources, targets);
+        }
+        for (String dest : dests) {
+            System.out.printf("\t%s", dest);
+        }
+        System.out.println();
+        for (int i = 0; i < origins.size(); i += 1) {
+            System.out.print(origins.get(i));
+            for (double dist : table[i]) {
+                if (dist == Double.POSITIVE_INFINITY) {
+                    System.out.print("\t-");
+                } else {
+                    System.out.printf("\t%.1f", dist);
+                }
+            }
+            System.out.println();
+        }
+    }
 
-        step = 1;
-        for (int i = 1; i < dests.size(); i += 1) {
-            Integer
-                    from = _sites.get(dests.get(i - 1)),
-                    to = _sites.get(dests.get(i));
-            if (from == null) {
-                error("Error: No location named %s", dests.get(i - 1));
-            } else if (to == null) {
-                error("Error: No location named %s", dests.get(i));
+    /**
+     * Returns the vertices of the locations named in NAMES, in order.
+     */
+    private int[] vertices(List<String> names) {
+        int[] result = new int[names.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            Integer v = site(names.get(i));
+            if (v == null) {
+                error("Error: No location named %s", names.get(i));
             }
-            TripPlan plan = new TripPlan(from, to);
-            plan.setPaths();
-            List<Integer> segment = plan.pathTo(to);
-            step = reportSegment(step, from, segment);
+            result[i] = v;
         }
+        return result;
+    }
+
+    /**
+     * Returns the name of the location nearest (X, Y), or null if the map
+     * is empty.
+     */
+    String nearest(double x, double y) {
+        int v = index().nearest(x, y);
+        return v == 0 ? null : _map.getLabel(v).toString();
     }
 
     /**
-     * Print out a written description of the location sequence SEGMENT,
-     * starting at FROM, and numbering the lines of the description starting
-     * at SEQ.  That is, FROM and each item in SEGMENT are the
-     * numbers of vertices representing locations.  Together, they
-     * specify the starting point and vertices along a path where
-     * each vertex is joined to the next by an edge.  Returns the
-     * next sequence number.  The format is as described in the
-     * project specification.  That is, each line but the last in the
-     * segment is formated like this example:
-     * 1. Take University_Ave west for 0.1 miles.
-     * and the last like this:
-     * 5. Take I-80 west for 8.4 miles to San_Francisco.
-     * Adjacent roads with the same name and direction are combined.
+     * Returns the names of the locations no farther than R from (X, Y),
+     * in no particular order.
      */
-    int reportSegment(int seq, int from, List<Integer> segment) {
+    List<String> within(double x, double y, double r) {
+        List<String> result = new ArrayList<>();
+        for (int v : index().within(x, y, r)) {
+            result.add(_map.getLabel(v).toString());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the vertex of the location named NAME, or null if there is
+     * none.  If NAME is not the name of a location but has the form
+     * "@X:Y", returns the vertex of the location nearest (X, Y).
+     */
+    private Integer site(String name) {
+        Integer v = _mapped != null ? _mapped.vertex(name) : _sites.get(name);
+        if (v == null) {
+            Matcher position = POSITION.matcher(name);
+            if (position.matches()) {
+                try {
+                    v = index().nearest(Double.parseDouble(position.group(1)),
+                                        Double.parseDouble(position.group(2)));
+                } catch (NumberFormatException excp) {
+                    return null;
+                }
+                if (v == 0) {
+                    v = null;
+                }
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Returns the spatial index of the locations in _map, building it on
+     * first use, once the map is complete.
+     */
+    private SpatialIndex index() {
+        if (_index == null) {
+            int n = _map.vertexSize();
+            int[] ids = new int[n];
+            double[] xs = new double[n], ys = new double[n];
+            int i = 0;
+            for (int v : _map.vertices()) {
+                Location place = _map.getLabel(v);
+                ids[i] = v;
+                xs[i] = place.x();
+                ys[i] = place.y();
+                i += 1;
+            }
+            _index = new SpatialIndex(ids, xs, ys);
+        }
+        return _index;
+    }
+
+    /**
+     * Returns the total length of the roads along PATH.
+     */
+    private double pathLength(List<Integer> path) {
+        double result = 0;
+        Iterator<Integer> iter = path.iterator();
+        int u = iter.next();
+        while (iter.hasNext()) {
+            int v = iter.next();
+            result += length(u, v);
+            u = v;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the length of the road from U to V.
+     */
+    private double length(int u, int v) {
+        return _mapped != null ? _mapped.length(u, v)
+            : _map.getLabel(u, v).length();
+    }
+
+    /**
+     * Write to OUT the directions along the location sequence SEGMENT.
+     * The items in SEGMENT are the numbers of vertices representing
+     * locations, each joined to the next by an edge.  The roads along
+     * the way are passed to OUT one at a time, each fetched once, and OUT
+     * combines adjacent roads with the same name and direction into one
+     * step.  The last step ends at the last location in SEGMENT.
+     */
+    void reportSegment(List<Integer> segment, Directions out)
+        throws IOException {
         Iterator<Integer> iter = segment.iterator();
         int prevLocation = iter.next();
         if (!iter.hasNext()) {
-            return seq;
+            return;
         }
-        int curLocation = iter.next();
-        double dist = _map.getLabel(prevLocation, curLocation).length();
-        String prevName = "";
-        Direction prevDir = null;
-        Road prevRoad = null;
         while (iter.hasNext()) {
-            Road curRoad = _map.getLabel(prevLocation, curLocation);
-            String curName = curRoad.toString();
-            Direction curDir = curRoad.direction();
-            if (curName.equals(prevName) && curDir == prevDir) {
-                dist += curRoad.length();
-            } else if (prevRoad != null) {
-                String toPrint = String.valueOf(seq) + ". Take "
-                        + prevName + " "
-                        + prevDir.fullName() + " for %.1f" + " miles.%n";
-                System.out.printf(toPrint, dist);
-                dist = curRoad.length();
-                seq += 1;
-            }
-            prevRoad = curRoad;
-            prevName = curName;
-            prevDir = curDir;
+            int curLocation = iter.next();
+            out.hop(_map.getLabel(prevLocation, curLocation));
             prevLocation = curLocation;
-            curLocation = iter.next();
         }
-        Road curRoad = _map.getLabel(prevLocation, curLocation);
-        String curName = curRoad.toString();
-        Direction curDir = curRoad.direction();
-        if (curName.equals(prevName) && curDir == prevDir) {
-            dist += curRoad.length();
-        } else if (prevRoad != null) {
-            String toPrint = String.valueOf(seq) + ". Take " + prevName + " "
-                    + prevDir.fullName() + " for %.1f" + " miles.%n";
-            System.out.printf(toPrint, dist);
-            dist = curRoad.length();
-            seq += 1;
-        }
-        String toPrint = String.valueOf(seq) + ". Take " + curName + " "
-                + curDir.fullName() + " for %.1f" + " miles to "
-                + _map.getLabel(curLocation).toString() + ".%n";
-        System.out.printf(toPrint, dist);
-        return seq + 1;
+        out.arrive(_map.getLabel(prevLocation).toString());
     }
 
     /**
@@ -159,7 +375,7 @@ class Trip {
         if (_sites.containsKey(name)) {
             error("Error: multiple entries for %s", name);
         }
-        int v = _map.add(new Location(name, x, y));
+        int v = _roads.add(new Location(name, x, y));
         _sites.put(name, v);
     }
 
@@ -179,18 +395,51 @@ class Trip {
         } else if (v1 == null) {
             error("Error: location %s not defined", to);
         }
-        _map.add(v0, v1, new Road(name, dir, length));
-        _map.add(v1, v0, new Road(name, dir.reverse(), length));
+        _roads.add(v0, v1, new Road(name, dir, length));
+        _roads.add(v1, v0, new Road(name, dir.reverse(), length));
     }
 
     /**
-     * Represents the network of Locations and Roads.
+     * The network of Locations and Roads as it is read.
+     */
+    private RoadMap _roads = new RoadMap();
+    /**
+     * An immutable snapshot of _roads, taken when the map has been read,
+     * which is used for routing and may be shared among threads.
      */
-    private RoadMap _map = new RoadMap();
+    private LabeledGraph<Location, Road> _map = _roads;
+    /**
+     * The map, if it was read from a binary map file, and otherwise null.
+     */
+    private MapFile _mapped;
     /**
      * Mapping of Location names to corresponding map vertices.
      */
     private HashMap<String, Integer> _sites = new HashMap<>();
+    /**
+     * Preprocessed form of _map used for routing, or null to route with
+     * A* search.
+     */
+    private ContractionHierarchy _hierarchy;
+    /**
+     * Legs of trips already found on _map, which is cleared whenever _map
+     * or the method of routing on it changes.
+     */
+    private final RouteCache _routes = new RouteCache(ROUTE_CACHE_SIZE);
+    /**
+     * Maximum number of legs in _routes.
+     */
+    private static final int ROUTE_CACHE_SIZE = 4096;
+    /**
+     * Index of the positions of the locations in _map, or null if not yet
+     * built.
+     */
+    private SpatialIndex _index;
+    /**
+     * The form of a position given in place of a location name.
+     */
+    private static final Pattern POSITION =
+        Pattern.compile("@([^:]+):([^:]+)");
 
     /**
      * A labeled directed graph of Locations whose edges are labeled by
@@ -217,13 +466,25 @@ class Trip {
             _finalLocation = _map.getLabel(dest);
         }
 
+        /**
+         * A plan for travel from START to DEST according to _map, reusing
+         * the storage of PREVIOUS.
+         */
+        TripPlan(TripPlan previous, int start, int dest) {
+            super(previous, start, dest);
+            _finalLocation = _map.getLabel(dest);
+        }
+
         @Override
         protected double getWeight(int u, int v) {
-            return _map.getLabel(u, v).length();
+            return length(u, v);
         }
 
         @Override
         protected double estimatedDistance(int v) {
+            if (_mapped != null) {
+                return _mapped.distance(v, getDest());
+            }
             return _map.getLabel(v).dist(_finalLocation);
         }
 
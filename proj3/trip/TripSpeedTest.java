@@ -0,0 +1,368 @@
+package trip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Timing tests of map loading, nearest-location lookup, writing
+ *  directions, and comparing A* routing with contraction-hierarchy
+ *  routing, on synthetic grid-shaped road maps.  Not part of the package
+ *  proper.
+ *  @author Zhibo Fan
+ */
+public class TripSpeedTest {
+
+    /** Number of legs in each timed trip. */
+    static final int LEGS = 50;
+
+    /** Returns the name of the location in row R and column C. */
+    static String name(int r, int c) {
+        return "V" + r + "_" + c;
+    }
+
+    /** Write to FILE a map of a K x K grid of locations one mile apart,
+     *  joined by roads of somewhat varying length.  Uses RAND for random
+     *  choices. */
+    static void writeGridMap(File file, int k, Random rand)
+        throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            for (int r = 0; r < k; r += 1) {
+                for (int c = 0; c < k; c += 1) {
+                    out.printf("L %s %d %d%n", name(r, c), c, -r);
+                }
+            }
+            for (int r = 0; r < k; r += 1) {
+                for (int c = 0; c < k; c += 1) {
+                    if (c + 1 < k) {
+                        out.printf("R %s Row_%d %.2f WE %s%n", name(r, c), r,
+                                   1 + rand.nextDouble(), name(r, c + 1));
+                    }
+                    if (r + 1 < k) {
+                        out.printf("R %s Col_%d %.2f NS %s%n", name(r, c), c,
+                                   1 + rand.nextDouble(), name(r + 1, c));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the time in milliseconds to compute TRIP.makeTrip(STOPS),
+     *  discarding its output.  Unless CACHED, the legs in TRIP's route
+     *  cache are discarded first, so that every leg is searched for. */
+    static double timeTrip(Trip trip, List<String> stops, boolean cached) {
+        if (!cached) {
+            trip.routes().clear();
+        }
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            long start = System.nanoTime();
+            trip.makeTrip(stops);
+            return (System.nanoTime() - start) / 1e6;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /** Prints preprocessing and per-leg routing times for a K x K grid,
+     *  using RAND for random choices. */
+    static void printRoutingTimes(int k, Random rand) throws IOException {
+        File map = File.createTempFile("grid", ".map");
+        File hierarchy = File.createTempFile("grid", ".ch");
+        map.deleteOnExit();
+        hierarchy.deleteOnExit();
+        hierarchy.delete();
+        writeGridMap(map, k, rand);
+        List<String> stops = new ArrayList<>();
+        for (int i = 0; i <= LEGS; i += 1) {
+            stops.add(name(rand.nextInt(k), rand.nextInt(k)));
+        }
+
+        Trip trip = new Trip();
+        trip.readMap(map.getPath());
+        timeTrip(trip, stops, false);
+        double astar = timeTrip(trip, stops, false) / LEGS;
+
+        long start = System.nanoTime();
+        trip.useHierarchy(hierarchy.getPath());
+        double build = (System.nanoTime() - start) / 1e6;
+        trip = new Trip();
+        trip.readMap(map.getPath());
+        start = System.nanoTime();
+        trip.useHierarchy(hierarchy.getPath());
+        double load = (System.nanoTime() - start) / 1e6;
+        timeTrip(trip, stops, false);
+        double ch = timeTrip(trip, stops, false) / LEGS;
+        double cached = timeTrip(trip, stops, true) / LEGS;
+
+        System.out.printf("%10d %12.1f %12.1f %12.3f %12.3f %12.3f%n",
+                          k * k, build, load, astar, ch, cached);
+    }
+
+    /** Returns the time in milliseconds to compute
+     *  TRIP.makeTable(ORIGINS, DESTS), discarding its output. */
+    static double timeTable(Trip trip, List<String> origins,
+                            List<String> dests) {
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            long start = System.nanoTime();
+            trip.makeTable(origins, dests);
+            return (System.nanoTime() - start) / 1e6;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /** Prints the times to compute a TABLE x TABLE distance table for a
+     *  K x K grid, using separate searches and a contraction hierarchy,
+     *  using RAND for random choices. */
+    static void printTableTimes(int k, int table, Random rand)
+        throws IOException {
+        File map = File.createTempFile("grid", ".map");
+        File hierarchy = File.createTempFile("grid", ".ch");
+        map.deleteOnExit();
+        hierarchy.deleteOnExit();
+        hierarchy.delete();
+        writeGridMap(map, k, rand);
+        List<String> origins = new ArrayList<>(), dests = new ArrayList<>();
+        for (int i = 0; i < table; i += 1) {
+            origins.add(name(rand.nextInt(k), rand.nextInt(k)));
+            dests.add(name(rand.nextInt(k), rand.nextInt(k)));
+        }
+
+        Trip trip = new Trip();
+        trip.readMap(map.getPath());
+        timeTable(trip, origins, dests);
+        double searches = timeTable(trip, origins, dests);
+        trip.useHierarchy(hierarchy.getPath());
+        timeTable(trip, origins, dests);
+        double ch = timeTable(trip, origins, dests);
+
+        System.out.printf("%10d %10d %12.1f %12.1f%n",
+                          k * k, table, searches, ch);
+    }
+
+    /** Returns the heap in use, in bytes, after collecting garbage. */
+    static long heapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Prints the times to load a K x K grid map from text and from a
+     *  binary map file, the heap each takes, and the time to route a trip
+     *  with each, using RAND for random choices. */
+    static void printLoadTimes(int k, Random rand) throws IOException {
+        File map = File.createTempFile("grid", ".map");
+        File binary = File.createTempFile("grid", ".bin");
+        map.deleteOnExit();
+        binary.deleteOnExit();
+        writeGridMap(map, k, rand);
+        List<String> stops = new ArrayList<>();
+        for (int i = 0; i <= LEGS; i += 1) {
+            stops.add(name(rand.nextInt(k), rand.nextInt(k)));
+        }
+
+        long heap = heapUsed();
+        long start = System.nanoTime();
+        Trip trip = new Trip();
+        trip.readMap(map.getPath());
+        double textLoad = (System.nanoTime() - start) / 1e6;
+        double textHeap = (heapUsed() - heap) / 1e6;
+        timeTrip(trip, stops, false);
+        double textLeg = timeTrip(trip, stops, false) / LEGS;
+        trip.writeMap(binary.getPath());
+        trip = null;
+
+        heap = heapUsed();
+        start = System.nanoTime();
+        trip = new Trip();
+        trip.readMap(binary.getPath());
+        double binaryLoad = (System.nanoTime() - start) / 1e6;
+        double binaryHeap = (heapUsed() - heap) / 1e6;
+        timeTrip(trip, stops, false);
+        double binaryLeg = timeTrip(trip, stops, false) / LEGS;
+
+        System.out.printf("%10d %10.1f %10.1f %10.3f %10.1f %10.1f %10.3f%n",
+                          k * k, textLoad, textHeap, textLeg,
+                          binaryLoad, binaryHeap, binaryLeg);
+    }
+
+    /** Number of queries in each timed batch of position lookups. */
+    static final int QUERIES = 10000;
+
+    /** Prints the times to index N random points in a square, and to
+     *  find the nearest point to each of a batch of random positions and
+     *  the points within a small radius of each, with the index and by
+     *  scanning all the points.  Uses RAND for random choices. */
+    static void printNearestTimes(int n, Random rand) {
+        double[] xs = new double[n], ys = new double[n];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            ids[i] = i + 1;
+            xs[i] = rand.nextDouble() * 100;
+            ys[i] = rand.nextDouble() * 100;
+        }
+        double[] qx = new double[QUERIES], qy = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i += 1) {
+            qx[i] = rand.nextDouble() * 100;
+            qy[i] = rand.nextDouble() * 100;
+        }
+        double r = 200 / Math.sqrt(n);
+
+        long start = System.nanoTime();
+        SpatialIndex index = new SpatialIndex(ids, xs.clone(), ys.clone());
+        double build = (System.nanoTime() - start) / 1e6;
+
+        long check = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i += 1) {
+            check += index.nearest(qx[i], qy[i]);
+        }
+        double treeNearest = (System.nanoTime() - start) / 1e3 / QUERIES;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i += 1) {
+            check += index.within(qx[i], qy[i], r).size();
+        }
+        double treeWithin = (System.nanoTime() - start) / 1e3 / QUERIES;
+
+        int scans = Math.max(1, QUERIES / (n / 1000 + 1));
+        start = System.nanoTime();
+        for (int i = 0; i < scans; i += 1) {
+            double best = Double.POSITIVE_INFINITY;
+            int id = 0;
+            for (int j = 0; j < n; j += 1) {
+                double dx = xs[j] - qx[i], dy = ys[j] - qy[i],
+                    d = dx * dx + dy * dy;
+                if (d < best) {
+                    best = d;
+                    id = j + 1;
+                }
+            }
+            check += id;
+        }
+        double scanNearest = (System.nanoTime() - start) / 1e3 / scans;
+        start = System.nanoTime();
+        for (int i = 0; i < scans; i += 1) {
+            int found = 0;
+            for (int j = 0; j < n; j += 1) {
+                double dx = xs[j] - qx[i], dy = ys[j] - qy[i];
+                if (dx * dx + dy * dy <= r * r) {
+                    found += 1;
+                }
+            }
+            check += found;
+        }
+        double scanWithin = (System.nanoTime() - start) / 1e3 / scans;
+
+        _sink += check;
+        System.out.printf("%10d %10.1f %10.2f %10.2f %10.1f %10.1f%n",
+                          n, build, treeNearest, treeWithin,
+                          scanNearest, scanWithin);
+    }
+
+    /** Prints the times per step to write the directions for N hops
+     *  along randomly chosen roads, first formatting each step with
+     *  printf as Trip once did, and then with Directions in each format.
+     *  Uses RAND for random choices. */
+    static void printDirectionsTimes(int n, Random rand) throws IOException {
+        Road[] hops = new Road[n];
+        for (int i = 0; i < n; i += 1) {
+            hops[i] = new Road("Road_" + rand.nextInt(20),
+                               Direction.values()[rand.nextInt(4)],
+                               rand.nextDouble() * 5);
+        }
+        PrintStream sink =
+            new PrintStream(OutputStream.nullOutputStream(), true);
+
+        long start = System.nanoTime();
+        int steps = 0;
+        Road prev = hops[0];
+        double dist = prev.length();
+        for (int i = 1; i < n; i += 1) {
+            Road cur = hops[i];
+            if (cur.toString().equals(prev.toString())
+                && cur.direction() == prev.direction()) {
+                dist += cur.length();
+            } else {
+                steps += 1;
+                String toPrint = String.valueOf(steps) + ". Take "
+                    + prev + " " + prev.direction().fullName()
+                    + " for %.1f" + " miles.%n";
+                sink.printf(toPrint, dist);
+                dist = cur.length();
+            }
+            prev = cur;
+        }
+        double printf = (System.nanoTime() - start) / 1e3 / steps;
+
+        double[] times = new double[2];
+        for (Directions.Format format : Directions.Format.values()) {
+            Directions out = new Directions(sink, format);
+            start = System.nanoTime();
+            out.start("Start");
+            for (Road hop : hops) {
+                out.hop(hop);
+            }
+            out.arrive("End");
+            out.flush();
+            times[format.ordinal()] =
+                (System.nanoTime() - start) / 1e3 / steps;
+        }
+        System.out.printf("%10d %10.3f %10.3f %10.3f%n", steps, printf,
+                          times[0], times[1]);
+    }
+
+    /** Run the timing tests.  ARGS is unused. */
+    public static void main(String... args) throws IOException {
+        Random rand = new Random(61);
+        System.out.printf("Loading K x K grid maps from text, then from"
+                          + " binary: load (ms), heap (MB), A*/leg (ms)%n");
+        System.out.printf("%10s %10s %10s %10s %10s %10s %10s%n",
+                          "locations", "load", "heap", "A*/leg",
+                          "load", "heap", "A*/leg");
+        for (int k = 100; k <= 400; k *= 2) {
+            printLoadTimes(k, rand);
+        }
+        System.out.println();
+        System.out.printf("Position lookups among N random points:"
+                          + " build (ms), per query (us)%n");
+        System.out.printf("%10s %10s %10s %10s %10s %10s%n", "points",
+                          "build", "nearest", "within", "scan near",
+                          "scan in");
+        for (int n = 1000; n <= 1000000; n *= 10) {
+            printNearestTimes(n, rand);
+        }
+        System.out.println();
+        System.out.printf("Writing directions (us per step)%n");
+        System.out.printf("%10s %10s %10s %10s%n", "steps", "printf",
+                          "text", "csv");
+        for (int n = 10000; n <= 1000000; n *= 10) {
+            printDirectionsTimes(n, rand);
+        }
+        System.out.println();
+        System.out.printf("Routing on K x K grid maps (ms)%n");
+        System.out.printf("%10s %12s %12s %12s %12s %12s%n", "locations",
+                          "CH build", "CH load", "A*/leg", "CH/leg",
+                          "cached/leg");
+        for (int k = 50; k <= 200; k *= 2) {
+            printRoutingTimes(k, rand);
+        }
+        System.out.printf("%nDistance tables on K x K grid maps (ms)%n");
+        System.out.printf("%10s %10s %12s %12s%n", "locations", "size",
+                          "searches", "CH");
+        for (int k = 50; k <= 200; k *= 2) {
+            printTableTimes(k, 100, rand);
+        }
+    }
+
+    /** Accumulates results of timed lookups, so that they are not
+     *  optimized away. */
+    private static long _sink;
+}
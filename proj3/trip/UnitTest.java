@@ -5,8 +5,18 @@ package trip;
  * may not be part of your trip package per se (that is, it must be
  * possible to remove them and still have your package work). */
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 import ucb.junit.textui;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
 
 /** Unit tests for the trip package. */
@@ -22,13 +32,311 @@ public class UnitTest {
 
     }
 
+    @Test
+    public void hierarchyTrip() throws IOException {
+        List<String> stops = asList("Berkeley", "San_Francisco",
+                                    "Santa_Cruz", "Berkeley");
+        String expected = tripOutput(getTestTrip(), stops);
+        File file = File.createTempFile("trip01", ".ch");
+        file.deleteOnExit();
+        file.delete();
+        for (int i = 0; i < 2; i += 1) {
+            Trip trip = getTestTrip();
+            trip.useHierarchy(file.getPath());
+            assertTrue("hierarchy not saved", file.exists());
+            assertEquals(expected, tripOutput(trip, stops));
+        }
+    }
+
+    @Test
+    public void distanceTable() throws IOException {
+        List<String> origins = asList("Berkeley", "Santa_Cruz");
+        List<String> dests = asList("Berkeley", "San_Francisco",
+                                    "Santa_Cruz");
+        String expected = String.format("\tBerkeley\tSan_Francisco"
+                                         + "\tSanta_Cruz%n"
+                                         + "Berkeley\t0.0\t14.0\t79.6%n"
+                                         + "Santa_Cruz\t79.6\t65.6\t0.0%n");
+        Trip trip = getTestTrip();
+        assertEquals(expected,
+                     output(() -> trip.makeTable(origins, dests)));
+        File file = File.createTempFile("trip01", ".ch");
+        file.deleteOnExit();
+        file.delete();
+        trip.useHierarchy(file.getPath());
+        assertEquals(expected,
+                     output(() -> trip.makeTable(origins, dests)));
+    }
+
+    @Test
+    public void binaryMap() throws IOException {
+        List<String> stops = asList("Berkeley", "San_Francisco",
+                                    "Santa_Cruz", "Berkeley");
+        List<String> places = asList("Berkeley", "Santa_Cruz");
+        Trip text = getTestTrip();
+        File file = File.createTempFile("trip01", ".bin");
+        file.deleteOnExit();
+        text.writeMap(file.getPath());
+        Trip binary = new Trip();
+        binary.readMap(file.getPath());
+        assertEquals(tripOutput(text, stops), tripOutput(binary, stops));
+        assertEquals(output(() -> text.makeTable(places, places)),
+                     output(() -> binary.makeTable(places, places)));
+        File hierarchy = File.createTempFile("trip01", ".ch");
+        hierarchy.deleteOnExit();
+        hierarchy.delete();
+        binary.useHierarchy(hierarchy.getPath());
+        assertEquals(tripOutput(text, stops), tripOutput(binary, stops));
+        try {
+            binary.makeTrip(asList("Berkeley", "Nowhere"));
+            fail("missing location not detected");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("Error: No location named Nowhere",
+                         excp.getMessage());
+        }
+        File small = mapFile("trip02", "L Here 0 0", "L There 0 1",
+                             "R Here Main_St 1.0 NS There");
+        binary.readMap(small.getPath());
+        String trip = tripOutput(binary, asList("Here", "There"));
+        assertTrue(trip, trip.contains("Take Main_St"));
+        assertTrue(trip, trip.contains("to There."));
+    }
+
+    @Test
+    public void spatialIndex() {
+        Random rand = new Random(61);
+        int n = 2000;
+        double[] xs = new double[n], ys = new double[n];
+        for (int i = 0; i < n; i += 1) {
+            xs[i] = rand.nextInt(100) * 0.5;
+            ys[i] = rand.nextInt(100) * 0.5;
+        }
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            ids[i] = i + 1;
+        }
+        SpatialIndex index = new SpatialIndex(ids, xs.clone(), ys.clone());
+        assertEquals(n, index.size());
+        for (int k = 0; k < 500; k += 1) {
+            double x = rand.nextDouble() * 60 - 5,
+                y = rand.nextDouble() * 60 - 5,
+                r = rand.nextDouble() * 4;
+            double best = Double.POSITIVE_INFINITY;
+            List<Integer> near = new ArrayList<>();
+            for (int i = 0; i < n; i += 1) {
+                double d = Math.hypot(xs[i] - x, ys[i] - y);
+                best = Math.min(best, d);
+                if (d <= r) {
+                    near.add(i + 1);
+                }
+            }
+            int v = index.nearest(x, y);
+            assertEquals(best, Math.hypot(xs[v - 1] - x, ys[v - 1] - y),
+                         1e-9);
+            List<Integer> found = index.within(x, y, r);
+            Collections.sort(found);
+            assertEquals(near, found);
+        }
+        SpatialIndex empty =
+            new SpatialIndex(new int[0], new double[0], new double[0]);
+        assertEquals(0, empty.nearest(0, 0));
+        assertTrue(empty.within(0, 0, 1).isEmpty());
+    }
+
+    @Test
+    public void positionTrip() throws IOException {
+        Trip trip = getTestTrip();
+        assertEquals("Berkeley", trip.nearest(-6736.9, 2613.2));
+        assertEquals("Santa_Cruz", trip.nearest(-6700, 2500));
+        List<String> around = trip.within(-6737, 2612.5, 1);
+        Collections.sort(around);
+        assertEquals(asList("Berkeley", "C1", "C2"), around);
+        assertEquals(tripOutput(trip, asList("Berkeley", "Santa_Cruz")),
+                     tripOutput(trip, asList("@-6736.9:2613.2",
+                                             "@-6723.7:2552")));
+        try {
+            trip.makeTrip(asList("Berkeley", "@north:south"));
+            fail("bad position not detected");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("Error: No location named @north:south",
+                         excp.getMessage());
+        }
+    }
+
+    @Test
+    public void routeCache() throws IOException {
+        List<String> stops = asList("Berkeley", "San_Francisco",
+                                    "Santa_Cruz", "Berkeley");
+        Trip trip = getTestTrip();
+        RouteCache routes = trip.routes();
+        String expected = tripOutput(trip, stops);
+        assertEquals(0, routes.hits());
+        assertEquals(3, routes.misses());
+        assertEquals(3, routes.size());
+        assertEquals(expected, tripOutput(trip, stops));
+        assertEquals(3, routes.hits());
+        assertEquals(3, routes.misses());
+        tripOutput(trip, asList("San_Francisco", "Santa_Cruz",
+                                "San_Francisco"));
+        assertEquals(4, routes.hits());
+        assertEquals(4, routes.misses());
+        assertEquals(65.6, routes.get(10, 6).length(), 0.05);
+
+        File file = File.createTempFile("trip01", ".ch");
+        file.deleteOnExit();
+        file.delete();
+        trip.useHierarchy(file.getPath());
+        assertEquals(0, routes.size());
+        assertEquals(expected, tripOutput(trip, stops));
+        assertEquals(3, routes.size());
+
+        RouteCache small = new RouteCache(2);
+        RouteCache.Route route =
+            new RouteCache.Route(asList(1, 2, 3), 2.5);
+        small.put(1, 3, route);
+        small.put(2, 3, route);
+        assertSame(route, small.get(1, 3));
+        small.put(3, 1, route);
+        assertEquals(2, small.size());
+        assertNull(small.get(2, 3));
+        assertEquals(asList(1, 2, 3), small.get(1, 3).path());
+        assertNotNull(small.get(3, 1));
+        assertEquals(3, small.hits());
+        assertEquals(1, small.misses());
+        small.clear();
+        assertNull(small.get(1, 3));
+    }
+
+    @Test
+    public void directions() throws IOException {
+        StringBuilder text = new StringBuilder(),
+            csv = new StringBuilder();
+        Directions toText = new Directions(text, Directions.Format.TEXT),
+            toCsv = new Directions(csv, Directions.Format.CSV);
+        for (Directions out : asList(toText, toCsv)) {
+            out.start("Here");
+            out.hop(new Road("Main_St", Direction.WE, 0.25));
+            out.hop(new Road("Main_St", Direction.WE, 1.0));
+            out.hop(new Road("Main_St", Direction.NS, 2.04));
+            out.hop(new Road("Elm,St", Direction.NS, 0.05));
+            out.arrive("There");
+            out.hop(new Road("Elm,St", Direction.SN, 10.96));
+            out.arrive("\"Home\"");
+            out.flush();
+        }
+        String n = System.lineSeparator();
+        assertEquals("From Here:" + n + n
+                     + "1. Take Main_St east for 1.3 miles." + n
+                     + "2. Take Main_St south for 2.0 miles." + n
+                     + "3. Take Elm,St south for 0.1 miles to There." + n
+                     + "4. Take Elm,St north for 11.0 miles to \"Home\"."
+                     + n, text.toString());
+        assertEquals("step,road,direction,miles,to" + n
+                     + "0,,,,Here" + n
+                     + "1,Main_St,east,1.3," + n
+                     + "2,Main_St,south,2.0," + n
+                     + "3,\"Elm,St\",south,0.1,There" + n
+                     + "4,\"Elm,St\",north,11.0,\"\"\"Home\"\"\"" + n,
+                     csv.toString());
+
+        Random rand = new Random(61);
+        for (int i = 0; i < 10000; i += 1) {
+            double miles = i % 2 == 0 ? rand.nextInt(100000) / 100.0
+                : rand.nextDouble() * Math.pow(10, rand.nextInt(12) - 2);
+            StringBuilder step = new StringBuilder();
+            Directions out = new Directions(step, Directions.Format.CSV);
+            out.start("A");
+            out.hop(new Road("R", Direction.EW, miles));
+            out.arrive("B");
+            out.flush();
+            String expected = String.format("1,R,west,%.1f,B", miles);
+            assertTrue(miles + " formatted wrongly",
+                       step.toString().contains(n + expected + n));
+        }
+    }
+
     /**
-     * The default trip to test on.
+     * Returns the standard output of TRIP.makeTrip(STOPS).
+     */
+    private String tripOutput(Trip trip, List<String> stops) {
+        return output(() -> trip.makeTrip(stops));
+    }
+
+    /**
+     * Returns the standard output of ACTION.run().
+     */
+    private String output(Runnable action) {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        try {
+            action.run();
+        } finally {
+            System.setOut(stdout);
+        }
+        return bytes.toString();
+    }
+
+    /**
+     * The default trip to test on, read from a copy of
+     * testing/trip/trip01.map, so that the tests run from any directory.
      * @return the generated trip
+     * @throws IOException if the copy cannot be written
      */
-    private Trip getTestTrip() {
+    private Trip getTestTrip() throws IOException {
+        if (_testMap == null) {
+            _testMap = mapFile("trip01", TRIP01);
+        }
         Trip trip = new Trip();
-        trip.readMap("testing/trip/trip01.map");
+        trip.readMap(_testMap.getPath());
         return trip;
     }
+
+    /**
+     * Write a temporary map file.
+     * @param prefix the start of the file's name
+     * @param lines the lines of the map
+     * @return the file, which is deleted on exit
+     * @throws IOException if the file cannot be written
+     */
+    private static File mapFile(String prefix, String... lines)
+        throws IOException {
+        File file = File.createTempFile(prefix, ".map");
+        file.deleteOnExit();
+        try (PrintStream out = new PrintStream(file)) {
+            for (String line : lines) {
+                out.println(line);
+            }
+        }
+        return file;
+    }
+
+    /** The lines of testing/trip/trip01.map. */
+    private static final String[] TRIP01 = {
+        "L Berkeley -6736.99 2613.16",
+        "L C1 -6737.24 2613.16",
+        "L C2 -6737.14 2611.94",
+        "L C3a -6738.61 2611.34",
+        "L C3 -6738.35 2610.08",
+        "L San_Francisco -6744.56 2606.13",
+        "L C4 -6726 2581.16",
+        "L C4a -6725.18 2575.95",
+        "L C4b -6719.74 2570.59",
+        "L Santa_Cruz -6723.68 2551.99",
+        "L C6 -6723.4 2552.21",
+        "R Berkeley University_Ave 0.3196 EW C1",
+        "R C1 Martin_Luther_King_Jr_Way 1.6680 NS C2",
+        "R C2 Ashby_Ave 2.6550 EW C3a",
+        "R C3a I-580 1.5255 EW C3",
+        "R C3 I-80 7.8314 EW San_Francisco",
+        "R San_Francisco US-101 32.7900 NS C4",
+        "R C4 CA-85 5.5036 NS C4a",
+        "R C4a CA-85 7.8842 NS C4b",
+        "R C4b CA-17 18.9901 NS C6",
+        "R Santa_Cruz CA-1 0.3887 SN C6"
+    };
+
+    /** The copy of TRIP01 read by getTestTrip, or null if not yet
+     *  written. */
+    private static File _testMap;
 }